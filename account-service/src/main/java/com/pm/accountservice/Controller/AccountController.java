@@ -38,6 +38,12 @@ public class AccountController {
         return ResponseEntity.ok(accService.updateAccount(id, accRequestDTO));
     }
 
+    // Opt-in sharding for hot accounts - count 0 turns it off
+    @PutMapping("/{id}/balance-shards")
+    public ResponseEntity<AccResponseDTO> setBalanceShards(@PathVariable String id, @RequestParam int count) {
+        return ResponseEntity.ok(accService.setBalanceShards(id, count));
+    }
+
     @DeleteMapping("/{id}")
     public ResponseEntity<String> deleteAccount(@PathVariable String id) {
         accService.deleteAccount(id);
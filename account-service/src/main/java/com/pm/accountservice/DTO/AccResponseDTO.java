@@ -10,6 +10,8 @@ public class AccResponseDTO {
     private String accountNumber;
     private String accountType;
     private String accountBalance;
+    // accountBalance minus funds reserved by open holds
+    private String availableBalance;
     private String accountStatus;
     private String interestRate;
     private String customerId;
@@ -0,0 +1,14 @@
+package com.pm.accountservice.DTO;
+
+import lombok.Data;
+
+@Data
+public class HoldResponseDTO {
+
+    private String holdKey;
+    private String outcome;
+    private String reason;
+    private String status;
+    private String expiresAt;
+    private boolean replayed;
+}
@@ -0,0 +1,21 @@
+package com.pm.accountservice.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+// One item of an ExecuteTransferBatch call
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransferRequestDTO {
+
+    private String fromAccountId;
+    private String toAccountId;
+    // Already a number: AccountGrpcService converts the wire amount; null when the
+    // caller's amount didn't parse, which rejects just this item
+    private BigDecimal amount;
+    private String idempotencyKey;
+}
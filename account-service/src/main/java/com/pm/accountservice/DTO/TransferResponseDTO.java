@@ -0,0 +1,13 @@
+package com.pm.accountservice.DTO;
+
+import lombok.Data;
+
+@Data
+public class TransferResponseDTO {
+
+    private String outcome;
+    private String reason;
+    private AccResponseDTO fromAccount;
+    private AccResponseDTO toAccount;
+    private boolean replayed;
+}
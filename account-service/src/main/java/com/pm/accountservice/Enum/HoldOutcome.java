@@ -0,0 +1,19 @@
+package com.pm.accountservice.Enum;
+
+// Result of a PlaceHold / CaptureHold / ReleaseHold call.
+// PLACED             → funds reserved (or a replay of a hold that already was)
+// CAPTURED           → hold settled into a transfer (or a replay of one that already was)
+// RELEASED           → reserved funds are available again
+// INSUFFICIENT_FUNDS → available balance is lower than the amount, nothing was reserved
+// ACCOUNT_NOT_ACTIVE → one side is FROZEN/CLOSED/PENDING, nothing was written
+// NOT_ACTIVE         → the hold was already closed (released, expired or captured)
+// NOT_FOUND          → no hold with that key
+public enum HoldOutcome {
+    PLACED,
+    CAPTURED,
+    RELEASED,
+    INSUFFICIENT_FUNDS,
+    ACCOUNT_NOT_ACTIVE,
+    NOT_ACTIVE,
+    NOT_FOUND
+}
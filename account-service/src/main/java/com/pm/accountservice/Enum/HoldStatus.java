@@ -0,0 +1,13 @@
+package com.pm.accountservice.Enum;
+
+// Lifecycle of a fund reservation.
+// HELD     → amount is counted in the source account's held total
+// CAPTURED → money moved to the destination, hold closed
+// RELEASED → caller gave the funds back before capturing
+// EXPIRED  → nobody captured or released it in time, HoldSweeper gave the funds back
+public enum HoldStatus {
+    HELD,
+    CAPTURED,
+    RELEASED,
+    EXPIRED
+}
@@ -0,0 +1,15 @@
+package com.pm.accountservice.Enum;
+
+// Why a ledger entry exists.
+// OPENING      → the balance an account was created with
+// ADJUSTMENT   → AdjustBalance (signed delta)
+// CORRECTION   → UpdateAcc overwrote the balance; the entry is the difference
+// TRANSFER     → one leg of ExecuteTransfer / ExecuteTransferBatch
+// HOLD_CAPTURE → one leg of a captured hold
+public enum LedgerEntryType {
+    OPENING,
+    ADJUSTMENT,
+    CORRECTION,
+    TRANSFER,
+    HOLD_CAPTURE
+}
@@ -0,0 +1,14 @@
+package com.pm.accountservice.Enum;
+
+// Result of an ExecuteTransfer call.
+// COMPLETED            → both legs applied (or a replay of a transfer that already was)
+// INSUFFICIENT_FUNDS   → source balance is lower than the amount, nothing was written
+// ACCOUNT_NOT_ACTIVE   → one side is FROZEN/CLOSED/PENDING, nothing was written
+// REJECTED             → batch item was malformed or named a missing account
+//                        (the single-transfer call throws for these instead)
+public enum TransferOutcome {
+    COMPLETED,
+    INSUFFICIENT_FUNDS,
+    ACCOUNT_NOT_ACTIVE,
+    REJECTED
+}
@@ -0,0 +1,7 @@
+package com.pm.accountservice.Exception;
+
+public class InsufficientFundsException extends RuntimeException {
+    public InsufficientFundsException(String message) {
+        super(message);
+    }
+}
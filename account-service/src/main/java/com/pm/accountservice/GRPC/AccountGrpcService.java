@@ -2,10 +2,18 @@ package com.pm.accountservice.GRPC;
 
 import com.pm.accountservice.DTO.AccRequestDTO;
 import com.pm.accountservice.DTO.AccResponseDTO;
+import com.pm.accountservice.DTO.HoldResponseDTO;
+import com.pm.accountservice.DTO.TransferRequestDTO;
+import com.pm.accountservice.DTO.TransferResponseDTO;
+import java.math.BigDecimal;
 import java.util.List;
+import java.util.Map;
 import com.pm.accountservice.Enum.AccountStatus;
 import com.pm.accountservice.Enum.AccountType;
+import com.pm.accountservice.Exception.AccountNotFoundException;
+import com.pm.accountservice.Exception.InsufficientFundsException;
 import com.pm.accountservice.Service.accountService;
+import com.pm.accountservice.Service.holdService;
 import com.pm.proto.*;
 import com.pm.proto.AccountServGrpc.AccountServImplBase;
 import io.grpc.Status;
@@ -23,6 +31,9 @@ public class AccountGrpcService extends AccountServImplBase {
     @Autowired
     private accountService accService;
 
+    @Autowired
+    private holdService holdService;
+
     // Reusable helper - builds proto Account message from a response DTO
     private Account buildAccountProto(AccResponseDTO result) {
         return Account.newBuilder()
@@ -36,6 +47,18 @@ public class AccountGrpcService extends AccountServImplBase {
                 .setOpenedDate(result.getOpenedDate())
                 .setLastUpdated(result.getLastUpdate())
                 .setInterestRate(result.getInterestRate())
+                .setAvailableBalance(result.getAvailableBalance())
+                .build();
+    }
+
+    // Service outcome names match the proto enum once prefixed (PLACED -> HOLD_PLACED)
+    private HoldResponse buildHoldProto(HoldResponseDTO result) {
+        return HoldResponse.newBuilder()
+                .setHoldKey(result.getHoldKey())
+                .setOutcome(HoldOutcome.valueOf("HOLD_" + result.getOutcome()))
+                .setReason(result.getReason() != null ? result.getReason() : "")
+                .setExpiresAt(result.getExpiresAt() != null ? result.getExpiresAt() : "")
+                .setReplayed(result.isReplayed())
                 .build();
     }
 
@@ -85,6 +108,36 @@ public class AccountGrpcService extends AccountServImplBase {
         }
     }
 
+    @Override
+    public void getAccountsByIds(GetAccountsByIdsRequest request, StreamObserver<GetAccountsByIdsResponse> responseObserver) {
+        try {
+            log.info("getAccountsByIds request received, {} ids", request.getIdsCount());
+
+            Map<String, AccResponseDTO> found = accService.getAccountsByIds(request.getIdsList());
+
+            // Walk the request, not the result, so the response keeps request order
+            // and carries an explicit not-found entry for every missing id.
+            GetAccountsByIdsResponse.Builder builder = GetAccountsByIdsResponse.newBuilder();
+            for (String id : request.getIdsList()) {
+                AccResponseDTO dto = found.get(id);
+                AccountLookup.Builder lookup = AccountLookup.newBuilder().setId(id).setFound(dto != null);
+                if (dto != null) {
+                    lookup.setAccount(buildAccountProto(dto));
+                }
+                builder.addResults(lookup);
+            }
+
+            responseObserver.onNext(builder.build());
+            responseObserver.onCompleted();
+        } catch (IllegalArgumentException e) {
+            log.warn("getAccountsByIds rejected: {}", e.getMessage());
+            responseObserver.onError(Status.INVALID_ARGUMENT.withDescription(e.getMessage()).asRuntimeException());
+        } catch (Exception e) {
+            log.error("Error in getAccountsByIds: {}", e.getMessage());
+            responseObserver.onError(Status.INTERNAL.withDescription(e.getMessage()).asRuntimeException());
+        }
+    }
+
     @Override
     public void getAccByCusId(GetAccByCusIdRequest request, StreamObserver<GetAccByCusIdResponse> responseObserver) {
         try {
@@ -128,6 +181,168 @@ public class AccountGrpcService extends AccountServImplBase {
         }
     }
 
+    @Override
+    public void adjustBalance(AdjustBalanceRequest request, StreamObserver<AdjustBalanceResponse> responseObserver) {
+        try {
+            log.info("adjustBalance request received, id: {} delta: {}", request.getId(), request.getDelta());
+
+            AccResponseDTO result = accService.adjustBalance(request.getId(), request.getDelta());
+
+            AdjustBalanceResponse response = AdjustBalanceResponse.newBuilder()
+                    .setAccount(buildAccountProto(result))
+                    .build();
+
+            responseObserver.onNext(response);
+            responseObserver.onCompleted();
+        } catch (AccountNotFoundException e) {
+            log.error("Error in adjustBalance: {}", e.getMessage());
+            responseObserver.onError(Status.NOT_FOUND.withDescription(e.getMessage()).asRuntimeException());
+        } catch (InsufficientFundsException e) {
+            log.warn("adjustBalance rejected: {}", e.getMessage());
+            responseObserver.onError(Status.FAILED_PRECONDITION.withDescription(e.getMessage()).asRuntimeException());
+        } catch (Exception e) {
+            log.error("Error in adjustBalance: {}", e.getMessage());
+            responseObserver.onError(Status.INTERNAL.withDescription(e.getMessage()).asRuntimeException());
+        }
+    }
+
+    @Override
+    public void executeTransfer(ExecuteTransferRequest request, StreamObserver<ExecuteTransferResponse> responseObserver) {
+        try {
+            log.info("executeTransfer request received, from: {} to: {} amount: {} key: {}",
+                    request.getFromAccountId(), request.getToAccountId(), request.getAmount(), request.getIdempotencyKey());
+
+            TransferResponseDTO result = accService.executeTransfer(request.getFromAccountId(),
+                    request.getToAccountId(), amountOf(request.getAmount(), request.getAmountMinor(), request.getAmountScale()),
+                    request.getIdempotencyKey());
+
+            // Service outcome names match the proto enum once prefixed (COMPLETED -> TRANSFER_COMPLETED)
+            ExecuteTransferResponse.Builder builder = ExecuteTransferResponse.newBuilder()
+                    .setOutcome(TransferOutcome.valueOf("TRANSFER_" + result.getOutcome()))
+                    .setReason(result.getReason() != null ? result.getReason() : "")
+                    .setReplayed(result.isReplayed());
+            if (result.getFromAccount() != null) {
+                builder.setFromAccount(buildAccountProto(result.getFromAccount()));
+            }
+            if (result.getToAccount() != null) {
+                builder.setToAccount(buildAccountProto(result.getToAccount()));
+            }
+
+            responseObserver.onNext(builder.build());
+            responseObserver.onCompleted();
+        } catch (AccountNotFoundException e) {
+            log.error("Error in executeTransfer: {}", e.getMessage());
+            responseObserver.onError(Status.NOT_FOUND.withDescription(e.getMessage()).asRuntimeException());
+        } catch (IllegalArgumentException e) {
+            log.warn("executeTransfer rejected: {}", e.getMessage());
+            responseObserver.onError(Status.INVALID_ARGUMENT.withDescription(e.getMessage()).asRuntimeException());
+        } catch (Exception e) {
+            log.error("Error in executeTransfer: {}", e.getMessage());
+            responseObserver.onError(Status.INTERNAL.withDescription(e.getMessage()).asRuntimeException());
+        }
+    }
+
+    @Override
+    public void executeTransferBatch(ExecuteTransferBatchRequest request, StreamObserver<ExecuteTransferBatchResponse> responseObserver) {
+        try {
+            log.info("executeTransferBatch request received, {} transfers", request.getTransfersCount());
+
+            List<TransferRequestDTO> transfers = request.getTransfersList().stream()
+                    .map(t -> new TransferRequestDTO(t.getFromAccountId(), t.getToAccountId(),
+                            batchAmountOf(t), t.getIdempotencyKey()))
+                    .toList();
+            List<TransferResponseDTO> results = accService.executeTransferBatch(transfers);
+
+            ExecuteTransferBatchResponse.Builder builder = ExecuteTransferBatchResponse.newBuilder();
+            for (TransferResponseDTO result : results) {
+                builder.addResults(ExecuteTransferResponse.newBuilder()
+                        .setOutcome(TransferOutcome.valueOf("TRANSFER_" + result.getOutcome()))
+                        .setReason(result.getReason() != null ? result.getReason() : "")
+                        .setReplayed(result.isReplayed()));
+            }
+
+            responseObserver.onNext(builder.build());
+            responseObserver.onCompleted();
+        } catch (IllegalArgumentException e) {
+            log.warn("executeTransferBatch rejected: {}", e.getMessage());
+            responseObserver.onError(Status.INVALID_ARGUMENT.withDescription(e.getMessage()).asRuntimeException());
+        } catch (Exception e) {
+            log.error("Error in executeTransferBatch: {}", e.getMessage());
+            responseObserver.onError(Status.INTERNAL.withDescription(e.getMessage()).asRuntimeException());
+        }
+    }
+
+    @Override
+    public void placeHold(PlaceHoldRequest request, StreamObserver<HoldResponse> responseObserver) {
+        try {
+            log.info("placeHold request received, from: {} to: {} amount: {} key: {}",
+                    request.getFromAccountId(), request.getToAccountId(), request.getAmount(), request.getHoldKey());
+
+            HoldResponseDTO result = holdService.placeHold(request.getFromAccountId(), request.getToAccountId(),
+                    amountOf(request.getAmount(), request.getAmountMinor(), request.getAmountScale()),
+                    request.getHoldKey(), request.getTtlSeconds());
+
+            responseObserver.onNext(buildHoldProto(result));
+            responseObserver.onCompleted();
+        } catch (AccountNotFoundException e) {
+            log.error("Error in placeHold: {}", e.getMessage());
+            responseObserver.onError(Status.NOT_FOUND.withDescription(e.getMessage()).asRuntimeException());
+        } catch (IllegalArgumentException e) {
+            log.warn("placeHold rejected: {}", e.getMessage());
+            responseObserver.onError(Status.INVALID_ARGUMENT.withDescription(e.getMessage()).asRuntimeException());
+        } catch (Exception e) {
+            log.error("Error in placeHold: {}", e.getMessage());
+            responseObserver.onError(Status.INTERNAL.withDescription(e.getMessage()).asRuntimeException());
+        }
+    }
+
+    @Override
+    public void captureHold(CaptureHoldRequest request, StreamObserver<HoldResponse> responseObserver) {
+        try {
+            log.info("captureHold request received, key: {}", request.getHoldKey());
+
+            responseObserver.onNext(buildHoldProto(holdService.captureHold(request.getHoldKey())));
+            responseObserver.onCompleted();
+        } catch (Exception e) {
+            log.error("Error in captureHold: {}", e.getMessage());
+            responseObserver.onError(Status.INTERNAL.withDescription(e.getMessage()).asRuntimeException());
+        }
+    }
+
+    @Override
+    public void captureHoldBatch(CaptureHoldBatchRequest request, StreamObserver<CaptureHoldBatchResponse> responseObserver) {
+        try {
+            log.info("captureHoldBatch request received, {} holds", request.getHoldKeysCount());
+
+            CaptureHoldBatchResponse.Builder builder = CaptureHoldBatchResponse.newBuilder();
+            for (HoldResponseDTO result : holdService.captureHolds(request.getHoldKeysList())) {
+                builder.addResults(buildHoldProto(result));
+            }
+
+            responseObserver.onNext(builder.build());
+            responseObserver.onCompleted();
+        } catch (IllegalArgumentException e) {
+            log.warn("captureHoldBatch rejected: {}", e.getMessage());
+            responseObserver.onError(Status.INVALID_ARGUMENT.withDescription(e.getMessage()).asRuntimeException());
+        } catch (Exception e) {
+            log.error("Error in captureHoldBatch: {}", e.getMessage());
+            responseObserver.onError(Status.INTERNAL.withDescription(e.getMessage()).asRuntimeException());
+        }
+    }
+
+    @Override
+    public void releaseHold(ReleaseHoldRequest request, StreamObserver<HoldResponse> responseObserver) {
+        try {
+            log.info("releaseHold request received, key: {}", request.getHoldKey());
+
+            responseObserver.onNext(buildHoldProto(holdService.releaseHold(request.getHoldKey())));
+            responseObserver.onCompleted();
+        } catch (Exception e) {
+            log.error("Error in releaseHold: {}", e.getMessage());
+            responseObserver.onError(Status.INTERNAL.withDescription(e.getMessage()).asRuntimeException());
+        }
+    }
+
     @Override
     public void deleteAccIdRequest(DeleteAccByIdRequest request, StreamObserver<DeleteAccByIdResponse> responseObserver) {
         try {
@@ -146,4 +361,20 @@ public class AccountGrpcService extends AccountServImplBase {
             responseObserver.onError(Status.NOT_FOUND.withDescription(e.getMessage()).asRuntimeException());
         }
     }
+
+    // The integer form when the caller sent one (payment-service does), so there's no
+    // decimal string to parse; older callers only send the string
+    private static BigDecimal amountOf(String amount, long amountMinor, int amountScale) {
+        return amountMinor != 0 ? BigDecimal.valueOf(amountMinor, amountScale) : new BigDecimal(amount);
+    }
+
+    // A batch item with an amount that doesn't parse is rejected on its own (see
+    // accountService.executeTransferBatch) rather than failing the whole batch
+    private static BigDecimal batchAmountOf(ExecuteTransferRequest t) {
+        try {
+            return amountOf(t.getAmount(), t.getAmountMinor(), t.getAmountScale());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
 }
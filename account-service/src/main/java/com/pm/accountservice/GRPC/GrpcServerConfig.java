@@ -0,0 +1,24 @@
+package com.pm.accountservice.GRPC;
+
+import net.devh.boot.grpc.server.serverfactory.GrpcServerConfigurer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.Executors;
+
+// Handles gRPC calls on virtual threads when spring.threads.virtual.enabled is set, as
+// Tomcat then does for REST. ExecuteTransfer spends most of its time waiting for row
+// locks and the DB; on a virtual thread that wait no longer ties up an OS thread.
+// Pinned waits show up as jvm.threads.virtual.pinned (micrometer-java21, from JFR).
+@Configuration
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class GrpcServerConfig {
+
+    @Bean
+    public GrpcServerConfigurer virtualThreadExecutor() {
+        return serverBuilder -> serverBuilder.executor(
+                Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("grpc-account-", 0).factory()));
+    }
+}
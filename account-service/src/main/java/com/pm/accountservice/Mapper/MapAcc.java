@@ -33,6 +33,17 @@ public class MapAcc {
         }
         return acc;
     }
+    // For a sharded account: `unfolded` is what its balance shards hold on top of
+    // acc.balance, and is part of both balances the caller sees
+    public static AccResponseDTO toDTO(account acc, BigDecimal unfolded){
+        AccResponseDTO Acc = toDTO(acc);
+        if (unfolded != null && unfolded.signum() != 0) {
+            Acc.setAccountBalance(acc.getBalance().add(unfolded).toString());
+            Acc.setAvailableBalance(acc.availableBalance().add(unfolded).toString());
+        }
+        return Acc;
+    }
+
     public static AccResponseDTO toDTO(account acc){
 
         AccResponseDTO Acc = new AccResponseDTO();
@@ -40,6 +51,7 @@ public class MapAcc {
         Acc.setAccountName(acc.getAccountName());
         Acc.setAccountNumber(acc.getAccountNumber());
         Acc.setAccountBalance(acc.getBalance().toString());
+        Acc.setAvailableBalance(acc.availableBalance().toString());
         Acc.setCustomerId(acc.getCustomerId().toString());
         Acc.setAccountType(String.valueOf(acc.getAccountType()));
         Acc.setAccountStatus(String.valueOf(acc.getStatus()));
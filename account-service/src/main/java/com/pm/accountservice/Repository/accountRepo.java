@@ -1,9 +1,16 @@
 package com.pm.accountservice.Repository;
 
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.List;
 import com.pm.accountservice.model.account;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.UUID;
@@ -13,4 +20,26 @@ public interface accountRepo extends JpaRepository<account, UUID> {
     boolean existsByAccountNumber(String accountNumber);
     List<account> findByCustomerId(UUID customerId);
 
+    // Applies a signed delta in one statement. The balance check lives in the WHERE
+    // clause so the row lock taken by the UPDATE covers both the check and the write -
+    // two concurrent debits can't both pass against the same stale balance.
+    // Funds reserved by open holds don't count as spendable.
+    // Also takes the account's next ledger seq, for the entry written alongside.
+    // Returns 0 when the id doesn't exist or the available balance would go negative.
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE account a SET a.balance = a.balance + :delta, a.ledgerSeq = a.ledgerSeq + 1, a.lastUpdated = :now " +
+           "WHERE a.id = :id AND a.balance - a.held + :delta >= 0")
+    int adjustBalance(@Param("id") UUID id, @Param("delta") BigDecimal delta, @Param("now") LocalDateTime now);
+
+    // Which of these accounts are sharded - read before locking, since a sharded
+    // transfer destination isn't locked at all
+    @Query("SELECT a.id FROM account a WHERE a.id IN :ids AND a.balanceShards > 0")
+    List<UUID> findShardedIds(@Param("ids") List<UUID> ids);
+
+    // SELECT ... ORDER BY id FOR UPDATE - Postgres takes the row locks in the sorted
+    // order, so every transfer locks its two accounts lowest-id first. A→B and B→A
+    // running at the same time queue on the same row instead of deadlocking.
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT a FROM account a WHERE a.id IN :ids ORDER BY a.id")
+    List<account> findAllByIdForUpdate(@Param("ids") List<UUID> ids);
 }
@@ -0,0 +1,48 @@
+package com.pm.accountservice.Repository;
+
+import com.pm.accountservice.model.balanceShard;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface balanceShardRepo extends JpaRepository<balanceShard, balanceShard.Key> {
+
+    // Row lock on the one shard only - credits to other shards of the same account
+    // go ahead in parallel. Returns 0 if the shard row doesn't exist.
+    @Modifying
+    @Query("UPDATE balanceShard s SET s.balance = s.balance + :amount " +
+           "WHERE s.accountId = :accountId AND s.shard = :shard")
+    int credit(@Param("accountId") UUID accountId, @Param("shard") int shard, @Param("amount") BigDecimal amount);
+
+    // Waits for in-flight credits to commit, and keeps new ones out until the caller does
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM balanceShard s WHERE s.accountId = :accountId ORDER BY s.shard")
+    List<balanceShard> findByAccountIdForUpdate(@Param("accountId") UUID accountId);
+
+    @Query("SELECT COALESCE(SUM(s.balance), 0) FROM balanceShard s WHERE s.accountId = :accountId")
+    BigDecimal pendingTotal(@Param("accountId") UUID accountId);
+
+    interface PendingTotal {
+        UUID getAccountId();
+        BigDecimal getTotal();
+    }
+
+    @Query("SELECT s.accountId AS accountId, SUM(s.balance) AS total FROM balanceShard s " +
+           "WHERE s.accountId IN :accountIds GROUP BY s.accountId")
+    List<PendingTotal> pendingTotals(@Param("accountIds") Collection<UUID> accountIds);
+
+    // Accounts with credits waiting to be folded
+    @Query(value = "SELECT DISTINCT account_id FROM account_balance_shards WHERE balance <> 0 LIMIT :limit",
+           nativeQuery = true)
+    List<UUID> findAccountsWithPendingCredits(@Param("limit") int limit);
+}
@@ -0,0 +1,42 @@
+package com.pm.accountservice.Repository;
+
+import com.pm.accountservice.Enum.HoldStatus;
+import com.pm.accountservice.model.hold;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface holdRepo extends JpaRepository<hold, UUID> {
+
+    Optional<hold> findByHoldKey(String holdKey);
+
+    List<hold> findByHoldKeyIn(Collection<String> holdKeys);
+
+    // Which accounts a set of holds touches, without loading the holds themselves.
+    // Callers lock those accounts first and only then read the holds, so the rows
+    // they act on can't have been changed underneath them.
+    interface HoldAccounts {
+        UUID getAccountId();
+        UUID getToAccountId();
+    }
+
+    List<HoldAccounts> findAccountsByHoldKeyIn(Collection<String> holdKeys);
+
+    // Source accounts of the holds that expire soonest - served by the partial
+    // index on expires_at WHERE status = 'HELD' (V3)
+    @Query(value = "SELECT DISTINCT account_id FROM (" +
+                   "SELECT account_id FROM holds WHERE status = 'HELD' AND expires_at < :now " +
+                   "ORDER BY expires_at LIMIT :limit) due", nativeQuery = true)
+    List<UUID> findAccountsWithExpiredHolds(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    List<hold> findByAccountIdInAndStatusAndExpiresAtBefore(Collection<UUID> accountIds, HoldStatus status,
+                                                            LocalDateTime now);
+}
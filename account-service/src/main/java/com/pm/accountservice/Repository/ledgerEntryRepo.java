@@ -0,0 +1,65 @@
+package com.pm.accountservice.Repository;
+
+import com.pm.accountservice.model.ledgerEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface ledgerEntryRepo extends JpaRepository<ledgerEntry, UUID> {
+
+    // Latest snapshot plus the entries after it - both read through the
+    // (account_id, seq) keys, so the cost is the tail, not the whole history
+    @Query(value = "SELECT COALESCE(s.balance, 0) + COALESCE((" +
+                   "SELECT SUM(e.amount) FROM ledger_entries e " +
+                   "WHERE e.account_id = :accountId AND e.seq > COALESCE(s.seq, 0)), 0) " +
+                   "FROM (SELECT 1) one " +
+                   "LEFT JOIN LATERAL (SELECT seq, balance FROM balance_snapshots " +
+                   "WHERE account_id = :accountId ORDER BY seq DESC LIMIT 1) s ON true",
+           nativeQuery = true)
+    BigDecimal balanceOf(@Param("accountId") UUID accountId);
+
+    interface LedgerBalance {
+        UUID getAccountId();
+        BigDecimal getBalance();
+    }
+
+    // balanceOf for several accounts in one statement, one row per existing account
+    @Query(value = "SELECT a.id AS \"accountId\", COALESCE(s.balance, 0) + COALESCE((" +
+                   "SELECT SUM(e.amount) FROM ledger_entries e " +
+                   "WHERE e.account_id = a.id AND e.seq > COALESCE(s.seq, 0)), 0) AS \"balance\" " +
+                   "FROM accounts a " +
+                   "LEFT JOIN LATERAL (SELECT seq, balance FROM balance_snapshots bs " +
+                   "WHERE bs.account_id = a.id ORDER BY seq DESC LIMIT 1) s ON true " +
+                   "WHERE a.id IN (:accountIds)",
+           nativeQuery = true)
+    List<LedgerBalance> balancesOf(@Param("accountIds") Collection<UUID> accountIds);
+
+    List<ledgerEntry> findByAccountIdOrderBySeq(UUID accountId);
+
+    // Snapshots every account with at least minEntries entries since its last snapshot,
+    // at the account's current ledger_seq. ledger_seq and the entries up to it commit
+    // together, so within this statement's snapshot the sum covers exactly those
+    // entries. Two instances snapshotting the same seq write the same row - the
+    // second is dropped.
+    @Modifying
+    @Query(value = "INSERT INTO balance_snapshots (account_id, seq, balance, created_at) " +
+                   "SELECT a.id, a.ledger_seq, COALESCE(s.balance, 0) + t.total, :now " +
+                   "FROM accounts a " +
+                   "LEFT JOIN LATERAL (SELECT seq, balance FROM balance_snapshots bs " +
+                   "WHERE bs.account_id = a.id ORDER BY seq DESC LIMIT 1) s ON true " +
+                   "CROSS JOIN LATERAL (SELECT COALESCE(SUM(e.amount), 0) AS total FROM ledger_entries e " +
+                   "WHERE e.account_id = a.id AND e.seq > COALESCE(s.seq, 0) AND e.seq <= a.ledger_seq) t " +
+                   "WHERE a.ledger_seq - COALESCE(s.seq, 0) >= :minEntries " +
+                   "ON CONFLICT DO NOTHING",
+           nativeQuery = true)
+    int snapshotBalances(@Param("minEntries") int minEntries, @Param("now") LocalDateTime now);
+}
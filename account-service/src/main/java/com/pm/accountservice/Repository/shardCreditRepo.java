@@ -0,0 +1,14 @@
+package com.pm.accountservice.Repository;
+
+import com.pm.accountservice.model.shardCredit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface shardCreditRepo extends JpaRepository<shardCredit, UUID> {
+
+    List<shardCredit> findByAccountIdOrderByCreatedAt(UUID accountId);
+}
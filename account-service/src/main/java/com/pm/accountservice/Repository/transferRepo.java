@@ -0,0 +1,20 @@
+package com.pm.accountservice.Repository;
+
+import com.pm.accountservice.model.transfer;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface transferRepo extends JpaRepository<transfer, UUID> {
+    boolean existsByIdempotencyKey(String idempotencyKey);
+
+    // One query for a whole batch instead of an exists check per transfer
+    @Query("SELECT t.idempotencyKey FROM transfer t WHERE t.idempotencyKey IN :keys")
+    List<String> findExistingIdempotencyKeys(@Param("keys") Collection<String> keys);
+}
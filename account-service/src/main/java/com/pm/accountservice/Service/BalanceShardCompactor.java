@@ -0,0 +1,47 @@
+package com.pm.accountservice.Service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+// Folds the balance shards of sharded accounts back into their account rows, so the
+// shards stay small and the credits on them reach the ledger within about one
+// interval. Each account is folded in its own transaction; runs on every instance -
+// two compactors folding the same account just queue on its row lock, and the
+// second finds the shards empty.
+@Component
+public class BalanceShardCompactor {
+
+    private static final Logger log = LoggerFactory.getLogger(BalanceShardCompactor.class);
+
+    private final accountService accountService;
+    private final balanceShardService balanceShards;
+    private final int batchSize;
+
+    public BalanceShardCompactor(accountService accountService, balanceShardService balanceShards,
+                                 @Value("${account.shards.compact-batch-size:100}") int batchSize) {
+        this.accountService = accountService;
+        this.balanceShards = balanceShards;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(fixedDelayString = "${account.shards.compact-interval-ms:1000}")
+    public void compact() {
+        List<UUID> accountIds = balanceShards.accountsToCompact(batchSize);
+        for (UUID accountId : accountIds) {
+            try {
+                BigDecimal folded = accountService.compactBalanceShards(accountId);
+                log.debug("Folded {} of shard credits into account {}", folded, accountId);
+            } catch (RuntimeException e) {
+                // Left for the next tick; the other accounts go ahead
+                log.warn("Could not fold balance shards of account {}: {}", accountId, e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.pm.accountservice.Service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+// Gives back the funds of holds nobody captured or released before they expired,
+// e.g. because payment-service crashed between PlaceHold and settlement. Runs on
+// every instance; the account row locks in expireHolds keep two sweepers from
+// expiring the same hold twice.
+@Component
+public class HoldSweeper {
+
+    private static final Logger log = LoggerFactory.getLogger(HoldSweeper.class);
+
+    private final holdService holdService;
+    private final int batchSize;
+
+    public HoldSweeper(holdService holdService,
+                       @Value("${account.holds.sweep-batch-size:500}") int batchSize) {
+        this.holdService = holdService;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(fixedDelayString = "${account.holds.sweep-interval-ms:5000}")
+    public void sweep() {
+        int total = 0;
+        int expired;
+        // Keep going while whole batches come back so a backlog clears in one tick.
+        // expireHolds also takes every other expired hold on the accounts it locked,
+        // so a batch with more left behind can come back larger than batchSize.
+        do {
+            expired = holdService.expireHolds(batchSize);
+            total += expired;
+        } while (expired >= batchSize);
+        if (total > 0) {
+            log.info("Expired {} holds", total);
+        }
+    }
+}
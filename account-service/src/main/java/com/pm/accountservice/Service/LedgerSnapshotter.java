@@ -0,0 +1,33 @@
+package com.pm.accountservice.Service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+// Keeps ledger balance reads short: every account that has gained at least
+// snapshot-min-entries entries since its last snapshot gets a new one, so reading its
+// balance sums at most about that many entries plus whatever arrived since the last tick.
+@Component
+public class LedgerSnapshotter {
+
+    private static final Logger log = LoggerFactory.getLogger(LedgerSnapshotter.class);
+
+    private final ledgerService ledgerService;
+    private final int minEntries;
+
+    public LedgerSnapshotter(ledgerService ledgerService,
+                             @Value("${account.ledger.snapshot-min-entries:100}") int minEntries) {
+        this.ledgerService = ledgerService;
+        this.minEntries = minEntries;
+    }
+
+    @Scheduled(fixedDelayString = "${account.ledger.snapshot-interval-ms:60000}")
+    public void snapshot() {
+        int taken = ledgerService.snapshotBalances(minEntries);
+        if (taken > 0) {
+            log.info("Took {} balance snapshots", taken);
+        }
+    }
+}
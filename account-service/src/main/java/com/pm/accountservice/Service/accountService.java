@@ -2,39 +2,117 @@ package com.pm.accountservice.Service;
 
 import com.pm.accountservice.DTO.AccRequestDTO;
 import com.pm.accountservice.DTO.AccResponseDTO;
+import com.pm.accountservice.DTO.TransferRequestDTO;
+import com.pm.accountservice.DTO.TransferResponseDTO;
+import com.pm.accountservice.Enum.AccountStatus;
+import com.pm.accountservice.Enum.LedgerEntryType;
+import com.pm.accountservice.Enum.TransferOutcome;
 import com.pm.accountservice.Exception.AccountNotFoundException;
 import com.pm.accountservice.Exception.AccountNumberAlreadyExistException;
 import com.pm.accountservice.Exception.CustomerNotFoundException;
+import com.pm.accountservice.Exception.InsufficientFundsException;
 import com.pm.accountservice.GRPC.CustomerServiceGrpcClient;
 import com.pm.accountservice.Mapper.MapAcc;
 import com.pm.accountservice.Repository.accountRepo;
+import com.pm.accountservice.Repository.transferRepo;
 import com.pm.accountservice.model.account;
+import com.pm.accountservice.model.ledgerEntry;
+import com.pm.accountservice.model.transfer;
 import io.grpc.StatusRuntimeException;
 import lombok.AllArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.Set;
 import java.util.UUID;
 
 @Service
 @AllArgsConstructor
 public class accountService {
 
+    private static final Logger log = LoggerFactory.getLogger(accountService.class);
+    private static final int MAX_BATCH_LOOKUP = 1000;
+    private static final int MAX_BATCH_TRANSFER = 1000;
+
     accountRepo repository;
+    transferRepo transferRepository;
     CustomerServiceGrpcClient customerServiceGrpcClient;
+    ledgerService ledgerService;
+    balanceShardService balanceShards;
 
     public List<AccResponseDTO> getAllAccounts() {
-        List<account> accs = repository.findAll();
-        return accs.stream().map(MapAcc::toDTO).toList();
+        return toDTOs(repository.findAll());
     }
 
     public AccResponseDTO getAccount(String accountId) {
         account acc = repository.findById(UUID.fromString(accountId))
                 .orElseThrow(() -> new AccountNotFoundException("this id is not associated with any account"));
-        return MapAcc.toDTO(acc);
+        BigDecimal unfolded = acc.getBalanceShards() > 0 ? balanceShards.pendingTotal(acc) : BigDecimal.ZERO;
+        return withBalance(acc, unfolded, ledgerService.balanceOf(acc.getId()));
+    }
+
+    // The balance both lookups report comes from the ledger (latest snapshot + entries
+    // since), not the balances column. The two are written in the same transactions, so
+    // a difference means something changed the column behind the ledger's back - it's
+    // logged and the ledger figure is what's returned. For a sharded account, credits
+    // not folded in yet are in neither and are added on top.
+    private AccResponseDTO withBalance(account acc, BigDecimal unfolded, BigDecimal ledgerBalance) {
+        AccResponseDTO dto = MapAcc.toDTO(acc, unfolded);
+        if (ledgerBalance.compareTo(acc.getBalance()) != 0) {
+            log.warn("Account {} balance {} differs from its ledger balance {}", acc.getId(), acc.getBalance(), ledgerBalance);
+            BigDecimal balance = unfolded != null ? ledgerBalance.add(unfolded) : ledgerBalance;
+            dto.setAccountBalance(balance.toString());
+            dto.setAvailableBalance(balance.subtract(acc.getHeld()).toString());
+        }
+        return dto;
+    }
+
+    // Loads every requested account with one findAllById (WHERE id IN (...)) instead of
+    // a query per id, and their ledger balances and shard totals with one query each.
+    // Ids that don't parse or don't exist are simply absent from the map, so one bad id
+    // doesn't fail the whole batch.
+    public Map<String, AccResponseDTO> getAccountsByIds(List<String> accountIds) {
+        if (accountIds.size() > MAX_BATCH_LOOKUP) {
+            throw new IllegalArgumentException("At most " + MAX_BATCH_LOOKUP + " ids per lookup, got " + accountIds.size());
+        }
+        // keyed by the caller's string so "ABC..." and "abc..." both resolve
+        Map<String, UUID> requested = new HashMap<>();
+        for (String accountId : accountIds) {
+            try {
+                requested.put(accountId, UUID.fromString(accountId));
+            } catch (IllegalArgumentException ignored) {
+                // not a UUID - can't match any account, reported as not found
+            }
+        }
+        Map<String, AccResponseDTO> found = new HashMap<>();
+        if (requested.isEmpty()) {
+            return found;
+        }
+        Map<UUID, account> loaded = new HashMap<>();
+        for (account acc : repository.findAllById(new HashSet<>(requested.values()))) {
+            loaded.put(acc.getId(), acc);
+        }
+        Map<UUID, BigDecimal> unfolded = balanceShards.pendingTotals(loaded.values());
+        Map<UUID, BigDecimal> ledger = ledgerService.balancesOf(loaded.keySet());
+        requested.forEach((accountId, id) -> {
+            account acc = loaded.get(id);
+            if (acc != null) {
+                // no ledger row only if the account was deleted in between - nothing to check then
+                found.put(accountId, withBalance(acc, unfolded.get(id), ledger.getOrDefault(id, acc.getBalance())));
+            }
+        });
+        return found;
     }
 
     public List<AccResponseDTO> getAccountByCustomerId(String customerId) {
@@ -42,27 +120,317 @@ public class accountService {
         if (accounts.isEmpty()) {
             throw new AccountNotFoundException("No account found for customer id: " + customerId);
         }
-        return accounts.stream().map(MapAcc::toDTO).toList();
+        return toDTOs(accounts);
+    }
+
+    // One query for the shard totals of whichever of these accounts are sharded
+    private List<AccResponseDTO> toDTOs(List<account> accounts) {
+        Map<UUID, BigDecimal> unfolded = balanceShards.pendingTotals(accounts);
+        return accounts.stream().map(acc -> MapAcc.toDTO(acc, unfolded.get(acc.getId()))).toList();
     }
 
+    // Overwriting the balance is recorded as a CORRECTION entry for the difference.
+    // The row is locked so a transfer can't land between reading the old balance and
+    // writing the new one; a sharded account's shards are folded in first so the
+    // balance being overwritten is all of it.
+    @Transactional
     public AccResponseDTO updateAccount(String accountId, AccRequestDTO accRequestDTO) {
-        account acc = repository.findById(UUID.fromString(accountId))
+        account acc = repository.findAllByIdForUpdate(List.of(UUID.fromString(accountId))).stream().findFirst()
                 .orElseThrow(() -> new AccountNotFoundException("this id is not associated with any account"));
+        if (acc.getBalanceShards() > 0) {
+            balanceShards.fold(acc);
+        }
+        BigDecimal balance = new BigDecimal(accRequestDTO.getBalance());
+        BigDecimal correction = balance.subtract(acc.getBalance());
         acc.setAccountName(accRequestDTO.getAccountName());
         acc.setStatus(accRequestDTO.getStatus());
         acc.setAccountType(accRequestDTO.getType());
-        acc.setBalance(new BigDecimal(accRequestDTO.getBalance()));
+        acc.setBalance(balance);
         acc.setLastUpdated(LocalDateTime.now());
+        if (correction.signum() != 0) {
+            ledgerService.record(acc, correction, LedgerEntryType.CORRECTION, null, null);
+        }
         repository.save(acc);
         return MapAcc.toDTO(acc);
     }
 
+    // Moves the balance by a signed delta without a read-modify-write round trip.
+    // Callers send "-25.00" to debit and "25.00" to credit.
+    @Transactional
+    public AccResponseDTO adjustBalance(String accountId, String delta) {
+        UUID id = UUID.fromString(accountId);
+        int updated = repository.adjustBalance(id, new BigDecimal(delta), LocalDateTime.now());
+        if (updated == 0 && foldShards(id)) {
+            // A sharded account's row may have been short only because its credits were
+            // still on the shards
+            updated = repository.adjustBalance(id, new BigDecimal(delta), LocalDateTime.now());
+        }
+        if (updated == 0) {
+            // The conditional UPDATE doesn't say why it matched nothing - work it out
+            if (!repository.existsById(id)) {
+                throw new AccountNotFoundException("this id is not associated with any account");
+            }
+            throw new InsufficientFundsException("Insufficient funds in account " + accountId + " for delta " + delta);
+        }
+        account acc = repository.findById(id)
+                .orElseThrow(() -> new AccountNotFoundException("this id is not associated with any account"));
+        ledgerService.recordApplied(acc, new BigDecimal(delta), LedgerEntryType.ADJUSTMENT);
+        return MapAcc.toDTO(acc);
+    }
+
+    // Runs both legs of a transfer in one local transaction: lock, validate, debit,
+    // credit, record. Business rejections are returned as an outcome rather than
+    // thrown so the caller can tell them apart from infrastructure failures.
+    //
+    // A sharded destination is not locked - its credit goes to one of its shard rows -
+    // unless the source is sharded too (see balanceShardService). Its status is then
+    // checked on an unlocked read.
+    @Transactional
+    public TransferResponseDTO executeTransfer(String fromAccountId, String toAccountId,
+                                               String amount, String idempotencyKey) {
+        return executeTransfer(fromAccountId, toAccountId, new BigDecimal(amount), idempotencyKey);
+    }
+
+    @Transactional
+    public TransferResponseDTO executeTransfer(String fromAccountId, String toAccountId,
+                                               BigDecimal value, String idempotencyKey) {
+        UUID fromId = UUID.fromString(fromAccountId);
+        UUID toId = UUID.fromString(toAccountId);
+        if (fromId.equals(toId)) {
+            throw new IllegalArgumentException("Source and destination account must differ");
+        }
+        if (value.signum() <= 0) {
+            throw new IllegalArgumentException("Transfer amount must be positive: " + value);
+        }
+
+        List<UUID> sharded = repository.findShardedIds(List.of(fromId, toId));
+        boolean shardCredit = sharded.contains(toId) && !sharded.contains(fromId);
+        List<account> locked = repository.findAllByIdForUpdate(shardCredit ? List.of(fromId) : List.of(fromId, toId));
+        account from = locked.stream().filter(a -> a.getId().equals(fromId)).findFirst()
+                .orElseThrow(() -> new AccountNotFoundException("Source account not found: " + fromAccountId));
+        account to = (shardCredit ? repository.findById(toId) : locked.stream().filter(a -> a.getId().equals(toId)).findFirst())
+                .orElseThrow(() -> new AccountNotFoundException("Destination account not found: " + toAccountId));
+
+        // Checked after taking the row locks: a duplicate request for the same key
+        // waits on the same two rows, so by now the first attempt has either
+        // committed its transfers row or rolled back.
+        boolean keyed = idempotencyKey != null && !idempotencyKey.isBlank();
+        if (keyed && transferRepository.existsByIdempotencyKey(idempotencyKey)) {
+            TransferResponseDTO replay = transferResult(TransferOutcome.COMPLETED, null, from, to);
+            replay.setReplayed(true);
+            return replay;
+        }
+
+        if (from.getStatus() != AccountStatus.ACTIVE) {
+            return transferResult(TransferOutcome.ACCOUNT_NOT_ACTIVE,
+                    "Source account is not active: " + fromAccountId, null, null);
+        }
+        if (to.getStatus() != AccountStatus.ACTIVE) {
+            return transferResult(TransferOutcome.ACCOUNT_NOT_ACTIVE,
+                    "Destination account is not active: " + toAccountId, null, null);
+        }
+        if (from.availableBalance().compareTo(value) < 0 && !balanceShards.foldToCover(from, value)) {
+            return transferResult(TransferOutcome.INSUFFICIENT_FUNDS,
+                    "Insufficient funds. Available: " + from.availableBalance() + ", Required: " + value, null, null);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        from.setBalance(from.getBalance().subtract(value));
+        from.setLastUpdated(now);
+        if (shardCredit) {
+            ledgerService.record(from, value.negate(), LedgerEntryType.TRANSFER, idempotencyKey, toId);
+            balanceShards.credit(to, value, LedgerEntryType.TRANSFER, idempotencyKey, fromId);
+        } else {
+            to.setBalance(to.getBalance().add(value));
+            to.setLastUpdated(now);
+            ledgerService.saveAll(ledgerService.appendTransfer(from, to, value, LedgerEntryType.TRANSFER, idempotencyKey));
+        }
+
+        if (keyed) {
+            transfer t = new transfer();
+            t.setIdempotencyKey(idempotencyKey);
+            t.setFromAccountId(fromId);
+            t.setToAccountId(toId);
+            t.setAmount(value);
+            transferRepository.save(t);
+        }
+        // The locked account rows are managed entities - dirty checking flushes the
+        // balance updates together with the ledger and transfers inserts on commit.
+        return transferResult(TransferOutcome.COMPLETED, null, from, to);
+    }
+
+    // Batch form of executeTransfer for bulk payment submission. Every account the batch
+    // touches is locked once, up front and in id order (so two batches can't deadlock),
+    // already-used idempotency keys are found with one query, and the items are then
+    // applied in request order against the managed entities. However many items hit
+    // an account, the flush writes a single UPDATE for it, and the transfers rows go
+    // out as one JDBC batch. Each item gets its own outcome - a malformed item or a
+    // missing account is REJECTED instead of rolling back its neighbours. Sharded
+    // accounts are locked and credited like any other here - the batch already takes
+    // each row lock once for all of its items.
+    @Transactional
+    public List<TransferResponseDTO> executeTransferBatch(List<TransferRequestDTO> requests) {
+        if (requests.size() > MAX_BATCH_TRANSFER) {
+            throw new IllegalArgumentException("At most " + MAX_BATCH_TRANSFER + " transfers per batch, got " + requests.size());
+        }
+        List<TransferResponseDTO> results = new ArrayList<>(Collections.nCopies(requests.size(), null));
+
+        // Parse everything first so the lock query only sees well-formed ids
+        List<UUID[]> ids = new ArrayList<>(requests.size());
+        List<BigDecimal> amounts = new ArrayList<>(requests.size());
+        Set<UUID> touched = new HashSet<>();
+        Set<String> keys = new HashSet<>();
+        for (int i = 0; i < requests.size(); i++) {
+            TransferRequestDTO req = requests.get(i);
+            try {
+                UUID fromId = UUID.fromString(req.getFromAccountId());
+                UUID toId = UUID.fromString(req.getToAccountId());
+                BigDecimal value = req.getAmount();
+                if (value == null) {
+                    throw new IllegalArgumentException("Transfer amount is missing or not a number");
+                }
+                if (fromId.equals(toId)) {
+                    throw new IllegalArgumentException("Source and destination account must differ");
+                }
+                if (value.signum() <= 0) {
+                    throw new IllegalArgumentException("Transfer amount must be positive: " + req.getAmount());
+                }
+                ids.add(new UUID[]{fromId, toId});
+                amounts.add(value);
+                touched.add(fromId);
+                touched.add(toId);
+                if (isKeyed(req.getIdempotencyKey())) {
+                    keys.add(req.getIdempotencyKey());
+                }
+            } catch (IllegalArgumentException | NullPointerException e) {
+                ids.add(null);
+                amounts.add(null);
+                results.set(i, transferResult(TransferOutcome.REJECTED, "Invalid transfer: " + e.getMessage(), null, null));
+            }
+        }
+        if (touched.isEmpty()) {
+            return results;
+        }
+
+        Map<UUID, account> locked = new HashMap<>();
+        for (account acc : repository.findAllByIdForUpdate(new ArrayList<>(touched))) {
+            locked.put(acc.getId(), acc);
+        }
+        // Read after the locks for the same reason as in executeTransfer. Keys applied
+        // earlier in this batch are added as we go, so a duplicate inside the batch
+        // replays too.
+        Set<String> applied = keys.isEmpty()
+                ? new HashSet<>()
+                : new HashSet<>(transferRepository.findExistingIdempotencyKeys(keys));
+
+        LocalDateTime now = LocalDateTime.now();
+        List<transfer> rows = new ArrayList<>();
+        List<ledgerEntry> entries = new ArrayList<>();
+        for (int i = 0; i < requests.size(); i++) {
+            if (ids.get(i) == null) {
+                continue;
+            }
+            TransferRequestDTO req = requests.get(i);
+            account from = locked.get(ids.get(i)[0]);
+            account to = locked.get(ids.get(i)[1]);
+            BigDecimal value = amounts.get(i);
+            String key = req.getIdempotencyKey();
+
+            if (from == null || to == null) {
+                results.set(i, transferResult(TransferOutcome.REJECTED, from == null
+                        ? "Source account not found: " + req.getFromAccountId()
+                        : "Destination account not found: " + req.getToAccountId(), null, null));
+            } else if (isKeyed(key) && applied.contains(key)) {
+                TransferResponseDTO replay = transferResult(TransferOutcome.COMPLETED, null, null, null);
+                replay.setReplayed(true);
+                results.set(i, replay);
+            } else if (from.getStatus() != AccountStatus.ACTIVE) {
+                results.set(i, transferResult(TransferOutcome.ACCOUNT_NOT_ACTIVE,
+                        "Source account is not active: " + req.getFromAccountId(), null, null));
+            } else if (to.getStatus() != AccountStatus.ACTIVE) {
+                results.set(i, transferResult(TransferOutcome.ACCOUNT_NOT_ACTIVE,
+                        "Destination account is not active: " + req.getToAccountId(), null, null));
+            } else if (from.availableBalance().compareTo(value) < 0 && !balanceShards.foldToCover(from, value)) {
+                results.set(i, transferResult(TransferOutcome.INSUFFICIENT_FUNDS,
+                        "Insufficient funds. Available: " + from.availableBalance() + ", Required: " + value, null, null));
+            } else {
+                from.setBalance(from.getBalance().subtract(value));
+                from.setLastUpdated(now);
+                to.setBalance(to.getBalance().add(value));
+                to.setLastUpdated(now);
+                entries.addAll(ledgerService.appendTransfer(from, to, value, LedgerEntryType.TRANSFER, key));
+                if (isKeyed(key)) {
+                    applied.add(key);
+                    transfer t = new transfer();
+                    t.setIdempotencyKey(key);
+                    t.setFromAccountId(from.getId());
+                    t.setToAccountId(to.getId());
+                    t.setAmount(value);
+                    rows.add(t);
+                }
+                results.set(i, transferResult(TransferOutcome.COMPLETED, null, null, null));
+            }
+        }
+        ledgerService.saveAll(entries);
+        if (!rows.isEmpty()) {
+            transferRepository.saveAll(rows);
+        }
+        return results;
+    }
+
+    private static boolean isKeyed(String idempotencyKey) {
+        return idempotencyKey != null && !idempotencyKey.isBlank();
+    }
+
+    private TransferResponseDTO transferResult(TransferOutcome outcome, String reason, account from, account to) {
+        TransferResponseDTO result = new TransferResponseDTO();
+        result.setOutcome(outcome.name());
+        result.setReason(reason);
+        result.setFromAccount(from != null ? MapAcc.toDTO(from) : null);
+        result.setToAccount(to != null ? MapAcc.toDTO(to) : null);
+        return result;
+    }
+
+    // Turns hot-account sharding on (shardCount > 0), changes the shard count, or
+    // turns it off (0). Whatever the shards hold is folded into the account first.
+    @Transactional
+    public AccResponseDTO setBalanceShards(String accountId, int shardCount) {
+        account acc = repository.findAllByIdForUpdate(List.of(UUID.fromString(accountId))).stream().findFirst()
+                .orElseThrow(() -> new AccountNotFoundException("this id is not associated with any account"));
+        balanceShards.configure(acc, shardCount);
+        acc.setLastUpdated(LocalDateTime.now());
+        return MapAcc.toDTO(acc);
+    }
+
+    // Folds a sharded account's shards into its row - the compactor's unit of work,
+    // one account per transaction so the account row is only locked briefly. Returns
+    // the amount folded in.
+    @Transactional
+    public BigDecimal compactBalanceShards(UUID accountId) {
+        return repository.findAllByIdForUpdate(List.of(accountId)).stream().findFirst()
+                .map(balanceShards::fold)
+                .orElse(BigDecimal.ZERO);
+    }
+
+    // Locks the account and folds its shards; false if it isn't sharded or they were empty
+    private boolean foldShards(UUID id) {
+        account acc = repository.findAllByIdForUpdate(List.of(id)).stream().findFirst().orElse(null);
+        if (acc == null || acc.getBalanceShards() == 0 || balanceShards.fold(acc).signum() == 0) {
+            return false;
+        }
+        // adjustBalance is a bulk UPDATE - write the folded balance out before it runs
+        repository.flush();
+        return true;
+    }
+
     public void deleteAccount(String accountId) {
         repository.findById(UUID.fromString(accountId))
                 .orElseThrow(() -> new AccountNotFoundException("this id is not associated with any account"));
         repository.deleteById(UUID.fromString(accountId));
     }
 
+    // The opening balance is the account's first ledger entry, committed with the row
+    @Transactional
     public AccResponseDTO createAccount(AccRequestDTO accRequestDTO) {
         // Validate the customer exists in customer-service before creating the account
         try {
@@ -77,6 +445,7 @@ public class accountService {
             throw new AccountNumberAlreadyExistException("Account Number already exists!");
         acc.setAccountNumber(accNum);
         repository.save(acc);
+        ledgerService.record(acc, acc.getBalance(), LedgerEntryType.OPENING, null, null);
         return MapAcc.toDTO(acc);
     }
 }
@@ -0,0 +1,142 @@
+package com.pm.accountservice.Service;
+
+import com.pm.accountservice.Enum.LedgerEntryType;
+import com.pm.accountservice.Repository.balanceShardRepo;
+import com.pm.accountservice.Repository.shardCreditRepo;
+import com.pm.accountservice.model.account;
+import com.pm.accountservice.model.balanceShard;
+import com.pm.accountservice.model.ledgerEntry;
+import com.pm.accountservice.model.shardCredit;
+import lombok.AllArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Hot-account sharding. A merchant account taking thousands of credits a second would
+// have every one of them queue on its accounts row lock; with balance_shards = N each
+// credit instead adds to one of N shard rows picked at random, and the account row
+// isn't locked at all. The shards are folded back into account.balance (and their
+// credits into the ledger) by BalanceShardCompactor, and on demand by any debit the
+// account row alone can't cover.
+//
+// Locking: a shard credit takes its source account's row lock and then one shard row
+// lock, and never asks for anything after that. A fold runs under the account's own
+// row lock and then locks all its shards. Neither can wait on the other in a cycle -
+// as long as a transaction that folds never also credits shards, which is why a
+// transfer from a sharded account credits its destination's row directly.
+@Service
+@AllArgsConstructor
+public class balanceShardService {
+
+    static final int MAX_SHARDS = 64;
+
+    balanceShardRepo shardRepository;
+    shardCreditRepo creditRepository;
+    ledgerService ledgerService;
+
+    // Caller holds the source account's row lock, not the destination's
+    public void credit(account to, BigDecimal amount, LedgerEntryType type,
+                       String reference, UUID counterpartyAccountId) {
+        int shard = ThreadLocalRandom.current().nextInt(to.getBalanceShards());
+        if (shardRepository.credit(to.getId(), shard, amount) == 0) {
+            throw new IllegalStateException("Account " + to.getId() + " has no balance shard " + shard);
+        }
+        shardCredit c = new shardCredit();
+        c.setAccountId(to.getId());
+        c.setShard(shard);
+        c.setAmount(amount);
+        c.setEntryType(type);
+        c.setReference(reference != null && !reference.isBlank() ? reference : null);
+        c.setCounterpartyAccountId(counterpartyAccountId);
+        creditRepository.save(c);
+    }
+
+    // For a debit or hold the account's own row is short of: folds its shards in and
+    // says whether it covers amount now. Caller holds the account's row lock.
+    public boolean foldToCover(account acc, BigDecimal amount) {
+        if (acc.getBalanceShards() == 0) {
+            return false;
+        }
+        fold(acc);
+        return acc.availableBalance().compareTo(amount) >= 0;
+    }
+
+    // Moves everything credited to the shards into account.balance and writes each
+    // credit as a ledger entry. Caller holds the account's row lock; returns the amount
+    // folded in.
+    public BigDecimal fold(account acc) {
+        return fold(acc, shardRepository.findByAccountIdForUpdate(acc.getId()));
+    }
+
+    private BigDecimal fold(account acc, List<balanceShard> shards) {
+        BigDecimal total = BigDecimal.ZERO;
+        for (balanceShard s : shards) {
+            total = total.add(s.getBalance());
+        }
+        if (total.signum() == 0) {
+            return total;
+        }
+        // With every shard locked no credit is in flight, so these are exactly the
+        // credits that make up the shard balances
+        List<shardCredit> credits = creditRepository.findByAccountIdOrderByCreatedAt(acc.getId());
+        List<ledgerEntry> entries = new ArrayList<>(credits.size());
+        for (shardCredit c : credits) {
+            entries.add(ledgerService.append(acc, c.getAmount(), c.getEntryType(),
+                    c.getReference(), c.getCounterpartyAccountId()));
+        }
+        for (balanceShard s : shards) {
+            s.setBalance(BigDecimal.ZERO);
+        }
+        acc.setBalance(acc.getBalance().add(total));
+        ledgerService.saveAll(entries);
+        creditRepository.deleteAllInBatch(credits);
+        return total;
+    }
+
+    // Sets the account's shard count, folding whatever the current shards hold first.
+    // Shard rows are only ever added, never removed (see V5). Caller holds the account's
+    // row lock.
+    public void configure(account acc, int shardCount) {
+        if (shardCount < 0 || shardCount > MAX_SHARDS) {
+            throw new IllegalArgumentException("Balance shards must be between 0 and " + MAX_SHARDS + ", got " + shardCount);
+        }
+        List<balanceShard> shards = shardRepository.findByAccountIdForUpdate(acc.getId());
+        fold(acc, shards);
+        List<balanceShard> added = new ArrayList<>();
+        for (int shard = shards.size(); shard < shardCount; shard++) {
+            added.add(new balanceShard(acc.getId(), shard, BigDecimal.ZERO));
+        }
+        if (!added.isEmpty()) {
+            shardRepository.saveAll(added);
+        }
+        acc.setBalanceShards(shardCount);
+    }
+
+    // What the shards hold on top of account.balance
+    public BigDecimal pendingTotal(account acc) {
+        return acc.getBalanceShards() == 0 ? BigDecimal.ZERO : shardRepository.pendingTotal(acc.getId());
+    }
+
+    // pendingTotal for many accounts in one query - ordinary accounts are left out
+    public Map<UUID, BigDecimal> pendingTotals(Collection<account> accounts) {
+        List<UUID> sharded = accounts.stream().filter(a -> a.getBalanceShards() > 0).map(account::getId).toList();
+        Map<UUID, BigDecimal> totals = new HashMap<>();
+        if (!sharded.isEmpty()) {
+            for (balanceShardRepo.PendingTotal t : shardRepository.pendingTotals(sharded)) {
+                totals.put(t.getAccountId(), t.getTotal());
+            }
+        }
+        return totals;
+    }
+
+    public List<UUID> accountsToCompact(int limit) {
+        return shardRepository.findAccountsWithPendingCredits(limit);
+    }
+}
@@ -0,0 +1,278 @@
+package com.pm.accountservice.Service;
+
+import com.pm.accountservice.DTO.HoldResponseDTO;
+import com.pm.accountservice.Enum.AccountStatus;
+import com.pm.accountservice.Enum.HoldOutcome;
+import com.pm.accountservice.Enum.HoldStatus;
+import com.pm.accountservice.Enum.LedgerEntryType;
+import com.pm.accountservice.Exception.AccountNotFoundException;
+import com.pm.accountservice.Repository.accountRepo;
+import com.pm.accountservice.Repository.holdRepo;
+import com.pm.accountservice.model.account;
+import com.pm.accountservice.model.hold;
+import com.pm.accountservice.model.ledgerEntry;
+import lombok.AllArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+// Two-phase payments: PlaceHold reserves funds on the source account at submission time,
+// CaptureHold later turns the reservation into the actual debit + credit, ReleaseHold
+// (or expiry) gives it back. A placed hold guarantees the capture can't fail for lack of
+// funds, because available = balance - held is what every other debit checks against.
+//
+// Lock order is the same as for transfers: the account rows (lowest id first) are
+// locked before any hold row is read or written, so holds, transfers and the sweeper
+// all queue on the same rows instead of deadlocking.
+@Service
+@AllArgsConstructor
+public class holdService {
+
+    private static final int MAX_BATCH_CAPTURE = 1000;
+
+    accountRepo repository;
+    holdRepo holdRepository;
+    ledgerService ledgerService;
+    balanceShardService balanceShards;
+
+    @Transactional
+    public HoldResponseDTO placeHold(String accountId, String toAccountId, String amount,
+                                     String holdKey, long ttlSeconds) {
+        return placeHold(accountId, toAccountId, new BigDecimal(amount), holdKey, ttlSeconds);
+    }
+
+    @Transactional
+    public HoldResponseDTO placeHold(String accountId, String toAccountId, BigDecimal value,
+                                     String holdKey, long ttlSeconds) {
+        if (holdKey == null || holdKey.isBlank()) {
+            throw new IllegalArgumentException("holdKey is required");
+        }
+        if (ttlSeconds <= 0) {
+            throw new IllegalArgumentException("Hold TTL must be positive: " + ttlSeconds);
+        }
+        UUID fromId = UUID.fromString(accountId);
+        UUID toId = UUID.fromString(toAccountId);
+        if (fromId.equals(toId)) {
+            throw new IllegalArgumentException("Source and destination account must differ");
+        }
+        if (value.signum() <= 0) {
+            throw new IllegalArgumentException("Hold amount must be positive: " + value);
+        }
+
+        Map<UUID, account> locked = lock(List.of(fromId, toId));
+        account from = locked.get(fromId);
+        account to = locked.get(toId);
+        if (from == null) {
+            throw new AccountNotFoundException("Source account not found: " + accountId);
+        }
+        if (to == null) {
+            throw new AccountNotFoundException("Destination account not found: " + toAccountId);
+        }
+
+        // After the locks, like the transfer idempotency check - a duplicate PlaceHold
+        // waits on the same rows, so the first one has committed or rolled back by now
+        hold existing = holdRepository.findByHoldKey(holdKey).orElse(null);
+        if (existing != null) {
+            HoldResponseDTO replay = holdResult(existing, HoldOutcome.PLACED, null);
+            replay.setReplayed(true);
+            return replay;
+        }
+
+        if (from.getStatus() != AccountStatus.ACTIVE) {
+            return holdResult(holdKey, HoldOutcome.ACCOUNT_NOT_ACTIVE, "Source account is not active: " + accountId);
+        }
+        if (to.getStatus() != AccountStatus.ACTIVE) {
+            return holdResult(holdKey, HoldOutcome.ACCOUNT_NOT_ACTIVE, "Destination account is not active: " + toAccountId);
+        }
+        if (from.availableBalance().compareTo(value) < 0 && !balanceShards.foldToCover(from, value)) {
+            return holdResult(holdKey, HoldOutcome.INSUFFICIENT_FUNDS,
+                    "Insufficient funds. Available: " + from.availableBalance() + ", Required: " + value);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        from.setHeld(from.getHeld().add(value));
+        from.setLastUpdated(now);
+
+        hold h = new hold();
+        h.setHoldKey(holdKey);
+        h.setAccountId(fromId);
+        h.setToAccountId(toId);
+        h.setAmount(value);
+        h.setStatus(HoldStatus.HELD);
+        h.setExpiresAt(now.plusSeconds(ttlSeconds));
+        holdRepository.save(h);
+        return holdResult(h, HoldOutcome.PLACED, null);
+    }
+
+    @Transactional
+    public HoldResponseDTO captureHold(String holdKey) {
+        return captureHolds(List.of(holdKey)).get(0);
+    }
+
+    // Settles many holds in one transaction - every account involved is locked once and
+    // gets a single UPDATE at flush however many holds it's part of. results[i] answers
+    // holdKeys[i]; each hold gets its own outcome.
+    @Transactional
+    public List<HoldResponseDTO> captureHolds(List<String> holdKeys) {
+        if (holdKeys.size() > MAX_BATCH_CAPTURE) {
+            throw new IllegalArgumentException("At most " + MAX_BATCH_CAPTURE + " holds per capture, got " + holdKeys.size());
+        }
+        Locked state = lockAndLoad(holdKeys);
+        Map<String, hold> holds = state.holds();
+        Map<UUID, account> locked = state.accounts();
+
+        LocalDateTime now = LocalDateTime.now();
+        List<HoldResponseDTO> results = new ArrayList<>(holdKeys.size());
+        List<ledgerEntry> entries = new ArrayList<>();
+        for (String key : holdKeys) {
+            hold h = holds.get(key);
+            if (h == null) {
+                results.add(holdResult(key, HoldOutcome.NOT_FOUND, "No hold with key " + key));
+                continue;
+            }
+            account from = locked.get(h.getAccountId());
+            account to = locked.get(h.getToAccountId());
+
+            if (h.getStatus() == HoldStatus.CAPTURED) {
+                HoldResponseDTO replay = holdResult(h, HoldOutcome.CAPTURED, null);
+                replay.setReplayed(true);
+                results.add(replay);
+            } else if (h.getStatus() != HoldStatus.HELD) {
+                results.add(holdResult(h, HoldOutcome.NOT_ACTIVE, "Hold is " + h.getStatus()));
+            } else if (!h.getExpiresAt().isAfter(now)) {
+                // Past its expiry but not swept yet - it's expired all the same
+                close(h, from, HoldStatus.EXPIRED, now);
+                results.add(holdResult(h, HoldOutcome.NOT_ACTIVE, "Hold is EXPIRED"));
+            } else if (from == null || to == null) {
+                results.add(holdResult(h, HoldOutcome.ACCOUNT_NOT_ACTIVE, "Account no longer exists"));
+            } else if (from.getStatus() != AccountStatus.ACTIVE) {
+                results.add(holdResult(h, HoldOutcome.ACCOUNT_NOT_ACTIVE, "Source account is not active: " + from.getId()));
+            } else if (to.getStatus() != AccountStatus.ACTIVE) {
+                results.add(holdResult(h, HoldOutcome.ACCOUNT_NOT_ACTIVE, "Destination account is not active: " + to.getId()));
+            } else {
+                // The reserved amount leaves held and balance together, so available
+                // doesn't move - it already went down when the hold was placed
+                close(h, from, HoldStatus.CAPTURED, now);
+                from.setBalance(from.getBalance().subtract(h.getAmount()));
+                to.setBalance(to.getBalance().add(h.getAmount()));
+                to.setLastUpdated(now);
+                entries.addAll(ledgerService.appendTransfer(from, to, h.getAmount(), LedgerEntryType.HOLD_CAPTURE, h.getHoldKey()));
+                results.add(holdResult(h, HoldOutcome.CAPTURED, null));
+            }
+        }
+        ledgerService.saveAll(entries);
+        return results;
+    }
+
+    @Transactional
+    public HoldResponseDTO releaseHold(String holdKey) {
+        Locked state = lockAndLoad(List.of(holdKey));
+        hold h = state.holds().get(holdKey);
+        if (h == null) {
+            return holdResult(holdKey, HoldOutcome.NOT_FOUND, "No hold with key " + holdKey);
+        }
+        account from = state.accounts().get(h.getAccountId());
+        switch (h.getStatus()) {
+            case HELD -> {
+                close(h, from, HoldStatus.RELEASED, LocalDateTime.now());
+                return holdResult(h, HoldOutcome.RELEASED, null);
+            }
+            case RELEASED, EXPIRED -> {
+                // The funds are free already - that's all the caller wanted
+                HoldResponseDTO replay = holdResult(h, HoldOutcome.RELEASED, null);
+                replay.setReplayed(true);
+                return replay;
+            }
+            default -> {
+                return holdResult(h, HoldOutcome.NOT_ACTIVE, "Hold is " + h.getStatus());
+            }
+        }
+    }
+
+    // Expires holds that are past expires_at, for up to `limit` of the soonest-expiring
+    // ones. Returns how many holds were expired.
+    @Transactional
+    public int expireHolds(int limit) {
+        LocalDateTime now = LocalDateTime.now();
+        List<UUID> accountIds = holdRepository.findAccountsWithExpiredHolds(now, limit);
+        if (accountIds.isEmpty()) {
+            return 0;
+        }
+        Map<UUID, account> locked = lock(accountIds);
+        // Read after the locks: a capture or release that got there first has already
+        // closed its hold and won't show up here
+        List<hold> expired = holdRepository.findByAccountIdInAndStatusAndExpiresAtBefore(
+                locked.keySet(), HoldStatus.HELD, now);
+        for (hold h : expired) {
+            close(h, locked.get(h.getAccountId()), HoldStatus.EXPIRED, now);
+        }
+        return expired.size();
+    }
+
+    private record Locked(Map<String, hold> holds, Map<UUID, account> accounts) {}
+
+    // Resolves the accounts behind the keys without loading the holds, locks them, and
+    // only then loads the holds - so what comes back reflects anything that committed
+    // while we were waiting for the locks.
+    private Locked lockAndLoad(List<String> holdKeys) {
+        Set<UUID> accountIds = new HashSet<>();
+        for (holdRepo.HoldAccounts accounts : holdRepository.findAccountsByHoldKeyIn(holdKeys)) {
+            accountIds.add(accounts.getAccountId());
+            accountIds.add(accounts.getToAccountId());
+        }
+        Map<String, hold> holds = new HashMap<>();
+        if (accountIds.isEmpty()) {
+            return new Locked(holds, Map.of());
+        }
+        Map<UUID, account> locked = lock(new ArrayList<>(accountIds));
+        for (hold h : holdRepository.findByHoldKeyIn(holdKeys)) {
+            holds.put(h.getHoldKey(), h);
+        }
+        return new Locked(holds, locked);
+    }
+
+    private Map<UUID, account> lock(List<UUID> accountIds) {
+        Map<UUID, account> locked = new HashMap<>();
+        if (accountIds.isEmpty()) {
+            return locked;
+        }
+        for (account acc : repository.findAllByIdForUpdate(accountIds)) {
+            locked.put(acc.getId(), acc);
+        }
+        return locked;
+    }
+
+    // Takes the hold out of the account's held total and marks it done
+    private static void close(hold h, account from, HoldStatus status, LocalDateTime now) {
+        if (from != null) {
+            from.setHeld(from.getHeld().subtract(h.getAmount()));
+            from.setLastUpdated(now);
+        }
+        h.setStatus(status);
+        h.setUpdatedAt(now);
+    }
+
+    private static HoldResponseDTO holdResult(hold h, HoldOutcome outcome, String reason) {
+        HoldResponseDTO result = holdResult(h.getHoldKey(), outcome, reason);
+        result.setStatus(h.getStatus().name());
+        result.setExpiresAt(h.getExpiresAt().toString());
+        return result;
+    }
+
+    private static HoldResponseDTO holdResult(String holdKey, HoldOutcome outcome, String reason) {
+        HoldResponseDTO result = new HoldResponseDTO();
+        result.setHoldKey(holdKey);
+        result.setOutcome(outcome.name());
+        result.setReason(reason);
+        return result;
+    }
+}
@@ -0,0 +1,100 @@
+package com.pm.accountservice.Service;
+
+import com.pm.accountservice.Enum.LedgerEntryType;
+import com.pm.accountservice.Repository.ledgerEntryRepo;
+import com.pm.accountservice.model.account;
+import com.pm.accountservice.model.ledgerEntry;
+import lombok.AllArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+// Writes ledger_entries next to every change of accounts.balance. The balance column
+// stays the locked working copy that transfers check funds against; the ledger is the
+// history it can be audited against or rebuilt from.
+//
+// Callers hold the account's row lock (findAllByIdForUpdate, or the conditional
+// UPDATE in adjustBalance) and run inside the transaction that changes the balance,
+// so an entry commits exactly when its balance change does and seq has no gaps.
+@Service
+@AllArgsConstructor
+public class ledgerService {
+
+    ledgerEntryRepo entryRepository;
+
+    // Entry for a change made on a managed account entity - takes the next seq from it,
+    // which dirty checking then writes back with the balance
+    public ledgerEntry append(account acc, BigDecimal amount, LedgerEntryType type,
+                              String reference, UUID counterpartyAccountId) {
+        acc.setLedgerSeq(acc.getLedgerSeq() + 1);
+        return entry(acc.getId(), acc.getLedgerSeq(), amount, type, reference, counterpartyAccountId);
+    }
+
+    public void record(account acc, BigDecimal amount, LedgerEntryType type,
+                       String reference, UUID counterpartyAccountId) {
+        entryRepository.save(append(acc, amount, type, reference, counterpartyAccountId));
+    }
+
+    // For a change the caller already applied with a bulk UPDATE that also advanced
+    // ledger_seq - the account passed in is the re-read row, so its seq is this entry's
+    public void recordApplied(account acc, BigDecimal amount, LedgerEntryType type) {
+        entryRepository.save(entry(acc.getId(), acc.getLedgerSeq(), amount, type, null, null));
+    }
+
+    // Both legs of a money movement between two accounts
+    public List<ledgerEntry> appendTransfer(account from, account to, BigDecimal amount,
+                                            LedgerEntryType type, String reference) {
+        List<ledgerEntry> legs = new ArrayList<>(2);
+        legs.add(append(from, amount.negate(), type, reference, to.getId()));
+        legs.add(append(to, amount, type, reference, from.getId()));
+        return legs;
+    }
+
+    // Batches go out through hibernate.jdbc.batch_size like the transfers rows
+    public void saveAll(List<ledgerEntry> entries) {
+        if (!entries.isEmpty()) {
+            entryRepository.saveAll(entries);
+        }
+    }
+
+    static ledgerEntry entry(UUID accountId, long seq, BigDecimal amount, LedgerEntryType type,
+                             String reference, UUID counterpartyAccountId) {
+        ledgerEntry e = new ledgerEntry();
+        e.setAccountId(accountId);
+        e.setSeq(seq);
+        e.setAmount(amount);
+        e.setEntryType(type);
+        e.setReference(reference != null && !reference.isBlank() ? reference : null);
+        e.setCounterpartyAccountId(counterpartyAccountId);
+        return e;
+    }
+
+    // Current balance from the ledger alone: latest snapshot + entries after it
+    public BigDecimal balanceOf(UUID accountId) {
+        return entryRepository.balanceOf(accountId);
+    }
+
+    // Same, for several accounts at once; accounts that don't exist are left out
+    public Map<UUID, BigDecimal> balancesOf(Collection<UUID> accountIds) {
+        Map<UUID, BigDecimal> balances = new HashMap<>();
+        if (!accountIds.isEmpty()) {
+            for (ledgerEntryRepo.LedgerBalance b : entryRepository.balancesOf(accountIds)) {
+                balances.put(b.getAccountId(), b.getBalance());
+            }
+        }
+        return balances;
+    }
+
+    @Transactional
+    public int snapshotBalances(int minEntries) {
+        return entryRepository.snapshotBalances(minEntries, LocalDateTime.now());
+    }
+}
@@ -20,10 +20,29 @@ public class account {
     @GeneratedValue(strategy = GenerationType.UUID)
     private UUID id;
 
+    // Ledger balance - what the account actually holds
     @NotNull
     @PositiveOrZero
     private BigDecimal balance;
 
+    // Sum of open holds (see hold). Reserved for a pending payment, so it can't be
+    // spent by anything else until the hold is captured, released or expires.
+    @NotNull
+    @PositiveOrZero
+    @Column(nullable = false, precision = 19, scale = 2)
+    private BigDecimal held = BigDecimal.ZERO;
+
+    // seq of the account's latest ledger entry (see ledgerEntry); advanced under the
+    // row lock by every balance change
+    @Column(nullable = false)
+    private long ledgerSeq;
+
+    // Number of balance shards (see balanceShard); 0 for an ordinary account. Credits to
+    // a sharded account are spread over its shard rows and folded in later, so `balance`
+    // alone is then less than what the account holds.
+    @Column(nullable = false)
+    private int balanceShards;
+
     @NotNull
     @Column(nullable = false)
     private UUID customerId;
@@ -57,6 +76,11 @@ public class account {
     // Timestamp for last transaction or update
     private LocalDateTime lastUpdated;
 
+    // What a new debit or hold can still use
+    public BigDecimal availableBalance() {
+        return balance.subtract(held);
+    }
+
     @PrePersist
     public void onCreate() {
         openedDate = LocalDateTime.now();
@@ -0,0 +1,41 @@
+package com.pm.accountservice.model;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.UUID;
+
+// One slice of a sharded account's balance: the credits it has received since the
+// shards were last folded into account.balance. Always >= 0 - debits never touch a
+// shard, they fold the shards into the account row first.
+@Entity
+@Table(name = "account_balance_shards")
+@IdClass(balanceShard.Key.class)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class balanceShard {
+
+    @Id
+    private UUID accountId;
+
+    @Id
+    private int shard;
+
+    @NotNull
+    @Column(nullable = false, precision = 19, scale = 2)
+    private BigDecimal balance;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private UUID accountId;
+        private int shard;
+    }
+}
@@ -0,0 +1,57 @@
+package com.pm.accountservice.model;
+
+import com.pm.accountservice.Enum.HoldStatus;
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// A reservation of `amount` on accountId in favour of toAccountId. While HELD the amount
+// is part of the account's held total, so it can't be spent twice; CaptureHold turns it
+// into the actual debit + credit. holdKey is chosen by the caller (payment-service uses
+// the payment id) and makes PlaceHold safe to retry.
+@Entity
+@Table(name = "holds")
+@Data
+public class hold {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    @NotNull
+    @Column(nullable = false, unique = true)
+    private String holdKey;
+
+    @NotNull
+    @Column(nullable = false)
+    private UUID accountId;
+
+    @NotNull
+    @Column(nullable = false)
+    private UUID toAccountId;
+
+    @NotNull
+    @Column(nullable = false, precision = 19, scale = 2)
+    private BigDecimal amount;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 15)
+    private HoldStatus status;
+
+    @Column(nullable = false)
+    private LocalDateTime expiresAt;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    public void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,55 @@
+package com.pm.accountservice.model;
+
+import com.pm.accountservice.Enum.LedgerEntryType;
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// One balance change on one account, never updated or deleted. A transfer writes two
+// entries with opposite amounts and the same reference, so the ledger of the two
+// accounts always nets to zero for it. An account's balance is the sum of its entries.
+@Entity
+@Table(name = "ledger_entries")
+@Data
+public class ledgerEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    @NotNull
+    @Column(nullable = false)
+    private UUID accountId;
+
+    // Position in the account's history, taken from account.ledgerSeq
+    @Column(nullable = false)
+    private long seq;
+
+    // Signed - debits are negative
+    @NotNull
+    @Column(nullable = false, precision = 19, scale = 2)
+    private BigDecimal amount;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private LedgerEntryType entryType;
+
+    // Transfer idempotency key or hold key - payment-service uses the payment id for
+    // both, so this ties the entry to its payment. Empty for unkeyed changes.
+    private String reference;
+
+    // The other side of a transfer or capture
+    private UUID counterpartyAccountId;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    public void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,49 @@
+package com.pm.accountservice.model;
+
+import com.pm.accountservice.Enum.LedgerEntryType;
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// A credit parked on a balance shard - becomes a ledgerEntry (same fields) when the
+// shards are folded into the account, and is deleted then.
+@Entity
+@Table(name = "shard_credits")
+@Data
+public class shardCredit {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    @NotNull
+    @Column(nullable = false)
+    private UUID accountId;
+
+    @Column(nullable = false)
+    private int shard;
+
+    @NotNull
+    @Column(nullable = false, precision = 19, scale = 2)
+    private BigDecimal amount;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private LedgerEntryType entryType;
+
+    private String reference;
+
+    private UUID counterpartyAccountId;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    public void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+}
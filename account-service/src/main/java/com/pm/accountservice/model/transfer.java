@@ -0,0 +1,45 @@
+package com.pm.accountservice.model;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// One row per applied ExecuteTransfer. Only exists so a retried request with the
+// same idempotency key can be recognised and answered without moving money twice.
+@Entity
+@Table(name = "transfers")
+@Data
+public class transfer {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    @NotNull
+    @Column(nullable = false, unique = true)
+    private String idempotencyKey;
+
+    @NotNull
+    @Column(nullable = false)
+    private UUID fromAccountId;
+
+    @NotNull
+    @Column(nullable = false)
+    private UUID toAccountId;
+
+    @NotNull
+    @Column(nullable = false, precision = 19, scale = 2)
+    private BigDecimal amount;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    public void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,8 @@
+CREATE TABLE transfers (
+    id              UUID PRIMARY KEY,
+    idempotency_key VARCHAR(255)  NOT NULL UNIQUE,
+    from_account_id UUID          NOT NULL,
+    to_account_id   UUID          NOT NULL,
+    amount          NUMERIC(19,2) NOT NULL,
+    created_at      TIMESTAMP     NOT NULL
+);
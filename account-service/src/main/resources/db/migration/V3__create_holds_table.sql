@@ -0,0 +1,18 @@
+-- Funds reserved by PlaceHold and not yet captured, released or expired.
+-- balance stays the ledger balance; what can still be spent is balance - held.
+ALTER TABLE accounts ADD COLUMN held NUMERIC(19,2) NOT NULL DEFAULT 0;
+
+CREATE TABLE holds (
+    id              UUID PRIMARY KEY,
+    hold_key        VARCHAR(255)  NOT NULL UNIQUE,
+    account_id      UUID          NOT NULL,
+    to_account_id   UUID          NOT NULL,
+    amount          NUMERIC(19,2) NOT NULL,
+    status          VARCHAR(15)   NOT NULL,
+    expires_at      TIMESTAMP     NOT NULL,
+    created_at      TIMESTAMP     NOT NULL,
+    updated_at      TIMESTAMP
+);
+
+-- HoldSweeper only ever looks at live holds, soonest expiry first
+CREATE INDEX idx_holds_held_expires_at ON holds (expires_at) WHERE status = 'HELD';
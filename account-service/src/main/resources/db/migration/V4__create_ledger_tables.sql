@@ -0,0 +1,33 @@
+-- Append-only record of every balance change. amount is signed (debits negative);
+-- seq numbers each account's entries 1, 2, 3... and accounts.ledger_seq holds the
+-- last one handed out, so the next entry is taken under the account row lock the
+-- balance change holds anyway.
+ALTER TABLE accounts ADD COLUMN ledger_seq BIGINT NOT NULL DEFAULT 0;
+
+CREATE TABLE ledger_entries (
+    id                      UUID PRIMARY KEY,
+    account_id              UUID          NOT NULL,
+    seq                     BIGINT        NOT NULL,
+    amount                  NUMERIC(19,2) NOT NULL,
+    entry_type              VARCHAR(20)   NOT NULL,
+    reference               VARCHAR(255),
+    counterparty_account_id UUID,
+    created_at              TIMESTAMP     NOT NULL,
+    -- also serves "entries of this account after seq N" for balance reads
+    CONSTRAINT uq_ledger_entries_account_seq UNIQUE (account_id, seq)
+);
+
+-- Balance of an account as of entry seq - a balance read sums only the entries after
+-- the latest snapshot instead of the whole history
+CREATE TABLE balance_snapshots (
+    account_id UUID          NOT NULL,
+    seq        BIGINT        NOT NULL,
+    balance    NUMERIC(19,2) NOT NULL,
+    created_at TIMESTAMP     NOT NULL,
+    PRIMARY KEY (account_id, seq)
+);
+
+-- Existing balances become each account's opening entry
+INSERT INTO ledger_entries (id, account_id, seq, amount, entry_type, created_at)
+SELECT gen_random_uuid(), id, 1, balance, 'OPENING', now() FROM accounts;
+UPDATE accounts SET ledger_seq = 1;
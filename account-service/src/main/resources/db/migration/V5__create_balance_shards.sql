@@ -0,0 +1,30 @@
+-- Opt-in sharding of hot accounts. With balance_shards = N > 0, credits to the account
+-- land on one of N rows in account_balance_shards instead of the accounts row, so
+-- concurrent credits don't queue on a single row lock. 0 means not sharded.
+ALTER TABLE accounts ADD COLUMN balance_shards INT NOT NULL DEFAULT 0;
+
+-- Credited but not yet folded into accounts.balance. Rows are only ever added -
+-- shrinking N just stops crediting the higher shards - so a credit that picked a shard
+-- under the old N always finds its row.
+CREATE TABLE account_balance_shards (
+    account_id UUID          NOT NULL,
+    shard      INT           NOT NULL,
+    balance    NUMERIC(19,2) NOT NULL DEFAULT 0,
+    PRIMARY KEY (account_id, shard)
+);
+
+-- One row per shard credit, written with the shard update. Folding the shards turns
+-- these into the account's ledger entries, so every credit still gets its own entry
+-- and ledger seq is still only handed out under the accounts row lock.
+CREATE TABLE shard_credits (
+    id                      UUID PRIMARY KEY,
+    account_id              UUID          NOT NULL,
+    shard                   INT           NOT NULL,
+    amount                  NUMERIC(19,2) NOT NULL,
+    entry_type              VARCHAR(20)   NOT NULL,
+    reference               VARCHAR(255),
+    counterparty_account_id UUID,
+    created_at              TIMESTAMP     NOT NULL
+);
+
+CREATE INDEX idx_shard_credits_account ON shard_credits (account_id, created_at);
@@ -0,0 +1,164 @@
+package com.pm.accountservice.Repository;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.jpa.repository.Query;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Runs the native ledger SQL from ledgerEntryRepo against a real Postgres (embedded
+// binaries, no Docker) with the Flyway migrations applied.
+class LedgerQueryTest {
+
+    private static EmbeddedPostgres postgres;
+    private static DataSource dataSource;
+
+    private UUID accountId;
+
+    @BeforeAll
+    static void startDatabase() throws Exception {
+        postgres = EmbeddedPostgres.builder().start();
+        dataSource = postgres.getPostgresDatabase();
+        Flyway.configure().dataSource(dataSource).load().migrate();
+    }
+
+    @AfterAll
+    static void stopDatabase() throws IOException {
+        postgres.close();
+    }
+
+    // An account with `entries` ledger entries of +10.00 each, ledger_seq kept in step
+    @BeforeEach
+    void createAccount() throws SQLException {
+        accountId = UUID.randomUUID();
+        execute("INSERT INTO accounts (id, balance, customer_id, account_number, account_name, account_type, " +
+                "status, opened_date, ledger_seq) VALUES ('" + accountId + "', 0, gen_random_uuid(), '" +
+                accountId + "', 'Ledger', 'CHECKING', 'ACTIVE', now(), 0)");
+    }
+
+    private void addEntries(int count) throws SQLException {
+        execute("INSERT INTO ledger_entries (id, account_id, seq, amount, entry_type, created_at) " +
+                "SELECT gen_random_uuid(), '" + accountId + "', a.ledger_seq + g, 10.00, 'TRANSFER', now() " +
+                "FROM accounts a, generate_series(1, " + count + ") g WHERE a.id = '" + accountId + "'");
+        execute("UPDATE accounts SET ledger_seq = ledger_seq + " + count + " WHERE id = '" + accountId + "'");
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (Connection c = dataSource.getConnection(); Statement st = c.createStatement()) {
+            st.execute(sql);
+        }
+    }
+
+    private static String sql(String method) throws NoSuchMethodException {
+        for (var m : ledgerEntryRepo.class.getMethods()) {
+            if (m.getName().equals(method)) {
+                return m.getAnnotation(Query.class).value();
+            }
+        }
+        throw new NoSuchMethodException(method);
+    }
+
+    private BigDecimal balanceOf() throws Exception {
+        try (Connection c = dataSource.getConnection();
+             PreparedStatement ps = c.prepareStatement(sql("balanceOf").replace(":accountId", "?::uuid"))) {
+            ps.setString(1, accountId.toString());
+            ps.setString(2, accountId.toString());
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getBigDecimal(1);
+            }
+        }
+    }
+
+    private int snapshotBalances(int minEntries) throws Exception {
+        try (Connection c = dataSource.getConnection();
+             PreparedStatement ps = c.prepareStatement(sql("snapshotBalances")
+                     .replace(":minEntries", "?").replace(":now", "now()"))) {
+            ps.setInt(1, minEntries);
+            return ps.executeUpdate();
+        }
+    }
+
+    private long snapshotCount() throws SQLException {
+        try (Connection c = dataSource.getConnection(); Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery("SELECT count(*) FROM balance_snapshots WHERE account_id = '" + accountId + "'")) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    @Test
+    void balanceOf_shouldSumEntries_whenNoSnapshotYet() throws Exception {
+        addEntries(3);
+
+        assertThat(balanceOf()).isEqualByComparingTo("30.00");
+    }
+
+    @Test
+    void balanceOf_shouldBeZero_forAccountWithoutEntries() throws Exception {
+        assertThat(balanceOf()).isEqualByComparingTo("0");
+    }
+
+    @Test
+    void balancesOf_shouldMatchBalanceOf_perAccount_andSkipUnknownIds() throws Exception {
+        addEntries(10);
+        snapshotBalances(5);
+        addEntries(2);
+        String ids = "'" + accountId + "', '" + UUID.randomUUID() + "'";
+
+        try (Connection c = dataSource.getConnection(); Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery(sql("balancesOf").replace(":accountIds", ids))) {
+            assertThat(rs.next()).isTrue();
+            assertThat(rs.getObject("accountId")).isEqualTo(accountId);
+            assertThat(rs.getBigDecimal("balance")).isEqualByComparingTo(balanceOf()).isEqualByComparingTo("120.00");
+            assertThat(rs.next()).isFalse();
+        }
+    }
+
+    @Test
+    void snapshot_shouldOnlyCoverAccountsPastTheThreshold_andReadsAddTheTail() throws Exception {
+        addEntries(5);
+        snapshotBalances(10);
+        assertThat(snapshotCount()).isZero();
+
+        addEntries(5);
+        snapshotBalances(10);
+        assertThat(snapshotCount()).isEqualTo(1);
+
+        // after the snapshot only the new tail is summed, and the total is unchanged
+        addEntries(2);
+        assertThat(balanceOf()).isEqualByComparingTo("120.00");
+
+        // the next snapshot builds on the previous one
+        addEntries(8);
+        snapshotBalances(10);
+        assertThat(snapshotCount()).isEqualTo(2);
+        execute("DELETE FROM ledger_entries WHERE account_id = '" + accountId + "' AND seq <= 20");
+        // everything up to seq 20 now comes from the snapshot alone
+        assertThat(balanceOf()).isEqualByComparingTo("200.00");
+    }
+
+    @Test
+    void snapshot_shouldBeHarmless_whenRunTwice() throws Exception {
+        addEntries(10);
+
+        snapshotBalances(1);
+        snapshotBalances(1);
+
+        assertThat(snapshotCount()).isEqualTo(1);
+    }
+}
@@ -2,13 +2,19 @@ package com.pm.accountservice.Service;
 
 import com.pm.accountservice.DTO.AccRequestDTO;
 import com.pm.accountservice.DTO.AccResponseDTO;
+import com.pm.accountservice.DTO.TransferRequestDTO;
+import com.pm.accountservice.DTO.TransferResponseDTO;
 import com.pm.accountservice.Enum.AccountStatus;
 import com.pm.accountservice.Enum.AccountType;
+import com.pm.accountservice.Enum.LedgerEntryType;
 import com.pm.accountservice.Exception.AccountNotFoundException;
 import com.pm.accountservice.Exception.CustomerNotFoundException;
+import com.pm.accountservice.Exception.InsufficientFundsException;
 import com.pm.accountservice.GRPC.CustomerServiceGrpcClient;
 import com.pm.accountservice.Repository.accountRepo;
+import com.pm.accountservice.Repository.transferRepo;
 import com.pm.accountservice.model.account;
+import com.pm.accountservice.model.transfer;
 import com.pm.proto.GetCustomerResponse;
 import io.grpc.Status;
 import io.grpc.StatusRuntimeException;
@@ -22,12 +28,15 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.*;
 
 // @ExtendWith(MockitoExtension.class) tells JUnit to use Mockito to manage
@@ -38,11 +47,20 @@ class AccountServiceTest {
     @Mock
     private accountRepo repository;
 
+    @Mock
+    private transferRepo transferRepository;
+
     // We mock the gRPC client because we don't want real network calls in unit tests.
     // Tests should be fast, isolated, and not depend on other services being up.
     @Mock
     private CustomerServiceGrpcClient customerServiceGrpcClient;
 
+    @Mock
+    private ledgerService ledgerService;
+
+    @Mock
+    private balanceShardService balanceShards;
+
     // @InjectMocks creates a real accountService instance and injects
     // the @Mock fields into it via the @AllArgsConstructor constructor.
     @InjectMocks
@@ -101,11 +119,39 @@ class AccountServiceTest {
     @Test
     void getAccount_shouldReturnDTOWhenFound() {
         when(repository.findById(testId)).thenReturn(Optional.of(testAccount));
+        when(ledgerService.balanceOf(testId)).thenReturn(new BigDecimal("500.00"));
 
         AccResponseDTO result = accountService.getAccount(testId.toString());
 
         assertThat(result.getAccountId()).isEqualTo(testId.toString());
         assertThat(result.getAccountName()).isEqualTo("John's Savings");
+        assertThat(result.getAccountBalance()).isEqualTo("500.00");
+    }
+
+    @Test
+    void getAccount_shouldReturnLedgerBalance_whenColumnDisagrees() {
+        testAccount.setHeld(new BigDecimal("50.00"));
+        when(repository.findById(testId)).thenReturn(Optional.of(testAccount));
+        when(ledgerService.balanceOf(testId)).thenReturn(new BigDecimal("450.00"));
+
+        AccResponseDTO result = accountService.getAccount(testId.toString());
+
+        assertThat(result.getAccountBalance()).isEqualTo("450.00");
+        assertThat(result.getAvailableBalance()).isEqualTo("400.00");
+    }
+
+    @Test
+    void getAccount_shouldAddCreditsStillOnBalanceShards() {
+        testAccount.setBalanceShards(4);
+        testAccount.setHeld(new BigDecimal("50.00"));
+        when(repository.findById(testId)).thenReturn(Optional.of(testAccount));
+        when(balanceShards.pendingTotal(testAccount)).thenReturn(new BigDecimal("120.00"));
+        when(ledgerService.balanceOf(testId)).thenReturn(new BigDecimal("500.00"));
+
+        AccResponseDTO result = accountService.getAccount(testId.toString());
+
+        assertThat(result.getAccountBalance()).isEqualTo("620.00");
+        assertThat(result.getAvailableBalance()).isEqualTo("570.00");
     }
 
     @Test
@@ -117,6 +163,44 @@ class AccountServiceTest {
                 .hasMessageContaining("not associated with any account");
     }
 
+    // --- getAccountsByIds ---
+
+    @Test
+    void getAccountsByIds_shouldLoadAllInOneQuery_andOmitMissingOrMalformedIds() {
+        UUID missing = UUID.randomUUID();
+        when(repository.findAllById(any())).thenReturn(List.of(testAccount));
+
+        Map<String, AccResponseDTO> result = accountService.getAccountsByIds(
+                List.of(testId.toString(), missing.toString(), "not-a-uuid"));
+
+        assertThat(result).containsOnlyKeys(testId.toString());
+        verify(repository, times(1)).findAllById(any());
+    }
+
+    @Test
+    void getAccountsByIds_shouldReportTheSameBalanceAsGetAccount_whenColumnDisagrees() {
+        testAccount.setBalanceShards(4);
+        testAccount.setHeld(new BigDecimal("50.00"));
+        when(repository.findById(testId)).thenReturn(Optional.of(testAccount));
+        when(repository.findAllById(any())).thenReturn(List.of(testAccount));
+        when(balanceShards.pendingTotal(testAccount)).thenReturn(new BigDecimal("120.00"));
+        when(balanceShards.pendingTotals(any())).thenReturn(Map.of(testId, new BigDecimal("120.00")));
+        when(ledgerService.balanceOf(testId)).thenReturn(new BigDecimal("450.00"));
+        when(ledgerService.balancesOf(any())).thenReturn(Map.of(testId, new BigDecimal("450.00")));
+
+        AccResponseDTO single = accountService.getAccount(testId.toString());
+        AccResponseDTO bulk = accountService.getAccountsByIds(List.of(testId.toString())).get(testId.toString());
+
+        assertThat(bulk.getAccountBalance()).isEqualTo("570.00").isEqualTo(single.getAccountBalance());
+        assertThat(bulk.getAvailableBalance()).isEqualTo("520.00").isEqualTo(single.getAvailableBalance());
+    }
+
+    @Test
+    void getAccountsByIds_shouldSkipQuery_whenNoValidIds() {
+        assertThat(accountService.getAccountsByIds(List.of("nope"))).isEmpty();
+        verify(repository, never()).findAllById(any());
+    }
+
     // --- getAccountByCustomerId ---
 
     @Test
@@ -160,6 +244,8 @@ class AccountServiceTest {
         assertThat(result.getAccountName()).isEqualTo("John's Savings");
         // Verify save was actually called - not just the mapper
         verify(repository).save(any(account.class));
+        verify(ledgerService).record(any(account.class), eq(new BigDecimal("500.00")),
+                eq(LedgerEntryType.OPENING), isNull(), isNull());
     }
 
     @Test
@@ -180,18 +266,30 @@ class AccountServiceTest {
 
     @Test
     void updateAccount_shouldUpdateAndReturnDTO() {
-        when(repository.findById(testId)).thenReturn(Optional.of(testAccount));
+        when(repository.findAllByIdForUpdate(List.of(testId))).thenReturn(List.of(testAccount));
         when(repository.save(any(account.class))).thenAnswer(inv -> inv.getArgument(0));
 
         AccResponseDTO result = accountService.updateAccount(testId.toString(), requestDTO);
 
         assertThat(result.getAccountName()).isEqualTo("John's Savings");
         verify(repository).save(any(account.class));
+        // same balance as before - nothing for the ledger
+        verifyNoInteractions(ledgerService);
+    }
+
+    @Test
+    void updateAccount_shouldRecordCorrection_whenBalanceOverwritten() {
+        when(repository.findAllByIdForUpdate(List.of(testId))).thenReturn(List.of(testAccount));
+        requestDTO.setBalance("650.00");
+
+        accountService.updateAccount(testId.toString(), requestDTO);
+
+        verify(ledgerService).record(testAccount, new BigDecimal("150.00"), LedgerEntryType.CORRECTION, null, null);
     }
 
     @Test
     void updateAccount_shouldThrowWhenAccountNotFound() {
-        when(repository.findById(testId)).thenReturn(Optional.empty());
+        when(repository.findAllByIdForUpdate(List.of(testId))).thenReturn(List.of());
 
         assertThatThrownBy(() -> accountService.updateAccount(testId.toString(), requestDTO))
                 .isInstanceOf(AccountNotFoundException.class);
@@ -199,6 +297,230 @@ class AccountServiceTest {
         verify(repository, never()).save(any());
     }
 
+    // --- adjustBalance ---
+
+    @Test
+    void adjustBalance_shouldApplyDeltaAndReturnFreshAccount() {
+        when(repository.adjustBalance(eq(testId), eq(new BigDecimal("-100.00")), any())).thenReturn(1);
+        testAccount.setBalance(new BigDecimal("400.00"));
+        when(repository.findById(testId)).thenReturn(Optional.of(testAccount));
+
+        AccResponseDTO result = accountService.adjustBalance(testId.toString(), "-100.00");
+
+        assertThat(result.getAccountBalance()).isEqualTo("400.00");
+        // Balance is never written through save() - the conditional UPDATE does it
+        verify(repository, never()).save(any());
+        verify(ledgerService).recordApplied(testAccount, new BigDecimal("-100.00"), LedgerEntryType.ADJUSTMENT);
+    }
+
+    @Test
+    void adjustBalance_shouldThrowInsufficientFunds_whenUpdateMatchesNothing() {
+        when(repository.adjustBalance(eq(testId), any(), any())).thenReturn(0);
+        when(repository.existsById(testId)).thenReturn(true);
+
+        assertThatThrownBy(() -> accountService.adjustBalance(testId.toString(), "-900.00"))
+                .isInstanceOf(InsufficientFundsException.class)
+                .hasMessageContaining(testId.toString());
+    }
+
+    @Test
+    void adjustBalance_shouldThrowNotFound_whenAccountMissing() {
+        when(repository.adjustBalance(eq(testId), any(), any())).thenReturn(0);
+        when(repository.existsById(testId)).thenReturn(false);
+
+        assertThatThrownBy(() -> accountService.adjustBalance(testId.toString(), "10.00"))
+                .isInstanceOf(AccountNotFoundException.class);
+    }
+
+    // --- executeTransfer ---
+
+    private account activeAccount(String balance) {
+        account a = new account();
+        a.setId(UUID.randomUUID());
+        a.setAccountName("Checking");
+        a.setAccountNumber("BOJ-" + a.getId().toString().substring(0, 10));
+        a.setCustomerId(UUID.randomUUID());
+        a.setBalance(new BigDecimal(balance));
+        a.setAccountType(AccountType.CHECKING);
+        a.setStatus(AccountStatus.ACTIVE);
+        return a;
+    }
+
+    @Test
+    void executeTransfer_shouldMoveMoneyAndRecordKey() {
+        account from = activeAccount("500.00");
+        account to = activeAccount("100.00");
+        when(repository.findAllByIdForUpdate(any())).thenReturn(List.of(from, to));
+        when(transferRepository.existsByIdempotencyKey("pay-1")).thenReturn(false);
+
+        TransferResponseDTO result = accountService.executeTransfer(
+                from.getId().toString(), to.getId().toString(), "100.00", "pay-1");
+
+        assertThat(result.getOutcome()).isEqualTo("COMPLETED");
+        assertThat(result.isReplayed()).isFalse();
+        assertThat(from.getBalance()).isEqualByComparingTo("400.00");
+        assertThat(to.getBalance()).isEqualByComparingTo("200.00");
+        verify(transferRepository).save(any(transfer.class));
+        verify(ledgerService).appendTransfer(from, to, new BigDecimal("100.00"), LedgerEntryType.TRANSFER, "pay-1");
+    }
+
+    @Test
+    void executeTransfer_shouldCreditShardWithoutLockingDestination_whenDestinationSharded() {
+        account from = activeAccount("500.00");
+        account merchant = activeAccount("100.00");
+        merchant.setBalanceShards(8);
+        when(repository.findShardedIds(List.of(from.getId(), merchant.getId()))).thenReturn(List.of(merchant.getId()));
+        when(repository.findAllByIdForUpdate(List.of(from.getId()))).thenReturn(List.of(from));
+        when(repository.findById(merchant.getId())).thenReturn(Optional.of(merchant));
+
+        TransferResponseDTO result = accountService.executeTransfer(
+                from.getId().toString(), merchant.getId().toString(), "100.00", "pay-1");
+
+        assertThat(result.getOutcome()).isEqualTo("COMPLETED");
+        assertThat(from.getBalance()).isEqualByComparingTo("400.00");
+        // the merchant row is untouched - the credit sits on a shard until it's folded
+        assertThat(merchant.getBalance()).isEqualByComparingTo("100.00");
+        verify(balanceShards).credit(merchant, new BigDecimal("100.00"), LedgerEntryType.TRANSFER, "pay-1", from.getId());
+        verify(ledgerService).record(from, new BigDecimal("-100.00"), LedgerEntryType.TRANSFER, "pay-1", merchant.getId());
+        verify(ledgerService, never()).appendTransfer(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void executeTransfer_shouldFoldSourceShards_whenItsRowAloneIsShort() {
+        account from = activeAccount("50.00");
+        from.setBalanceShards(4);
+        account to = activeAccount("100.00");
+        when(repository.findShardedIds(any())).thenReturn(List.of(from.getId()));
+        when(repository.findAllByIdForUpdate(List.of(from.getId(), to.getId()))).thenReturn(List.of(from, to));
+        when(balanceShards.foldToCover(from, new BigDecimal("100.00"))).thenAnswer(inv -> {
+            from.setBalance(new BigDecimal("150.00"));
+            return true;
+        });
+
+        TransferResponseDTO result = accountService.executeTransfer(
+                from.getId().toString(), to.getId().toString(), "100.00", "");
+
+        assertThat(result.getOutcome()).isEqualTo("COMPLETED");
+        assertThat(from.getBalance()).isEqualByComparingTo("50.00");
+        assertThat(to.getBalance()).isEqualByComparingTo("200.00");
+        verify(balanceShards, never()).credit(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void executeTransfer_shouldReplayWithoutMovingMoney_whenKeySeen() {
+        account from = activeAccount("400.00");
+        account to = activeAccount("200.00");
+        when(repository.findAllByIdForUpdate(any())).thenReturn(List.of(from, to));
+        when(transferRepository.existsByIdempotencyKey("pay-1")).thenReturn(true);
+
+        TransferResponseDTO result = accountService.executeTransfer(
+                from.getId().toString(), to.getId().toString(), "100.00", "pay-1");
+
+        assertThat(result.getOutcome()).isEqualTo("COMPLETED");
+        assertThat(result.isReplayed()).isTrue();
+        assertThat(from.getBalance()).isEqualByComparingTo("400.00");
+        verify(transferRepository, never()).save(any());
+    }
+
+    @Test
+    void executeTransfer_shouldRejectWithoutWriting_whenInsufficientFunds() {
+        account from = activeAccount("50.00");
+        account to = activeAccount("100.00");
+        when(repository.findAllByIdForUpdate(any())).thenReturn(List.of(from, to));
+
+        TransferResponseDTO result = accountService.executeTransfer(
+                from.getId().toString(), to.getId().toString(), "100.00", "");
+
+        assertThat(result.getOutcome()).isEqualTo("INSUFFICIENT_FUNDS");
+        assertThat(from.getBalance()).isEqualByComparingTo("50.00");
+        verify(transferRepository, never()).save(any());
+    }
+
+    @Test
+    void executeTransfer_shouldReject_whenDestinationNotActive() {
+        account from = activeAccount("500.00");
+        account to = activeAccount("100.00");
+        to.setStatus(AccountStatus.FROZEN);
+        when(repository.findAllByIdForUpdate(any())).thenReturn(List.of(from, to));
+
+        TransferResponseDTO result = accountService.executeTransfer(
+                from.getId().toString(), to.getId().toString(), "100.00", "");
+
+        assertThat(result.getOutcome()).isEqualTo("ACCOUNT_NOT_ACTIVE");
+        assertThat(result.getReason()).contains(to.getId().toString());
+    }
+
+    @Test
+    void executeTransfer_shouldThrow_whenAccountMissing() {
+        account from = activeAccount("500.00");
+        UUID missing = UUID.randomUUID();
+        when(repository.findAllByIdForUpdate(any())).thenReturn(List.of(from));
+
+        assertThatThrownBy(() -> accountService.executeTransfer(
+                from.getId().toString(), missing.toString(), "10.00", ""))
+                .isInstanceOf(AccountNotFoundException.class)
+                .hasMessageContaining(missing.toString());
+    }
+
+    // --- executeTransferBatch ---
+
+    @Test
+    void executeTransferBatch_shouldLockOnceAndApplyInOrder() {
+        account payer = activeAccount("150.00");
+        account a = activeAccount("0.00");
+        account b = activeAccount("0.00");
+        when(repository.findAllByIdForUpdate(any())).thenReturn(List.of(payer, a, b));
+        when(transferRepository.findExistingIdempotencyKeys(any())).thenReturn(List.of());
+
+        List<TransferResponseDTO> results = accountService.executeTransferBatch(List.of(
+                new TransferRequestDTO(payer.getId().toString(), a.getId().toString(), new BigDecimal("100.00"), "k1"),
+                new TransferRequestDTO(payer.getId().toString(), b.getId().toString(), new BigDecimal("100.00"), "k2"),
+                new TransferRequestDTO(payer.getId().toString(), b.getId().toString(), new BigDecimal("50.00"), "k3")));
+
+        // the second item sees the balance the first one left behind
+        assertThat(results).extracting(TransferResponseDTO::getOutcome)
+                .containsExactly("COMPLETED", "INSUFFICIENT_FUNDS", "COMPLETED");
+        assertThat(payer.getBalance()).isEqualByComparingTo("0.00");
+        assertThat(b.getBalance()).isEqualByComparingTo("50.00");
+        verify(repository, times(1)).findAllByIdForUpdate(any());
+        verify(transferRepository).saveAll(argThat(rows -> ((List<?>) rows).size() == 2));
+    }
+
+    @Test
+    void executeTransferBatch_shouldRejectBadItemsWithoutFailingOthers() {
+        account from = activeAccount("100.00");
+        account to = activeAccount("0.00");
+        when(repository.findAllByIdForUpdate(any())).thenReturn(List.of(from, to));
+
+        List<TransferResponseDTO> results = accountService.executeTransferBatch(List.of(
+                new TransferRequestDTO("not-a-uuid", to.getId().toString(), new BigDecimal("10.00"), ""),
+                new TransferRequestDTO(from.getId().toString(), UUID.randomUUID().toString(), new BigDecimal("10.00"), ""),
+                new TransferRequestDTO(from.getId().toString(), to.getId().toString(), null, ""),
+                new TransferRequestDTO(from.getId().toString(), to.getId().toString(), new BigDecimal("10.00"), "")));
+
+        assertThat(results).extracting(TransferResponseDTO::getOutcome)
+                .containsExactly("REJECTED", "REJECTED", "REJECTED", "COMPLETED");
+        assertThat(results.get(1).getReason()).contains("Destination account not found");
+        assertThat(results.get(2).getReason()).contains("not a number");
+        assertThat(to.getBalance()).isEqualByComparingTo("10.00");
+    }
+
+    @Test
+    void executeTransferBatch_shouldReplaySeenAndDuplicateKeys() {
+        account from = activeAccount("100.00");
+        account to = activeAccount("0.00");
+        when(repository.findAllByIdForUpdate(any())).thenReturn(List.of(from, to));
+        when(transferRepository.findExistingIdempotencyKeys(any())).thenReturn(List.of("old"));
+
+        List<TransferResponseDTO> results = accountService.executeTransferBatch(List.of(
+                new TransferRequestDTO(from.getId().toString(), to.getId().toString(), new BigDecimal("10.00"), "old"),
+                new TransferRequestDTO(from.getId().toString(), to.getId().toString(), new BigDecimal("10.00"), "new"),
+                new TransferRequestDTO(from.getId().toString(), to.getId().toString(), new BigDecimal("10.00"), "new")));
+
+        assertThat(results).extracting(TransferResponseDTO::isReplayed).containsExactly(true, false, true);
+        assertThat(from.getBalance()).isEqualByComparingTo("90.00");
+    }
+
     // --- deleteAccount ---
 
     @Test
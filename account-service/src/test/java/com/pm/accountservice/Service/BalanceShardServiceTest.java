@@ -0,0 +1,146 @@
+package com.pm.accountservice.Service;
+
+import com.pm.accountservice.Enum.LedgerEntryType;
+import com.pm.accountservice.Repository.balanceShardRepo;
+import com.pm.accountservice.Repository.shardCreditRepo;
+import com.pm.accountservice.model.account;
+import com.pm.accountservice.model.balanceShard;
+import com.pm.accountservice.model.ledgerEntry;
+import com.pm.accountservice.model.shardCredit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BalanceShardServiceTest {
+
+    @Mock
+    private balanceShardRepo shardRepository;
+
+    @Mock
+    private shardCreditRepo creditRepository;
+
+    @Mock
+    private ledgerService ledgerService;
+
+    @InjectMocks
+    private balanceShardService balanceShards;
+
+    private account sharded(String balance, int shards) {
+        account acc = new account();
+        acc.setId(UUID.randomUUID());
+        acc.setBalance(new BigDecimal(balance));
+        acc.setBalanceShards(shards);
+        return acc;
+    }
+
+    private shardCredit credit(account acc, String amount, String reference) {
+        shardCredit c = new shardCredit();
+        c.setAccountId(acc.getId());
+        c.setAmount(new BigDecimal(amount));
+        c.setEntryType(LedgerEntryType.TRANSFER);
+        c.setReference(reference);
+        return c;
+    }
+
+    @Test
+    void credit_shouldAddToOneShardInRange_andParkTheCredit() {
+        account merchant = sharded("0.00", 4);
+        UUID payer = UUID.randomUUID();
+        when(shardRepository.credit(eq(merchant.getId()), anyInt(), any())).thenReturn(1);
+
+        balanceShards.credit(merchant, new BigDecimal("10.00"), LedgerEntryType.TRANSFER, "pay-1", payer);
+
+        verify(shardRepository).credit(eq(merchant.getId()), intThat(s -> s >= 0 && s < 4), eq(new BigDecimal("10.00")));
+        verify(creditRepository).save(argThat(c -> c.getAccountId().equals(merchant.getId())
+                && c.getReference().equals("pay-1") && c.getCounterpartyAccountId().equals(payer)));
+    }
+
+    @Test
+    void credit_shouldThrow_whenShardRowMissing() {
+        account merchant = sharded("0.00", 4);
+        when(shardRepository.credit(eq(merchant.getId()), anyInt(), any())).thenReturn(0);
+
+        assertThatThrownBy(() -> balanceShards.credit(merchant, BigDecimal.ONE, LedgerEntryType.TRANSFER, null, null))
+                .isInstanceOf(IllegalStateException.class);
+        verify(creditRepository, never()).save(any());
+    }
+
+    @Test
+    void fold_shouldMoveShardsIntoBalance_andEachCreditIntoTheLedger() {
+        account merchant = sharded("100.00", 2);
+        List<balanceShard> shards = List.of(
+                new balanceShard(merchant.getId(), 0, new BigDecimal("30.00")),
+                new balanceShard(merchant.getId(), 1, new BigDecimal("20.00")));
+        List<shardCredit> credits = List.of(credit(merchant, "30.00", "pay-1"), credit(merchant, "20.00", "pay-2"));
+        when(shardRepository.findByAccountIdForUpdate(merchant.getId())).thenReturn(shards);
+        when(creditRepository.findByAccountIdOrderByCreatedAt(merchant.getId())).thenReturn(credits);
+        when(ledgerService.append(eq(merchant), any(), any(), any(), any())).thenReturn(new ledgerEntry());
+
+        BigDecimal folded = balanceShards.fold(merchant);
+
+        assertThat(folded).isEqualByComparingTo("50.00");
+        assertThat(merchant.getBalance()).isEqualByComparingTo("150.00");
+        assertThat(shards).allSatisfy(s -> assertThat(s.getBalance()).isEqualByComparingTo("0"));
+        verify(ledgerService).append(merchant, new BigDecimal("30.00"), LedgerEntryType.TRANSFER, "pay-1", null);
+        verify(ledgerService).append(merchant, new BigDecimal("20.00"), LedgerEntryType.TRANSFER, "pay-2", null);
+        verify(creditRepository).deleteAllInBatch(credits);
+    }
+
+    @Test
+    void fold_shouldDoNothing_whenShardsEmpty() {
+        account merchant = sharded("100.00", 2);
+        when(shardRepository.findByAccountIdForUpdate(merchant.getId()))
+                .thenReturn(List.of(new balanceShard(merchant.getId(), 0, BigDecimal.ZERO)));
+
+        assertThat(balanceShards.fold(merchant)).isEqualByComparingTo("0");
+        verifyNoInteractions(creditRepository, ledgerService);
+    }
+
+    @Test
+    void foldToCover_shouldNotTouchShards_ofOrdinaryAccount() {
+        account acc = sharded("10.00", 0);
+
+        assertThat(balanceShards.foldToCover(acc, new BigDecimal("20.00"))).isFalse();
+        verifyNoInteractions(shardRepository);
+    }
+
+    @Test
+    void configure_shouldOnlyAddMissingShardRows() {
+        account merchant = sharded("100.00", 2);
+        when(shardRepository.findByAccountIdForUpdate(merchant.getId())).thenReturn(List.of(
+                new balanceShard(merchant.getId(), 0, BigDecimal.ZERO),
+                new balanceShard(merchant.getId(), 1, BigDecimal.ZERO)));
+
+        balanceShards.configure(merchant, 4);
+
+        assertThat(merchant.getBalanceShards()).isEqualTo(4);
+        verify(shardRepository).saveAll(argThat(rows -> {
+            List<balanceShard> added = (List<balanceShard>) rows;
+            return added.size() == 2 && added.get(0).getShard() == 2 && added.get(1).getShard() == 3;
+        }));
+    }
+
+    @Test
+    void configure_shouldRejectOutOfRangeCounts() {
+        account acc = sharded("0.00", 0);
+
+        assertThatThrownBy(() -> balanceShards.configure(acc, balanceShardService.MAX_SHARDS + 1))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> balanceShards.configure(acc, -1))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
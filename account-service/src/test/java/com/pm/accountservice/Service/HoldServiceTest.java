@@ -0,0 +1,233 @@
+package com.pm.accountservice.Service;
+
+import com.pm.accountservice.DTO.HoldResponseDTO;
+import com.pm.accountservice.Enum.AccountStatus;
+import com.pm.accountservice.Enum.AccountType;
+import com.pm.accountservice.Enum.HoldStatus;
+import com.pm.accountservice.Enum.LedgerEntryType;
+import com.pm.accountservice.Repository.accountRepo;
+import com.pm.accountservice.Repository.holdRepo;
+import com.pm.accountservice.model.account;
+import com.pm.accountservice.model.hold;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class HoldServiceTest {
+
+    @Mock
+    private accountRepo repository;
+
+    @Mock
+    private holdRepo holdRepository;
+
+    @Mock
+    private ledgerService ledgerService;
+
+    @Mock
+    private balanceShardService balanceShards;
+
+    @InjectMocks
+    private holdService holdService;
+
+    private account activeAccount(String balance) {
+        account acc = new account();
+        acc.setId(UUID.randomUUID());
+        acc.setAccountName("Test");
+        acc.setAccountNumber("BOJ-" + UUID.randomUUID());
+        acc.setCustomerId(UUID.randomUUID());
+        acc.setBalance(new BigDecimal(balance));
+        acc.setAccountType(AccountType.CHECKING);
+        acc.setStatus(AccountStatus.ACTIVE);
+        return acc;
+    }
+
+    private hold heldHold(account from, account to, String amount, LocalDateTime expiresAt) {
+        hold h = new hold();
+        h.setId(UUID.randomUUID());
+        h.setHoldKey("pay-1");
+        h.setAccountId(from.getId());
+        h.setToAccountId(to.getId());
+        h.setAmount(new BigDecimal(amount));
+        h.setStatus(HoldStatus.HELD);
+        h.setExpiresAt(expiresAt);
+        return h;
+    }
+
+    // The capture/release paths resolve accounts through the projection before locking
+    private void stubLookup(hold h, account from, account to) {
+        holdRepo.HoldAccounts accounts = mock(holdRepo.HoldAccounts.class);
+        when(accounts.getAccountId()).thenReturn(h.getAccountId());
+        when(accounts.getToAccountId()).thenReturn(h.getToAccountId());
+        when(holdRepository.findAccountsByHoldKeyIn(List.of(h.getHoldKey()))).thenReturn(List.of(accounts));
+        when(repository.findAllByIdForUpdate(any())).thenReturn(List.of(from, to));
+        when(holdRepository.findByHoldKeyIn(List.of(h.getHoldKey()))).thenReturn(List.of(h));
+    }
+
+    // --- placeHold ---
+
+    @Test
+    void placeHold_shouldReserveFundsWithoutMovingThem() {
+        account from = activeAccount("500.00");
+        account to = activeAccount("100.00");
+        when(repository.findAllByIdForUpdate(any())).thenReturn(List.of(from, to));
+        when(holdRepository.findByHoldKey("pay-1")).thenReturn(Optional.empty());
+
+        HoldResponseDTO result = holdService.placeHold(
+                from.getId().toString(), to.getId().toString(), "200.00", "pay-1", 600);
+
+        assertThat(result.getOutcome()).isEqualTo("PLACED");
+        assertThat(from.getBalance()).isEqualByComparingTo("500.00");
+        assertThat(from.getHeld()).isEqualByComparingTo("200.00");
+        assertThat(from.availableBalance()).isEqualByComparingTo("300.00");
+        assertThat(to.getBalance()).isEqualByComparingTo("100.00");
+        verify(holdRepository).save(argThat(h -> h.getStatus() == HoldStatus.HELD && h.getHoldKey().equals("pay-1")));
+    }
+
+    @Test
+    void placeHold_shouldRejectAgainstAvailableBalance_notLedgerBalance() {
+        account from = activeAccount("500.00");
+        from.setHeld(new BigDecimal("450.00"));
+        account to = activeAccount("100.00");
+        when(repository.findAllByIdForUpdate(any())).thenReturn(List.of(from, to));
+        when(holdRepository.findByHoldKey("pay-1")).thenReturn(Optional.empty());
+
+        HoldResponseDTO result = holdService.placeHold(
+                from.getId().toString(), to.getId().toString(), "100.00", "pay-1", 600);
+
+        assertThat(result.getOutcome()).isEqualTo("INSUFFICIENT_FUNDS");
+        assertThat(from.getHeld()).isEqualByComparingTo("450.00");
+        verify(holdRepository, never()).save(any());
+    }
+
+    @Test
+    void placeHold_shouldReplay_whenKeySeen() {
+        account from = activeAccount("500.00");
+        account to = activeAccount("100.00");
+        hold existing = heldHold(from, to, "200.00", LocalDateTime.now().plusMinutes(10));
+        when(repository.findAllByIdForUpdate(any())).thenReturn(List.of(from, to));
+        when(holdRepository.findByHoldKey("pay-1")).thenReturn(Optional.of(existing));
+
+        HoldResponseDTO result = holdService.placeHold(
+                from.getId().toString(), to.getId().toString(), "200.00", "pay-1", 600);
+
+        assertThat(result.getOutcome()).isEqualTo("PLACED");
+        assertThat(result.isReplayed()).isTrue();
+        assertThat(from.getHeld()).isEqualByComparingTo("0");
+        verify(holdRepository, never()).save(any());
+    }
+
+    // --- captureHold ---
+
+    @Test
+    void captureHold_shouldMoveHeldAmountToDestination() {
+        account from = activeAccount("500.00");
+        from.setHeld(new BigDecimal("200.00"));
+        account to = activeAccount("100.00");
+        hold h = heldHold(from, to, "200.00", LocalDateTime.now().plusMinutes(10));
+        stubLookup(h, from, to);
+
+        HoldResponseDTO result = holdService.captureHold("pay-1");
+
+        assertThat(result.getOutcome()).isEqualTo("CAPTURED");
+        assertThat(h.getStatus()).isEqualTo(HoldStatus.CAPTURED);
+        assertThat(from.getBalance()).isEqualByComparingTo("300.00");
+        assertThat(from.getHeld()).isEqualByComparingTo("0");
+        assertThat(to.getBalance()).isEqualByComparingTo("300.00");
+        // the capture is the money movement, so that's what the ledger records
+        verify(ledgerService).appendTransfer(from, to, new BigDecimal("200.00"), LedgerEntryType.HOLD_CAPTURE, "pay-1");
+    }
+
+    @Test
+    void captureHold_shouldReplay_whenAlreadyCaptured() {
+        account from = activeAccount("300.00");
+        account to = activeAccount("300.00");
+        hold h = heldHold(from, to, "200.00", LocalDateTime.now().plusMinutes(10));
+        h.setStatus(HoldStatus.CAPTURED);
+        stubLookup(h, from, to);
+
+        HoldResponseDTO result = holdService.captureHold("pay-1");
+
+        assertThat(result.getOutcome()).isEqualTo("CAPTURED");
+        assertThat(result.isReplayed()).isTrue();
+        assertThat(from.getBalance()).isEqualByComparingTo("300.00");
+        assertThat(to.getBalance()).isEqualByComparingTo("300.00");
+    }
+
+    @Test
+    void captureHold_shouldExpireInsteadOfCapturing_whenPastExpiry() {
+        account from = activeAccount("500.00");
+        from.setHeld(new BigDecimal("200.00"));
+        account to = activeAccount("100.00");
+        hold h = heldHold(from, to, "200.00", LocalDateTime.now().minusSeconds(1));
+        stubLookup(h, from, to);
+
+        HoldResponseDTO result = holdService.captureHold("pay-1");
+
+        assertThat(result.getOutcome()).isEqualTo("NOT_ACTIVE");
+        assertThat(h.getStatus()).isEqualTo(HoldStatus.EXPIRED);
+        assertThat(from.getBalance()).isEqualByComparingTo("500.00");
+        assertThat(from.getHeld()).isEqualByComparingTo("0");
+        assertThat(to.getBalance()).isEqualByComparingTo("100.00");
+    }
+
+    @Test
+    void captureHolds_shouldReportMissingKeyPerItem() {
+        when(holdRepository.findAccountsByHoldKeyIn(List.of("nope"))).thenReturn(List.of());
+
+        List<HoldResponseDTO> results = holdService.captureHolds(List.of("nope"));
+
+        assertThat(results).singleElement().satisfies(r -> assertThat(r.getOutcome()).isEqualTo("NOT_FOUND"));
+        verify(repository, never()).findAllByIdForUpdate(any());
+    }
+
+    // --- releaseHold / expireHolds ---
+
+    @Test
+    void releaseHold_shouldGiveFundsBack() {
+        account from = activeAccount("500.00");
+        from.setHeld(new BigDecimal("200.00"));
+        account to = activeAccount("100.00");
+        hold h = heldHold(from, to, "200.00", LocalDateTime.now().plusMinutes(10));
+        stubLookup(h, from, to);
+
+        HoldResponseDTO result = holdService.releaseHold("pay-1");
+
+        assertThat(result.getOutcome()).isEqualTo("RELEASED");
+        assertThat(h.getStatus()).isEqualTo(HoldStatus.RELEASED);
+        assertThat(from.availableBalance()).isEqualByComparingTo("500.00");
+    }
+
+    @Test
+    void expireHolds_shouldCloseDueHoldsAndFreeTheirFunds() {
+        account from = activeAccount("500.00");
+        from.setHeld(new BigDecimal("200.00"));
+        account to = activeAccount("100.00");
+        hold h = heldHold(from, to, "200.00", LocalDateTime.now().minusMinutes(1));
+        when(holdRepository.findAccountsWithExpiredHolds(any(), anyInt())).thenReturn(List.of(from.getId()));
+        when(repository.findAllByIdForUpdate(List.of(from.getId()))).thenReturn(List.of(from));
+        when(holdRepository.findByAccountIdInAndStatusAndExpiresAtBefore(any(), eq(HoldStatus.HELD), any()))
+                .thenReturn(List.of(h));
+
+        int expired = holdService.expireHolds(100);
+
+        assertThat(expired).isEqualTo(1);
+        assertThat(h.getStatus()).isEqualTo(HoldStatus.EXPIRED);
+        assertThat(from.getHeld()).isEqualByComparingTo("0");
+    }
+}
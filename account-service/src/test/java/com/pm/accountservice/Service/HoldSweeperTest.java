@@ -0,0 +1,25 @@
+package com.pm.accountservice.Service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class HoldSweeperTest {
+
+    @Mock
+    private holdService holdService;
+
+    @Test
+    void sweep_shouldKeepGoing_whenABatchComesBackLargerThanBatchSize() {
+        // the first batch also expired other holds on the accounts it locked
+        when(holdService.expireHolds(2)).thenReturn(3, 2, 1);
+
+        new HoldSweeper(holdService, 2).sweep();
+
+        verify(holdService, times(3)).expireHolds(2);
+    }
+}
@@ -0,0 +1,91 @@
+package com.pm.accountservice.Service;
+
+import com.pm.accountservice.Enum.LedgerEntryType;
+import com.pm.accountservice.Repository.ledgerEntryRepo;
+import com.pm.accountservice.model.account;
+import com.pm.accountservice.model.ledgerEntry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LedgerServiceTest {
+
+    @Mock
+    private ledgerEntryRepo entryRepository;
+
+    @InjectMocks
+    private ledgerService ledgerService;
+
+    private account account(long ledgerSeq) {
+        account a = new account();
+        a.setId(UUID.randomUUID());
+        a.setBalance(BigDecimal.ZERO);
+        a.setLedgerSeq(ledgerSeq);
+        return a;
+    }
+
+    @Test
+    void appendTransfer_shouldWriteOppositeLegsWithEachAccountsNextSeq() {
+        account from = account(7);
+        account to = account(2);
+
+        List<ledgerEntry> legs = ledgerService.appendTransfer(from, to, new BigDecimal("25.00"),
+                LedgerEntryType.TRANSFER, "pay-1");
+
+        assertThat(legs).hasSize(2);
+        ledgerEntry debit = legs.get(0);
+        ledgerEntry credit = legs.get(1);
+        assertThat(debit.getAccountId()).isEqualTo(from.getId());
+        assertThat(debit.getSeq()).isEqualTo(8);
+        assertThat(debit.getAmount()).isEqualByComparingTo("-25.00");
+        assertThat(debit.getCounterpartyAccountId()).isEqualTo(to.getId());
+        assertThat(credit.getAccountId()).isEqualTo(to.getId());
+        assertThat(credit.getSeq()).isEqualTo(3);
+        assertThat(credit.getAmount()).isEqualByComparingTo("25.00");
+        assertThat(debit.getReference()).isEqualTo("pay-1").isEqualTo(credit.getReference());
+        // the seq goes back to the account row with the balance
+        assertThat(from.getLedgerSeq()).isEqualTo(8);
+        assertThat(to.getLedgerSeq()).isEqualTo(3);
+    }
+
+    @Test
+    void append_shouldKeepSeqsConsecutive_acrossSeveralChangesInOneBatch() {
+        account acc = account(0);
+
+        ledgerEntry first = ledgerService.append(acc, BigDecimal.TEN, LedgerEntryType.TRANSFER, "", null);
+        ledgerEntry second = ledgerService.append(acc, BigDecimal.ONE, LedgerEntryType.TRANSFER, null, null);
+
+        assertThat(first.getSeq()).isEqualTo(1);
+        assertThat(second.getSeq()).isEqualTo(2);
+        // blank keys are stored as no reference
+        assertThat(first.getReference()).isNull();
+    }
+
+    @Test
+    void recordApplied_shouldUseSeqAlreadyTakenByTheUpdate() {
+        account acc = account(5);
+
+        ledgerService.recordApplied(acc, new BigDecimal("-3.00"), LedgerEntryType.ADJUSTMENT);
+
+        verify(entryRepository).save(argThat(e -> e.getSeq() == 5 && e.getEntryType() == LedgerEntryType.ADJUSTMENT));
+        assertThat(acc.getLedgerSeq()).isEqualTo(5);
+    }
+
+    @Test
+    void saveAll_shouldSkipEmptyBatches() {
+        ledgerService.saveAll(List.of());
+
+        verify(entryRepository, never()).saveAll(any());
+    }
+}
@@ -1,7 +1,7 @@
 package com.pm.analyticsservice.Kafka;
 
-import com.pm.analyticsservice.DTO.PaymentEventDTO;
 import com.pm.analyticsservice.Service.AnalyticsService;
+import com.pm.proto.PaymentEvent;
 import lombok.AllArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -22,7 +22,7 @@ public class PaymentEventConsumer {
             topics = "${kafka.topic.payment-processed}",
             groupId = "analytics-group"
     )
-    public void consume(PaymentEventDTO event) {
+    public void consume(PaymentEvent event) {
         log.info("Analytics received event: paymentId={} status={}", event.getPaymentId(), event.getStatus());
         analyticsService.recordEvent(event);
     }
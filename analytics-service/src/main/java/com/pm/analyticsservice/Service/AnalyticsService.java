@@ -3,6 +3,7 @@ package com.pm.analyticsservice.Service;
 import com.pm.analyticsservice.DTO.*;
 import com.pm.analyticsservice.Repository.paymentEventRepo;
 import com.pm.analyticsservice.model.PaymentEventRecord;
+import com.pm.proto.PaymentEvent;
 import lombok.AllArgsConstructor;
 import org.bson.Document;
 import org.slf4j.Logger;
@@ -36,7 +37,7 @@ public class AnalyticsService {
 
     // ── Kafka-triggered method ────────────────────────────────────────────────
 
-    public void recordEvent(PaymentEventDTO event) {
+    public void recordEvent(PaymentEvent event) {
         if (repository.existsByPaymentId(event.getPaymentId())) {
             log.warn("Duplicate analytics event for paymentId={} — skipping", event.getPaymentId());
             return;
@@ -46,9 +47,10 @@ public class AnalyticsService {
         record.setPaymentId(event.getPaymentId());
         record.setFromAccountId(event.getFromAccountId());
         record.setToAccountId(event.getToAccountId());
-        record.setAmount(new BigDecimal(event.getAmount()));
-        record.setStatus(event.getStatus());
-        record.setType(event.getType());
+        record.setAmount(amountOf(event));
+        // Stored without the proto prefix, as "COMPLETED" / "FAILED" - countByStatus queries by these
+        record.setStatus(event.getStatus().name().replace("PAY_", ""));
+        record.setType(event.getType().name().replace("PAY_", ""));
         // Parse the ISO-8601 string from the event back to LocalDateTime for DB storage
         record.setOccurredAt(LocalDateTime.parse(event.getOccurredAt()));
         record.setRecordedAt(LocalDateTime.now());
@@ -58,6 +60,13 @@ public class AnalyticsService {
                 event.getPaymentId(), event.getStatus(), event.getAmount());
     }
 
+    // Minor units are exact; the decimal string is only for events written before they existed
+    private static BigDecimal amountOf(PaymentEvent event) {
+        return event.getAmountMinor() != 0
+                ? BigDecimal.valueOf(event.getAmountMinor(), event.getAmountScale())
+                : new BigDecimal(event.getAmount());
+    }
+
     // ── REST-accessible analytics methods ────────────────────────────────────
 
     public AnalyticsSummaryDTO getSummary() {
@@ -1,7 +1,8 @@
 package com.pm.analyticsservice.Kafka;
 
-import com.pm.analyticsservice.DTO.PaymentEventDTO;
 import com.pm.analyticsservice.Service.AnalyticsService;
+import com.pm.proto.PaymentEvent;
+import com.pm.proto.PaymentStatus;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
@@ -18,10 +19,11 @@ class PaymentEventConsumerTest {
 
     @Test
     void consume_shouldDelegateToAnalyticsService() {
-        PaymentEventDTO event = new PaymentEventDTO();
-        event.setPaymentId("PAY-001");
-        event.setStatus("COMPLETED");
-        event.setAmount("500.00");
+        PaymentEvent event = PaymentEvent.newBuilder()
+                .setPaymentId("PAY-001")
+                .setStatus(PaymentStatus.PAY_COMPLETED)
+                .setAmount("500.00")
+                .build();
 
         consumer.consume(event);
 
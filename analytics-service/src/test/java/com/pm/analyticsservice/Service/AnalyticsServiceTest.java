@@ -3,9 +3,13 @@ package com.pm.analyticsservice.Service;
 import com.pm.analyticsservice.DTO.*;
 import com.pm.analyticsservice.Repository.paymentEventRepo;
 import com.pm.analyticsservice.model.PaymentEventRecord;
+import com.pm.proto.PaymentEvent;
+import com.pm.proto.PaymentStatus;
+import com.pm.proto.PaymentType;
 import org.bson.Document;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -13,6 +17,7 @@ import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.aggregation.Aggregation;
 import org.springframework.data.mongodb.core.aggregation.AggregationResults;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.List;
 
@@ -32,7 +37,7 @@ class AnalyticsServiceTest {
 
     @Test
     void recordEvent_shouldSaveRecord_whenPaymentIsNew() {
-        PaymentEventDTO event = buildEvent("PAY-001", "COMPLETED", "1000.00");
+        PaymentEvent event = buildEvent("PAY-001", "COMPLETED", "1000.00");
         when(repository.existsByPaymentId("PAY-001")).thenReturn(false);
 
         analyticsService.recordEvent(event);
@@ -42,7 +47,7 @@ class AnalyticsServiceTest {
 
     @Test
     void recordEvent_shouldSkip_whenDuplicatePaymentId() {
-        PaymentEventDTO event = buildEvent("PAY-001", "COMPLETED", "1000.00");
+        PaymentEvent event = buildEvent("PAY-001", "COMPLETED", "1000.00");
         when(repository.existsByPaymentId("PAY-001")).thenReturn(true);
 
         analyticsService.recordEvent(event);
@@ -50,6 +55,23 @@ class AnalyticsServiceTest {
         verify(repository, never()).save(any());
     }
 
+    @Test
+    void recordEvent_shouldStoreMinorUnitsAndUnprefixedStatus() {
+        PaymentEvent event = buildEvent("PAY-001", "FAILED", "1000.00").toBuilder()
+                .setAmountMinor(10_000_000L)
+                .setAmountScale(4)
+                .build();
+        when(repository.existsByPaymentId("PAY-001")).thenReturn(false);
+
+        analyticsService.recordEvent(event);
+
+        ArgumentCaptor<PaymentEventRecord> saved = ArgumentCaptor.forClass(PaymentEventRecord.class);
+        verify(repository).save(saved.capture());
+        assertThat(saved.getValue().getAmount()).isEqualByComparingTo(new BigDecimal("1000.00"));
+        assertThat(saved.getValue().getStatus()).isEqualTo("FAILED");
+        assertThat(saved.getValue().getType()).isEqualTo("TRANSFER");
+    }
+
     // ── getSummary ───────────────────────────────────────────────────────────
 
     @Test
@@ -160,16 +182,16 @@ class AnalyticsServiceTest {
 
     // ── Helpers ──────────────────────────────────────────────────────────────
 
-    private PaymentEventDTO buildEvent(String paymentId, String status, String amount) {
-        PaymentEventDTO event = new PaymentEventDTO();
-        event.setPaymentId(paymentId);
-        event.setFromAccountId("ACC-001");
-        event.setToAccountId("ACC-002");
-        event.setAmount(amount);
-        event.setStatus(status);
-        event.setType("TRANSFER");
-        event.setOccurredAt("2025-01-15T10:30:00");
-        return event;
+    private PaymentEvent buildEvent(String paymentId, String status, String amount) {
+        return PaymentEvent.newBuilder()
+                .setPaymentId(paymentId)
+                .setFromAccountId("ACC-001")
+                .setToAccountId("ACC-002")
+                .setAmount(amount)
+                .setStatus(PaymentStatus.valueOf("PAY_" + status))
+                .setType(PaymentType.PAY_TRANSFER)
+                .setOccurredAt("2025-01-15T10:30:00")
+                .build();
     }
 
     // Builds a mock AggregationResults. Must be called BEFORE thenReturn() —
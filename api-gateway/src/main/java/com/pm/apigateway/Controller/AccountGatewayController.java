@@ -6,6 +6,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -31,6 +32,26 @@ public class AccountGatewayController {
         );
     }
 
+    // bulk lookup for dashboards - GET /api/accounts?ids=a,b,c
+    // one gRPC call and one DB query no matter how many ids; unknown ids come back as {id, found=false}
+    @GetMapping
+    public ResponseEntity<List<Map<String, String>>> getAccountsByIds(@RequestParam List<String> ids) {
+        GetAccountsByIdsRequest request = GetAccountsByIdsRequest.newBuilder().addAllIds(ids).build();
+        GetAccountsByIdsResponse response = stub.getAccountsByIds(request);
+        List<Map<String, String>> accounts = response.getResultsList().stream()
+                .map(lookup -> {
+                    Map<String, String> entry = new LinkedHashMap<>();
+                    if (lookup.getFound()) {
+                        entry.putAll(accountToMap(lookup.getAccount()));
+                    }
+                    entry.put("id", lookup.getId());
+                    entry.put("found", String.valueOf(lookup.getFound()));
+                    return entry;
+                })
+                .toList();
+        return ResponseEntity.ok(accounts);
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<Map<String, String>> getAccountById(@PathVariable String id) {
         GetAccIdRequest request = GetAccIdRequest.newBuilder().setId(id).build();
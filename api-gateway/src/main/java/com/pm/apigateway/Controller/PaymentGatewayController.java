@@ -1,11 +1,21 @@
 package com.pm.apigateway.Controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.pm.proto.*;
+import io.grpc.Context;
 import net.devh.boot.grpc.client.inject.GrpcClient;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -13,9 +23,14 @@ import java.util.Map;
 @RequestMapping("/api/payments")
 public class PaymentGatewayController {
 
+    private static final String NEXT_PAGE_TOKEN_HEADER = "X-Next-Page-Token";
+
     @GrpcClient("payment-service")
     private PaymentServiceGrpc.PaymentServiceBlockingStub stub;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
     private Map<String, String> paymentToMap(Payment payment) {
         return Map.of(
                 "id", payment.getId(),
@@ -30,20 +45,109 @@ public class PaymentGatewayController {
         );
     }
 
+    private Map<String, String> scheduleToMap(ScheduledPayment schedule) {
+        Map<String, String> map = new LinkedHashMap<>();
+        map.put("id", schedule.getId());
+        map.put("fromAccountId", schedule.getFromAccountId());
+        map.put("toAccountId", schedule.getToAccountId());
+        map.put("amount", schedule.getAmount());
+        map.put("type", schedule.getType().name());
+        map.put("description", schedule.getDescription());
+        map.put("frequency", schedule.getFrequency().name());
+        map.put("status", schedule.getStatus().name());
+        map.put("nextRunAt", schedule.getNextRunAt());
+        map.put("endsAt", schedule.getEndsAt());
+        map.put("runs", String.valueOf(schedule.getRuns()));
+        map.put("createdAt", schedule.getCreatedAt());
+        return map;
+    }
+
+    // Idempotency-Key header (or "idempotencyKey" in the body) makes the POST safe to
+    // retry - a repeat with the same key returns the original payment.
+    // "Prefer: respond-async" (or "async": "true" in the body) answers 202 as soon as the
+    // payment is stored as PENDING; follow it at the Location or its /watch stream.
     @PostMapping
-    public ResponseEntity<Map<String, String>> processPayment(@RequestBody Map<String, String> body) {
+    public ResponseEntity<Map<String, String>> processPayment(
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+            @RequestHeader(value = "Prefer", required = false) String prefer,
+            @RequestBody Map<String, String> body) {
+        String key = idempotencyKey != null ? idempotencyKey : body.getOrDefault("idempotencyKey", "");
+        boolean async = (prefer != null && prefer.contains("respond-async"))
+                || Boolean.parseBoolean(body.get("async"));
         ProcessPaymentRequest request = ProcessPaymentRequest.newBuilder()
                 .setFromAccountId(body.get("fromAccountId"))
                 .setToAccountId(body.get("toAccountId"))
                 .setAmount(body.get("amount"))
                 .setType(PaymentType.valueOf(body.get("type")))
                 .setDescription(body.get("description"))
+                .setIdempotencyKey(key)
+                .setAsync(async)
                 .build();
 
         ProcessPaymentResponse response = stub.processPayment(request);
+        if (async) {
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/payments/" + response.getPayment().getId()))
+                    .body(paymentToMap(response.getPayment()));
+        }
         return ResponseEntity.status(HttpStatus.CREATED).body(paymentToMap(response.getPayment()));
     }
 
+    // Bulk submission: body is a JSON array of the same objects POST /api/payments takes
+    // (idempotencyKey per item). Returns one result per item - {index, payment, error} -
+    // ordered by index. A failed item doesn't fail the request.
+    @PostMapping("/batch")
+    public ResponseEntity<List<Map<String, Object>>> processPaymentBatch(@RequestBody List<Map<String, String>> body) {
+        ProcessPaymentBatchRequest.Builder request = ProcessPaymentBatchRequest.newBuilder();
+        for (Map<String, String> item : body) {
+            request.addPayments(ProcessPaymentRequest.newBuilder()
+                    .setFromAccountId(item.getOrDefault("fromAccountId", ""))
+                    .setToAccountId(item.getOrDefault("toAccountId", ""))
+                    .setAmount(item.getOrDefault("amount", ""))
+                    .setType(PaymentType.valueOf(item.get("type")))
+                    .setDescription(item.getOrDefault("description", ""))
+                    .setIdempotencyKey(item.getOrDefault("idempotencyKey", "")));
+        }
+
+        List<Map<String, Object>> results = new ArrayList<>(body.size());
+        stub.processPaymentBatch(request.build()).forEachRemaining(result -> {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("index", result.getIndex());
+            entry.put("payment", result.hasPayment() ? paymentToMap(result.getPayment()) : null);
+            entry.put("error", result.getError().isEmpty() ? null : result.getError());
+            results.add(entry);
+        });
+        results.sort(Comparator.comparingInt(r -> (Integer) r.get("index")));
+        return ResponseEntity.ok(results);
+    }
+
+    // Standing order: body takes the fields POST /api/payments does, plus "frequency"
+    // (SCHEDULE_ONCE, SCHEDULE_DAILY, SCHEDULE_WEEKLY, SCHEDULE_MONTHLY), "firstRunAt" and
+    // optionally "endsAt" as ISO-8601 local date-times.
+    @PostMapping("/schedules")
+    public ResponseEntity<Map<String, String>> createScheduledPayment(@RequestBody Map<String, String> body) {
+        CreateScheduledPaymentRequest request = CreateScheduledPaymentRequest.newBuilder()
+                .setFromAccountId(body.get("fromAccountId"))
+                .setToAccountId(body.get("toAccountId"))
+                .setAmount(body.get("amount"))
+                .setType(PaymentType.valueOf(body.get("type")))
+                .setDescription(body.getOrDefault("description", ""))
+                .setFrequency(ScheduleFrequency.valueOf(body.get("frequency")))
+                .setFirstRunAt(body.get("firstRunAt"))
+                .setEndsAt(body.getOrDefault("endsAt", ""))
+                .build();
+
+        ScheduledPaymentResponse response = stub.createScheduledPayment(request);
+        return ResponseEntity.status(HttpStatus.CREATED).body(scheduleToMap(response.getSchedule()));
+    }
+
+    @DeleteMapping("/schedules/{id}")
+    public ResponseEntity<Map<String, String>> cancelScheduledPayment(@PathVariable String id) {
+        CancelScheduledPaymentRequest request = CancelScheduledPaymentRequest.newBuilder().setId(id).build();
+        ScheduledPaymentResponse response = stub.cancelScheduledPayment(request);
+        return ResponseEntity.ok(scheduleToMap(response.getSchedule()));
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<Map<String, String>> getPaymentById(@PathVariable String id) {
         GetPaymentByIdRequest request = GetPaymentByIdRequest.newBuilder().setId(id).build();
@@ -51,11 +155,42 @@ public class PaymentGatewayController {
         return ResponseEntity.ok(paymentToMap(response.getPayment()));
     }
 
-    // returns a list since one account can have many payments
+    // The payment's status as newline-delimited JSON: the current state first, then one
+    // line per change. The response ends once the payment is COMPLETED or FAILED.
+    @GetMapping(value = "/{id}/watch", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> watchPayment(@PathVariable String id) {
+        WatchPaymentRequest request = WatchPaymentRequest.newBuilder().setId(id).build();
+
+        StreamingResponseBody body = out -> {
+            Context.CancellableContext call = Context.current().withCancellation();
+            Context previous = call.attach();
+            try {
+                Iterator<GetPaymentByIdResponse> updates = stub.watchPayment(request);
+                while (updates.hasNext()) {
+                    out.write(objectMapper.writeValueAsBytes(paymentToMap(updates.next().getPayment())));
+                    out.write('\n');
+                    out.flush();
+                }
+            } finally {
+                call.detach(previous);
+                call.cancel(null);
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType("application/x-ndjson")).body(body);
+    }
+
+    // returns a list since one account can have many payments - one page of it,
+    // newest first. If there are more, the cursor for the next page comes back in the
+    // X-Next-Page-Token header; pass it as ?pageToken= to continue.
     @GetMapping("/account/{accountId}")
-    public ResponseEntity<List<Map<String, String>>> getPaymentsByAccount(@PathVariable String accountId) {
+    public ResponseEntity<List<Map<String, String>>> getPaymentsByAccount(
+            @PathVariable String accountId,
+            @RequestParam(defaultValue = "0") int pageSize,
+            @RequestParam(defaultValue = "") String pageToken) {
         GetPaymentsByAccountRequest request = GetPaymentsByAccountRequest.newBuilder()
                 .setAccountId(accountId)
+                .setPageSize(pageSize)
+                .setPageToken(pageToken)
                 .build();
 
         GetPaymentsByAccountResponse response = stub.getPaymentsByAccount(request);
@@ -63,6 +198,42 @@ public class PaymentGatewayController {
                 .map(this::paymentToMap)
                 .toList();
 
-        return ResponseEntity.ok(payments);
+        ResponseEntity.BodyBuilder ok = ResponseEntity.ok();
+        if (!response.getNextPageToken().isEmpty()) {
+            ok.header(NEXT_PAGE_TOKEN_HEADER, response.getNextPageToken());
+        }
+        return ok.body(payments);
+    }
+
+    // Entire history as newline-delimited JSON, one payment per line, written as the
+    // pages arrive from payment-service's stream. Meant for exports - nothing is
+    // buffered, and if the HTTP client goes away the gRPC stream is cancelled too.
+    @GetMapping(value = "/account/{accountId}/stream", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> streamPaymentsByAccount(
+            @PathVariable String accountId,
+            @RequestParam(defaultValue = "0") int pageSize) {
+        StreamPaymentsByAccountRequest request = StreamPaymentsByAccountRequest.newBuilder()
+                .setAccountId(accountId)
+                .setPageSize(pageSize)
+                .build();
+
+        StreamingResponseBody body = out -> {
+            Context.CancellableContext call = Context.current().withCancellation();
+            Context previous = call.attach();
+            try {
+                Iterator<GetPaymentsByAccountResponse> pages = stub.streamPaymentsByAccount(request);
+                while (pages.hasNext()) {
+                    for (Payment payment : pages.next().getPaymentsList()) {
+                        out.write(objectMapper.writeValueAsBytes(paymentToMap(payment)));
+                        out.write('\n');
+                    }
+                    out.flush();
+                }
+            } finally {
+                call.detach(previous);
+                call.cancel(null);
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType("application/x-ndjson")).body(body);
     }
 }
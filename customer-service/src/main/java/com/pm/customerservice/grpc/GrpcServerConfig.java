@@ -0,0 +1,23 @@
+package com.pm.customerservice.grpc;
+
+import net.devh.boot.grpc.server.serverfactory.GrpcServerConfigurer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.Executors;
+
+// gRPC calls on virtual threads when spring.threads.virtual.enabled is set (Tomcat
+// follows the same switch), so a call waiting on account-service's blocking stub parks
+// instead of holding a platform thread.
+@Configuration
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class GrpcServerConfig {
+
+    @Bean
+    public GrpcServerConfigurer virtualThreadExecutor() {
+        return serverBuilder -> serverBuilder.executor(
+                Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("grpc-customer-", 0).factory()));
+    }
+}
@@ -1,7 +1,7 @@
 package com.pm.notificationservice.Kafka;
 
-import com.pm.notificationservice.DTO.PaymentEventDTO;
 import com.pm.notificationservice.Service.NotificationService;
+import com.pm.proto.PaymentEvent;
 import lombok.AllArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -17,8 +17,8 @@ public class PaymentEventConsumer {
     private final NotificationService notificationService;
 
     // @KafkaListener binds this method to the payment-processed topic.
-    // Spring Kafka deserializes each incoming message into a PaymentEventDTO
-    // using the JsonDeserializer configured in application.yml.
+    // Each record is decoded into the shared protobuf PaymentEvent by the
+    // PaymentEventDeserializer configured in application.yml.
     //
     // groupId = "notification-group" means this service maintains its own
     // consumer offset independently of analytics-service (which uses a
@@ -27,16 +27,16 @@ public class PaymentEventConsumer {
             topics = "${kafka.topic.payment-processed}",
             groupId = "notification-group"
     )
-    public void consume(PaymentEventDTO event) {
+    public void consume(PaymentEvent event) {
         log.info("Received payment event: paymentId={} status={}", event.getPaymentId(), event.getStatus());
 
         // Route to the correct notification handler based on payment outcome.
-        // Status values match the enum names published by payment-service: PAY_COMPLETED, PAY_FAILED.
+        // Status values are the proto enum published by payment-service: PAY_COMPLETED, PAY_FAILED.
         switch (event.getStatus()) {
-            case "COMPLETED" -> notificationService.sendPaymentSuccessNotification(event);
-            case "FAILED"    -> notificationService.sendPaymentFailedNotification(event);
-            default          -> log.warn("Unrecognised payment status: {} for paymentId={}",
-                                         event.getStatus(), event.getPaymentId());
+            case PAY_COMPLETED -> notificationService.sendPaymentSuccessNotification(event);
+            case PAY_FAILED    -> notificationService.sendPaymentFailedNotification(event);
+            default            -> log.warn("Unrecognised payment status: {} for paymentId={}",
+                                           event.getStatus(), event.getPaymentId());
         }
     }
 }
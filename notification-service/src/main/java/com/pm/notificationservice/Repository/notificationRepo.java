@@ -2,6 +2,8 @@ package com.pm.notificationservice.Repository;
 
 import com.pm.notificationservice.model.Notification;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.List;
 import java.util.UUID;
@@ -11,6 +13,17 @@ public interface notificationRepo extends JpaRepository<Notification, UUID> {
     // Deduplication check before saving a new notification.
     boolean existsByPaymentId(String paymentId);
 
-    // Returns all notifications where the given account was the sender or receiver.
-    List<Notification> findByFromAccountIdOrToAccountId(String fromAccountId, String toAccountId);
+    // Returns all notifications where the given account was the sender or receiver, newest first.
+    // Written as one UNION ALL branch per side so each walks its own (account, sent_at, id)
+    // index (V2) - an OR across the two columns can't use either and scans the table.
+    // The to-side branch skips from = to so a row can't come back twice.
+    // Kept as a constant so NotificationQueryPlanTest can EXPLAIN exactly this SQL.
+    String HISTORY_BY_ACCOUNT =
+            "SELECT * FROM notifications WHERE from_account_id = :accountId " +
+            "UNION ALL " +
+            "SELECT * FROM notifications WHERE to_account_id = :accountId AND from_account_id <> :accountId " +
+            "ORDER BY sent_at DESC, id DESC";
+
+    @Query(value = HISTORY_BY_ACCOUNT, nativeQuery = true)
+    List<Notification> findByAccount(@Param("accountId") String accountId);
 }
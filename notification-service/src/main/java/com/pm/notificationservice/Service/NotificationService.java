@@ -1,11 +1,11 @@
 package com.pm.notificationservice.Service;
 
 import com.pm.notificationservice.DTO.NotificationResponseDTO;
-import com.pm.notificationservice.DTO.PaymentEventDTO;
 import com.pm.notificationservice.Enum.NotificationType;
 import com.pm.notificationservice.Mapper.NotificationMapper;
 import com.pm.notificationservice.Repository.notificationRepo;
 import com.pm.notificationservice.model.Notification;
+import com.pm.proto.PaymentEvent;
 import lombok.AllArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -23,7 +23,7 @@ public class NotificationService {
 
     // ── Kafka-triggered methods ───────────────────────────────────────────────
 
-    public void sendPaymentSuccessNotification(PaymentEventDTO event) {
+    public void sendPaymentSuccessNotification(PaymentEvent event) {
         if (isDuplicate(event.getPaymentId())) return;
 
         Notification n = new Notification();
@@ -43,7 +43,7 @@ public class NotificationService {
                 event.getFromAccountId(), event.getToAccountId());
     }
 
-    public void sendPaymentFailedNotification(PaymentEventDTO event) {
+    public void sendPaymentFailedNotification(PaymentEvent event) {
         if (isDuplicate(event.getPaymentId())) return;
 
         Notification n = new Notification();
@@ -62,11 +62,9 @@ public class NotificationService {
 
     // ── REST-accessible methods ───────────────────────────────────────────────
 
-    // Returns all notifications involving a given account (as sender or receiver).
-    // The same accountId is passed for both parameters because the repo query
-    // uses OR across two columns — same pattern as payment-service's getPaymentsByAccount.
+    // Returns all notifications involving a given account (as sender or receiver), newest first.
     public List<NotificationResponseDTO> getNotificationsByAccount(String accountId) {
-        return repository.findByFromAccountIdOrToAccountId(accountId, accountId)
+        return repository.findByAccount(accountId)
                 .stream()
                 .map(NotificationMapper::toDTO)
                 .toList();
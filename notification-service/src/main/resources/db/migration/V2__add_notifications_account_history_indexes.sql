@@ -0,0 +1,8 @@
+-- Notification history is read one side at a time (see notificationRepo), newest
+-- first; id is the tie-breaker for rows sent in the same microsecond.
+-- CONCURRENTLY keeps the consumer inserting while the indexes build; Flyway runs
+-- this script outside a transaction because of it.
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_notifications_from_account_sent
+    ON notifications (from_account_id, sent_at, id);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_notifications_to_account_sent
+    ON notifications (to_account_id, sent_at, id);
@@ -1,7 +1,9 @@
 package com.pm.notificationservice.Kafka;
 
-import com.pm.notificationservice.DTO.PaymentEventDTO;
 import com.pm.notificationservice.Service.NotificationService;
+import com.pm.proto.PaymentEvent;
+import com.pm.proto.PaymentStatus;
+import com.pm.proto.PaymentType;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
@@ -18,9 +20,10 @@ class PaymentEventConsumerTest {
 
     @Test
     void consume_shouldCallSuccessHandler_whenStatusIsCompleted() {
-        PaymentEventDTO event = new PaymentEventDTO(
-                "pay-001", "acc-from", "acc-to",
-                "100.00", "COMPLETED", "TRANSFER", "2025-06-01T10:00:00");
+        PaymentEvent event = PaymentEvent.newBuilder()
+                .setPaymentId("pay-001").setFromAccountId("acc-from").setToAccountId("acc-to")
+                .setAmount("100.00").setStatus(PaymentStatus.PAY_COMPLETED).setType(PaymentType.PAY_TRANSFER)
+                .setOccurredAt("2025-06-01T10:00:00").build();
 
         consumer.consume(event);
 
@@ -30,9 +33,10 @@ class PaymentEventConsumerTest {
 
     @Test
     void consume_shouldCallFailedHandler_whenStatusIsFailed() {
-        PaymentEventDTO event = new PaymentEventDTO(
-                "pay-002", "acc-from", "acc-to",
-                "100.00", "FAILED", "TRANSFER", "2025-06-01T10:00:05");
+        PaymentEvent event = PaymentEvent.newBuilder()
+                .setPaymentId("pay-002").setFromAccountId("acc-from").setToAccountId("acc-to")
+                .setAmount("100.00").setStatus(PaymentStatus.PAY_FAILED).setType(PaymentType.PAY_TRANSFER)
+                .setOccurredAt("2025-06-01T10:00:05").build();
 
         consumer.consume(event);
 
@@ -42,9 +46,10 @@ class PaymentEventConsumerTest {
 
     @Test
     void consume_shouldNotCallAnyHandler_whenStatusIsUnrecognised() {
-        PaymentEventDTO event = new PaymentEventDTO(
-                "pay-003", "acc-from", "acc-to",
-                "100.00", "PENDING", "TRANSFER", "2025-06-01T10:00:00");
+        PaymentEvent event = PaymentEvent.newBuilder()
+                .setPaymentId("pay-003").setFromAccountId("acc-from").setToAccountId("acc-to")
+                .setAmount("100.00").setStatus(PaymentStatus.PAY_PENDING).setType(PaymentType.PAY_TRANSFER)
+                .setOccurredAt("2025-06-01T10:00:00").build();
 
         consumer.consume(event);
 
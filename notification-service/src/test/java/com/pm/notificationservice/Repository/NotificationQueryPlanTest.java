@@ -0,0 +1,76 @@
+package com.pm.notificationservice.Repository;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Runs the account-history SQL from notificationRepo against a real Postgres (embedded
+// binaries, no Docker) with the Flyway migrations applied, and checks the plan reads
+// through the per-side indexes instead of scanning notifications.
+class NotificationQueryPlanTest {
+
+    private static EmbeddedPostgres postgres;
+    private static DataSource dataSource;
+
+    @BeforeAll
+    static void startDatabase() throws Exception {
+        postgres = EmbeddedPostgres.builder().start();
+        dataSource = postgres.getPostgresDatabase();
+        // same lock setting as application.yml - V2 builds its indexes CONCURRENTLY
+        Flyway.configure()
+                .dataSource(dataSource)
+                .configuration(Map.of("flyway.postgresql.transactional.lock", "false"))
+                .load()
+                .migrate();
+
+        // 50k notifications over 500 accounts, about 100 per account per side
+        try (Connection c = dataSource.getConnection(); Statement st = c.createStatement()) {
+            st.execute("""
+                    INSERT INTO notifications (id, payment_id, from_account_id, to_account_id, type, message, sent_at)
+                    SELECT gen_random_uuid(), 'pay-' || g, 'acc-' || (g % 500), 'acc-' || ((g + 1) % 500),
+                           'TRANSFER', 'Payment completed', now() - g * interval '1 second'
+                    FROM generate_series(1, 50000) g
+                    """);
+            st.execute("ANALYZE notifications");
+        }
+    }
+
+    @AfterAll
+    static void stopDatabase() throws IOException {
+        postgres.close();
+    }
+
+    private String explain(String sql, String accountId) throws SQLException {
+        StringBuilder plan = new StringBuilder();
+        try (Connection c = dataSource.getConnection();
+             Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery("EXPLAIN " + sql.replace(":accountId", "'" + accountId + "'"))) {
+            while (rs.next()) {
+                plan.append(rs.getString(1)).append('\n');
+            }
+        }
+        return plan.toString();
+    }
+
+    @Test
+    void history_shouldUseBothSideIndexes() throws SQLException {
+        String plan = explain(notificationRepo.HISTORY_BY_ACCOUNT, "acc-7");
+
+        assertThat(plan)
+                .contains("idx_notifications_from_account_sent")
+                .contains("idx_notifications_to_account_sent")
+                .doesNotContain("Seq Scan on notifications");
+    }
+}
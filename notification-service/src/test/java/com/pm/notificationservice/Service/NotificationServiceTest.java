@@ -1,10 +1,12 @@
 package com.pm.notificationservice.Service;
 
 import com.pm.notificationservice.DTO.NotificationResponseDTO;
-import com.pm.notificationservice.DTO.PaymentEventDTO;
 import com.pm.notificationservice.Enum.NotificationType;
 import com.pm.notificationservice.Repository.notificationRepo;
 import com.pm.notificationservice.model.Notification;
+import com.pm.proto.PaymentEvent;
+import com.pm.proto.PaymentStatus;
+import com.pm.proto.PaymentType;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -27,19 +29,21 @@ class NotificationServiceTest {
     @Mock private notificationRepo repository;
     @InjectMocks private NotificationService notificationService;
 
-    private PaymentEventDTO successEvent;
-    private PaymentEventDTO failedEvent;
+    private PaymentEvent successEvent;
+    private PaymentEvent failedEvent;
     private Notification savedNotification;
 
     @BeforeEach
     void setUp() {
-        successEvent = new PaymentEventDTO(
-                "pay-001", "acc-from", "acc-to",
-                "150.00", "COMPLETED", "TRANSFER", "2025-06-01T10:00:00");
+        successEvent = PaymentEvent.newBuilder()
+                .setPaymentId("pay-001").setFromAccountId("acc-from").setToAccountId("acc-to")
+                .setAmount("150.00").setStatus(PaymentStatus.PAY_COMPLETED).setType(PaymentType.PAY_TRANSFER)
+                .setOccurredAt("2025-06-01T10:00:00").build();
 
-        failedEvent = new PaymentEventDTO(
-                "pay-002", "acc-from", "acc-to",
-                "150.00", "FAILED", "TRANSFER", "2025-06-01T10:00:05");
+        failedEvent = PaymentEvent.newBuilder()
+                .setPaymentId("pay-002").setFromAccountId("acc-from").setToAccountId("acc-to")
+                .setAmount("150.00").setStatus(PaymentStatus.PAY_FAILED).setType(PaymentType.PAY_TRANSFER)
+                .setOccurredAt("2025-06-01T10:00:05").build();
 
         savedNotification = new Notification();
         savedNotification.setId(UUID.randomUUID());
@@ -122,7 +126,7 @@ class NotificationServiceTest {
 
     @Test
     void getNotificationsByAccount_shouldReturnMappedList() {
-        when(repository.findByFromAccountIdOrToAccountId("acc-from", "acc-from"))
+        when(repository.findByAccount("acc-from"))
                 .thenReturn(List.of(savedNotification));
 
         List<NotificationResponseDTO> result = notificationService.getNotificationsByAccount("acc-from");
@@ -134,7 +138,7 @@ class NotificationServiceTest {
 
     @Test
     void getNotificationsByAccount_shouldReturnEmptyList_whenNoneFound() {
-        when(repository.findByFromAccountIdOrToAccountId(anyString(), anyString()))
+        when(repository.findByAccount(anyString()))
                 .thenReturn(List.of());
 
         assertThat(notificationService.getNotificationsByAccount("acc-none")).isEmpty();
@@ -1,21 +1,34 @@
 package com.pm.paymentservice.Controller;
 
+import com.pm.paymentservice.DTO.PaymentPageDTO;
 import com.pm.paymentservice.DTO.PaymentRequestDTO;
 import com.pm.paymentservice.DTO.PaymentResponseDTO;
+import com.pm.paymentservice.Enum.ExportFormat;
+import com.pm.paymentservice.Service.PaymentExportService;
 import com.pm.paymentservice.Service.PaymentService;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.AllArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.net.URI;
+import java.time.LocalDate;
 import java.util.List;
+import java.util.Locale;
 
 @RestController
 @RequestMapping("/api/payments")
 @AllArgsConstructor
 public class PaymentController {
 
+    private static final String NEXT_PAGE_TOKEN_HEADER = "X-Next-Page-Token";
+
     private final PaymentService paymentService;
+    private final PaymentExportService paymentExportService;
 
     @GetMapping
     public ResponseEntity<List<PaymentResponseDTO>> getAllPayments() {
@@ -27,14 +40,60 @@ public class PaymentController {
         return ResponseEntity.ok(paymentService.getPayment(id));
     }
 
-    // Returns all payments (sent or received) involving a specific account
+    // One page of the payments (sent or received) involving an account, newest first,
+    // same as the gateway's route. If there are more, the cursor for the next page comes
+    // back in the X-Next-Page-Token header; pass it as ?pageToken= to continue.
     @GetMapping("/account/{accountId}")
-    public ResponseEntity<List<PaymentResponseDTO>> getPaymentsByAccount(@PathVariable String accountId) {
-        return ResponseEntity.ok(paymentService.getPaymentsByAccount(accountId));
+    public ResponseEntity<List<PaymentResponseDTO>> getPaymentsByAccount(
+            @PathVariable String accountId,
+            @RequestParam(defaultValue = "0") int pageSize,
+            @RequestParam(defaultValue = "") String pageToken) {
+        PaymentPageDTO page = paymentService.getPaymentsByAccount(accountId, pageSize, pageToken);
+        ResponseEntity.BodyBuilder ok = ResponseEntity.ok();
+        if (page.getNextPageToken() != null) {
+            ok.header(NEXT_PAGE_TOKEN_HEADER, page.getNextPageToken());
+        }
+        return ok.body(page.getPayments());
+    }
+
+    // Every payment in a date range, optionally only those touching one account, for
+    // reconciliation. Written to the response as it's read from the DB, so the size of
+    // the export doesn't matter. from and to are inclusive days; both are optional.
+    @GetMapping("/export")
+    public void exportPayments(@RequestParam(defaultValue = "csv") String format,
+                               @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                               @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                               @RequestParam(required = false) String accountId,
+                               HttpServletResponse response) throws IOException {
+        // everything checked before the first byte - after that the status is sent
+        ExportFormat exportFormat = ExportFormat.parse(format);
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new IllegalArgumentException("from " + from + " is after to " + to);
+        }
+        response.setContentType(exportFormat.contentType() + ";charset=UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=\"payments." + exportFormat.name().toLowerCase(Locale.ROOT) + "\"");
+        paymentExportService.export(exportFormat, accountId,
+                from != null ? from.atStartOfDay() : null,
+                to != null ? to.plusDays(1).atStartOfDay() : null,
+                response.getOutputStream());
     }
 
+    // "Prefer: respond-async" (or "async": true in the body) returns 202 as soon as the
+    // payment is stored; poll the Location for the outcome
     @PostMapping
-    public ResponseEntity<PaymentResponseDTO> processPayment(@Valid @RequestBody PaymentRequestDTO request) {
-        return ResponseEntity.ok(paymentService.processPayment(request));
+    public ResponseEntity<PaymentResponseDTO> processPayment(
+            @RequestHeader(value = "Prefer", required = false) String prefer,
+            @Valid @RequestBody PaymentRequestDTO request) {
+        if (prefer != null && prefer.contains("respond-async")) {
+            request.setAsync(true);
+        }
+        PaymentResponseDTO result = paymentService.processPayment(request);
+        if (request.isAsync()) {
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/payments/" + result.getPaymentId()))
+                    .body(result);
+        }
+        return ResponseEntity.ok(result);
     }
 }
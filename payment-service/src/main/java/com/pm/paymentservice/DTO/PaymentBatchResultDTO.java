@@ -0,0 +1,17 @@
+package com.pm.paymentservice.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Outcome of one item of a ProcessPaymentBatch call.
+// payment is null when the item never became a payment (failed validation);
+// error is null when it completed.
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PaymentBatchResultDTO {
+    private int index;
+    private PaymentResponseDTO payment;
+    private String error;
+}
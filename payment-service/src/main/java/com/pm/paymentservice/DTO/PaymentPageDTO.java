@@ -0,0 +1,17 @@
+package com.pm.paymentservice.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// One page of an account's payment history, newest first.
+// nextPageToken is null on the last page.
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PaymentPageDTO {
+    private List<PaymentResponseDTO> payments;
+    private String nextPageToken;
+}
@@ -1,6 +1,7 @@
 package com.pm.paymentservice.DTO;
 
 import com.pm.paymentservice.Enum.PaymentType;
+import com.pm.paymentservice.model.Money;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import lombok.Data;
@@ -14,14 +15,22 @@ public class PaymentRequestDTO {
     @NotBlank(message = "Destination account id is required")
     private String toAccountId;
 
-    // String to match account-service's balance representation.
-    // Parsed into BigDecimal inside the service layer.
-    @NotBlank(message = "Amount is required")
-    private String amount;
+    // Already Money by the time it gets here: REST bodies are parsed as they're read
+    // (see Money.parse), gRPC requests in PaymentGrpcService, so the service layer
+    // never touches the decimal string.
+    @NotNull(message = "Amount is required")
+    private Money amount;
 
     @NotNull(message = "Payment type is required")
     private PaymentType type;
 
     // Optional - caller can describe the purpose of the payment
     private String description;
+
+    // Optional - lets the caller retry safely; the same key never charges twice
+    private String idempotencyKey;
+
+    // Optional - return as soon as the payment is stored as PENDING instead of
+    // waiting for the outcome
+    private boolean async;
 }
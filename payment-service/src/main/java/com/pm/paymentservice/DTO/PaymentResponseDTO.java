@@ -1,5 +1,6 @@
 package com.pm.paymentservice.DTO;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
 
 @Data
@@ -8,6 +9,10 @@ public class PaymentResponseDTO {
     private String fromAccountId;
     private String toAccountId;
     private String amount;
+    // amount in Money minor units, for the gRPC Payment message - REST clients get
+    // the string
+    @JsonIgnore
+    private long amountMinor;
     private String status;
     private String type;
     private String description;
@@ -0,0 +1,38 @@
+package com.pm.paymentservice.DTO;
+
+import com.pm.paymentservice.Enum.PaymentType;
+import com.pm.paymentservice.Enum.ScheduleFrequency;
+import com.pm.paymentservice.model.Money;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+public class ScheduledPaymentRequestDTO {
+
+    @NotBlank(message = "Source account id is required")
+    private String fromAccountId;
+
+    @NotBlank(message = "Destination account id is required")
+    private String toAccountId;
+
+    // Parsed at the edge, like PaymentRequestDTO.amount
+    @NotNull(message = "Amount is required")
+    private Money amount;
+
+    @NotNull(message = "Payment type is required")
+    private PaymentType type;
+
+    private String description;
+
+    @NotNull(message = "Frequency is required")
+    private ScheduleFrequency frequency;
+
+    @NotNull(message = "First run time is required")
+    private LocalDateTime firstRunAt;
+
+    // Optional - no occurrence after this
+    private LocalDateTime endsAt;
+}
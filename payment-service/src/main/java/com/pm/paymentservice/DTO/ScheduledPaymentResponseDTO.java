@@ -0,0 +1,22 @@
+package com.pm.paymentservice.DTO;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Data;
+
+@Data
+public class ScheduledPaymentResponseDTO {
+    private String scheduleId;
+    private String fromAccountId;
+    private String toAccountId;
+    private String amount;
+    @JsonIgnore
+    private long amountMinor;
+    private String type;
+    private String description;
+    private String frequency;
+    private String status;
+    private String nextRunAt;
+    private String endsAt;
+    private int runs;
+    private String createdAt;
+}
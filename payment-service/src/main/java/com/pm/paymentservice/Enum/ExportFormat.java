@@ -0,0 +1,28 @@
+package com.pm.paymentservice.Enum;
+
+import java.util.Locale;
+
+// Output formats of the payment export, with the content type each is served as
+public enum ExportFormat {
+    CSV("text/csv"),
+    NDJSON("application/x-ndjson");
+
+    private final String contentType;
+
+    ExportFormat(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public String contentType() {
+        return contentType;
+    }
+
+    // Case-insensitive, so ?format=csv works
+    public static ExportFormat parse(String format) {
+        try {
+            return valueOf(format.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown export format '" + format + "', expected csv or ndjson");
+        }
+    }
+}
@@ -2,10 +2,13 @@ package com.pm.paymentservice.Enum;
 
 // Tracks the lifecycle of a payment.
 // PENDING  → payment has been initiated but accounts not yet updated
+// AUTHORIZED → funds are held on the source account, capture happens in the next
+//              settlement batch (payment.settlement.mode=hold only)
 // COMPLETED → both debit and credit succeeded
 // FAILED   → something went wrong - source account was not charged (or charge was reversed)
 public enum PaymentStatus {
     PENDING,
+    AUTHORIZED,
     COMPLETED,
     FAILED
 }
@@ -0,0 +1,47 @@
+package com.pm.paymentservice.Enum;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+// Steps of a payment saga, as written to payment_saga_steps.
+// STARTED            → PENDING payment row saved, nothing sent to account-service yet
+// TRANSFER_REQUESTED → ExecuteTransfer sent (debit and credit are one account-service
+//                      transaction, so there's no separate debited/credited step)
+// HOLD_REQUESTED     → PlaceHold sent (payment.settlement.mode=hold)
+// AUTHORIZED         → hold placed; PaymentSettlementService captures it later
+// COMPENSATING       → releasing a hold that may have been placed for a failed payment
+// COMPLETED / FAILED → final; written together with the payment status and its event
+//
+// Every request step is keyed by the payment id, so a saga resumed from any
+// non-final state can simply repeat its last request.
+//
+// Declared in the order a saga moves through them: every transition goes to a later
+// constant, which is how PaymentSagaLog.current finds the latest step.
+public enum SagaState {
+    STARTED,
+    TRANSFER_REQUESTED,
+    HOLD_REQUESTED,
+    AUTHORIZED,
+    COMPENSATING,
+    COMPLETED,
+    FAILED;
+
+    public Set<SagaState> next() {
+        return switch (this) {
+            case STARTED -> EnumSet.of(TRANSFER_REQUESTED, HOLD_REQUESTED, FAILED);
+            case TRANSFER_REQUESTED -> EnumSet.of(COMPLETED, FAILED);
+            case HOLD_REQUESTED -> EnumSet.of(AUTHORIZED, COMPENSATING, FAILED);
+            case AUTHORIZED -> EnumSet.of(COMPLETED, COMPENSATING, FAILED);
+            case COMPENSATING -> EnumSet.of(FAILED);
+            case COMPLETED, FAILED -> EnumSet.noneOf(SagaState.class);
+        };
+    }
+
+    public boolean canMoveTo(SagaState state) {
+        return next().contains(state);
+    }
+
+    public boolean isFinal() {
+        return this == COMPLETED || this == FAILED;
+    }
+}
@@ -0,0 +1,34 @@
+package com.pm.paymentservice.Enum;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+// How often a scheduled payment repeats. Occurrences are always counted from the
+// schedule's first run, never from the previous one, so a monthly order set up for the
+// 31st runs on the 31st (or the month's last day) every month instead of drifting to
+// the 28th after February.
+public enum ScheduleFrequency {
+    ONCE(null),
+    DAILY(ChronoUnit.DAYS),
+    WEEKLY(ChronoUnit.WEEKS),
+    MONTHLY(ChronoUnit.MONTHS);
+
+    private final ChronoUnit unit;
+
+    ScheduleFrequency(ChronoUnit unit) {
+        this.unit = unit;
+    }
+
+    // The first occurrence strictly after `after`, or null for ONCE
+    public LocalDateTime nextAfter(LocalDateTime first, LocalDateTime after) {
+        if (unit == null) {
+            return null;
+        }
+        long n = Math.max(0, unit.between(first, after));
+        LocalDateTime next = first.plus(n, unit);
+        while (!next.isAfter(after)) {
+            next = first.plus(++n, unit);
+        }
+        return next;
+    }
+}
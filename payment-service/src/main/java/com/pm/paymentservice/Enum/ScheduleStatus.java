@@ -0,0 +1,10 @@
+package com.pm.paymentservice.Enum;
+
+// ACTIVE    → makes a payment at each occurrence
+// CANCELLED → stopped by the customer before its last occurrence
+// DONE      → last occurrence made (a ONCE schedule after its run, or past endsAt)
+public enum ScheduleStatus {
+    ACTIVE,
+    CANCELLED,
+    DONE
+}
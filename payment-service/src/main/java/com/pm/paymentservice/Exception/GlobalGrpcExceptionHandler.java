@@ -22,6 +22,16 @@ public class GlobalGrpcExceptionHandler {
         return Status.FAILED_PRECONDITION.withDescription(e.getMessage());
     }
 
+    @GrpcExceptionHandler(PaymentLaneFullException.class)
+    public Status handleLaneFull(PaymentLaneFullException e) {
+        return Status.RESOURCE_EXHAUSTED.withDescription(e.getMessage());
+    }
+
+    @GrpcExceptionHandler(VelocityLimitExceededException.class)
+    public Status handleVelocityLimit(VelocityLimitExceededException e) {
+        return Status.RESOURCE_EXHAUSTED.withDescription(e.getMessage());
+    }
+
     @GrpcExceptionHandler(Exception.class)
     public Status handleGenericException(Exception e) {
         return Status.INTERNAL.withDescription("Unexpected error: " + e.getMessage());
@@ -0,0 +1,7 @@
+package com.pm.paymentservice.Exception;
+
+public class PaymentLaneFullException extends RuntimeException {
+    public PaymentLaneFullException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.pm.paymentservice.Exception;
+
+public class VelocityLimitExceededException extends RuntimeException {
+    public VelocityLimitExceededException(String message) {
+        super(message);
+    }
+}
@@ -1,30 +1,60 @@
 package com.pm.paymentservice.GRPC;
 
+import com.pm.paymentservice.model.Money;
 import com.pm.proto.*;
 import io.grpc.ManagedChannel;
 import io.grpc.ManagedChannelBuilder;
+import io.grpc.StatusRuntimeException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 @Service
 public class AccountServiceGrpcClient {
 
     private static final Logger log = LoggerFactory.getLogger(AccountServiceGrpcClient.class);
     private final AccountServGrpc.AccountServBlockingStub stub;
+    private final long deadlineMs;
+    private final long batchDeadlineMs;
 
     public AccountServiceGrpcClient(
             // Reads from application.yml - defaults to localhost if not set.
             // In AWS these will be overridden by environment variables pointing
             // to the actual account-service container address.
             @Value("${proto.account.address:localhost}") String serverAddress,
-            @Value("${proto.account.grpc.port:9091}") int serverPort) {
-        log.info("Connecting to Account Service gRPC on {}:{}", serverAddress, serverPort);
+            @Value("${proto.account.grpc.port:9091}") int serverPort,
+            @Value("${proto.account.deadline-ms:2000}") long deadlineMs,
+            @Value("${proto.account.batch-deadline-ms:10000}") long batchDeadlineMs) {
+        log.info("Connecting to Account Service gRPC on {}:{} (deadline {}ms)", serverAddress, serverPort, deadlineMs);
         ManagedChannel channel = ManagedChannelBuilder.forAddress(serverAddress, serverPort)
                 .usePlaintext()
                 .build();
         stub = AccountServGrpc.newBlockingStub(channel);
+        this.deadlineMs = deadlineMs;
+        this.batchDeadlineMs = batchDeadlineMs;
+    }
+
+    // A gRPC deadline is an absolute point in time, so it has to be stamped onto the
+    // stub per call - setting it once in the constructor would expire every call
+    // made after the first couple of seconds.
+    private AccountServGrpc.AccountServBlockingStub blocking() {
+        return stub.withDeadlineAfter(deadlineMs, TimeUnit.MILLISECONDS);
+    }
+
+    // True when account-service turned the call down before applying anything, so the
+    // payment can safely be failed. Any other code - a deadline, a dropped connection,
+    // an INTERNAL raised on this side of the wire - may have arrived after account-service
+    // committed; only repeating the call with the same key tells which.
+    public static boolean rejected(StatusRuntimeException e) {
+        return switch (e.getStatus().getCode()) {
+            case NOT_FOUND, INVALID_ARGUMENT, FAILED_PRECONDITION, OUT_OF_RANGE,
+                 PERMISSION_DENIED, UNAUTHENTICATED, UNIMPLEMENTED -> true;
+            default -> false;
+        };
     }
 
     // Fetches full account details by account ID.
@@ -34,21 +64,72 @@ public class AccountServiceGrpcClient {
         GetAccIdRequest request = GetAccIdRequest.newBuilder()
                 .setId(accountId)
                 .build();
-        return stub.getAccById(request).getAccount();
-    }
-
-    // Updates an account's balance while keeping all other fields (name, type, status) unchanged.
-    // We pass the full account back because UpdateAccRequest requires all fields -
-    // we use the existing values from the account and only change the balance.
-    public void updateAccountBalance(Account account, String newBalance) {
-        log.info("Updating balance for account: {} to {}", account.getId(), newBalance);
-        UpdateAccRequest request = UpdateAccRequest.newBuilder()
-                .setId(account.getId())
-                .setAccName(account.getAccName())
-                .setType(account.getType())
-                .setStat(account.getStatus())
-                .setBalance(newBalance)
+        return blocking().getAccById(request).getAccount();
+    }
+
+    // Debits `from` and credits `to` in a single account-service transaction.
+    // account-service validates status and funds itself, so there's no need to read
+    // either account first. The idempotency key makes the call safe to retry - a
+    // repeat returns the original outcome with replayed=true instead of moving money twice.
+    public ExecuteTransferResponse executeTransfer(String fromAccountId, String toAccountId,
+                                                   Money amount, String idempotencyKey) {
+        log.info("Executing transfer from: {} to: {} amount: {} key: {}",
+                fromAccountId, toAccountId, amount, idempotencyKey);
+        ExecuteTransferRequest request = ExecuteTransferRequest.newBuilder()
+                .setFromAccountId(fromAccountId)
+                .setToAccountId(toAccountId)
+                .setAmount(amount.toString())
+                .setAmountMinor(amount.minor())
+                .setAmountScale(Money.SCALE)
+                .setIdempotencyKey(idempotencyKey)
+                .build();
+        return blocking().executeTransfer(request);
+    }
+
+    // Applies a chunk of transfers in one account-service transaction. results[i] is the
+    // outcome of transfers[i]. Gets its own, longer deadline - a chunk of hundreds of
+    // transfers legitimately takes longer than a single one.
+    public List<ExecuteTransferResponse> executeTransferBatch(List<ExecuteTransferRequest> transfers) {
+        log.info("Executing transfer batch of {}", transfers.size());
+        ExecuteTransferBatchRequest request = ExecuteTransferBatchRequest.newBuilder()
+                .addAllTransfers(transfers)
+                .build();
+        return stub.withDeadlineAfter(batchDeadlineMs, TimeUnit.MILLISECONDS)
+                .executeTransferBatch(request)
+                .getResultsList();
+    }
+
+    // Reserves `amount` on the source account without moving it. The hold key makes it
+    // safe to retry, like the transfer idempotency key.
+    public HoldResponse placeHold(String fromAccountId, String toAccountId, Money amount,
+                                  String holdKey, long ttlSeconds) {
+        log.info("Placing hold from: {} to: {} amount: {} key: {}", fromAccountId, toAccountId, amount, holdKey);
+        PlaceHoldRequest request = PlaceHoldRequest.newBuilder()
+                .setFromAccountId(fromAccountId)
+                .setToAccountId(toAccountId)
+                .setAmount(amount.toString())
+                .setAmountMinor(amount.minor())
+                .setAmountScale(Money.SCALE)
+                .setHoldKey(holdKey)
+                .setTtlSeconds(ttlSeconds)
                 .build();
-        stub.updateAcc(request);
+        return blocking().placeHold(request);
+    }
+
+    // Captures a batch of holds in one account-service transaction. results[i] answers
+    // holdKeys[i]. Uses the batch deadline, same as executeTransferBatch.
+    public List<HoldResponse> captureHolds(List<String> holdKeys) {
+        log.info("Capturing {} holds", holdKeys.size());
+        CaptureHoldBatchRequest request = CaptureHoldBatchRequest.newBuilder()
+                .addAllHoldKeys(holdKeys)
+                .build();
+        return stub.withDeadlineAfter(batchDeadlineMs, TimeUnit.MILLISECONDS)
+                .captureHoldBatch(request)
+                .getResultsList();
+    }
+
+    public HoldResponse releaseHold(String holdKey) {
+        log.info("Releasing hold {}", holdKey);
+        return blocking().releaseHold(ReleaseHoldRequest.newBuilder().setHoldKey(holdKey).build());
     }
 }
@@ -0,0 +1,30 @@
+package com.pm.paymentservice.GRPC;
+
+import net.devh.boot.grpc.server.serverfactory.GrpcServerConfigurer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.Executors;
+
+// With spring.threads.virtual.enabled, gRPC calls run on virtual threads like Tomcat's
+// requests do. The starter's default executor is a cached pool of platform threads, so a
+// ProcessPayment parked on its lane or on the DB holds a whole OS thread; a virtual
+// thread gives its carrier back while it waits, and in-flight calls stop being bounded
+// by how many threads the JVM can afford.
+//
+// A virtual thread that blocks where it can't unmount (inside synchronized, in native
+// code) pins its carrier. JFR reports each one as jdk.VirtualThreadPinned, which
+// micrometer-java21 turns into the jvm.threads.virtual.pinned timer.
+@Configuration
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class GrpcServerConfig {
+
+    // One new virtual thread per call - nothing pooled, so nothing to shut down
+    @Bean
+    public GrpcServerConfigurer virtualThreadExecutor() {
+        return serverBuilder -> serverBuilder.executor(
+                Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("grpc-payment-", 0).factory()));
+    }
+}
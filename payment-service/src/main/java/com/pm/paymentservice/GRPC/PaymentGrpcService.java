@@ -1,21 +1,35 @@
 package com.pm.paymentservice.GRPC;
 
+import com.pm.paymentservice.DTO.PaymentPageDTO;
 import com.pm.paymentservice.DTO.PaymentRequestDTO;
 import com.pm.paymentservice.DTO.PaymentResponseDTO;
+import com.pm.paymentservice.DTO.ScheduledPaymentRequestDTO;
+import com.pm.paymentservice.DTO.ScheduledPaymentResponseDTO;
 import com.pm.paymentservice.Enum.PaymentType;
+import com.pm.paymentservice.Enum.ScheduleFrequency;
 import com.pm.paymentservice.Exception.AccountNotActiveException;
 import com.pm.paymentservice.Exception.InsufficientFundsException;
+import com.pm.paymentservice.Exception.PaymentLaneFullException;
 import com.pm.paymentservice.Exception.PaymentNotFoundException;
+import com.pm.paymentservice.Exception.VelocityLimitExceededException;
+import com.pm.paymentservice.Service.PaymentBatchService;
 import com.pm.paymentservice.Service.PaymentService;
+import com.pm.paymentservice.Service.PaymentWatchers;
+import com.pm.paymentservice.Service.ScheduledPaymentService;
+import com.pm.paymentservice.model.Money;
 import com.pm.proto.*;
 import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
 import lombok.AllArgsConstructor;
 import net.devh.boot.grpc.server.service.GrpcService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.List;
+import java.util.UUID;
 
 @GrpcService
 @AllArgsConstructor
@@ -24,6 +38,9 @@ public class PaymentGrpcService extends PaymentServiceGrpc.PaymentServiceImplBas
     private static final Logger log = LoggerFactory.getLogger(PaymentGrpcService.class);
 
     private final PaymentService paymentService;
+    private final PaymentBatchService paymentBatchService;
+    private final PaymentWatchers paymentWatchers;
+    private final ScheduledPaymentService scheduledPaymentService;
 
     // ── ProcessPayment ────────────────────────────────────────────────────────
     // Maps the incoming proto request to a PaymentRequestDTO, delegates to the
@@ -35,15 +52,7 @@ public class PaymentGrpcService extends PaymentServiceGrpc.PaymentServiceImplBas
             log.info("gRPC processPayment: from={} to={} amount={}",
                     request.getFromAccountId(), request.getToAccountId(), request.getAmount());
 
-            PaymentRequestDTO dto = new PaymentRequestDTO();
-            dto.setFromAccountId(request.getFromAccountId());
-            dto.setToAccountId(request.getToAccountId());
-            dto.setAmount(request.getAmount());
-            // Proto type is PAY_TRANSFER — strip the prefix to match Java enum TRANSFER
-            dto.setType(PaymentType.valueOf(request.getType().name().replace("PAY_", "")));
-            dto.setDescription(request.getDescription());
-
-            PaymentResponseDTO result = paymentService.processPayment(dto);
+            PaymentResponseDTO result = paymentService.processPayment(toRequestDTO(request));
 
             ProcessPaymentResponse response = ProcessPaymentResponse.newBuilder()
                     .setPayment(buildProtoPayment(result))
@@ -56,6 +65,14 @@ public class PaymentGrpcService extends PaymentServiceGrpc.PaymentServiceImplBas
             log.warn("gRPC processPayment business rule violation: {}", e.getMessage());
             responseObserver.onError(
                     Status.FAILED_PRECONDITION.withDescription(e.getMessage()).asRuntimeException());
+        } catch (PaymentLaneFullException | VelocityLimitExceededException e) {
+            log.warn("gRPC processPayment rejected: {}", e.getMessage());
+            responseObserver.onError(
+                    Status.RESOURCE_EXHAUSTED.withDescription(e.getMessage()).asRuntimeException());
+        } catch (NumberFormatException e) {
+            log.warn("gRPC processPayment bad amount: {}", e.getMessage());
+            responseObserver.onError(
+                    Status.INVALID_ARGUMENT.withDescription(e.getMessage()).asRuntimeException());
         } catch (Exception e) {
             log.error("gRPC processPayment unexpected error: {}", e.getMessage());
             responseObserver.onError(
@@ -63,6 +80,42 @@ public class PaymentGrpcService extends PaymentServiceGrpc.PaymentServiceImplBas
         }
     }
 
+    // ── ProcessPaymentBatch ───────────────────────────────────────────────────
+    // Server-streaming: one PaymentBatchResult goes out per item as each chunk
+    // finishes, so the caller sees progress on large batches instead of waiting
+    // for all of them. Per-item failures are reported in the result, not as an error.
+    @Override
+    public void processPaymentBatch(ProcessPaymentBatchRequest request,
+                                    StreamObserver<PaymentBatchResult> responseObserver) {
+        try {
+            log.info("gRPC processPaymentBatch: {} payments", request.getPaymentsCount());
+
+            List<PaymentRequestDTO> dtos = request.getPaymentsList().stream()
+                    .map(this::toBatchItemDTO)
+                    .toList();
+            paymentBatchService.processBatch(dtos, result -> {
+                PaymentBatchResult.Builder builder = PaymentBatchResult.newBuilder()
+                        .setIndex(result.getIndex())
+                        .setError(result.getError() != null ? result.getError() : "");
+                if (result.getPayment() != null) {
+                    builder.setPayment(buildProtoPayment(result.getPayment()));
+                }
+                responseObserver.onNext(builder.build());
+            });
+
+            responseObserver.onCompleted();
+
+        } catch (IllegalArgumentException e) {
+            log.warn("gRPC processPaymentBatch rejected: {}", e.getMessage());
+            responseObserver.onError(
+                    Status.INVALID_ARGUMENT.withDescription(e.getMessage()).asRuntimeException());
+        } catch (Exception e) {
+            log.error("gRPC processPaymentBatch unexpected error: {}", e.getMessage());
+            responseObserver.onError(
+                    Status.INTERNAL.withDescription(e.getMessage()).asRuntimeException());
+        }
+    }
+
     // ── GetPaymentById ────────────────────────────────────────────────────────
     @Override
     public void getPaymentById(GetPaymentByIdRequest request,
@@ -90,23 +143,62 @@ public class PaymentGrpcService extends PaymentServiceGrpc.PaymentServiceImplBas
         }
     }
 
+    // ── WatchPayment ──────────────────────────────────────────────────────────
+    // Server-streaming: the payment as it is now, then one message per status change.
+    // The updates are sent from whichever thread changed the payment (a lane, the
+    // settlement job, the watch poll), so this method returns as soon as it's registered.
+    @Override
+    public void watchPayment(WatchPaymentRequest request,
+                             StreamObserver<GetPaymentByIdResponse> responseObserver) {
+        ServerCallStreamObserver<GetPaymentByIdResponse> call =
+                (ServerCallStreamObserver<GetPaymentByIdResponse>) responseObserver;
+        try {
+            log.info("gRPC watchPayment: id={}", request.getId());
+
+            Runnable cancel = paymentWatchers.watch(UUID.fromString(request.getId()),
+                    dto -> call.onNext(GetPaymentByIdResponse.newBuilder()
+                            .setPayment(buildProtoPayment(dto))
+                            .build()),
+                    call::onCompleted);
+            call.setOnCancelHandler(cancel::run);
+
+        } catch (PaymentNotFoundException e) {
+            log.warn("gRPC watchPayment not found: {}", e.getMessage());
+            call.onError(Status.NOT_FOUND.withDescription(e.getMessage()).asRuntimeException());
+        } catch (IllegalArgumentException e) {
+            log.warn("gRPC watchPayment rejected: {}", e.getMessage());
+            call.onError(Status.INVALID_ARGUMENT.withDescription(e.getMessage()).asRuntimeException());
+        } catch (Exception e) {
+            log.error("gRPC watchPayment unexpected error: {}", e.getMessage());
+            call.onError(Status.INTERNAL.withDescription(e.getMessage()).asRuntimeException());
+        }
+    }
+
     // ── GetPaymentsByAccount ──────────────────────────────────────────────────
+    // One page per call (newest first). The caller passes nextPageToken back to
+    // get the next page; an empty token means this was the last one.
     @Override
     public void getPaymentsByAccount(GetPaymentsByAccountRequest request,
                                      StreamObserver<GetPaymentsByAccountResponse> responseObserver) {
         try {
-            log.info("gRPC getPaymentsByAccount: accountId={}", request.getAccountId());
+            log.info("gRPC getPaymentsByAccount: accountId={} pageSize={}", request.getAccountId(), request.getPageSize());
 
-            List<PaymentResponseDTO> results = paymentService.getPaymentsByAccount(request.getAccountId());
+            PaymentPageDTO page = paymentService.getPaymentsByAccount(
+                    request.getAccountId(), request.getPageSize(), request.getPageToken());
 
             // Map every DTO to a proto Payment, collect into the repeated field
             GetPaymentsByAccountResponse response = GetPaymentsByAccountResponse.newBuilder()
-                    .addAllPayments(results.stream().map(this::buildProtoPayment).toList())
+                    .addAllPayments(page.getPayments().stream().map(this::buildProtoPayment).toList())
+                    .setNextPageToken(page.getNextPageToken() != null ? page.getNextPageToken() : "")
                     .build();
 
             responseObserver.onNext(response);
             responseObserver.onCompleted();
 
+        } catch (IllegalArgumentException e) {
+            log.warn("gRPC getPaymentsByAccount rejected: {}", e.getMessage());
+            responseObserver.onError(
+                    Status.INVALID_ARGUMENT.withDescription(e.getMessage()).asRuntimeException());
         } catch (Exception e) {
             log.error("gRPC getPaymentsByAccount unexpected error: {}", e.getMessage());
             responseObserver.onError(
@@ -114,7 +206,190 @@ public class PaymentGrpcService extends PaymentServiceGrpc.PaymentServiceImplBas
         }
     }
 
+    // ── StreamPaymentsByAccount ───────────────────────────────────────────────
+    // Server-streaming: the whole history goes out a page at a time, straight off the
+    // DB cursor, so neither side ever holds all of it.
+    @Override
+    public void streamPaymentsByAccount(StreamPaymentsByAccountRequest request,
+                                        StreamObserver<GetPaymentsByAccountResponse> responseObserver) {
+        ServerCallStreamObserver<GetPaymentsByAccountResponse> call =
+                (ServerCallStreamObserver<GetPaymentsByAccountResponse>) responseObserver;
+        try {
+            log.info("gRPC streamPaymentsByAccount: accountId={} pageSize={}", request.getAccountId(), request.getPageSize());
+
+            paymentService.streamPaymentsByAccount(request.getAccountId(), request.getPageSize(), page -> {
+                awaitReady(call);
+                call.onNext(GetPaymentsByAccountResponse.newBuilder()
+                        .addAllPayments(page.stream().map(this::buildProtoPayment).toList())
+                        .build());
+            });
+
+            call.onCompleted();
+
+        } catch (Exception e) {
+            if (call.isCancelled()) {
+                log.info("gRPC streamPaymentsByAccount cancelled by client: accountId={}", request.getAccountId());
+                return;
+            }
+            log.error("gRPC streamPaymentsByAccount unexpected error: {}", e.getMessage());
+            call.onError(Status.INTERNAL.withDescription(e.getMessage()).asRuntimeException());
+        }
+    }
+
+    // ── CreateScheduledPayment ─────────────────────────────────────────────────
+    // Only stores the schedule - ScheduledPaymentDispatcher makes each payment when
+    // its time comes.
+    @Override
+    public void createScheduledPayment(CreateScheduledPaymentRequest request,
+                                       StreamObserver<ScheduledPaymentResponse> responseObserver) {
+        try {
+            log.info("gRPC createScheduledPayment: from={} to={} amount={} frequency={} firstRunAt={}",
+                    request.getFromAccountId(), request.getToAccountId(), request.getAmount(),
+                    request.getFrequency(), request.getFirstRunAt());
+
+            ScheduledPaymentResponseDTO result = scheduledPaymentService.create(toScheduleDTO(request));
+
+            responseObserver.onNext(ScheduledPaymentResponse.newBuilder()
+                    .setSchedule(buildProtoSchedule(result))
+                    .build());
+            responseObserver.onCompleted();
+
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            log.warn("gRPC createScheduledPayment rejected: {}", e.getMessage());
+            responseObserver.onError(
+                    Status.INVALID_ARGUMENT.withDescription(e.getMessage()).asRuntimeException());
+        } catch (Exception e) {
+            log.error("gRPC createScheduledPayment unexpected error: {}", e.getMessage());
+            responseObserver.onError(
+                    Status.INTERNAL.withDescription(e.getMessage()).asRuntimeException());
+        }
+    }
+
+    // ── CancelScheduledPayment ─────────────────────────────────────────────────
+    // Stops future runs; a payment already made for an earlier run is unaffected.
+    // Cancelling a cancelled schedule is a no-op.
+    @Override
+    public void cancelScheduledPayment(CancelScheduledPaymentRequest request,
+                                       StreamObserver<ScheduledPaymentResponse> responseObserver) {
+        try {
+            log.info("gRPC cancelScheduledPayment: id={}", request.getId());
+
+            ScheduledPaymentResponseDTO result = scheduledPaymentService.cancel(request.getId());
+
+            responseObserver.onNext(ScheduledPaymentResponse.newBuilder()
+                    .setSchedule(buildProtoSchedule(result))
+                    .build());
+            responseObserver.onCompleted();
+
+        } catch (PaymentNotFoundException e) {
+            log.warn("gRPC cancelScheduledPayment not found: {}", e.getMessage());
+            responseObserver.onError(
+                    Status.NOT_FOUND.withDescription(e.getMessage()).asRuntimeException());
+        } catch (IllegalStateException e) {
+            log.warn("gRPC cancelScheduledPayment rejected: {}", e.getMessage());
+            responseObserver.onError(
+                    Status.FAILED_PRECONDITION.withDescription(e.getMessage()).asRuntimeException());
+        } catch (IllegalArgumentException e) {
+            log.warn("gRPC cancelScheduledPayment rejected: {}", e.getMessage());
+            responseObserver.onError(
+                    Status.INVALID_ARGUMENT.withDescription(e.getMessage()).asRuntimeException());
+        } catch (Exception e) {
+            log.error("gRPC cancelScheduledPayment unexpected error: {}", e.getMessage());
+            responseObserver.onError(
+                    Status.INTERNAL.withDescription(e.getMessage()).asRuntimeException());
+        }
+    }
+
+    // Don't outrun a slow client - pausing the DB cursor is cheaper than queueing the
+    // whole history in Netty's buffers. isReady() tracks the transport's flow-control
+    // window directly; setOnReadyHandler can't be used here because its callback runs
+    // on this call's executor, which is busy running us.
+    private void awaitReady(ServerCallStreamObserver<?> call) {
+        while (!call.isReady()) {
+            if (call.isCancelled()) {
+                throw Status.CANCELLED.withDescription("Client cancelled the stream").asRuntimeException();
+            }
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw Status.CANCELLED.withDescription("Interrupted while streaming").asRuntimeException();
+            }
+        }
+        if (call.isCancelled()) {
+            throw Status.CANCELLED.withDescription("Client cancelled the stream").asRuntimeException();
+        }
+    }
+
     // ── Helper ────────────────────────────────────────────────────────────────
+    private PaymentRequestDTO toRequestDTO(ProcessPaymentRequest request) {
+        return toRequestDTO(request, amount(request.getAmountMinor(), request.getAmountScale(), request.getAmount()));
+    }
+
+    // A batch item whose amount doesn't parse fails on its own: it goes on without an
+    // amount and PaymentBatchService.validate reports it in that item's result.
+    private PaymentRequestDTO toBatchItemDTO(ProcessPaymentRequest request) {
+        Money amount;
+        try {
+            amount = amount(request.getAmountMinor(), request.getAmountScale(), request.getAmount());
+        } catch (NumberFormatException e) {
+            amount = null;
+        }
+        return toRequestDTO(request, amount);
+    }
+
+    private PaymentRequestDTO toRequestDTO(ProcessPaymentRequest request, Money amount) {
+        PaymentRequestDTO dto = new PaymentRequestDTO();
+        dto.setFromAccountId(request.getFromAccountId());
+        dto.setToAccountId(request.getToAccountId());
+        dto.setAmount(amount);
+        // Proto type is PAY_TRANSFER — strip the prefix to match Java enum TRANSFER
+        dto.setType(PaymentType.valueOf(request.getType().name().replace("PAY_", "")));
+        dto.setDescription(request.getDescription());
+        dto.setIdempotencyKey(request.getIdempotencyKey());
+        dto.setAsync(request.getAsync());
+        return dto;
+    }
+
+    // Newer callers send the amount in minor units as well - taken as is, no decimal
+    // string. Older ones only send the string, parsed here once.
+    private static Money amount(long minor, int scale, String decimal) {
+        return minor != 0 ? Money.ofMinor(minor, scale) : Money.parse(decimal);
+    }
+
+    private ScheduledPaymentRequestDTO toScheduleDTO(CreateScheduledPaymentRequest request) {
+        ScheduledPaymentRequestDTO dto = new ScheduledPaymentRequestDTO();
+        dto.setFromAccountId(request.getFromAccountId());
+        dto.setToAccountId(request.getToAccountId());
+        dto.setAmount(amount(request.getAmountMinor(), request.getAmountScale(), request.getAmount()));
+        dto.setType(PaymentType.valueOf(request.getType().name().replace("PAY_", "")));
+        dto.setDescription(request.getDescription());
+        // SCHEDULE_MONTHLY → MONTHLY
+        dto.setFrequency(ScheduleFrequency.valueOf(request.getFrequency().name().replace("SCHEDULE_", "")));
+        dto.setFirstRunAt(LocalDateTime.parse(request.getFirstRunAt()));
+        dto.setEndsAt(request.getEndsAt().isEmpty() ? null : LocalDateTime.parse(request.getEndsAt()));
+        return dto;
+    }
+
+    private ScheduledPayment buildProtoSchedule(ScheduledPaymentResponseDTO dto) {
+        return ScheduledPayment.newBuilder()
+                .setId(dto.getScheduleId())
+                .setFromAccountId(dto.getFromAccountId())
+                .setToAccountId(dto.getToAccountId())
+                .setAmount(dto.getAmount())
+                .setAmountMinor(dto.getAmountMinor())
+                .setAmountScale(Money.SCALE)
+                .setType(com.pm.proto.PaymentType.valueOf("PAY_" + dto.getType()))
+                .setDescription(dto.getDescription() != null ? dto.getDescription() : "")
+                .setFrequency(com.pm.proto.ScheduleFrequency.valueOf("SCHEDULE_" + dto.getFrequency()))
+                .setStatus(com.pm.proto.ScheduleStatus.valueOf("SCHEDULE_" + dto.getStatus()))
+                .setNextRunAt(dto.getNextRunAt())
+                .setEndsAt(dto.getEndsAt() != null ? dto.getEndsAt() : "")
+                .setRuns(dto.getRuns())
+                .setCreatedAt(dto.getCreatedAt())
+                .build();
+    }
+
     // Converts a PaymentResponseDTO into the proto Payment message.
     // Status/type are stored as plain enum names (e.g. "COMPLETED", "TRANSFER")
     // but proto enum values are prefixed with PAY_ (e.g. PAY_COMPLETED).
@@ -124,6 +399,8 @@ public class PaymentGrpcService extends PaymentServiceGrpc.PaymentServiceImplBas
                 .setFromAccountId(dto.getFromAccountId())
                 .setToAccountId(dto.getToAccountId())
                 .setAmount(dto.getAmount())
+                .setAmountMinor(dto.getAmountMinor())
+                .setAmountScale(Money.SCALE)
                 .setStatus(com.pm.proto.PaymentStatus.valueOf("PAY_" + dto.getStatus()))
                 .setType(com.pm.proto.PaymentType.valueOf("PAY_" + dto.getType()))
                 .setDescription(dto.getDescription() != null ? dto.getDescription() : "")
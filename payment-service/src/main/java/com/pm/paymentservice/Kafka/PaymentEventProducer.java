@@ -1,45 +1,78 @@
 package com.pm.paymentservice.Kafka;
 
-import com.pm.paymentservice.DTO.PaymentEventDTO;
-import lombok.AllArgsConstructor;
+import com.pm.proto.PaymentEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Service;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+// Publishes to the payment-processed topic. Values are protobuf-encoded PaymentEvents
+// (proto-config), shared with the consuming services. Producer settings (batching,
+// compression, idempotence) live under spring.kafka.producer in application.yml.
+//
+// Metrics:
+//   payment.events.send - time from send() to the broker's ack, tagged outcome=acked|failed
+// Kafka's own client metrics (kafka.producer.*: batch sizes, compression rate, retries)
+// are published alongside by Spring Boot.
 @Service
 public class PaymentEventProducer {
 
     private static final Logger log = LoggerFactory.getLogger(PaymentEventProducer.class);
 
-    private final KafkaTemplate<String, PaymentEventDTO> kafkaTemplate;
+    private final KafkaTemplate<String, PaymentEvent> kafkaTemplate;
     private final String topic;
+    private final Timer acked;
+    private final Timer failed;
 
     // @Value cannot be used with @AllArgsConstructor — we define the constructor
     // manually so Spring injects the @Value alongside the KafkaTemplate bean.
     public PaymentEventProducer(
-            KafkaTemplate<String, PaymentEventDTO> kafkaTemplate,
-            @Value("${kafka.topic.payment-processed}") String topic) {
+            KafkaTemplate<String, PaymentEvent> kafkaTemplate,
+            @Value("${kafka.topic.payment-processed}") String topic,
+            MeterRegistry meterRegistry) {
         this.kafkaTemplate = kafkaTemplate;
         this.topic = topic;
+        this.acked = sendTimer(meterRegistry, "acked");
+        this.failed = sendTimer(meterRegistry, "failed");
+    }
+
+    private static Timer sendTimer(MeterRegistry meterRegistry, String outcome) {
+        return Timer.builder("payment.events.send")
+                .tag("outcome", outcome)
+                .description("Time from handing an event to the producer to the broker's ack")
+                .register(meterRegistry);
     }
 
-    // Publishes a payment event to Kafka.
+    // Sends a payment event to Kafka.
     // The paymentId is used as the message key — Kafka uses the key to determine
     // which partition the message lands on. Using the paymentId guarantees that
     // all events for the same payment are always in the same partition,
     // preserving ordering if a payment ever produces multiple events.
     //
-    // This method is intentionally fire-and-forget:
-    // A Kafka failure must NOT affect the payment outcome. The transaction has
-    // already been committed to the DB. Log the error and move on.
-    public void publishPaymentEvent(PaymentEventDTO event) {
-        try {
-            kafkaTemplate.send(topic, event.getPaymentId(), event);
-            log.info("Published payment event: paymentId={} status={}", event.getPaymentId(), event.getStatus());
-        } catch (Exception e) {
-            log.error("Failed to publish payment event for paymentId={}: {}", event.getPaymentId(), e.getMessage());
-        }
+    // Only the outbox publishers call this. The returned future completes once the
+    // broker has acknowledged the record, which is what lets them mark the outbox row
+    // as sent - the payment request itself never waits on Kafka. A failed send simply
+    // leaves the row unsent; the outbox is the retry buffer.
+    public CompletableFuture<SendResult<String, PaymentEvent>> send(PaymentEvent event) {
+        long start = System.nanoTime();
+        return kafkaTemplate.send(topic, event.getPaymentId(), event)
+                .whenComplete((result, ex) -> {
+                    long elapsed = System.nanoTime() - start;
+                    if (ex != null) {
+                        failed.record(elapsed, TimeUnit.NANOSECONDS);
+                        log.error("Failed to publish payment event for paymentId={}: {}", event.getPaymentId(), ex.getMessage());
+                    } else {
+                        acked.record(elapsed, TimeUnit.NANOSECONDS);
+                        // debug: at peak this is thousands of lines a second
+                        log.debug("Published payment event: paymentId={} status={}", event.getPaymentId(), event.getStatus());
+                    }
+                });
     }
 }
@@ -0,0 +1,236 @@
+package com.pm.paymentservice.Kafka;
+
+import com.pm.paymentservice.Repository.paymentOutboxRepo;
+import com.pm.paymentservice.model.Money;
+import com.pm.proto.PaymentEvent;
+import com.pm.proto.PaymentStatus;
+import com.pm.proto.PaymentType;
+import io.debezium.embedded.Connect;
+import io.debezium.engine.DebeziumEngine;
+import io.debezium.engine.RecordChangeEvent;
+import io.debezium.engine.format.ChangeEventFormat;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.kafka.connect.data.Struct;
+import org.apache.kafka.connect.source.SourceRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Alternative to PaymentOutboxRelay, enabled with payment.events.publisher=debezium.
+//
+// Instead of polling payment_outbox, an embedded Debezium engine tails the table
+// through Postgres logical replication (pgoutput) and publishes each inserted row
+// as soon as it commits. Only inserts are published - the sent_at UPDATE this class
+// makes afterwards shows up in the stream too and is ignored.
+//
+// Offsets live in a local file, so a restart resumes from the last acknowledged
+// WAL position instead of rescanning. Offsets are only marked once Kafka has acked
+// the batch, which keeps delivery at-least-once like the polling relay.
+//
+// The stream only carries rows written after the replication slot exists. Rows left
+// unsent before that - by the polling relay at switch-over, or while the slot or
+// offset file was lost - are drained once the engine's task has started, with the
+// relay's own batch code. A row that is in both gets published twice, which the
+// consumers already dedupe. If Kafka is down at that point the rows stay unsent until
+// the next start (or a switch back to the relay).
+// Requires wal_level=logical on paymentdb (see docker-compose.yml).
+@Component
+@ConditionalOnProperty(name = "payment.events.publisher", havingValue = "debezium")
+public class PaymentOutboxCdcPublisher {
+
+    private static final Logger log = LoggerFactory.getLogger(PaymentOutboxCdcPublisher.class);
+    private static final long RETRY_BACKOFF_MS = 1000;
+
+    private final PaymentEventProducer eventProducer;
+    private final paymentOutboxRepo outboxRepository;
+    private final Properties engineProps;
+    private final PaymentOutboxRelay backlog;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> new Thread(r, "payment-outbox-cdc"));
+    private DebeziumEngine<RecordChangeEvent<SourceRecord>> engine;
+
+    public PaymentOutboxCdcPublisher(
+            PaymentEventProducer eventProducer,
+            paymentOutboxRepo outboxRepository,
+            @Value("${spring.datasource.url}") String datasourceUrl,
+            @Value("${spring.datasource.username}") String dbUser,
+            @Value("${spring.datasource.password}") String dbPassword,
+            @Value("${payment.events.debezium.offset-file:./data/payment-outbox-offsets.dat}") String offsetFile,
+            TransactionTemplate transactionTemplate,
+            @Value("${payment.outbox.batch-size:100}") int batchSize,
+            @Value("${payment.outbox.send-timeout-ms:5000}") long sendTimeoutMs,
+            MeterRegistry meterRegistry) {
+        this.eventProducer = eventProducer;
+        this.outboxRepository = outboxRepository;
+        // Not a bean in this mode - only used for the one drain at startup
+        this.backlog = new PaymentOutboxRelay(outboxRepository, eventProducer, transactionTemplate,
+                batchSize, sendTimeoutMs, meterRegistry);
+
+        engineProps = new Properties();
+        engineProps.setProperty("name", "payment-outbox-cdc");
+        engineProps.setProperty("connector.class", "io.debezium.connector.postgresql.PostgresConnector");
+        engineProps.setProperty("topic.prefix", "paymentdb");
+        // Same database the outbox rows are written to - taken from the datasource URL
+        // rather than configured twice
+        engineProps.putAll(connection(datasourceUrl));
+        engineProps.setProperty("database.user", dbUser);
+        engineProps.setProperty("database.password", dbPassword);
+        engineProps.setProperty("plugin.name", "pgoutput");
+        engineProps.setProperty("slot.name", "payment_outbox_slot");
+        engineProps.setProperty("publication.name", "payment_outbox_pub");
+        engineProps.setProperty("publication.autocreate.mode", "filtered");
+        engineProps.setProperty("table.include.list", "public.payment_outbox");
+        // Rows written before the slot existed are picked up by publishBacklog instead -
+        // a snapshot would republish every row, sent or not
+        engineProps.setProperty("snapshot.mode", "no_data");
+        engineProps.setProperty("decimal.handling.mode", "string");
+        engineProps.setProperty("offset.storage", "org.apache.kafka.connect.storage.FileOffsetBackingStore");
+        engineProps.setProperty("offset.storage.file.filename", offsetFile);
+        engineProps.setProperty("offset.flush.interval.ms", "1000");
+    }
+
+    @PostConstruct
+    public void start() {
+        engine = DebeziumEngine.create(ChangeEventFormat.of(Connect.class))
+                .using(engineProps)
+                .notifying(this::handleBatch)
+                .using((success, message, error) -> {
+                    if (!success) {
+                        log.error("Debezium outbox engine stopped: {}", message, error);
+                    }
+                })
+                .using(new DebeziumEngine.ConnectorCallback() {
+                    // The task creates the slot as it starts, so from here on every new
+                    // row reaches the stream and whatever is still unsent is older
+                    @Override
+                    public void taskStarted() {
+                        publishBacklog();
+                    }
+                })
+                .build();
+        executor.execute(engine);
+        log.info("Debezium outbox publisher started");
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        if (engine != null) {
+            engine.close();
+        }
+        executor.shutdown();
+    }
+
+    // jdbc:postgresql://host[:port]/database[?params] -> the engine's hostname, port and
+    // dbname. A URL it can't take apart (several hosts, no database) fails startup
+    // rather than letting the engine tail some other database.
+    static Properties connection(String datasourceUrl) {
+        URI uri;
+        try {
+            uri = new URI(datasourceUrl.startsWith("jdbc:") ? datasourceUrl.substring("jdbc:".length()) : datasourceUrl);
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException("Can't read spring.datasource.url for CDC: " + datasourceUrl, e);
+        }
+        String database = uri.getPath() != null && uri.getPath().length() > 1 ? uri.getPath().substring(1) : null;
+        if (!"postgresql".equals(uri.getScheme()) || uri.getHost() == null || database == null) {
+            throw new IllegalStateException("CDC needs a single-host jdbc:postgresql://host:port/database URL, got: "
+                    + datasourceUrl);
+        }
+        Properties props = new Properties();
+        props.setProperty("database.hostname", uri.getHost());
+        props.setProperty("database.port", String.valueOf(uri.getPort() != -1 ? uri.getPort() : 5432));
+        props.setProperty("database.dbname", database);
+        return props;
+    }
+
+    void publishBacklog() {
+        try {
+            backlog.drain();
+        } catch (RuntimeException e) {
+            log.error("Could not publish unsent outbox rows at startup", e);
+        }
+    }
+
+    void handleBatch(List<RecordChangeEvent<SourceRecord>> records,
+                     DebeziumEngine.RecordCommitter<RecordChangeEvent<SourceRecord>> committer) throws InterruptedException {
+        List<Long> ids = new ArrayList<>();
+        List<PaymentEvent> events = new ArrayList<>();
+        for (RecordChangeEvent<SourceRecord> record : records) {
+            Struct value = (Struct) record.record().value();
+            // tombstones and anything other than an insert (e.g. our own sent_at update)
+            if (value != null && "c".equals(value.getString("op"))) {
+                Struct after = value.getStruct("after");
+                ids.add(after.getInt64("id"));
+                events.add(toEvent(after));
+            }
+        }
+
+        // The stream is ordered - don't move past a batch until every event in it
+        // is on the broker. Retry until it goes through or the engine is shut down.
+        while (!events.isEmpty() && !sendAll(events)) {
+            Thread.sleep(RETRY_BACKOFF_MS);
+        }
+        if (!ids.isEmpty()) {
+            // Keeps the table honest, so switching back to the polling relay
+            // doesn't republish everything CDC already delivered.
+            outboxRepository.markSent(ids, LocalDateTime.now());
+        }
+
+        for (RecordChangeEvent<SourceRecord> record : records) {
+            committer.markProcessed(record);
+        }
+        committer.markBatchFinished();
+    }
+
+    private boolean sendAll(List<PaymentEvent> events) throws InterruptedException {
+        List<CompletableFuture<?>> inFlight = new ArrayList<>();
+        for (PaymentEvent event : events) {
+            inFlight.add(eventProducer.send(event));
+        }
+        try {
+            CompletableFuture.allOf(inFlight.toArray(new CompletableFuture[0])).get();
+            return true;
+        } catch (ExecutionException e) {
+            log.warn("CDC batch of {} events not fully acknowledged, retrying: {}", events.size(), e.getMessage());
+            return false;
+        }
+    }
+
+    // Column names come through as-is. NUMERIC arrives as a plain string because of
+    // decimal.handling.mode=string; TIMESTAMP arrives as microseconds since epoch.
+    static PaymentEvent toEvent(Struct after) {
+        long micros = after.getInt64("occurred_at");
+        LocalDateTime occurredAt = LocalDateTime.ofEpochSecond(
+                Math.floorDiv(micros, 1_000_000L),
+                (int) Math.floorMod(micros, 1_000_000L) * 1000,
+                ZoneOffset.UTC);
+        Money amount = Money.parse(after.getString("amount"));
+        return PaymentEvent.newBuilder()
+                .setPaymentId(after.getString("payment_id"))
+                .setFromAccountId(after.getString("from_account_id"))
+                .setToAccountId(after.getString("to_account_id"))
+                .setAmount(amount.toString())
+                .setAmountMinor(amount.minor())
+                .setAmountScale(Money.SCALE)
+                .setStatus(PaymentStatus.valueOf("PAY_" + after.getString("status")))
+                .setType(PaymentType.valueOf("PAY_" + after.getString("type")))
+                .setOccurredAt(occurredAt.toString())
+                .build();
+    }
+}
@@ -0,0 +1,71 @@
+package com.pm.paymentservice.Kafka;
+
+import com.pm.paymentservice.Repository.paymentOutboxRepo;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+// Deletes payment_outbox rows that went out to Kafka more than `retention` ago.
+// Both publishers only mark rows as sent, so without this the table grows by one row
+// per status change forever. Unsent rows are never touched. Runs whichever publisher
+// is active - PaymentOutboxCdcPublisher only reacts to inserts, so the deletes don't
+// come back out of the replication stream as events.
+//
+// The retention is how long a sent event stays around to be looked at or replayed by
+// hand. It also keeps the table to about that many days of rows, which is what lets
+// the delete find its rows without an index on sent_at.
+//
+// Metrics:
+//   payment.outbox.deleted - sent rows removed
+@Component
+public class PaymentOutboxCleaner {
+
+    private static final Logger log = LoggerFactory.getLogger(PaymentOutboxCleaner.class);
+
+    private final paymentOutboxRepo outboxRepository;
+    private final Duration retention;
+    private final int batchSize;
+    private final Counter deleted;
+
+    public PaymentOutboxCleaner(
+            paymentOutboxRepo outboxRepository,
+            @Value("${payment.outbox.retention:24h}") Duration retention,
+            @Value("${payment.outbox.cleanup-batch-size:5000}") int batchSize,
+            MeterRegistry meterRegistry) {
+        this.outboxRepository = outboxRepository;
+        this.retention = retention;
+        this.batchSize = batchSize;
+        this.deleted = Counter.builder("payment.outbox.deleted")
+                .description("Sent outbox rows deleted after the retention period")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${payment.outbox.cleanup-interval-ms:60000}")
+    public void cleanUp() {
+        purge(LocalDateTime.now());
+    }
+
+    // One short transaction per batch, so a backlog (first run, or after a long
+    // outage) doesn't hold locks on a large part of the table at once
+    int purge(LocalDateTime now) {
+        LocalDateTime cutoff = now.minus(retention);
+        int total = 0;
+        int removed;
+        do {
+            removed = outboxRepository.deleteSentBefore(cutoff, batchSize);
+            total += removed;
+        } while (removed == batchSize);
+        deleted.increment(total);
+        if (total > 0) {
+            log.info("Deleted {} outbox rows sent before {}", total, cutoff);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,132 @@
+package com.pm.paymentservice.Kafka;
+
+import com.pm.paymentservice.Repository.paymentOutboxRepo;
+import com.pm.paymentservice.model.Money;
+import com.pm.paymentservice.model.paymentOutbox;
+import com.pm.proto.PaymentEvent;
+import com.pm.proto.PaymentStatus;
+import com.pm.proto.PaymentType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// Drains payment_outbox to the payment-processed topic in the background.
+//
+// Each batch runs in one transaction: claim up to batch-size unsent rows
+// (FOR UPDATE SKIP LOCKED), send them all, wait for the broker acks, then mark
+// the acknowledged rows as sent. Rows whose send failed or timed out stay unsent
+// and are picked up again on the next tick - delivery is at-least-once, which
+// notification-service and analytics-service already handle by deduplicating
+// on paymentId.
+//
+// This is the default publisher; payment.events.publisher=debezium swaps it for
+// PaymentOutboxCdcPublisher.
+//
+// Metrics:
+//   payment.outbox.unacknowledged - rows a batch sent but couldn't mark, left for a retry
+@Component
+@ConditionalOnProperty(name = "payment.events.publisher", havingValue = "outbox-relay", matchIfMissing = true)
+public class PaymentOutboxRelay {
+
+    private static final Logger log = LoggerFactory.getLogger(PaymentOutboxRelay.class);
+
+    private final paymentOutboxRepo outboxRepository;
+    private final PaymentEventProducer eventProducer;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final long sendTimeoutMs;
+    private final Counter unacknowledged;
+
+    public PaymentOutboxRelay(
+            paymentOutboxRepo outboxRepository,
+            PaymentEventProducer eventProducer,
+            TransactionTemplate transactionTemplate,
+            @Value("${payment.outbox.batch-size:100}") int batchSize,
+            @Value("${payment.outbox.send-timeout-ms:5000}") long sendTimeoutMs,
+            MeterRegistry meterRegistry) {
+        this.outboxRepository = outboxRepository;
+        this.eventProducer = eventProducer;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+        this.sendTimeoutMs = sendTimeoutMs;
+        this.unacknowledged = Counter.builder("payment.outbox.unacknowledged")
+                .description("Outbox rows left unsent after a failed or timed-out send")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${payment.outbox.poll-interval-ms:250}")
+    public void drain() {
+        // Keep going while full batches go out cleanly so a backlog clears
+        // without waiting a whole poll interval per batch.
+        Integer sent;
+        do {
+            sent = transactionTemplate.execute(status -> relayBatch());
+        } while (sent != null && sent == batchSize);
+    }
+
+    int relayBatch() {
+        List<paymentOutbox> batch = outboxRepository.lockNextUnsent(batchSize);
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        // Hand the whole batch to the producer before waiting on any ack, so the
+        // Kafka client can pack the records into as few requests as it likes.
+        Map<Long, CompletableFuture<?>> inFlight = new LinkedHashMap<>();
+        for (paymentOutbox row : batch) {
+            inFlight.put(row.getId(), eventProducer.send(toEvent(row)));
+        }
+
+        List<Long> delivered = new ArrayList<>();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(sendTimeoutMs);
+        for (Map.Entry<Long, CompletableFuture<?>> entry : inFlight.entrySet()) {
+            try {
+                entry.getValue().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                delivered.add(entry.getKey());
+            } catch (ExecutionException | TimeoutException e) {
+                log.warn("Outbox row {} not acknowledged, will retry: {}", entry.getKey(), e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        if (!delivered.isEmpty()) {
+            outboxRepository.markSent(delivered, LocalDateTime.now());
+        }
+        unacknowledged.increment(batch.size() - delivered.size());
+        log.debug("Relayed {}/{} outbox events", delivered.size(), batch.size());
+        return delivered.size();
+    }
+
+    // Proto enum values carry a PAY_ prefix (see payment.proto)
+    static PaymentEvent toEvent(paymentOutbox row) {
+        return PaymentEvent.newBuilder()
+                .setPaymentId(row.getPaymentId().toString())
+                .setFromAccountId(row.getFromAccountId())
+                .setToAccountId(row.getToAccountId())
+                .setAmount(row.getAmount().toString())
+                .setAmountMinor(row.getAmount().minor())
+                .setAmountScale(Money.SCALE)
+                .setStatus(PaymentStatus.valueOf("PAY_" + row.getStatus().name()))
+                .setType(PaymentType.valueOf("PAY_" + row.getType().name()))
+                .setOccurredAt(row.getOccurredAt().toString())
+                .build();
+    }
+}
@@ -5,17 +5,21 @@ import com.pm.paymentservice.DTO.PaymentResponseDTO;
 import com.pm.paymentservice.Enum.PaymentStatus;
 import com.pm.paymentservice.model.payment;
 
-import java.math.BigDecimal;
+import java.util.UUID;
 
 public class PaymentMapper {
 
     public static payment toEntity(PaymentRequestDTO dto) {
         payment p = new payment();
+        p.setId(UUID.randomUUID());
         p.setFromAccountId(dto.getFromAccountId());
         p.setToAccountId(dto.getToAccountId());
-        p.setAmount(new BigDecimal(dto.getAmount()));
+        p.setAmount(dto.getAmount());
         p.setType(dto.getType());
         p.setDescription(dto.getDescription());
+        // blank → null so keyless payments don't collide on the UNIQUE column
+        p.setIdempotencyKey(dto.getIdempotencyKey() != null && !dto.getIdempotencyKey().isBlank()
+                ? dto.getIdempotencyKey() : null);
         p.setStatus(PaymentStatus.PENDING);
         return p;
     }
@@ -26,6 +30,7 @@ public class PaymentMapper {
         dto.setFromAccountId(p.getFromAccountId());
         dto.setToAccountId(p.getToAccountId());
         dto.setAmount(p.getAmount().toString());
+        dto.setAmountMinor(p.getAmount().minor());
         dto.setStatus(p.getStatus().name());
         dto.setType(p.getType().name());
         dto.setDescription(p.getDescription());
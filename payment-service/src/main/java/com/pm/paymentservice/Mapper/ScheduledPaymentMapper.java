@@ -0,0 +1,58 @@
+package com.pm.paymentservice.Mapper;
+
+import com.pm.paymentservice.DTO.PaymentRequestDTO;
+import com.pm.paymentservice.DTO.ScheduledPaymentRequestDTO;
+import com.pm.paymentservice.DTO.ScheduledPaymentResponseDTO;
+import com.pm.paymentservice.Enum.ScheduleStatus;
+import com.pm.paymentservice.model.scheduledPayment;
+
+public class ScheduledPaymentMapper {
+
+    public static scheduledPayment toEntity(ScheduledPaymentRequestDTO dto) {
+        scheduledPayment s = new scheduledPayment();
+        s.setFromAccountId(dto.getFromAccountId());
+        s.setToAccountId(dto.getToAccountId());
+        s.setAmount(dto.getAmount());
+        s.setType(dto.getType());
+        s.setDescription(dto.getDescription());
+        s.setFrequency(dto.getFrequency());
+        s.setStatus(ScheduleStatus.ACTIVE);
+        s.setFirstRunAt(dto.getFirstRunAt());
+        s.setNextRunAt(dto.getFirstRunAt());
+        s.setEndsAt(dto.getEndsAt());
+        return s;
+    }
+
+    // The payment for the schedule's next occurrence. The key is fixed per run and
+    // attempt, so however many times an attempt is dispatched it is only ever paid once.
+    // Only an attempt whose payment failed outright moves on to a new key.
+    public static PaymentRequestDTO toPaymentRequest(scheduledPayment s) {
+        PaymentRequestDTO dto = new PaymentRequestDTO();
+        dto.setFromAccountId(s.getFromAccountId());
+        dto.setToAccountId(s.getToAccountId());
+        dto.setAmount(s.getAmount());
+        dto.setType(s.getType());
+        dto.setDescription(s.getDescription());
+        dto.setIdempotencyKey("schedule:" + s.getId() + ":" + s.getRuns()
+                + (s.getAttempts() > 0 ? ":" + s.getAttempts() : ""));
+        return dto;
+    }
+
+    public static ScheduledPaymentResponseDTO toDTO(scheduledPayment s) {
+        ScheduledPaymentResponseDTO dto = new ScheduledPaymentResponseDTO();
+        dto.setScheduleId(s.getId().toString());
+        dto.setFromAccountId(s.getFromAccountId());
+        dto.setToAccountId(s.getToAccountId());
+        dto.setAmount(s.getAmount().toString());
+        dto.setAmountMinor(s.getAmount().minor());
+        dto.setType(s.getType().name());
+        dto.setDescription(s.getDescription());
+        dto.setFrequency(s.getFrequency().name());
+        dto.setStatus(s.getStatus().name());
+        dto.setNextRunAt(s.getNextRunAt().toString());
+        dto.setEndsAt(s.getEndsAt() != null ? s.getEndsAt().toString() : null);
+        dto.setRuns(s.getRuns());
+        dto.setCreatedAt(s.getCreatedAt().toString());
+        return dto;
+    }
+}
@@ -0,0 +1,38 @@
+package com.pm.paymentservice.Repository;
+
+import com.pm.paymentservice.model.paymentOutbox;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface paymentOutboxRepo extends JpaRepository<paymentOutbox, Long> {
+
+    // Oldest unsent events first. SKIP LOCKED lets several payment-service
+    // instances run the relay at once - each one claims a different slice
+    // instead of queueing behind (or double-sending) the same rows.
+    @Query(value = "SELECT * FROM payment_outbox WHERE sent_at IS NULL ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED",
+           nativeQuery = true)
+    List<paymentOutbox> lockNextUnsent(@Param("limit") int limit);
+
+    // joins the relay's batch transaction; opens its own when called from the CDC thread
+    @Transactional
+    @Modifying
+    @Query("UPDATE paymentOutbox o SET o.sentAt = :sentAt WHERE o.id IN :ids")
+    int markSent(@Param("ids") List<Long> ids, @Param("sentAt") LocalDateTime sentAt);
+
+    // Up to `limit` rows the broker acknowledged before `cutoff`, in a transaction of
+    // their own so a large backlog is cleared in short ones (see PaymentOutboxCleaner)
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM payment_outbox WHERE id IN "
+            + "(SELECT id FROM payment_outbox WHERE sent_at < :cutoff LIMIT :limit)",
+           nativeQuery = true)
+    int deleteSentBefore(@Param("cutoff") LocalDateTime cutoff, @Param("limit") int limit);
+}
@@ -1,17 +1,148 @@
 package com.pm.paymentservice.Repository;
 
+import com.pm.paymentservice.Enum.PaymentStatus;
 import com.pm.paymentservice.model.payment;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 @Repository
 public interface paymentRepo extends JpaRepository<payment, UUID> {
 
-    // Returns all payments where the given account was either the sender or receiver.
-    // Spring Data JPA generates: WHERE from_account_id = ? OR to_account_id = ?
-    // The repeated parameter is intentional - both sides of the OR use the same value.
-    List<payment> findByFromAccountIdOrToAccountId(String fromAccountId, String toAccountId);
+    // Account history queries.
+    //
+    // "from_account_id = ? OR to_account_id = ?" can't be served by either of the
+    // per-side indexes (V4), so Postgres falls back to scanning and sorting the table.
+    // Split by side instead: each UNION ALL branch reads its own (account, created_at, id)
+    // index. The to-side branch skips rows where from = to so a row can't come back twice.
+    // Kept as constants so PaymentQueryPlanTest can EXPLAIN exactly this SQL.
+    String HISTORY_BY_ACCOUNT =
+            "SELECT * FROM payments WHERE from_account_id = :accountId " +
+            "UNION ALL " +
+            "SELECT * FROM payments WHERE to_account_id = :accountId AND from_account_id <> :accountId " +
+            "ORDER BY created_at DESC, id DESC";
+
+    // Keyset pagination, newest first. A page starts strictly after the (created_at, id)
+    // of the last row the caller saw, so the DB seeks straight to it instead of counting
+    // past every earlier row the way OFFSET would. id breaks ties between payments
+    // created in the same microsecond.
+    //
+    // The ORDER BY + LIMIT is repeated inside each branch on purpose. Postgres doesn't
+    // see a branch's WHERE when ordering the union, so with only an outer LIMIT it sorts
+    // the account's whole history to return one page. Per branch, each side becomes a
+    // backward index scan that stops after :limit rows and the outer query merges the
+    // two runs - a page costs the same on an account with 50 payments or 5 million.
+    String HISTORY_PAGE_BY_ACCOUNT =
+            "SELECT * FROM (" +
+            "(SELECT * FROM payments WHERE from_account_id = :accountId " +
+            "ORDER BY created_at DESC, id DESC LIMIT :limit) " +
+            "UNION ALL " +
+            "(SELECT * FROM payments WHERE to_account_id = :accountId AND from_account_id <> :accountId " +
+            "ORDER BY created_at DESC, id DESC LIMIT :limit)" +
+            ") history ORDER BY created_at DESC, id DESC LIMIT :limit";
+
+    String HISTORY_PAGE_BY_ACCOUNT_BEFORE =
+            "SELECT * FROM (" +
+            "(SELECT * FROM payments WHERE from_account_id = :accountId " +
+            "AND (created_at, id) < (:createdAt, :id) " +
+            "ORDER BY created_at DESC, id DESC LIMIT :limit) " +
+            "UNION ALL " +
+            "(SELECT * FROM payments WHERE to_account_id = :accountId AND from_account_id <> :accountId " +
+            "AND (created_at, id) < (:createdAt, :id) " +
+            "ORDER BY created_at DESC, id DESC LIMIT :limit)" +
+            ") history ORDER BY created_at DESC, id DESC LIMIT :limit";
+
+    @Query(value = HISTORY_PAGE_BY_ACCOUNT, nativeQuery = true)
+    List<payment> findPageByAccount(@Param("accountId") String accountId, @Param("limit") int limit);
+
+    @Query(value = HISTORY_PAGE_BY_ACCOUNT_BEFORE, nativeQuery = true)
+    List<payment> findPageByAccountBefore(@Param("accountId") String accountId,
+                                          @Param("createdAt") LocalDateTime createdAt,
+                                          @Param("id") UUID id,
+                                          @Param("limit") int limit);
+
+    // Same ordering, read through a server-side cursor: with a fetch size set (and inside
+    // a transaction) the Postgres driver pulls 500 rows at a time instead of the whole
+    // result set. The caller must close the stream.
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query(value = HISTORY_BY_ACCOUNT, nativeQuery = true)
+    Stream<payment> streamByAccount(@Param("accountId") String accountId);
+
+    // Everything created since a point in time, through a cursor like streamByAccount -
+    // PaymentVelocityGuard replays the last hour on startup. Served by the BRIN index
+    // from V9.
+    String CREATED_SINCE = "SELECT * FROM payments WHERE created_at >= :since";
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query(value = CREATED_SINCE, nativeQuery = true)
+    Stream<payment> streamCreatedSince(@Param("since") LocalDateTime since);
+
+    // Reconciliation export (PaymentExportService), read with plain JDBC rather than
+    // through this repository. Both take a created_at range [createdFrom, createdTo).
+    // The whole-table form is served by the BRIN index from V9 when the range is narrow
+    // and is a sequential scan otherwise. The per-account form is split by side like
+    // HISTORY_BY_ACCOUNT, so each branch range-scans its (account, created_at, id) index.
+    // No ORDER BY: sorting millions of rows would hold back the first byte until the
+    // whole sort was done.
+    String EXPORT_COLUMNS =
+            "id, from_account_id, to_account_id, amount, status, type, description, created_at, updated_at";
+
+    String EXPORT =
+            "SELECT " + EXPORT_COLUMNS + " FROM payments " +
+            "WHERE created_at >= :createdFrom AND created_at < :createdTo";
+
+    String EXPORT_BY_ACCOUNT =
+            "SELECT " + EXPORT_COLUMNS + " FROM payments " +
+            "WHERE from_account_id = :accountId AND created_at >= :createdFrom AND created_at < :createdTo " +
+            "UNION ALL " +
+            "SELECT " + EXPORT_COLUMNS + " FROM payments " +
+            "WHERE to_account_id = :accountId AND from_account_id <> :accountId " +
+            "AND created_at >= :createdFrom AND created_at < :createdTo";
+
+    // Oldest payments in a status, a page at a time - for AUTHORIZED this is served by
+    // the partial index from V5
+    List<payment> findByStatusOrderByCreatedAtAsc(PaymentStatus status, Pageable pageable);
+
+    // PENDING payments nothing has finished - served by the partial index rebuilt in V10
+    List<payment> findByStatusAndCreatedAtBeforeOrderByCreatedAtAsc(PaymentStatus status, LocalDateTime before,
+                                                                    Pageable pageable);
+
+    // Backed by the UNIQUE index on idempotency_key
+    Optional<payment> findByIdempotencyKey(String idempotencyKey);
+
+    // Batch form of the above - one IN query for a whole chunk of submitted keys
+    List<payment> findByIdempotencyKeyIn(Collection<String> idempotencyKeys);
+
+    // Moves a set of payments to one status with a single UPDATE instead of a
+    // select-then-update merge per row. The ids travel as one uuid[] parameter, so the
+    // statement text is the same however many there are and the driver can keep it
+    // prepared - an IN list would be new SQL for every size.
+    String UPDATE_STATUS = "UPDATE payments SET status = :status, updated_at = :now WHERE id = ANY(:ids)";
+
+    @Modifying
+    @Query(value = UPDATE_STATUS, nativeQuery = true)
+    int updateStatus(@Param("ids") UUID[] ids, @Param("status") String status, @Param("now") LocalDateTime now);
+
+    default int updateStatus(Collection<UUID> ids, PaymentStatus status, LocalDateTime now) {
+        return updateStatus(ids.toArray(UUID[]::new), status.name(), now);
+    }
 }
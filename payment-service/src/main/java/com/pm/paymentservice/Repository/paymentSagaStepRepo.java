@@ -0,0 +1,15 @@
+package com.pm.paymentservice.Repository;
+
+import com.pm.paymentservice.model.paymentSagaStep;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface paymentSagaStepRepo extends JpaRepository<paymentSagaStep, Long> {
+
+    // A payment's steps - served by (payment_id, id)
+    List<paymentSagaStep> findByPaymentIdOrderById(UUID paymentId);
+}
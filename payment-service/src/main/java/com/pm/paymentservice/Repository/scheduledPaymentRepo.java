@@ -0,0 +1,78 @@
+package com.pm.paymentservice.Repository;
+
+import com.pm.paymentservice.model.scheduledPayment;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface scheduledPaymentRepo extends JpaRepository<scheduledPayment, UUID> {
+
+    // Active schedules due by :horizon that no instance holds, soonest first. Reads the
+    // front of the partial index from V8 and stops at :limit, however many schedules
+    // there are. SKIP LOCKED lets every instance load at once - each one claims a
+    // different slice instead of waiting on the rows another is claiming.
+    String LOCK_DUE =
+            "SELECT * FROM scheduled_payments " +
+            "WHERE status = 'ACTIVE' AND next_run_at <= :horizon " +
+            "AND (claimed_until IS NULL OR claimed_until < :now) " +
+            "ORDER BY next_run_at LIMIT :limit FOR UPDATE SKIP LOCKED";
+
+    @Query(value = LOCK_DUE, nativeQuery = true)
+    List<scheduledPayment> lockDue(@Param("now") LocalDateTime now,
+                                   @Param("horizon") LocalDateTime horizon,
+                                   @Param("limit") int limit);
+
+    @Modifying
+    @Query(value = "UPDATE scheduled_payments SET claimed_until = :until WHERE id = ANY(:ids)", nativeQuery = true)
+    int claim(@Param("ids") UUID[] ids, @Param("until") LocalDateTime until);
+
+    default int claim(Collection<UUID> ids, LocalDateTime until) {
+        return claim(ids.toArray(UUID[]::new), until);
+    }
+
+    // Hands rows back before their claim runs out - on shutdown, or when a run has to
+    // be retried. Only rows still active are touched.
+    @Modifying
+    @Query(value = "UPDATE scheduled_payments SET claimed_until = NULL WHERE id = ANY(:ids) AND status = 'ACTIVE'",
+           nativeQuery = true)
+    int release(@Param("ids") UUID[] ids);
+
+    default int release(Collection<UUID> ids) {
+        return release(ids.toArray(UUID[]::new));
+    }
+
+    // Moves a schedule past the run it just made. Conditional on the run number, so a
+    // run dispatched twice (a claim that expired under a slow instance) only counts once,
+    // and a schedule cancelled meanwhile stays cancelled.
+    @Modifying
+    @Query(value = "UPDATE scheduled_payments SET runs = runs + 1, attempts = 0, next_run_at = :next, status = :status, " +
+                   "last_run_at = :now, claimed_until = NULL, updated_at = :now " +
+                   "WHERE id = :id AND runs = :run AND status = 'ACTIVE'",
+           nativeQuery = true)
+    int recordRun(@Param("id") UUID id, @Param("run") int run, @Param("next") LocalDateTime next,
+                  @Param("status") String status, @Param("now") LocalDateTime now);
+
+    // Counts a failed attempt at the current run and hands the row back, so the next
+    // load retries it under the next attempt's key. Conditional on run and attempt, like
+    // recordRun, so an attempt dispatched twice only counts once.
+    @Modifying
+    @Query(value = "UPDATE scheduled_payments SET attempts = attempts + 1, claimed_until = NULL, updated_at = :now " +
+                   "WHERE id = :id AND runs = :run AND attempts = :attempt AND status = 'ACTIVE'",
+           nativeQuery = true)
+    int recordFailedAttempt(@Param("id") UUID id, @Param("run") int run, @Param("attempt") int attempt,
+                            @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query(value = "UPDATE scheduled_payments SET status = 'CANCELLED', claimed_until = NULL, updated_at = :now " +
+                   "WHERE id = :id AND status = 'ACTIVE'",
+           nativeQuery = true)
+    int cancel(@Param("id") UUID id, @Param("now") LocalDateTime now);
+}
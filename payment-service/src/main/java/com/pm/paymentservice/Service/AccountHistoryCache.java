@@ -0,0 +1,317 @@
+package com.pm.paymentservice.Service;
+
+import com.pm.paymentservice.DTO.PaymentResponseDTO;
+import com.pm.paymentservice.Mapper.PaymentMapper;
+import com.pm.paymentservice.model.payment;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+// The most recent payments of recently read accounts, in front of the first page of
+// GetPaymentsByAccount - the page the dashboard asks for on every refresh.
+//
+// Per account it holds up to per-account payments, newest first, the way the history
+// query orders them (created_at DESC, id DESC). Any first page up to that size is cut
+// from the list with no query. Once payments commit (PaymentOutboxWriter) each one is
+// put into the lists of both its accounts in place - a new payment slots in, a status
+// change replaces the old copy - so a cached account stays cached and current instead
+// of going back to the DB after every payment it makes.
+//
+// The bound is on weight, not on accounts: each list weighs the estimated heap its
+// payments take, and the least recently read accounts go once the total passes
+// max-bytes. An account with a handful of payments costs a fraction of a full one.
+//
+// A list loaded while payments for the account commit could miss them; beginLoad and
+// finishLoad spot that and drop the load rather than cache it.
+//
+// Only this instance's commits reach the lists. Payments made through other instances
+// don't, so each list is dropped max-age after it was loaded, however often it was
+// updated since, and the next first page reads the DB again. A busy account's first
+// page is never more than max-age behind payments made elsewhere.
+//
+// Metrics:
+//   payment.history.cache.requests  - first-page reads, tagged result=hit|miss
+//   payment.history.cache.hit.ratio - hits over all first-page reads since startup
+//   payment.history.cache.bytes     - estimated heap held by cached payments
+//   payment.history.cache.accounts  - accounts cached
+//   payment.history.cache.payments  - payments cached, over all accounts
+@Component
+public class AccountHistoryCache {
+
+    // createdAt is LocalDateTime.toString(), which drops zero seconds and fractions,
+    // so it's compared parsed. Ids as lowercase strings order the way Postgres orders
+    // uuids (byte by byte); UUID.compareTo doesn't.
+    static final Comparator<PaymentResponseDTO> NEWEST_FIRST = Comparator
+            .comparing((PaymentResponseDTO d) -> LocalDateTime.parse(d.getCreatedAt()))
+            .thenComparing(PaymentResponseDTO::getPaymentId)
+            .reversed();
+
+    // Rough heap cost of one cached PaymentResponseDTO: the object and its long, plus a
+    // header per String field; the characters are added per payment (Latin-1 strings
+    // take a byte each)
+    private static final long PAYMENT_OVERHEAD = 32 + 8 * 48;
+
+    private final int perAccount;
+    private final long maxBytes;
+    private final long maxAgeNanos;
+    private final LongSupplier clock;
+    // accessOrder=true, so the eldest entry is the least recently read account
+    private final LinkedHashMap<String, History> accounts = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Load> loading = new HashMap<>();
+    private final Counter hits;
+    private final Counter misses;
+    private long bytes;
+    private long payments;
+
+    @Autowired
+    public AccountHistoryCache(@Value("${payment.history-cache.per-account:100}") int perAccount,
+                               @Value("${payment.history-cache.max-bytes:67108864}") long maxBytes,
+                               @Value("${payment.history-cache.max-age:5s}") Duration maxAge,
+                               MeterRegistry meterRegistry) {
+        this(perAccount, maxBytes, maxAge, meterRegistry, System::nanoTime);
+    }
+
+    AccountHistoryCache(int perAccount, long maxBytes, Duration maxAge, MeterRegistry meterRegistry, LongSupplier clock) {
+        this.perAccount = perAccount;
+        this.maxBytes = maxBytes;
+        this.maxAgeNanos = maxAge.toNanos();
+        this.clock = clock;
+        this.hits = requests(meterRegistry, "hit");
+        this.misses = requests(meterRegistry, "miss");
+        Gauge.builder("payment.history.cache.bytes", this, AccountHistoryCache::bytes)
+                .description("Estimated heap held by cached account histories")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("payment.history.cache.hit.ratio", this, AccountHistoryCache::hitRatio)
+                .description("Share of first-page account history reads served from memory")
+                .register(meterRegistry);
+        Gauge.builder("payment.history.cache.accounts", this, AccountHistoryCache::size)
+                .description("Accounts with a cached history")
+                .register(meterRegistry);
+        Gauge.builder("payment.history.cache.payments", this, AccountHistoryCache::payments)
+                .description("Payments held in cached account histories")
+                .register(meterRegistry);
+    }
+
+    private static Counter requests(MeterRegistry registry, String result) {
+        return Counter.builder("payment.history.cache.requests")
+                .tag("result", result)
+                .description("First-page account history reads")
+                .register(registry);
+    }
+
+    // How many payments a cached list holds - first pages up to this size can be served
+    public int perAccount() {
+        return perAccount;
+    }
+
+    // The first `size` payments of the account, newest first, and whether there are
+    // more - or null if the account isn't cached (or its list is too old) and has to be
+    // read from the DB
+    public synchronized Page firstPage(String accountId, int size) {
+        History h = size <= perAccount ? accounts.get(accountId) : null;
+        if (h != null && clock.getAsLong() - h.loadedAt > maxAgeNanos) {
+            remove(accountId, h);
+            h = null;
+        }
+        if (h == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        int n = Math.min(size, h.payments.size());
+        // A list that isn't complete holds perAccount payments and the account has more
+        return new Page(List.copyOf(h.payments.subList(0, n)), n < h.payments.size() || !h.complete);
+    }
+
+    // Before reading the account's first payments from the DB for finishLoad
+    public synchronized long beginLoad(String accountId) {
+        Load load = loading.computeIfAbsent(accountId, k -> new Load());
+        load.readers++;
+        return load.writes;
+    }
+
+    // Caches what the read found - newest first, at most perAccount payments, complete
+    // if that's the whole history - unless payments for the account committed since
+    // beginLoad, in which case the read may be missing them. newestFirst is null if the
+    // read failed.
+    public synchronized void finishLoad(String accountId, long stamp, List<PaymentResponseDTO> newestFirst, boolean complete) {
+        Load load = loading.get(accountId);
+        if (load == null) {
+            return;
+        }
+        if (--load.readers == 0) {
+            loading.remove(accountId);
+        }
+        if (newestFirst == null || load.writes != stamp || accounts.containsKey(accountId)) {
+            return;
+        }
+        History h = new History(complete, clock.getAsLong());
+        for (PaymentResponseDTO dto : newestFirst) {
+            if (h.payments.size() == perAccount) {
+                h.complete = false;
+                break;
+            }
+            h.payments.add(dto);
+            h.bytes += weigh(dto);
+        }
+        accounts.put(accountId, h);
+        bytes += h.bytes;
+        payments += h.payments.size();
+        evict();
+    }
+
+    // Once the surrounding transaction commits (straight away if there is none), puts
+    // the payments as they are now into the histories of their accounts
+    public void updateAfterCommit(Collection<payment> written) {
+        // mapped now: the entities keep changing as the saga moves on
+        List<PaymentResponseDTO> dtos = written.stream().map(PaymentMapper::toDTO).toList();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            update(dtos);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                update(dtos);
+            }
+        });
+    }
+
+    synchronized void update(Collection<PaymentResponseDTO> dtos) {
+        for (PaymentResponseDTO dto : dtos) {
+            apply(dto.getFromAccountId(), dto);
+            if (!dto.getToAccountId().equals(dto.getFromAccountId())) {
+                apply(dto.getToAccountId(), dto);
+            }
+        }
+        evict();
+    }
+
+    private void apply(String accountId, PaymentResponseDTO dto) {
+        // counts as a use too: an account that's paying is one that's being looked at
+        History h = accounts.get(accountId);
+        if (h == null) {
+            Load load = loading.get(accountId);
+            if (load != null) {
+                load.writes++;
+            }
+            return;
+        }
+        long before = h.bytes;
+        int count = h.payments.size();
+        h.put(dto, perAccount);
+        bytes += h.bytes - before;
+        payments += h.payments.size() - count;
+    }
+
+    // Least recently read accounts first, until the total is back under max-bytes
+    private void evict() {
+        Iterator<History> it = accounts.values().iterator();
+        while (bytes > maxBytes && it.hasNext()) {
+            History h = it.next();
+            bytes -= h.bytes;
+            payments -= h.payments.size();
+            it.remove();
+        }
+    }
+
+    private void remove(String accountId, History h) {
+        accounts.remove(accountId);
+        bytes -= h.bytes;
+        payments -= h.payments.size();
+    }
+
+    static long weigh(PaymentResponseDTO dto) {
+        return PAYMENT_OVERHEAD
+                + length(dto.getPaymentId()) + length(dto.getFromAccountId()) + length(dto.getToAccountId())
+                + length(dto.getAmount()) + length(dto.getStatus()) + length(dto.getType())
+                + length(dto.getDescription()) + length(dto.getCreatedAt()) + length(dto.getUpdatedAt());
+    }
+
+    private static int length(String s) {
+        return s == null ? 0 : s.length();
+    }
+
+    double hitRatio() {
+        double total = hits.count() + misses.count();
+        return total == 0 ? 0 : hits.count() / total;
+    }
+
+    synchronized long bytes() {
+        return bytes;
+    }
+
+    synchronized int size() {
+        return accounts.size();
+    }
+
+    synchronized long payments() {
+        return payments;
+    }
+
+    public record Page(List<PaymentResponseDTO> payments, boolean more) {
+    }
+
+    // One account's recent payments, newest first
+    private static final class History {
+        private final List<PaymentResponseDTO> payments = new ArrayList<>();
+        // true if this is every payment the account has
+        private boolean complete;
+        private long bytes;
+        // when it was read from the DB - updates since only carry this instance's payments
+        private final long loadedAt;
+
+        private History(boolean complete, long loadedAt) {
+            this.complete = complete;
+            this.loadedAt = loadedAt;
+        }
+
+        void put(PaymentResponseDTO dto, int max) {
+            for (int i = 0; i < payments.size(); i++) {
+                if (payments.get(i).getPaymentId().equals(dto.getPaymentId())) {
+                    bytes += weigh(dto) - weigh(payments.get(i));
+                    payments.set(i, dto);
+                    return;
+                }
+            }
+            int at = 0;
+            while (at < payments.size() && NEWEST_FIRST.compare(payments.get(at), dto) < 0) {
+                at++;
+            }
+            if (at == max) {
+                // older than everything kept - it's past the end of the list
+                complete = false;
+                return;
+            }
+            payments.add(at, dto);
+            bytes += weigh(dto);
+            if (payments.size() > max) {
+                bytes -= weigh(payments.remove(payments.size() - 1));
+                complete = false;
+            }
+        }
+    }
+
+    private static final class Load {
+        private int readers;
+        private long writes;
+    }
+}
@@ -0,0 +1,154 @@
+package com.pm.paymentservice.Service;
+
+import com.pm.paymentservice.Exception.PaymentLaneFullException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+// Serializes payments per source account without serializing the whole service.
+//
+// A fixed array of lanes, each a single thread with its own queue. A payment goes to
+// lane hash(fromAccountId) % lanes, so two payments from the same account always run
+// one after the other, in arrival order, instead of racing each other into row-lock
+// waits and retries in account-service. Different accounts hash to different lanes
+// and run in parallel; an unrelated account sharing a lane only waits behind it.
+//
+// Metrics, tagged with the lane number:
+//   payment.lane.depth - payments queued on the lane right now
+//   payment.lane.wait  - time a payment spent queued before its lane picked it up
+// A lane whose depth or wait stands out is carrying a hot account; the warning log
+// below names it.
+//
+// Each lane blocks on account-service while its payment is out, so the lane count caps
+// how many payments are in flight at once. With spring.threads.virtual.enabled the
+// lanes run on virtual threads, which cost next to nothing parked - payment.lanes.count
+// can then go well past what platform threads would allow.
+@Component
+public class AccountLaneExecutor {
+
+    private static final Logger log = LoggerFactory.getLogger(AccountLaneExecutor.class);
+
+    private final ThreadPoolExecutor[] lanes;
+    private final Timer[] waitTimers;
+    private final long slowWaitNanos;
+    // Which lane, if any, the current thread belongs to
+    private final ThreadLocal<Integer> currentLane = new ThreadLocal<>();
+
+    @Autowired
+    public AccountLaneExecutor(
+            @Value("${payment.lanes.count:32}") int laneCount,
+            @Value("${payment.lanes.queue-capacity:1000}") int queueCapacity,
+            @Value("${payment.lanes.slow-wait:500ms}") Duration slowWait,
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+            MeterRegistry meterRegistry) {
+        this.lanes = new ThreadPoolExecutor[laneCount];
+        this.waitTimers = new Timer[laneCount];
+        this.slowWaitNanos = slowWait.toNanos();
+        for (int i = 0; i < laneCount; i++) {
+            int index = i;
+            ThreadPoolExecutor lane = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(queueCapacity), r -> {
+                        Runnable onLane = () -> {
+                            currentLane.set(index);
+                            r.run();
+                        };
+                        if (virtualThreads) {
+                            // always daemon
+                            return Thread.ofVirtual().name("payment-lane-" + index).unstarted(onLane);
+                        }
+                        Thread t = new Thread(onLane, "payment-lane-" + index);
+                        // shutdown() below drains the lanes; they mustn't hold up JVM exit
+                        t.setDaemon(true);
+                        return t;
+                    });
+            lanes[i] = lane;
+            Gauge.builder("payment.lane.depth", lane, l -> l.getQueue().size())
+                    .tag("lane", String.valueOf(i))
+                    .description("Payments queued on the lane")
+                    .register(meterRegistry);
+            waitTimers[i] = Timer.builder("payment.lane.wait")
+                    .tag("lane", String.valueOf(i))
+                    .description("Time a payment waited for its lane")
+                    .register(meterRegistry);
+        }
+    }
+
+    AccountLaneExecutor(int laneCount, int queueCapacity, Duration slowWait, MeterRegistry meterRegistry) {
+        this(laneCount, queueCapacity, slowWait, false, meterRegistry);
+    }
+
+    // Queues the task on the account's lane and returns straight away. Throws
+    // PaymentLaneFullException right here if the lane can't take it.
+    public <T> CompletableFuture<T> submit(String accountId, Supplier<T> task) {
+        int index = laneOf(accountId);
+        // Already on this lane (a lane task calling back in) - queueing would deadlock
+        if (Integer.valueOf(index).equals(currentLane.get())) {
+            try {
+                return CompletableFuture.completedFuture(task.get());
+            } catch (RuntimeException | Error e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+
+        long queuedAt = System.nanoTime();
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            lanes[index].execute(() -> {
+                long waited = System.nanoTime() - queuedAt;
+                waitTimers[index].record(waited, TimeUnit.NANOSECONDS);
+                if (waited > slowWaitNanos) {
+                    log.warn("Payment for account {} waited {}ms on lane {}",
+                            accountId, TimeUnit.NANOSECONDS.toMillis(waited), index);
+                }
+                try {
+                    future.complete(task.get());
+                } catch (RuntimeException | Error e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            throw new PaymentLaneFullException("Too many payments in flight for account " + accountId);
+        }
+        return future;
+    }
+
+    // The task's own exception, for callers that wait on a submitted future
+    public static RuntimeException unwrap(ExecutionException e) {
+        if (e.getCause() instanceof RuntimeException re) {
+            return re;
+        }
+        if (e.getCause() instanceof Error err) {
+            throw err;
+        }
+        return new IllegalStateException(e.getCause());
+    }
+
+    int laneOf(String accountId) {
+        return Math.floorMod(accountId.hashCode(), lanes.length);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.shutdown();
+        }
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.pm.paymentservice.Service;
+
+import com.pm.paymentservice.DTO.PaymentResponseDTO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+// Bounded LRU of idempotency key → final payment result, sitting in front of the
+// payments.idempotency_key lookup. A client retrying a payment that already finished
+// is answered from memory with one hash lookup - no DB query, no account-service call.
+//
+// Entries expire after the TTL (retries come within minutes, not days) and the least
+// recently used key is dropped once max-size is reached. A miss is never wrong, just
+// slower: the unique column in payments is still the source of truth.
+@Component
+public class IdempotencyCache {
+
+    private record Entry(PaymentResponseDTO result, long expiresAtNanos) {}
+
+    private final long ttlNanos;
+    private final LongSupplier clock;
+    private final LinkedHashMap<String, Entry> entries;
+
+    @Autowired
+    public IdempotencyCache(
+            @Value("${payment.idempotency.cache-size:10000}") int maxSize,
+            @Value("${payment.idempotency.ttl:10m}") Duration ttl) {
+        this(maxSize, ttl, System::nanoTime);
+    }
+
+    IdempotencyCache(int maxSize, Duration ttl, LongSupplier clock) {
+        this.ttlNanos = ttl.toNanos();
+        this.clock = clock;
+        // accessOrder=true turns insertion order into recency order, so the
+        // eldest entry is always the least recently used one
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    public synchronized PaymentResponseDTO get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (clock.getAsLong() - entry.expiresAtNanos() > 0) {
+            entries.remove(key);
+            return null;
+        }
+        return entry.result();
+    }
+
+    public synchronized void put(String key, PaymentResponseDTO result) {
+        entries.put(key, new Entry(result, clock.getAsLong() + ttlNanos));
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+}
@@ -0,0 +1,279 @@
+package com.pm.paymentservice.Service;
+
+import com.pm.paymentservice.DTO.PaymentBatchResultDTO;
+import com.pm.paymentservice.DTO.PaymentRequestDTO;
+import com.pm.paymentservice.DTO.PaymentResponseDTO;
+import com.pm.paymentservice.Enum.PaymentStatus;
+import com.pm.paymentservice.GRPC.AccountServiceGrpcClient;
+import com.pm.paymentservice.Mapper.PaymentMapper;
+import com.pm.paymentservice.Repository.paymentRepo;
+import com.pm.paymentservice.model.Money;
+import com.pm.paymentservice.model.payment;
+import com.pm.proto.ExecuteTransferRequest;
+import com.pm.proto.ExecuteTransferResponse;
+import com.pm.proto.TransferOutcome;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+// Bulk path behind ProcessPaymentBatch (payroll, merchant settlements).
+//
+// Going through processPayment one item at a time costs an INSERT, a transfer round
+// trip and a status UPDATE + outbox INSERT per payment. Here the valid items are
+// grouped by source account and cut into chunks, and each chunk costs:
+//   - one IN query for idempotency keys that were already used
+//   - one transaction with a batched INSERT of the PENDING rows and their
+//     TRANSFER_REQUESTED saga steps
+//   - one ExecuteTransferBatch call (account-service locks each account once)
+//   - one transaction with an UPDATE per status plus the outbox events
+// A result is handed to the caller for every item as soon as its chunk finishes. If
+// the chunk's outcome is unknown (the call timed out after its retry), its payments
+// are answered PENDING and PaymentSagaRecovery finishes them one by one.
+@Service
+public class PaymentBatchService {
+
+    private static final Logger log = LoggerFactory.getLogger(PaymentBatchService.class);
+
+    private final paymentRepo repository;
+    private final AccountServiceGrpcClient accountServiceGrpcClient;
+    private final PaymentOutboxWriter outboxWriter;
+    private final IdempotencyCache idempotencyCache;
+    private final PaymentService paymentService;
+    private final int maxItems;
+    private final int chunkSize;
+
+    public PaymentBatchService(paymentRepo repository,
+                               AccountServiceGrpcClient accountServiceGrpcClient,
+                               PaymentOutboxWriter outboxWriter,
+                               IdempotencyCache idempotencyCache,
+                               PaymentService paymentService,
+                               @Value("${payment.batch.max-items:10000}") int maxItems,
+                               @Value("${payment.batch.chunk-size:500}") int chunkSize) {
+        this.repository = repository;
+        this.accountServiceGrpcClient = accountServiceGrpcClient;
+        this.outboxWriter = outboxWriter;
+        this.idempotencyCache = idempotencyCache;
+        this.paymentService = paymentService;
+        this.maxItems = maxItems;
+        this.chunkSize = chunkSize;
+    }
+
+    public void processBatch(List<PaymentRequestDTO> requests, Consumer<PaymentBatchResultDTO> onResult) {
+        if (requests.size() > maxItems) {
+            throw new IllegalArgumentException("At most " + maxItems + " payments per batch, got " + requests.size());
+        }
+
+        // Invalid items are answered straight away and never become payments.
+        // Valid ones are grouped by source account, keeping submission order within
+        // each group, so one payer's items sit in as few chunks as possible.
+        Map<String, List<Integer>> bySource = new LinkedHashMap<>();
+        Set<String> keysInBatch = new HashSet<>();
+        for (int i = 0; i < requests.size(); i++) {
+            PaymentRequestDTO request = requests.get(i);
+            String error = validate(request, keysInBatch);
+            if (error != null) {
+                onResult.accept(new PaymentBatchResultDTO(i, null, error));
+                continue;
+            }
+            bySource.computeIfAbsent(request.getFromAccountId(), k -> new ArrayList<>()).add(i);
+        }
+        List<Integer> ordered = bySource.values().stream().flatMap(List::stream).toList();
+        log.info("Payment batch: {} items, {} valid, {} source accounts", requests.size(), ordered.size(), bySource.size());
+
+        for (int start = 0; start < ordered.size(); start += chunkSize) {
+            processChunk(requests, ordered.subList(start, Math.min(start + chunkSize, ordered.size())), onResult);
+        }
+    }
+
+    private void processChunk(List<PaymentRequestDTO> requests, List<Integer> indexes,
+                              Consumer<PaymentBatchResultDTO> onResult) {
+        // Keys used by an earlier request are replayed, same as processPayment does
+        Set<String> keys = new HashSet<>();
+        for (int i : indexes) {
+            if (isKeyed(requests.get(i).getIdempotencyKey())) {
+                keys.add(requests.get(i).getIdempotencyKey());
+            }
+        }
+        Map<String, payment> existing = new HashMap<>();
+        if (!keys.isEmpty()) {
+            for (payment p : repository.findByIdempotencyKeyIn(keys)) {
+                existing.put(p.getIdempotencyKey(), p);
+            }
+        }
+
+        List<Integer> fresh = new ArrayList<>(indexes.size());
+        List<payment> payments = new ArrayList<>(indexes.size());
+        for (int i : indexes) {
+            PaymentRequestDTO request = requests.get(i);
+            String key = request.getIdempotencyKey();
+            PaymentResponseDTO seen = isKeyed(key) ? idempotencyCache.get(key) : null;
+            if (seen == null && existing.containsKey(key)) {
+                seen = PaymentMapper.toDTO(existing.get(key));
+            }
+            if (seen != null) {
+                onResult.accept(new PaymentBatchResultDTO(i, seen, null));
+                continue;
+            }
+            fresh.add(i);
+            payments.add(PaymentMapper.toEntity(request));
+        }
+        if (payments.isEmpty()) {
+            return;
+        }
+
+        try {
+            outboxWriter.insertPendingBatch(payments);
+        } catch (DataIntegrityViolationException e) {
+            // A concurrent request claimed one of the keys after the lookup above and the
+            // whole insert rolled back. Rare - let the single-payment path sort out each item.
+            log.warn("Payment batch chunk hit a duplicate idempotency key, processing {} items one by one", fresh.size());
+            for (int i : fresh) {
+                onResult.accept(processSingle(i, requests.get(i)));
+            }
+            return;
+        }
+
+        // Payment ids double as the transfer idempotency keys, as in processPayment
+        List<ExecuteTransferRequest> transfers = new ArrayList<>(payments.size());
+        for (payment p : payments) {
+            transfers.add(ExecuteTransferRequest.newBuilder()
+                    .setFromAccountId(p.getFromAccountId())
+                    .setToAccountId(p.getToAccountId())
+                    .setAmount(p.getAmount().toString())
+                    .setAmountMinor(p.getAmount().minor())
+                    .setAmountScale(Money.SCALE)
+                    .setIdempotencyKey(p.getId().toString())
+                    .build());
+        }
+
+        List<ExecuteTransferResponse> outcomes;
+        try {
+            outcomes = executeTransferBatch(transfers);
+        } catch (StatusRuntimeException e) {
+            if (!AccountServiceGrpcClient.rejected(e)) {
+                // Any of the transfers may have been applied
+                leavePending(payments, fresh, onResult, "Transfer batch outcome unknown: " + e.getStatus().getCode());
+                return;
+            }
+            log.error("Payment batch chunk of {} failed during transfer: {}", payments.size(), e.getStatus());
+            List<String> errors = new ArrayList<>(payments.size());
+            for (payment p : payments) {
+                p.setStatus(PaymentStatus.FAILED);
+                errors.add("Transfer failed: " + e.getStatus().getCode());
+            }
+            finish(payments, fresh, errors, onResult);
+            return;
+        }
+        if (outcomes.size() != payments.size()) {
+            // results[i] is supposed to answer transfers[i]; without that there's no
+            // telling which went through
+            leavePending(payments, fresh, onResult,
+                    "Transfer batch returned " + outcomes.size() + " results for " + payments.size() + " transfers");
+            return;
+        }
+
+        List<String> errors = new ArrayList<>(payments.size());
+        for (int j = 0; j < payments.size(); j++) {
+            ExecuteTransferResponse outcome = outcomes.get(j);
+            boolean completed = outcome.getOutcome() == TransferOutcome.TRANSFER_COMPLETED;
+            payments.get(j).setStatus(completed ? PaymentStatus.COMPLETED : PaymentStatus.FAILED);
+            errors.add(completed ? null : outcome.getReason());
+        }
+        finish(payments, fresh, errors, onResult);
+    }
+
+    // Every payment has its final status: written with its event, cached, answered
+    private void finish(List<payment> payments, List<Integer> fresh, List<String> errors,
+                        Consumer<PaymentBatchResultDTO> onResult) {
+        outboxWriter.updateStatusesWithEvents(payments);
+
+        for (int j = 0; j < payments.size(); j++) {
+            payment p = payments.get(j);
+            PaymentResponseDTO dto = PaymentMapper.toDTO(p);
+            if (p.getIdempotencyKey() != null) {
+                idempotencyCache.put(p.getIdempotencyKey(), dto);
+            }
+            onResult.accept(new PaymentBatchResultDTO(fresh.get(j), dto, errors.get(j)));
+        }
+    }
+
+    // The payments stay PENDING at TRANSFER_REQUESTED, which insertPendingBatch already
+    // logged, so PaymentSagaRecovery repeats each transfer with its payment-id key once
+    // it's stale. Nothing is cached: a retry of the same key has to see the outcome
+    // recovery reaches, not this PENDING.
+    private void leavePending(List<payment> payments, List<Integer> fresh,
+                              Consumer<PaymentBatchResultDTO> onResult, String reason) {
+        log.warn("Payment batch chunk of {} left PENDING for recovery: {}", payments.size(), reason);
+        for (int j = 0; j < payments.size(); j++) {
+            onResult.accept(new PaymentBatchResultDTO(fresh.get(j), PaymentMapper.toDTO(payments.get(j)), null));
+        }
+    }
+
+    // Same retry rule as processPayment: once, and only when the call may or may not
+    // have reached account-service. The payment-id keys make a repeat a replay.
+    private List<ExecuteTransferResponse> executeTransferBatch(List<ExecuteTransferRequest> transfers) {
+        try {
+            return accountServiceGrpcClient.executeTransferBatch(transfers);
+        } catch (StatusRuntimeException e) {
+            Status.Code code = e.getStatus().getCode();
+            if (code != Status.Code.UNAVAILABLE && code != Status.Code.DEADLINE_EXCEEDED) {
+                throw e;
+            }
+            log.warn("Transfer batch of {} returned {}, retrying with same keys", transfers.size(), code);
+            return accountServiceGrpcClient.executeTransferBatch(transfers);
+        }
+    }
+
+    private PaymentBatchResultDTO processSingle(int index, PaymentRequestDTO request) {
+        try {
+            return new PaymentBatchResultDTO(index, paymentService.processPayment(request), null);
+        } catch (RuntimeException e) {
+            return new PaymentBatchResultDTO(index, null, e.getMessage());
+        }
+    }
+
+    // Returns why the item can't be processed, or null if it can
+    private String validate(PaymentRequestDTO request, Set<String> keysInBatch) {
+        if (isBlank(request.getFromAccountId()) || isBlank(request.getToAccountId())) {
+            return "fromAccountId and toAccountId are required";
+        }
+        if (request.getFromAccountId().equals(request.getToAccountId())) {
+            return "Source and destination account must differ";
+        }
+        if (request.getType() == null) {
+            return "type is required";
+        }
+        // null when the caller's amount didn't parse (see PaymentGrpcService)
+        if (request.getAmount() == null) {
+            return "Amount is missing or not a number";
+        }
+        if (request.getAmount().signum() <= 0) {
+            return "Amount must be positive: " + request.getAmount();
+        }
+        if (isKeyed(request.getIdempotencyKey()) && !keysInBatch.add(request.getIdempotencyKey())) {
+            return "Duplicate idempotency key in batch: " + request.getIdempotencyKey();
+        }
+        return null;
+    }
+
+    private static boolean isKeyed(String key) {
+        return key != null && !key.isBlank();
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+}
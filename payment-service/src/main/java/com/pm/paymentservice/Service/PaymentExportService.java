@@ -0,0 +1,255 @@
+package com.pm.paymentservice.Service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pm.paymentservice.Enum.ExportFormat;
+import com.pm.paymentservice.Repository.paymentRepo;
+import com.pm.paymentservice.model.Money;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// Payment export for reconciliation, CSV or NDJSON, in constant memory however many
+// payments there are.
+//
+// The rows come through a forward-only JDBC cursor: inside a read-only transaction, with
+// a fetch size set, the Postgres driver pulls payment.export.fetch-size rows per round
+// trip instead of the whole result, and each row is written to the output as soon as it
+// is read. Nothing is mapped to an entity or kept - paymentRepo would hydrate each row
+// into the persistence context - so heap holds one fetch and the write buffer whether
+// the export is 50 rows or 50 million.
+//
+// Filters: a created_at range [from, to), and optionally an account on either side of
+// the payment (see paymentRepo.EXPORT / EXPORT_BY_ACCOUNT). Rows come unsorted.
+//
+// The transaction keeps one snapshot for the whole export, so the file is consistent.
+// It also holds back VACUUM on payments until the export is done.
+//
+// Metrics:
+//   payment.export.rows - rows written, tagged format
+@Service
+public class PaymentExportService {
+
+    private static final Logger log = LoggerFactory.getLogger(PaymentExportService.class);
+    private static final String CSV_HEADER =
+            "payment_id,from_account_id,to_account_id,amount,status,type,description,created_at,updated_at";
+
+    private final NamedParameterJdbcTemplate jdbc;
+    private final TransactionTemplate readOnly;
+    private final JsonFactory jsonFactory;
+    private final MeterRegistry meterRegistry;
+
+    public PaymentExportService(DataSource dataSource,
+                                PlatformTransactionManager transactionManager,
+                                ObjectMapper objectMapper,
+                                MeterRegistry meterRegistry,
+                                @Value("${payment.export.fetch-size:1000}") int fetchSize) {
+        JdbcTemplate template = new JdbcTemplate(dataSource);
+        // Without a fetch size the driver reads the entire result set into memory first
+        template.setFetchSize(fetchSize);
+        this.jdbc = new NamedParameterJdbcTemplate(template);
+        // The driver only uses a cursor with autocommit off, i.e. inside a transaction
+        this.readOnly = new TransactionTemplate(transactionManager);
+        this.readOnly.setReadOnly(true);
+        this.jsonFactory = objectMapper.getFactory();
+        this.meterRegistry = meterRegistry;
+    }
+
+    // Writes every payment created in [from, to) - touching accountId if given - to out,
+    // and returns how many. Without from it starts at the first payment, without to it
+    // runs to the last one committed. out is flushed, not closed. Stops with
+    // UncheckedIOException if out does (the client went away).
+    public long export(ExportFormat format, String accountId, LocalDateTime from, LocalDateTime to, OutputStream out) {
+        boolean byAccount = accountId != null && !accountId.isBlank();
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("createdFrom", from != null ? from : LocalDate.EPOCH.atStartOfDay())
+                // anything committed by now; the slack covers clocks between instances
+                .addValue("createdTo", to != null ? to : LocalDateTime.now().plusDays(1));
+        if (byAccount) {
+            params.addValue("accountId", accountId);
+        }
+        long started = System.nanoTime();
+        Long rows = readOnly.execute(status -> {
+            RowWriter writer = format == ExportFormat.CSV ? new CsvWriter(out) : new NdjsonWriter(out, jsonFactory);
+            try {
+                writer.begin();
+                jdbc.query(byAccount ? paymentRepo.EXPORT_BY_ACCOUNT : paymentRepo.EXPORT, params,
+                        (RowCallbackHandler) writer::write);
+                writer.finish();
+                return writer.rows();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (UncheckedIOException e) {
+                log.info("Payment export stopped after {} rows: {}", writer.rows(), e.getMessage());
+                throw e;
+            }
+        });
+        meterRegistry.counter("payment.export.rows", "format", format.name()).increment(rows);
+        log.info("Exported {} payments as {} in {}ms", rows, format,
+                (System.nanoTime() - started) / 1_000_000);
+        return rows;
+    }
+
+    // One row per call, straight from the cursor. IO failures are thrown unchecked so
+    // they get through JdbcTemplate and end the query.
+    private abstract static class RowWriter {
+        private long rows;
+
+        void begin() throws IOException {
+        }
+
+        final void write(ResultSet rs) throws SQLException {
+            try {
+                writeRow(rs);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            rows++;
+        }
+
+        abstract void writeRow(ResultSet rs) throws SQLException, IOException;
+
+        abstract void finish() throws IOException;
+
+        long rows() {
+            return rows;
+        }
+
+        // Columns in paymentRepo.EXPORT_COLUMNS order
+        static String amount(ResultSet rs) throws SQLException {
+            return Money.of(rs.getBigDecimal(4)).toString();
+        }
+
+        static String timestamp(ResultSet rs, int column) throws SQLException {
+            LocalDateTime t = rs.getObject(column, LocalDateTime.class);
+            return t == null ? null : t.toString();
+        }
+    }
+
+    private static final class CsvWriter extends RowWriter {
+        private final Writer out;
+
+        CsvWriter(OutputStream out) {
+            this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        }
+
+        @Override
+        void begin() throws IOException {
+            out.write(CSV_HEADER);
+            out.write('\n');
+        }
+
+        @Override
+        void writeRow(ResultSet rs) throws SQLException, IOException {
+            out.write(rs.getString(1));
+            out.write(',');
+            text(rs.getString(2));
+            out.write(',');
+            text(rs.getString(3));
+            out.write(',');
+            out.write(amount(rs));
+            out.write(',');
+            out.write(rs.getString(5));
+            out.write(',');
+            out.write(rs.getString(6));
+            out.write(',');
+            text(rs.getString(7));
+            out.write(',');
+            out.write(timestamp(rs, 8));
+            out.write(',');
+            String updated = timestamp(rs, 9);
+            if (updated != null) {
+                out.write(updated);
+            }
+            out.write('\n');
+        }
+
+        // RFC 4180 quoting. Text a spreadsheet would run as a formula gets a leading ' -
+        // descriptions are user input.
+        private void text(String value) throws IOException {
+            if (value == null || value.isEmpty()) {
+                return;
+            }
+            char first = value.charAt(0);
+            boolean formula = first == '=' || first == '+' || first == '-' || first == '@'
+                    || first == '\t' || first == '\r';
+            boolean quote = formula || value.indexOf(',') >= 0 || value.indexOf('"') >= 0
+                    || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0;
+            if (!quote) {
+                out.write(value);
+                return;
+            }
+            out.write('"');
+            if (formula) {
+                out.write('\'');
+            }
+            out.write(value.replace("\"", "\"\""));
+            out.write('"');
+        }
+
+        @Override
+        void finish() throws IOException {
+            out.flush();
+        }
+    }
+
+    // Same field names as PaymentResponseDTO in JSON
+    private static final class NdjsonWriter extends RowWriter {
+        private final JsonGenerator json;
+
+        NdjsonWriter(OutputStream out, JsonFactory factory) {
+            try {
+                this.json = factory.createGenerator(out);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            // the servlet container owns the stream
+            json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            // one object per line, and no space in between
+            json.setRootValueSeparator(null);
+        }
+
+        @Override
+        void writeRow(ResultSet rs) throws SQLException, IOException {
+            json.writeStartObject();
+            json.writeStringField("paymentId", rs.getString(1));
+            json.writeStringField("fromAccountId", rs.getString(2));
+            json.writeStringField("toAccountId", rs.getString(3));
+            json.writeStringField("amount", amount(rs));
+            json.writeStringField("status", rs.getString(5));
+            json.writeStringField("type", rs.getString(6));
+            json.writeStringField("description", rs.getString(7));
+            json.writeStringField("createdAt", timestamp(rs, 8));
+            json.writeStringField("updatedAt", timestamp(rs, 9));
+            json.writeEndObject();
+            json.writeRaw('\n');
+        }
+
+        @Override
+        void finish() throws IOException {
+            json.flush();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.pm.paymentservice.Service;
+
+import com.pm.paymentservice.Enum.PaymentStatus;
+import com.pm.paymentservice.Enum.SagaState;
+import com.pm.paymentservice.Repository.paymentOutboxRepo;
+import com.pm.paymentservice.Repository.paymentRepo;
+import com.pm.paymentservice.Repository.paymentSagaStepRepo;
+import com.pm.paymentservice.model.payment;
+import com.pm.paymentservice.model.paymentOutbox;
+import com.pm.paymentservice.model.paymentSagaStep;
+import jakarta.persistence.EntityManager;
+import lombok.AllArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+// Persists payment status changes together with what has to commit alongside them:
+// the Kafka event announcing a final status and the saga step that got the payment
+// there. Kept separate from PaymentService so the transaction wraps only these writes -
+// the account-service gRPC call in processPayment must never run inside a DB transaction.
+@Service
+@AllArgsConstructor
+public class PaymentOutboxWriter {
+
+    private final paymentRepo repository;
+    private final paymentOutboxRepo outboxRepository;
+    private final paymentSagaStepRepo sagaStepRepository;
+    private final PaymentWatchers watchers;
+    private final AccountHistoryCache history;
+    private final EntityManager entityManager;
+
+    // One saga step of one payment, as queued by PaymentWriteCoalescer. insert is the
+    // PENDING row itself; otherwise the payment's current status is written. A final
+    // step also gets its event. detail is kept on the saga step, e.g. why it failed.
+    public record Write(payment payment, boolean insert, SagaState step, String detail) {
+    }
+
+    // Everything queued by ProcessPayment calls in the last few milliseconds, as one
+    // transaction: one UPDATE per status, then the new payments, saga steps and events
+    // as JDBC batches. A batch of any size costs a handful of round trips.
+    @Transactional
+    public void writeBatch(List<Write> writes) {
+        LocalDateTime now = LocalDateTime.now();
+        Map<PaymentStatus, List<UUID>> byStatus = new EnumMap<>(PaymentStatus.class);
+        List<payment> payments = new ArrayList<>(writes.size());
+        List<paymentOutbox> events = new ArrayList<>();
+        List<paymentSagaStep> steps = new ArrayList<>(writes.size());
+        for (Write w : writes) {
+            payment p = w.payment();
+            if (w.insert()) {
+                // assigned id, so persist queues a plain INSERT - no select first
+                entityManager.persist(p);
+            } else {
+                p.setUpdatedAt(now);
+                byStatus.computeIfAbsent(p.getStatus(), s -> new ArrayList<>()).add(p.getId());
+            }
+            if (w.step().isFinal()) {
+                events.add(toEvent(p, now));
+            }
+            steps.add(PaymentSagaLog.step(p.getId(), w.step(), w.detail()));
+            payments.add(p);
+        }
+        byStatus.forEach((status, ids) -> repository.updateStatus(ids, status, now));
+        outboxRepository.saveAll(events);
+        sagaStepRepository.saveAll(steps);
+        watchers.publishAfterCommit(payments);
+        history.updateAfterCommit(payments);
+    }
+
+    // The PENDING rows of a ProcessPaymentBatch chunk, each logged as having requested
+    // its transfer in the same transaction. A chunk whose outcome never comes back is
+    // then resumed payment by payment by PaymentSagaRecovery, like a single payment.
+    @Transactional
+    public void insertPendingBatch(List<payment> payments) {
+        repository.saveAll(payments);
+        List<paymentSagaStep> steps = new ArrayList<>(payments.size());
+        for (payment p : payments) {
+            steps.add(PaymentSagaLog.step(p.getId(), SagaState.TRANSFER_REQUESTED, null));
+        }
+        sagaStepRepository.saveAll(steps);
+    }
+
+    // Batch form for ProcessPaymentBatch. The rows were inserted earlier in the same
+    // request, so the status change goes out as one UPDATE per status rather than a
+    // merge (SELECT + UPDATE) per payment. Statuses are read from the passed entities.
+    @Transactional
+    public void updateStatusesWithEvents(List<payment> payments) {
+        LocalDateTime now = LocalDateTime.now();
+        Map<PaymentStatus, List<UUID>> byStatus = new EnumMap<>(PaymentStatus.class);
+        List<paymentOutbox> events = new ArrayList<>(payments.size());
+        List<paymentSagaStep> steps = new ArrayList<>(payments.size());
+        for (payment p : payments) {
+            p.setUpdatedAt(now);
+            byStatus.computeIfAbsent(p.getStatus(), s -> new ArrayList<>()).add(p.getId());
+            events.add(toEvent(p, now));
+            steps.add(PaymentSagaLog.step(p.getId(), finalState(p), null));
+        }
+        byStatus.forEach((status, ids) -> repository.updateStatus(ids, status, now));
+        outboxRepository.saveAll(events);
+        sagaStepRepository.saveAll(steps);
+        watchers.publishAfterCommit(payments);
+        history.updateAfterCommit(payments);
+    }
+
+    private static SagaState finalState(payment p) {
+        return switch (p.getStatus()) {
+            case COMPLETED -> SagaState.COMPLETED;
+            case FAILED -> SagaState.FAILED;
+            default -> throw new IllegalArgumentException("Payment " + p.getId() + " is not final: " + p.getStatus());
+        };
+    }
+
+    private paymentOutbox toEvent(payment p, LocalDateTime occurredAt) {
+        paymentOutbox event = new paymentOutbox();
+        event.setPaymentId(p.getId());
+        event.setFromAccountId(p.getFromAccountId());
+        event.setToAccountId(p.getToAccountId());
+        event.setAmount(p.getAmount());
+        event.setStatus(p.getStatus());
+        event.setType(p.getType());
+        event.setOccurredAt(occurredAt);
+        return event;
+    }
+}
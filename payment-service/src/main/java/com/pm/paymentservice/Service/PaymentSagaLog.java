@@ -0,0 +1,48 @@
+package com.pm.paymentservice.Service;
+
+import com.pm.paymentservice.Enum.SagaState;
+import com.pm.paymentservice.Repository.paymentSagaStepRepo;
+import com.pm.paymentservice.model.paymentSagaStep;
+import lombok.AllArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.util.Comparator;
+import java.util.UUID;
+
+// Writes and reads the payment_saga_steps log. Each transition is checked against
+// SagaState before it's recorded, so a bug that tries to e.g. complete a saga that is
+// compensating fails loudly instead of leaving a log that can't be resumed from.
+// Final steps are written by PaymentOutboxWriter, in the same transaction as the
+// payment's final status and event.
+@Service
+@AllArgsConstructor
+public class PaymentSagaLog {
+
+    private final paymentSagaStepRepo stepRepository;
+
+    public void record(UUID paymentId, SagaState from, SagaState to, String detail) {
+        if (!from.canMoveTo(to)) {
+            throw new IllegalStateException("Payment " + paymentId + ": saga can't move from " + from + " to " + to);
+        }
+        stepRepository.save(step(paymentId, to, detail));
+    }
+
+    // No rows yet means the saga never got past saving its PENDING payment. Every
+    // transition moves to a later SagaState, so the furthest state logged is the
+    // current one - step ids don't say which came last once several instances wrote them.
+    public SagaState current(UUID paymentId) {
+        return stepRepository.findByPaymentIdOrderById(paymentId).stream()
+                .map(paymentSagaStep::getState)
+                .max(Comparator.naturalOrder())
+                .orElse(SagaState.STARTED);
+    }
+
+    static paymentSagaStep step(UUID paymentId, SagaState state, String detail) {
+        paymentSagaStep step = new paymentSagaStep();
+        step.setPaymentId(paymentId);
+        step.setState(state);
+        // the column is 500 wide; reasons from account-service are free text
+        step.setDetail(detail != null && detail.length() > 500 ? detail.substring(0, 500) : detail);
+        return step;
+    }
+}
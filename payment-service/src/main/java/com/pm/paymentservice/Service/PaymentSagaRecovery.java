@@ -0,0 +1,79 @@
+package com.pm.paymentservice.Service;
+
+import com.pm.paymentservice.Enum.PaymentStatus;
+import com.pm.paymentservice.Exception.PaymentLaneFullException;
+import com.pm.paymentservice.Repository.paymentRepo;
+import com.pm.paymentservice.model.payment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Finishes payments whose saga stopped part way - the instance running it died, or
+// the caller timed out and the lane was lost on shutdown. Anything still PENDING after
+// stale-after is handed back to its account's lane, where PaymentService.resume picks
+// it up from the last step in payment_saga_steps. Running on the lane keeps it in
+// order with new payments for the same account. stale-after has to stay well above
+// response-timeout plus a normal lane wait, or a saga still queued on another
+// instance gets started twice (harmless for the money, but it logs the steps twice).
+@Service
+public class PaymentSagaRecovery {
+
+    private static final Logger log = LoggerFactory.getLogger(PaymentSagaRecovery.class);
+
+    private final paymentRepo repository;
+    private final PaymentService paymentService;
+    private final AccountLaneExecutor accountLanes;
+    private final Duration staleAfter;
+    private final int batchSize;
+
+    public PaymentSagaRecovery(paymentRepo repository,
+                               PaymentService paymentService,
+                               AccountLaneExecutor accountLanes,
+                               @Value("${payment.saga.stale-after:30s}") Duration staleAfter,
+                               @Value("${payment.saga.recovery-batch-size:100}") int batchSize) {
+        this.repository = repository;
+        this.paymentService = paymentService;
+        this.accountLanes = accountLanes;
+        this.staleAfter = staleAfter;
+        this.batchSize = batchSize;
+    }
+
+    // One batch per tick; what's left over is picked up on the next one
+    @Scheduled(fixedDelayString = "${payment.saga.recovery-interval-ms:10000}")
+    public void recover() {
+        resumeStalled();
+    }
+
+    int resumeStalled() {
+        List<payment> stuck = repository.findByStatusAndCreatedAtBeforeOrderByCreatedAtAsc(
+                PaymentStatus.PENDING, LocalDateTime.now().minus(staleAfter), PageRequest.of(0, batchSize));
+        int resumed = 0;
+        for (payment p : stuck) {
+            try {
+                accountLanes.submit(p.getFromAccountId(), () -> {
+                    paymentService.resume(p.getId());
+                    return null;
+                }).whenComplete((ignored, e) -> {
+                    if (e != null) {
+                        log.error("Could not resume payment {}", p.getId(), e);
+                    }
+                });
+                resumed++;
+            } catch (PaymentLaneFullException e) {
+                // The lane is busy with live traffic - try again next tick
+                log.warn("Lane full, deferring recovery of payment {}", p.getId());
+            }
+        }
+        if (resumed > 0) {
+            log.info("Resuming {} stalled payments", resumed);
+        }
+        return resumed;
+    }
+}
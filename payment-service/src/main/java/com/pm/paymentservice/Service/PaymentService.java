@@ -1,10 +1,10 @@
 package com.pm.paymentservice.Service;
 
-import com.pm.paymentservice.DTO.PaymentEventDTO;
+import com.pm.paymentservice.DTO.PaymentPageDTO;
 import com.pm.paymentservice.DTO.PaymentRequestDTO;
 import com.pm.paymentservice.DTO.PaymentResponseDTO;
 import com.pm.paymentservice.Enum.PaymentStatus;
-import com.pm.paymentservice.Kafka.PaymentEventProducer;
+import com.pm.paymentservice.Enum.SagaState;
 import com.pm.paymentservice.Exception.AccountNotActiveException;
 import com.pm.paymentservice.Exception.InsufficientFundsException;
 import com.pm.paymentservice.Exception.PaymentNotFoundException;
@@ -12,26 +12,78 @@ import com.pm.paymentservice.GRPC.AccountServiceGrpcClient;
 import com.pm.paymentservice.Mapper.PaymentMapper;
 import com.pm.paymentservice.Repository.paymentRepo;
 import com.pm.paymentservice.model.payment;
-import com.pm.proto.Account;
+import com.pm.proto.ExecuteTransferResponse;
+import com.pm.proto.HoldResponse;
+import io.grpc.Status;
 import io.grpc.StatusRuntimeException;
-import lombok.AllArgsConstructor;
+import jakarta.persistence.EntityManager;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 @Service
-@AllArgsConstructor
 public class PaymentService {
 
     private static final Logger log = LoggerFactory.getLogger(PaymentService.class);
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
 
     private final paymentRepo repository;
     private final AccountServiceGrpcClient accountServiceGrpcClient;
-    private final PaymentEventProducer eventProducer;
+    private final PaymentWriteCoalescer writes;
+    private final IdempotencyCache idempotencyCache;
+    private final EntityManager entityManager;
+    private final AccountLaneExecutor accountLanes;
+    private final PaymentSettlementService settlement;
+    private final PaymentSagaLog sagaLog;
+    private final PaymentVelocityGuard velocity;
+    private final AccountHistoryCache history;
+    private final Duration responseTimeout;
+
+    public PaymentService(paymentRepo repository,
+                          AccountServiceGrpcClient accountServiceGrpcClient,
+                          PaymentWriteCoalescer writes,
+                          IdempotencyCache idempotencyCache,
+                          EntityManager entityManager,
+                          AccountLaneExecutor accountLanes,
+                          PaymentSettlementService settlement,
+                          PaymentSagaLog sagaLog,
+                          PaymentVelocityGuard velocity,
+                          AccountHistoryCache history,
+                          @Value("${payment.saga.response-timeout:5s}") Duration responseTimeout) {
+        this.repository = repository;
+        this.accountServiceGrpcClient = accountServiceGrpcClient;
+        this.writes = writes;
+        this.idempotencyCache = idempotencyCache;
+        this.entityManager = entityManager;
+        this.accountLanes = accountLanes;
+        this.settlement = settlement;
+        this.sagaLog = sagaLog;
+        this.velocity = velocity;
+        this.history = history;
+        this.responseTimeout = responseTimeout;
+    }
 
     public List<PaymentResponseDTO> getAllPayments() {
         return repository.findAll().stream()
@@ -45,100 +97,355 @@ public class PaymentService {
         return PaymentMapper.toDTO(p);
     }
 
-    public List<PaymentResponseDTO> getPaymentsByAccount(String accountId) {
-        // Fetches all payments where this account was the sender or the receiver.
-        // The same value passed twice bc the repo query uses OR across two columns
-        return repository.findByFromAccountIdOrToAccountId(accountId, accountId)
-                .stream()
-                .map(PaymentMapper::toDTO)
-                .toList();
+    // One page of an account's history, newest first. The page token is an opaque
+    // cursor holding the (createdAt, id) of the last payment on the previous page.
+    // First pages come from AccountHistoryCache when they can.
+    public PaymentPageDTO getPaymentsByAccount(String accountId, int pageSize, String pageToken) {
+        int size = pageSize(pageSize);
+        // One extra row says whether there's a next page without a COUNT query
+        List<payment> rows;
+        if (pageToken == null || pageToken.isBlank()) {
+            AccountHistoryCache.Page cached = history.firstPage(accountId, size);
+            if (cached != null) {
+                return toPage(cached.payments(), cached.more());
+            }
+            if (size <= history.perAccount()) {
+                return loadFirstPage(accountId, size);
+            }
+            rows = repository.findPageByAccount(accountId, size + 1);
+        } else {
+            String[] cursor = decodeCursor(pageToken);
+            rows = repository.findPageByAccountBefore(accountId,
+                    LocalDateTime.parse(cursor[0]), UUID.fromString(cursor[1]), size + 1);
+        }
+        boolean more = rows.size() > size;
+        List<payment> page = more ? rows.subList(0, size) : rows;
+        return toPage(page.stream().map(PaymentMapper::toDTO).toList(), more);
     }
 
-    public PaymentResponseDTO processPayment(PaymentRequestDTO request) {
-        // Fetch both accounts via gRPC
-        // if either account doesn't exist, StatusRuntimeException is thrown here
-        // and propagates up to the GlobalExceptionHandler as a 500.
-        Account fromAccount;
-        Account toAccount;
+    // A cache miss reads as much as the cache holds, not just the page, and caches it
+    private PaymentPageDTO loadFirstPage(String accountId, int size) {
+        int keep = history.perAccount();
+        long stamp = history.beginLoad(accountId);
+        List<PaymentResponseDTO> recent = null;
+        boolean complete = false;
         try {
-            fromAccount = accountServiceGrpcClient.getAccountById(request.getFromAccountId());
-            toAccount = accountServiceGrpcClient.getAccountById(request.getToAccountId());
-        } catch (StatusRuntimeException e) {
-            throw new RuntimeException("Could not retrieve account details: " + e.getStatus().getDescription());
+            List<payment> rows = repository.findPageByAccount(accountId, keep + 1);
+            complete = rows.size() <= keep;
+            recent = rows.stream().limit(keep).map(PaymentMapper::toDTO).toList();
+        } finally {
+            history.finishLoad(accountId, stamp, recent, complete);
+        }
+        int n = Math.min(size, recent.size());
+        return toPage(recent.subList(0, n), n < recent.size() || !complete);
+    }
+
+    private static PaymentPageDTO toPage(List<PaymentResponseDTO> page, boolean more) {
+        return new PaymentPageDTO(page, more ? encodeCursor(page.get(page.size() - 1)) : null);
+    }
+
+    // Walks the account's entire history through one DB cursor and hands it to the
+    // caller a page at a time. Each entity is detached once mapped, so memory stays at
+    // about one page however long the history is. The transaction keeps the cursor open.
+    @Transactional(readOnly = true)
+    public void streamPaymentsByAccount(String accountId, int pageSize, Consumer<List<PaymentResponseDTO>> onPage) {
+        int size = pageSize(pageSize);
+        List<PaymentResponseDTO> page = new ArrayList<>(size);
+        try (Stream<payment> rows = repository.streamByAccount(accountId)) {
+            Iterator<payment> it = rows.iterator();
+            while (it.hasNext()) {
+                payment p = it.next();
+                page.add(PaymentMapper.toDTO(p));
+                entityManager.detach(p);
+                if (page.size() == size) {
+                    onPage.accept(page);
+                    page = new ArrayList<>(size);
+                }
+            }
+        }
+        if (!page.isEmpty()) {
+            onPage.accept(page);
+        }
+    }
+
+    private static int pageSize(int requested) {
+        if (requested <= 0) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        return Math.min(requested, MAX_PAGE_SIZE);
+    }
+
+    private static String encodeCursor(PaymentResponseDTO last) {
+        String raw = last.getCreatedAt() + "|" + last.getPaymentId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String[] decodeCursor(String pageToken) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(pageToken), StandardCharsets.UTF_8).split("\\|");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Invalid page token");
+            }
+            // parse here so a tampered token fails as a bad argument, not a DB error
+            LocalDateTime.parse(parts[0]);
+            UUID.fromString(parts[1]);
+            return parts;
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid page token");
+        }
+    }
+
+    // Runs the payment as a saga (see SagaState). The PENDING row is saved on the
+    // calling thread, already logged as having requested its transfer or hold - from
+    // then on the payment is durable and PaymentSagaRecovery will finish it even if this
+    // instance dies. Every DB write goes through PaymentWriteCoalescer, which commits
+    // concurrent payments' writes together. The steps themselves run on the source
+    // account's lane (see AccountLaneExecutor), so one account's payments go through
+    // in arrival order instead of contending on its row lock in account-service.
+    // The caller waits up to payment.saga.response-timeout for the outcome and
+    // otherwise gets the PENDING payment back while the saga carries on. An async
+    // request doesn't wait at all - it follows the payment with WatchPayment or
+    // GetPaymentById instead.
+    public PaymentResponseDTO processPayment(PaymentRequestDTO request) {
+        String key = request.getIdempotencyKey();
+        if (key == null || key.isBlank()) {
+            return start(request);
         }
 
-        //Validate both accounts are ACTIVE
-        // fROZEN or CLOSED accounts cannot send or receive payments.
-        if (!fromAccount.getStatus().name().equals("ACTIVE")) {
-            throw new AccountNotActiveException("Source account is not active: " + request.getFromAccountId());
+        // A retry of a finished payment: answered from memory, nothing else is touched
+        PaymentResponseDTO seen = idempotencyCache.get(key);
+        if (seen != null) {
+            log.info("Payment replayed from cache for idempotency key {}", key);
+            return seen;
         }
-        if (!toAccount.getStatus().name().equals("ACTIVE")) {
-            throw new AccountNotActiveException("Destination account is not active: " + request.getToAccountId());
+        // Cache miss (evicted, expired, other instance, restart) - the DB still knows
+        Optional<payment> existing = repository.findByIdempotencyKey(key);
+        if (existing.isPresent()) {
+            log.info("Payment {} replayed for idempotency key {}", existing.get().getId(), key);
+            return remember(key, PaymentMapper.toDTO(existing.get()));
         }
+        return remember(key, start(request));
+    }
 
-        // Validate sufficient balance
-        BigDecimal amount = new BigDecimal(request.getAmount());
-        BigDecimal fromBalance = new BigDecimal(fromAccount.getBalance());
-        if (fromBalance.compareTo(amount) < 0) {
-            throw new InsufficientFundsException(
-                    "Insufficient funds. Available: " + fromBalance + ", Required: " + amount);
+    // Only final results are cached - a PENDING or AUTHORIZED payment still has an
+    // outcome coming
+    private PaymentResponseDTO remember(String key, PaymentResponseDTO result) {
+        if (PaymentStatus.COMPLETED.name().equals(result.getStatus())
+                || PaymentStatus.FAILED.name().equals(result.getStatus())) {
+            idempotencyCache.put(key, result);
         }
+        return result;
+    }
 
+    private PaymentResponseDTO start(PaymentRequestDTO request) {
         // Save payment as PENDING
         // record the payment first in case anything fails after this point,
         // we update status to failed so there's always an audit trail.
+        // The assigned id doubles as the transfer's idempotency key.
         payment p = PaymentMapper.toEntity(request);
-        repository.save(p);
+        // Over a velocity limit: turned away before anything is stored or sent
+        velocity.check(p.getFromAccountId(), p.getType(), p.getAmount());
+        SagaState firstStep = settlement.usesHolds() ? SagaState.HOLD_REQUESTED : SagaState.TRANSFER_REQUESTED;
+        try {
+            writes.insertPending(p, firstStep);
+        } catch (DataIntegrityViolationException e) {
+            // Two retries with the same key raced past the lookup above and the other
+            // one inserted first - that payment is the real one, hand it back.
+            if (p.getIdempotencyKey() == null) {
+                throw e;
+            }
+            return repository.findByIdempotencyKey(p.getIdempotencyKey())
+                    .map(PaymentMapper::toDTO)
+                    .orElseThrow(() -> e);
+        }
         log.info("Payment {} saved as PENDING", p.getId());
 
-        // Debit source, Credit destination
-        // This is a compensating transaction pattern:
-        // If the credit fails after the debit succeeded, we reverse the debit.
-        // This is a simplified Saga, in production you'd use a proper Saga orchestrator
-        // or Kafka-based eventual consistency.
+        CompletableFuture<PaymentResponseDTO> outcome =
+                accountLanes.submit(p.getFromAccountId(), () -> runSaga(p, firstStep));
+        if (request.isAsync()) {
+            outcome.whenComplete((result, e) -> {
+                if (e != null) {
+                    // already recorded on the payment; nobody is waiting for the exception
+                    log.info("Async payment {} did not complete: {}", p.getId(), e.getMessage());
+                }
+            });
+            return PaymentMapper.toDTO(p);
+        }
+        try {
+            return outcome.get(responseTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.info("Payment {} still in progress after {}, returning PENDING", p.getId(), responseTimeout);
+            return PaymentMapper.toDTO(p);
+        } catch (ExecutionException e) {
+            throw AccountLaneExecutor.unwrap(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return PaymentMapper.toDTO(p);
+        }
+    }
+
+    // Picks a PENDING payment back up from its last logged step. Called by
+    // PaymentSagaRecovery on the payment's lane; every step is keyed by the payment id,
+    // so repeating the last request is safe whether or not it reached account-service.
+    public void resume(UUID paymentId) {
+        payment p = repository.findById(paymentId).orElse(null);
+        if (p == null || p.getStatus() != PaymentStatus.PENDING) {
+            // finished (or authorized) since the recovery scan saw it
+            return;
+        }
+        SagaState state = sagaLog.current(paymentId);
+        log.info("Resuming payment {} from {}", paymentId, state);
         try {
-            BigDecimal newFromBalance = fromBalance.subtract(amount);
-            accountServiceGrpcClient.updateAccountBalance(fromAccount, newFromBalance.toPlainString());
+            runSaga(p, state);
+        } catch (AccountNotActiveException | InsufficientFundsException e) {
+            // already recorded as FAILED - there's no caller waiting to tell
+        }
+    }
+
+    private PaymentResponseDTO runSaga(payment p, SagaState state) {
+        return switch (state) {
+            case STARTED -> settlement.usesHolds() ? authorize(p, state) : transfer(p, state);
+            case TRANSFER_REQUESTED -> transfer(p, state);
+            case HOLD_REQUESTED -> authorize(p, state);
+            case COMPENSATING -> compensate(p, state, "Resumed compensation");
+            // AUTHORIZED belongs to PaymentSettlementService; final states are done
+            default -> PaymentMapper.toDTO(p);
+        };
+    }
+
+    private PaymentResponseDTO transfer(payment p, SagaState state) {
+        if (state != SagaState.TRANSFER_REQUESTED) {
+            sagaLog.record(p.getId(), state, SagaState.TRANSFER_REQUESTED, null);
+        }
 
-            BigDecimal newToBalance = new BigDecimal(toAccount.getBalance()).add(amount);
-            accountServiceGrpcClient.updateAccountBalance(toAccount, newToBalance.toPlainString());
-        } catch (Exception e) {
-            log.error("Payment {} failed during account update: {}", p.getId(), e.getMessage());
+        // One round trip: account-service checks both accounts are ACTIVE, checks funds
+        // and applies debit + credit inside a single DB transaction. Either both legs
+        // land or neither does, so there's no debit to reverse on this side.
+        ExecuteTransferResponse result;
+        try {
+            result = executeTransfer(p);
+        } catch (StatusRuntimeException e) {
+            if (!AccountServiceGrpcClient.rejected(e)) {
+                // The transfer may have been applied. Failing it here could leave money
+                // moved on a FAILED payment, so it stays PENDING at TRANSFER_REQUESTED and
+                // PaymentSagaRecovery repeats the call with the same key once it's stale.
+                log.warn("Payment {} transfer outcome unknown ({}), left PENDING for recovery",
+                        p.getId(), e.getStatus());
+                return PaymentMapper.toDTO(p);
+            }
+            log.error("Payment {} failed during transfer: {}", p.getId(), e.getStatus());
+            markFailed(p, "Transfer failed: " + e.getStatus().getCode());
+            if (e.getStatus().getCode() == Status.Code.NOT_FOUND) {
+                throw new RuntimeException("Could not retrieve account details: " + e.getStatus().getDescription());
+            }
+            return PaymentMapper.toDTO(p);
+        }
 
-            // Attempt to reverse the debit if it already happened
-            try {
-                accountServiceGrpcClient.updateAccountBalance(fromAccount, fromBalance.toPlainString());
-                log.info("Debit reversed for payment {}", p.getId());
-            } catch (Exception reverseEx) {
-                log.error("CRITICAL: Could not reverse debit for payment {}. Manual intervention required.", p.getId());
+        switch (result.getOutcome()) {
+            case TRANSFER_COMPLETED -> {
+                p.setStatus(PaymentStatus.COMPLETED);
+                writes.finish(p, result.getReplayed() ? "Transfer replayed" : null);
+                log.info("Payment {} completed successfully", p.getId());
+                return PaymentMapper.toDTO(p);
+            }
+            case TRANSFER_ACCOUNT_NOT_ACTIVE -> {
+                markFailed(p, result.getReason());
+                throw new AccountNotActiveException(result.getReason());
+            }
+            case TRANSFER_INSUFFICIENT_FUNDS -> {
+                markFailed(p, result.getReason());
+                throw new InsufficientFundsException(result.getReason());
             }
+            default -> {
+                log.error("Payment {} got unexpected transfer outcome {}", p.getId(), result.getOutcome());
+                markFailed(p, "Unexpected transfer outcome " + result.getOutcome());
+                return PaymentMapper.toDTO(p);
+            }
+        }
+    }
 
-            p.setStatus(PaymentStatus.FAILED);
-            repository.save(p);
-            eventProducer.publishPaymentEvent(buildEvent(p));
+    // Hold mode: only reserve the funds now. The payment stays AUTHORIZED until
+    // PaymentSettlementService captures it with the next batch. No event yet - one
+    // goes out when the payment reaches its final status.
+    private PaymentResponseDTO authorize(payment p, SagaState state) {
+        if (state != SagaState.HOLD_REQUESTED) {
+            sagaLog.record(p.getId(), state, SagaState.HOLD_REQUESTED, null);
+        }
+        String key = p.getId().toString();
+        HoldResponse result;
+        try {
+            result = withRetry(key, () -> accountServiceGrpcClient.placeHold(p.getFromAccountId(),
+                    p.getToAccountId(), p.getAmount(), key, settlement.holdTtl().toSeconds()));
+        } catch (StatusRuntimeException e) {
+            log.error("Payment {} failed placing hold: {}", p.getId(), e.getStatus());
+            // The hold may have landed before the call failed - don't leave it to expire
+            compensate(p, SagaState.HOLD_REQUESTED, "PlaceHold failed: " + e.getStatus().getCode());
+            if (e.getStatus().getCode() == Status.Code.NOT_FOUND) {
+                throw new RuntimeException("Could not retrieve account details: " + e.getStatus().getDescription());
+            }
             return PaymentMapper.toDTO(p);
         }
 
-        p.setStatus(PaymentStatus.COMPLETED);
-        repository.save(p);
-        log.info("Payment {} completed successfully", p.getId());
-        eventProducer.publishPaymentEvent(buildEvent(p));
+        switch (result.getOutcome()) {
+            case HOLD_PLACED -> {
+                p.setStatus(PaymentStatus.AUTHORIZED);
+                writes.authorize(p, result.getExpiresAt());
+                log.info("Payment {} authorized, hold expires at {}", p.getId(), result.getExpiresAt());
+                return PaymentMapper.toDTO(p);
+            }
+            case HOLD_ACCOUNT_NOT_ACTIVE -> {
+                markFailed(p, result.getReason());
+                throw new AccountNotActiveException(result.getReason());
+            }
+            case HOLD_INSUFFICIENT_FUNDS -> {
+                markFailed(p, result.getReason());
+                throw new InsufficientFundsException(result.getReason());
+            }
+            default -> {
+                log.error("Payment {} got unexpected hold outcome {}", p.getId(), result.getOutcome());
+                markFailed(p, "Unexpected hold outcome " + result.getOutcome());
+                return PaymentMapper.toDTO(p);
+            }
+        }
+    }
 
+    // Gives back a hold that may exist for a payment that is going to fail. Logged
+    // first, so a crash mid-release is resumed as a release rather than a new hold.
+    private PaymentResponseDTO compensate(payment p, SagaState state, String reason) {
+        if (state != SagaState.COMPENSATING) {
+            sagaLog.record(p.getId(), state, SagaState.COMPENSATING, reason);
+        }
+        settlement.releaseQuietly(p.getId().toString());
+        markFailed(p, reason);
         return PaymentMapper.toDTO(p);
     }
 
-    // Maps a saved payment entity to the Kafka event payload.
-    // Called only after the entity has been saved with its final status,
-    // so updatedAt is guaranteed to be set by @PreUpdate.
-    private PaymentEventDTO buildEvent(payment p) {
-        return new PaymentEventDTO(
-                p.getId().toString(),
-                p.getFromAccountId(),
-                p.getToAccountId(),
-                p.getAmount().toPlainString(),
-                p.getStatus().name(),
-                p.getType().name(),
-                p.getUpdatedAt().toString()
-        );
+    private ExecuteTransferResponse executeTransfer(payment p) {
+        String key = p.getId().toString();
+        return withRetry(key, () -> accountServiceGrpcClient.executeTransfer(
+                p.getFromAccountId(), p.getToAccountId(), p.getAmount(), key));
+    }
+
+    // Retries once when the call may or may not have reached account-service.
+    // Safe because the key (transfer idempotency key or hold key) turns a repeat of an
+    // applied call into a replay.
+    private <T> T withRetry(String key, Supplier<T> call) {
+        try {
+            return call.get();
+        } catch (StatusRuntimeException e) {
+            Status.Code code = e.getStatus().getCode();
+            if (code != Status.Code.UNAVAILABLE && code != Status.Code.DEADLINE_EXCEEDED) {
+                throw e;
+            }
+            log.warn("Account-service call for payment {} returned {}, retrying with same key", key, code);
+            return call.get();
+        }
+    }
+
+    // The FAILED status, its event and the saga's FAILED step commit together;
+    // PaymentOutboxRelay delivers the event to Kafka after the fact.
+    private void markFailed(payment p, String reason) {
+        p.setStatus(PaymentStatus.FAILED);
+        writes.finish(p, reason);
     }
 }
@@ -0,0 +1,126 @@
+package com.pm.paymentservice.Service;
+
+import com.pm.paymentservice.Enum.PaymentStatus;
+import com.pm.paymentservice.GRPC.AccountServiceGrpcClient;
+import com.pm.paymentservice.Repository.paymentRepo;
+import com.pm.paymentservice.model.payment;
+import com.pm.proto.HoldOutcome;
+import com.pm.proto.HoldResponse;
+import io.grpc.StatusRuntimeException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+
+// How ProcessPayment moves money, set by payment.settlement.mode:
+//   transfer - one ExecuteTransfer per payment, settled before ProcessPayment returns (default)
+//   hold     - ProcessPayment only places a hold (funds checked and reserved, payment
+//              AUTHORIZED) and this class captures AUTHORIZED payments in batches in
+//              the background - one CaptureHoldBatch call and one status UPDATE per
+//              batch instead of a transfer per payment, which is what absorbs peaks.
+//
+// A hold that never gets captured (this service down for longer than hold-ttl) is
+// expired by account-service; its capture then comes back NOT_ACTIVE and the payment
+// is marked FAILED. Capture is idempotent, so two instances settling the same
+// payment both see CAPTURED and downstream consumers dedupe the repeated event.
+@Service
+public class PaymentSettlementService {
+
+    private static final Logger log = LoggerFactory.getLogger(PaymentSettlementService.class);
+
+    private final paymentRepo repository;
+    private final AccountServiceGrpcClient accountServiceGrpcClient;
+    private final PaymentOutboxWriter outboxWriter;
+    private final boolean usesHolds;
+    private final Duration holdTtl;
+    private final int batchSize;
+
+    public PaymentSettlementService(paymentRepo repository,
+                                    AccountServiceGrpcClient accountServiceGrpcClient,
+                                    PaymentOutboxWriter outboxWriter,
+                                    @Value("${payment.settlement.mode:transfer}") String mode,
+                                    @Value("${payment.settlement.hold-ttl:15m}") Duration holdTtl,
+                                    @Value("${payment.settlement.batch-size:500}") int batchSize) {
+        if (!mode.equals("transfer") && !mode.equals("hold")) {
+            throw new IllegalArgumentException("payment.settlement.mode must be transfer or hold, got " + mode);
+        }
+        this.repository = repository;
+        this.accountServiceGrpcClient = accountServiceGrpcClient;
+        this.outboxWriter = outboxWriter;
+        this.usesHolds = mode.equals("hold");
+        this.holdTtl = holdTtl;
+        this.batchSize = batchSize;
+    }
+
+    public boolean usesHolds() {
+        return usesHolds;
+    }
+
+    public Duration holdTtl() {
+        return holdTtl;
+    }
+
+    @Scheduled(fixedDelayString = "${payment.settlement.interval-ms:1000}")
+    public void settle() {
+        if (!usesHolds) {
+            return;
+        }
+        // Keep going while full batches settle so a backlog clears in one tick
+        int settled;
+        do {
+            settled = settleBatch();
+        } while (settled == batchSize);
+    }
+
+    int settleBatch() {
+        List<payment> due = repository.findByStatusOrderByCreatedAtAsc(
+                PaymentStatus.AUTHORIZED, PageRequest.of(0, batchSize));
+        if (due.isEmpty()) {
+            return 0;
+        }
+
+        List<HoldResponse> results;
+        try {
+            results = accountServiceGrpcClient.captureHolds(due.stream().map(p -> p.getId().toString()).toList());
+        } catch (StatusRuntimeException e) {
+            // Nothing changed on this side - the same payments come up again next tick,
+            // and any holds that did get captured replay as CAPTURED
+            log.warn("Settlement batch of {} failed, will retry: {}", due.size(), e.getStatus());
+            return 0;
+        }
+
+        int completed = 0;
+        for (int i = 0; i < due.size(); i++) {
+            payment p = due.get(i);
+            HoldResponse result = results.get(i);
+            if (result.getOutcome() == HoldOutcome.HOLD_CAPTURED) {
+                p.setStatus(PaymentStatus.COMPLETED);
+                completed++;
+                continue;
+            }
+            log.warn("Payment {} could not be settled: {} {}", p.getId(), result.getOutcome(), result.getReason());
+            if (result.getOutcome() == HoldOutcome.HOLD_ACCOUNT_NOT_ACTIVE) {
+                // The hold is still open - give the funds back now rather than at expiry
+                releaseQuietly(p.getId().toString());
+            }
+            p.setStatus(PaymentStatus.FAILED);
+        }
+        outboxWriter.updateStatusesWithEvents(due);
+        log.info("Settled {} payments: {} completed, {} failed", due.size(), completed, due.size() - completed);
+        return due.size();
+    }
+
+    // Best effort - if this fails the hold simply expires
+    void releaseQuietly(String holdKey) {
+        try {
+            accountServiceGrpcClient.releaseHold(holdKey);
+        } catch (StatusRuntimeException e) {
+            log.warn("Could not release hold {}, it will expire: {}", holdKey, e.getStatus());
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.pm.paymentservice.Service;
+
+import com.pm.paymentservice.Enum.PaymentType;
+import com.pm.paymentservice.Exception.VelocityLimitExceededException;
+import com.pm.paymentservice.Repository.paymentRepo;
+import com.pm.paymentservice.model.Money;
+import com.pm.paymentservice.model.payment;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+// Velocity limits, checked before a payment is stored or account-service is called.
+//
+// Per source account and payment type it keeps how many payments were made, and for
+// how much, over the last minute and the last hour (SlidingWindow - lock-free rings of
+// 1s and 1m buckets). A payment that would take either window over the limits for its
+// type (payment.velocity.<type>.per-minute / per-hour, count and amount; 0 or unset
+// means no limit) is rejected with VelocityLimitExceededException, so a burst from one
+// account costs no DB write and no gRPC call.
+//
+// The counters are this instance's own: on startup they're rebuilt from the last hour
+// of payments, after that each instance only counts the payments it takes. Two
+// concurrent payments from one account can both pass a check with room for one -
+// these are abuse limits, not balances. Accounts idle for an hour are dropped.
+//
+// Metrics:
+//   payment.velocity.rejected - payments turned away, tagged type and window
+//   payment.velocity.accounts - account/type pairs being counted
+@Component
+public class PaymentVelocityGuard {
+
+    private static final Logger log = LoggerFactory.getLogger(PaymentVelocityGuard.class);
+    private static final long SECOND = 1_000;
+    private static final long MINUTE = 60 * SECOND;
+
+    private final paymentRepo repository;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final Map<PaymentType, Limits> limits = new EnumMap<>(PaymentType.class);
+    private final Map<Key, Windows> windows = new ConcurrentHashMap<>();
+
+    public PaymentVelocityGuard(paymentRepo repository,
+                                EntityManager entityManager,
+                                TransactionTemplate transactionTemplate,
+                                MeterRegistry meterRegistry,
+                                Environment environment,
+                                @Value("${payment.velocity.enabled:true}") boolean enabled) {
+        this.repository = repository;
+        this.entityManager = entityManager;
+        this.transactionTemplate = transactionTemplate;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        for (PaymentType type : PaymentType.values()) {
+            String prefix = "payment.velocity." + type.name().toLowerCase(Locale.ROOT);
+            Limits l = new Limits(limit(environment, prefix + ".per-minute"), limit(environment, prefix + ".per-hour"));
+            if (l.perMinute().isSet() || l.perHour().isSet()) {
+                limits.put(type, l);
+            }
+        }
+        Gauge.builder("payment.velocity.accounts", windows, Map::size)
+                .description("Account and payment type pairs with velocity counters")
+                .register(meterRegistry);
+    }
+
+    private static Limit limit(Environment environment, String prefix) {
+        String amount = environment.getProperty(prefix + ".amount");
+        return new Limit(environment.getProperty(prefix + ".count", Integer.class, 0),
+                amount != null && !amount.isBlank() ? Money.parse(amount).minor() : 0);
+    }
+
+    // Counts the payment, or throws if it would go over a limit (and then counts nothing)
+    public void check(String fromAccountId, PaymentType type, Money amount) {
+        Limits l = enabled ? limits.get(type) : null;
+        if (l == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        Windows w = windows.computeIfAbsent(new Key(fromAccountId, type), k -> new Windows());
+        String window = l.perMinute().exceededBy(w.minute.totals(now), amount.minor()) ? "minute"
+                : l.perHour().exceededBy(w.hour.totals(now), amount.minor()) ? "hour"
+                : null;
+        if (window != null) {
+            meterRegistry.counter("payment.velocity.rejected", "type", type.name(), "window", window).increment();
+            throw new VelocityLimitExceededException(
+                    "Account " + fromAccountId + " is over its " + type + " limit for the last " + window);
+        }
+        w.add(now, amount.minor());
+    }
+
+    // Before the gRPC server takes requests: counts from the last hour of payments, read
+    // through a cursor so memory doesn't depend on how many there were
+    @PostConstruct
+    public void rebuild() {
+        if (!enabled || limits.isEmpty()) {
+            return;
+        }
+        LocalDateTime since = LocalDateTime.now().minusHours(1);
+        int counted = transactionTemplate.execute(status -> {
+            int n = 0;
+            try (Stream<payment> rows = repository.streamCreatedSince(since)) {
+                for (payment p : (Iterable<payment>) rows::iterator) {
+                    if (limits.containsKey(p.getType())) {
+                        windows.computeIfAbsent(new Key(p.getFromAccountId(), p.getType()), k -> new Windows())
+                                .add(millis(p.getCreatedAt()), p.getAmount().minor());
+                        n++;
+                    }
+                    entityManager.detach(p);
+                }
+            }
+            return n;
+        });
+        log.info("Velocity counters rebuilt from {} payments since {}", counted, since);
+    }
+
+    @Scheduled(fixedDelayString = "${payment.velocity.sweep-interval-ms:60000}")
+    public void sweep() {
+        long now = System.currentTimeMillis();
+        windows.values().removeIf(w -> w.hour.isEmpty(now));
+    }
+
+    private static long millis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private record Key(String accountId, PaymentType type) {
+    }
+
+    // 0 = no limit on that measure
+    record Limit(int count, long amountMinor) {
+
+        boolean isSet() {
+            return count > 0 || amountMinor > 0;
+        }
+
+        boolean exceededBy(SlidingWindow.Totals totals, long amount) {
+            return (count > 0 && totals.count() + 1 > count)
+                    || (amountMinor > 0 && totals.amount() + amount > amountMinor);
+        }
+    }
+
+    record Limits(Limit perMinute, Limit perHour) {
+    }
+
+    private static class Windows {
+        final SlidingWindow minute = new SlidingWindow(SECOND, 60);
+        final SlidingWindow hour = new SlidingWindow(MINUTE, 60);
+
+        void add(long at, long amount) {
+            minute.add(at, amount);
+            hour.add(at, amount);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.pm.paymentservice.Service;
+
+import com.pm.paymentservice.DTO.PaymentResponseDTO;
+import com.pm.paymentservice.Enum.PaymentStatus;
+import com.pm.paymentservice.Exception.PaymentNotFoundException;
+import com.pm.paymentservice.Mapper.PaymentMapper;
+import com.pm.paymentservice.Repository.paymentRepo;
+import com.pm.paymentservice.model.payment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+// Live status updates for WatchPayment. Status changes made by this instance are
+// pushed to watchers as soon as they commit; a poll every payment.watch.poll-interval-ms
+// re-reads the watched payments to catch changes made elsewhere (another instance,
+// saga recovery). A watch ends when the payment is COMPLETED or FAILED, or after
+// payment.watch.max-duration.
+@Component
+public class PaymentWatchers {
+
+    private static final Logger log = LoggerFactory.getLogger(PaymentWatchers.class);
+
+    private final paymentRepo repository;
+    private final long maxDurationNanos;
+    private final Map<UUID, Set<Watch>> watches = new ConcurrentHashMap<>();
+
+    public PaymentWatchers(paymentRepo repository,
+                           @Value("${payment.watch.max-duration:5m}") Duration maxDuration) {
+        this.repository = repository;
+        this.maxDurationNanos = maxDuration.toNanos();
+    }
+
+    // Sends the payment's current state to onUpdate, then every change after it, and
+    // calls onEnd once the watch is over. The watch is registered before the first
+    // read so a change landing in between isn't lost. Returns a handle that cancels it.
+    public Runnable watch(UUID paymentId, Consumer<PaymentResponseDTO> onUpdate, Runnable onEnd) {
+        Watch w = new Watch(paymentId, onUpdate, onEnd, System.nanoTime() + maxDurationNanos);
+        watches.computeIfAbsent(paymentId, id -> ConcurrentHashMap.newKeySet()).add(w);
+        payment current = repository.findById(paymentId).orElse(null);
+        if (current == null) {
+            remove(w);
+            throw new PaymentNotFoundException("Payment not found with id: " + paymentId);
+        }
+        w.deliver(PaymentMapper.toDTO(current));
+        return () -> remove(w);
+    }
+
+    public void publish(payment p) {
+        Set<Watch> watching = watches.get(p.getId());
+        if (watching == null) {
+            return;
+        }
+        PaymentResponseDTO dto = PaymentMapper.toDTO(p);
+        for (Watch w : watching) {
+            w.deliver(dto);
+        }
+    }
+
+    // For status changes written inside a transaction: watchers hear about them only
+    // once they're committed, so a client reacting to the push reads the same state.
+    public void publishAfterCommit(Collection<payment> payments) {
+        if (watches.isEmpty()) {
+            return;
+        }
+        List<payment> watched = payments.stream().filter(p -> watches.containsKey(p.getId())).toList();
+        if (watched.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            watched.forEach(this::publish);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                watched.forEach(PaymentWatchers.this::publish);
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${payment.watch.poll-interval-ms:1000}")
+    public void poll() {
+        if (watches.isEmpty()) {
+            return;
+        }
+        long now = System.nanoTime();
+        List<Watch> expired = new ArrayList<>();
+        watches.values().forEach(set -> set.stream().filter(w -> now - w.deadlineNanos > 0).forEach(expired::add));
+        expired.forEach(Watch::end);
+
+        List<UUID> ids = new ArrayList<>(watches.keySet());
+        if (!ids.isEmpty()) {
+            repository.findAllById(ids).forEach(this::publish);
+        }
+    }
+
+    int size() {
+        return watches.values().stream().mapToInt(Set::size).sum();
+    }
+
+    private void remove(Watch w) {
+        watches.computeIfPresent(w.paymentId, (id, set) -> {
+            set.remove(w);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    private final class Watch {
+        private final UUID paymentId;
+        private final Consumer<PaymentResponseDTO> onUpdate;
+        private final Runnable onEnd;
+        private final long deadlineNanos;
+        private PaymentStatus last;
+        private boolean done;
+
+        private Watch(UUID paymentId, Consumer<PaymentResponseDTO> onUpdate, Runnable onEnd, long deadlineNanos) {
+            this.paymentId = paymentId;
+            this.onUpdate = onUpdate;
+            this.onEnd = onEnd;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        // The push and the poll can race; statuses only move forward
+        // (PENDING → AUTHORIZED → COMPLETED/FAILED), so a stale read is simply dropped.
+        synchronized void deliver(PaymentResponseDTO dto) {
+            PaymentStatus status = PaymentStatus.valueOf(dto.getStatus());
+            if (done || (last != null && status.ordinal() <= last.ordinal())) {
+                return;
+            }
+            last = status;
+            try {
+                onUpdate.accept(dto);
+            } catch (RuntimeException e) {
+                // the client went away mid-update
+                log.debug("Dropping watch on payment {}: {}", paymentId, e.getMessage());
+                done = true;
+                remove(this);
+                return;
+            }
+            if (status == PaymentStatus.COMPLETED || status == PaymentStatus.FAILED) {
+                end();
+            }
+        }
+
+        synchronized void end() {
+            if (done) {
+                return;
+            }
+            done = true;
+            remove(this);
+            try {
+                onEnd.run();
+            } catch (RuntimeException e) {
+                log.debug("Could not close watch on payment {}: {}", paymentId, e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.pm.paymentservice.Service;
+
+import com.pm.paymentservice.Enum.SagaState;
+import com.pm.paymentservice.model.payment;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// Group commit for ProcessPayment's DB writes.
+//
+// Each payment writes its PENDING row, then later its AUTHORIZED/COMPLETED/FAILED
+// status with the saga step (and event) that goes with it. Done one by one that is a
+// transaction per write for every payment. Instead, callers queue the write here and
+// block; one flusher thread collects whatever arrives within
+// payment.write.flush-interval (up to payment.write.max-batch writes) and commits it
+// all through PaymentOutboxWriter.writeBatch. Under load a flush carries many
+// payments, so each one costs well under one DB round trip.
+//
+// A caller only returns once its write has committed, so nothing changes about what
+// is durable when. If a batch fails - typically an idempotency key some other request
+// just inserted - its writes are retried one at a time, and only the write at fault
+// sees the exception.
+//
+// Metrics:
+//   payment.write.batch - writes per flush
+@Component
+public class PaymentWriteCoalescer {
+
+    private static final Logger log = LoggerFactory.getLogger(PaymentWriteCoalescer.class);
+
+    private final PaymentOutboxWriter writer;
+    private final long flushIntervalNanos;
+    private final int maxBatch;
+    private final DistributionSummary batchSizes;
+    private final LinkedBlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final Thread flusher;
+    private volatile boolean running = true;
+
+    public PaymentWriteCoalescer(PaymentOutboxWriter writer,
+                                 @Value("${payment.write.flush-interval:2ms}") Duration flushInterval,
+                                 @Value("${payment.write.max-batch:500}") int maxBatch,
+                                 MeterRegistry meterRegistry) {
+        this.writer = writer;
+        this.flushIntervalNanos = flushInterval.toNanos();
+        this.maxBatch = maxBatch;
+        this.batchSizes = DistributionSummary.builder("payment.write.batch")
+                .description("Payment writes committed per flush")
+                .register(meterRegistry);
+        this.flusher = new Thread(this::run, "payment-write-flusher");
+        // shutdown() below drains the queue; the thread mustn't hold up JVM exit
+        this.flusher.setDaemon(true);
+    }
+
+    @PostConstruct
+    public void start() {
+        flusher.start();
+    }
+
+    // Inserts the PENDING payment together with the saga's first step, so the saga is
+    // logged as requested before account-service is ever called
+    public void insertPending(payment p, SagaState firstStep) {
+        check(SagaState.STARTED, firstStep, p);
+        write(new PaymentOutboxWriter.Write(p, true, firstStep, null));
+    }
+
+    public void authorize(payment p, String expiresAt) {
+        write(new PaymentOutboxWriter.Write(p, false, SagaState.AUTHORIZED, expiresAt));
+    }
+
+    // The payment's final status, its event and the saga's final step
+    public void finish(payment p, String detail) {
+        SagaState step = switch (p.getStatus()) {
+            case COMPLETED -> SagaState.COMPLETED;
+            case FAILED -> SagaState.FAILED;
+            default -> throw new IllegalArgumentException("Payment " + p.getId() + " is not final: " + p.getStatus());
+        };
+        write(new PaymentOutboxWriter.Write(p, false, step, detail));
+    }
+
+    private static void check(SagaState from, SagaState to, payment p) {
+        if (!from.canMoveTo(to)) {
+            throw new IllegalStateException("Payment " + p.getId() + ": saga can't move from " + from + " to " + to);
+        }
+    }
+
+    private void write(PaymentOutboxWriter.Write w) {
+        if (!running) {
+            // shutting down - nothing will flush it, so write it directly
+            writer.writeBatch(List.of(w));
+            return;
+        }
+        Pending pending = new Pending(w, new CompletableFuture<>());
+        queue.add(pending);
+        try {
+            pending.done.get();
+        } catch (ExecutionException e) {
+            throw AccountLaneExecutor.unwrap(e);
+        } catch (InterruptedException e) {
+            // The write may still commit; PaymentSagaRecovery sorts out a payment left behind
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for payment " + w.payment().getId() + " to be written");
+        }
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>(maxBatch);
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                // Give concurrent payments a moment to join this flush
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                while (batch.size() < maxBatch) {
+                    queue.drainTo(batch, maxBatch - batch.size());
+                    long left = deadline - System.nanoTime();
+                    if (batch.size() >= maxBatch || left <= 0) {
+                        break;
+                    }
+                    Pending next = queue.poll(left, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch = new ArrayList<>(maxBatch);
+            }
+        }
+    }
+
+    void flush(List<Pending> batch) {
+        batchSizes.record(batch.size());
+        try {
+            writer.writeBatch(batch.stream().map(Pending::write).toList());
+            batch.forEach(p -> p.done.complete(null));
+            return;
+        } catch (RuntimeException | Error e) {
+            if (batch.size() == 1) {
+                batch.get(0).done.completeExceptionally(e);
+                return;
+            }
+            log.info("Batch of {} payment writes failed ({}), writing them one at a time", batch.size(), e.getMessage());
+        }
+        for (Pending p : batch) {
+            try {
+                writer.writeBatch(List.of(p.write));
+                p.done.complete(null);
+            } catch (RuntimeException | Error e) {
+                p.done.completeExceptionally(e);
+            }
+        }
+    }
+
+    int queued() {
+        return queue.size();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        // not interrupted - it may be mid-transaction; it stops once the queue is empty
+        flusher.join(TimeUnit.SECONDS.toMillis(10));
+        // anything queued as the flusher was exiting
+        List<Pending> left = new ArrayList<>();
+        queue.drainTo(left);
+        if (!left.isEmpty()) {
+            flush(left);
+        }
+    }
+
+    record Pending(PaymentOutboxWriter.Write write, CompletableFuture<Void> done) {
+    }
+}
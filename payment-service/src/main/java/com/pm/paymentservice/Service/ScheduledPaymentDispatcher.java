@@ -0,0 +1,305 @@
+package com.pm.paymentservice.Service;
+
+import com.pm.paymentservice.DTO.PaymentResponseDTO;
+import com.pm.paymentservice.Enum.PaymentStatus;
+import com.pm.paymentservice.Enum.ScheduleStatus;
+import com.pm.paymentservice.Exception.AccountNotActiveException;
+import com.pm.paymentservice.Exception.InsufficientFundsException;
+import com.pm.paymentservice.Mapper.ScheduledPaymentMapper;
+import com.pm.paymentservice.model.scheduledPayment;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Runs standing orders when they come due, without polling the whole table.
+//
+// Every load-interval the loader claims the active schedules due within the next
+// `horizon` (SELECT ... FOR UPDATE SKIP LOCKED off the partial index on next_run_at, a
+// batch at a time) and puts them in an in-memory TimingWheel keyed by their run time.
+// The wheel's thread ticks every `tick` and hands whatever has come due to a fixed pool
+// of `concurrency` workers, each of which makes the payment through
+// PaymentService.processPayment and waits for it - so however many schedules fall on
+// the same second, at most that many payments are in flight from here. The DB only
+// ever sees the front of the index; a schedule due next month costs nothing until its
+// horizon comes round. load-interval has to stay below horizon, or a schedule can be
+// loaded after its time.
+//
+// A run's payment uses the idempotency key schedule:<id>:<run>. A run dispatched twice
+// - its claim ran out under a slow instance and another one took it - replays the same
+// payment instead of paying again, and recordRun only counts it once.
+//
+// What happens next depends on the payment's status, not just on whether
+// processPayment threw:
+//   - COMPLETED, AUTHORIZED: made, the schedule moves on
+//   - declined (inactive account, no funds): FAILED and recorded as a run; the next
+//     occurrence tries again
+//   - PENDING: account-service didn't answer, and PaymentSagaRecovery will finish the
+//     payment. The claim is handed back and the next load retries with the same key,
+//     which replays however the payment ended.
+//   - any other FAILED: nothing moved. The same run is tried again as a new attempt,
+//     whose key ends in :<attempt> - the old key would only replay the FAILED payment.
+//     After max-attempts the occurrence is given up and the schedule moves on.
+//
+// Metrics:
+//   payment.schedule.loaded - schedules claimed and waiting in the wheel or the pool
+//   payment.schedule.runs   - runs made, tagged outcome=made|declined|retried|missed
+//   payment.schedule.lag    - how long after its time a run reached a worker
+@Component
+public class ScheduledPaymentDispatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(ScheduledPaymentDispatcher.class);
+
+    private final ScheduledPaymentService schedules;
+    private final PaymentService paymentService;
+    private final long tickMillis;
+    private final Duration horizon;
+    private final Duration lease;
+    private final int batchSize;
+    private final int maxLoaded;
+    private final int maxAttempts;
+    private final TimingWheel<Due> wheel;
+    private final Set<UUID> loaded = ConcurrentHashMap.newKeySet();
+    private final ThreadPoolExecutor workers;
+    private final Thread ticker;
+    private final AtomicInteger workerCount = new AtomicInteger();
+    private final Counter made;
+    private final Counter declined;
+    private final Counter retried;
+    private final Counter missed;
+    private final Timer lag;
+    private volatile boolean running = true;
+
+    public ScheduledPaymentDispatcher(ScheduledPaymentService schedules,
+                                      PaymentService paymentService,
+                                      @Value("${payment.schedule.tick:100ms}") Duration tick,
+                                      @Value("${payment.schedule.wheel-size:512}") int wheelSize,
+                                      @Value("${payment.schedule.horizon:60s}") Duration horizon,
+                                      @Value("${payment.schedule.lease:5m}") Duration lease,
+                                      @Value("${payment.schedule.batch-size:500}") int batchSize,
+                                      @Value("${payment.schedule.max-loaded:10000}") int maxLoaded,
+                                      @Value("${payment.schedule.concurrency:8}") int concurrency,
+                                      @Value("${payment.schedule.max-attempts:5}") int maxAttempts,
+                                      MeterRegistry meterRegistry) {
+        this.schedules = schedules;
+        this.paymentService = paymentService;
+        this.tickMillis = tick.toMillis();
+        this.horizon = horizon;
+        this.lease = lease;
+        this.batchSize = batchSize;
+        this.maxLoaded = maxLoaded;
+        this.maxAttempts = maxAttempts;
+        this.wheel = new TimingWheel<>(tickMillis, wheelSize, System.currentTimeMillis());
+        // Unbounded queue, but never more than max-loaded runs in it
+        this.workers = new ThreadPoolExecutor(concurrency, concurrency, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread t = new Thread(r, "payment-schedule-worker-" + workerCount.getAndIncrement());
+                    t.setDaemon(true);
+                    return t;
+                });
+        this.ticker = new Thread(this::tick, "payment-schedule-wheel");
+        this.ticker.setDaemon(true);
+        Gauge.builder("payment.schedule.loaded", loaded, Set::size)
+                .description("Scheduled payments claimed by this instance and not yet run")
+                .register(meterRegistry);
+        this.made = runs(meterRegistry, "made");
+        this.declined = runs(meterRegistry, "declined");
+        this.retried = runs(meterRegistry, "retried");
+        this.missed = runs(meterRegistry, "missed");
+        this.lag = Timer.builder("payment.schedule.lag")
+                .description("Delay between a scheduled payment's run time and its dispatch")
+                .register(meterRegistry);
+    }
+
+    private static Counter runs(MeterRegistry registry, String outcome) {
+        return Counter.builder("payment.schedule.runs")
+                .tag("outcome", outcome)
+                .description("Scheduled payment runs")
+                .register(registry);
+    }
+
+    @PostConstruct
+    public void start() {
+        ticker.start();
+    }
+
+    @Scheduled(fixedDelayString = "${payment.schedule.load-interval-ms:10000}")
+    public void load() {
+        if (!running) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime until = now.plus(horizon);
+        int claimed = 0;
+        while (loaded.size() < maxLoaded) {
+            int limit = Math.min(batchSize, maxLoaded - loaded.size());
+            List<scheduledPayment> batch = schedules.claimDue(now, until, until.plus(lease), limit);
+            List<Due> dueNow = new ArrayList<>();
+            synchronized (wheel) {
+                for (scheduledPayment s : batch) {
+                    loaded.add(s.getId());
+                    Due due = new Due(s.getId(), s.getRuns(), s.getNextRunAt());
+                    if (!wheel.add(due, millis(s.getNextRunAt()))) {
+                        dueNow.add(due);
+                    }
+                }
+            }
+            dueNow.forEach(this::dispatch);
+            claimed += batch.size();
+            if (batch.size() < limit) {
+                break;
+            }
+        }
+        if (claimed > 0) {
+            log.info("Loaded {} scheduled payments due by {}", claimed, until);
+        }
+    }
+
+    private void tick() {
+        List<Due> due = new ArrayList<>();
+        while (running) {
+            synchronized (wheel) {
+                wheel.advance(System.currentTimeMillis(), due::add);
+            }
+            due.forEach(this::dispatch);
+            due.clear();
+            try {
+                Thread.sleep(tickMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void dispatch(Due due) {
+        try {
+            workers.execute(() -> run(due));
+        } catch (RejectedExecutionException e) {
+            // shutting down - the claim is released or runs out
+            log.debug("Not dispatching scheduled payment {}, shutting down", due.id());
+        }
+    }
+
+    void run(Due due) {
+        try {
+            if (!running) {
+                // shutdown() hands the claim back
+                return;
+            }
+            lag.record(Duration.between(due.runAt(), LocalDateTime.now()).toMillis(), TimeUnit.MILLISECONDS);
+            scheduledPayment s = schedules.find(due.id()).orElse(null);
+            if (s == null || s.getStatus() != ScheduleStatus.ACTIVE || s.getRuns() != due.run()) {
+                // cancelled, or this run was made by another instance after our claim ran out
+                loaded.remove(due.id());
+                return;
+            }
+            PaymentResponseDTO payment;
+            try {
+                payment = paymentService.processPayment(ScheduledPaymentMapper.toPaymentRequest(s));
+            } catch (AccountNotActiveException | InsufficientFundsException e) {
+                // The payment is recorded as FAILED. The order stands; the next
+                // occurrence tries again.
+                log.info("Scheduled payment {} run {} declined: {}", s.getId(), s.getRuns(), e.getMessage());
+                declined.increment();
+                schedules.recordRun(s, LocalDateTime.now());
+                loaded.remove(due.id());
+                return;
+            }
+            switch (PaymentStatus.valueOf(payment.getStatus())) {
+                // AUTHORIZED: the funds are held, the settlement job captures them
+                case COMPLETED, AUTHORIZED -> {
+                    made.increment();
+                    schedules.recordRun(s, LocalDateTime.now());
+                }
+                case FAILED -> failedAttempt(s, payment);
+                default -> {
+                    log.info("Scheduled payment {} run {}: payment {} still PENDING, will be retried",
+                            s.getId(), s.getRuns(), payment.getPaymentId());
+                    retry(due);
+                    return;
+                }
+            }
+            loaded.remove(due.id());
+        } catch (RuntimeException e) {
+            // Not made (lane full, account not found...) or not recorded. Hand the claim
+            // back so the next load picks it up - the run keeps its key, so a payment that
+            // did go through is replayed rather than made again, and one that failed is
+            // replayed as FAILED and moves on to a new attempt.
+            log.warn("Scheduled payment {} run {} will be retried: {}", due.id(), due.run(), e.getMessage());
+            retry(due);
+        }
+    }
+
+    private void failedAttempt(scheduledPayment s, PaymentResponseDTO payment) {
+        LocalDateTime now = LocalDateTime.now();
+        if (s.getAttempts() + 1 >= maxAttempts) {
+            log.warn("Scheduled payment {} run {} failed {} times (last payment {}), moving on to the next occurrence",
+                    s.getId(), s.getRuns(), s.getAttempts() + 1, payment.getPaymentId());
+            missed.increment();
+            schedules.recordRun(s, now);
+            return;
+        }
+        log.warn("Scheduled payment {} run {} attempt {} failed (payment {}), will be retried",
+                s.getId(), s.getRuns(), s.getAttempts(), payment.getPaymentId());
+        retried.increment();
+        schedules.recordFailedAttempt(s, now);
+    }
+
+    private void retry(Due due) {
+        retried.increment();
+        loaded.remove(due.id());
+        try {
+            schedules.release(List.of(due.id()));
+        } catch (RuntimeException releaseFailed) {
+            log.warn("Could not release scheduled payment {}, its claim will expire", due.id());
+        }
+    }
+
+    int loaded() {
+        return loaded.size();
+    }
+
+    private long millis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        ticker.interrupt();
+        workers.shutdown();
+        // let payments already under way finish
+        workers.awaitTermination(10, TimeUnit.SECONDS);
+        // Everything still claimed goes back, so another instance runs it on time rather
+        // than after the lease
+        if (!loaded.isEmpty()) {
+            log.info("Releasing {} scheduled payments on shutdown", loaded.size());
+            schedules.release(List.copyOf(loaded));
+            loaded.clear();
+        }
+    }
+
+    record Due(UUID id, int run, LocalDateTime runAt) {
+    }
+}
@@ -0,0 +1,107 @@
+package com.pm.paymentservice.Service;
+
+import com.pm.paymentservice.DTO.ScheduledPaymentRequestDTO;
+import com.pm.paymentservice.DTO.ScheduledPaymentResponseDTO;
+import com.pm.paymentservice.Enum.ScheduleStatus;
+import com.pm.paymentservice.Exception.PaymentNotFoundException;
+import com.pm.paymentservice.Mapper.ScheduledPaymentMapper;
+import com.pm.paymentservice.Repository.scheduledPaymentRepo;
+import com.pm.paymentservice.model.scheduledPayment;
+import lombok.AllArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+// Standing orders: creating and cancelling them, and the bookkeeping
+// ScheduledPaymentDispatcher does around each run. The runs themselves go through
+// PaymentService like any other payment.
+@Service
+@AllArgsConstructor
+public class ScheduledPaymentService {
+
+    private static final Logger log = LoggerFactory.getLogger(ScheduledPaymentService.class);
+
+    private final scheduledPaymentRepo repository;
+
+    public ScheduledPaymentResponseDTO create(ScheduledPaymentRequestDTO request) {
+        scheduledPayment s = ScheduledPaymentMapper.toEntity(request);
+        if (s.getAmount().signum() <= 0) {
+            throw new IllegalArgumentException("Amount must be positive");
+        }
+        if (s.getFirstRunAt().isBefore(LocalDateTime.now())) {
+            throw new IllegalArgumentException("First run is in the past: " + s.getFirstRunAt());
+        }
+        if (s.getEndsAt() != null && s.getEndsAt().isBefore(s.getFirstRunAt())) {
+            throw new IllegalArgumentException("Schedule ends before its first run");
+        }
+        repository.save(s);
+        log.info("Scheduled payment {} created: {} from {} starting {}",
+                s.getId(), s.getFrequency(), s.getFromAccountId(), s.getFirstRunAt());
+        return ScheduledPaymentMapper.toDTO(s);
+    }
+
+    // A run the dispatcher already has in its wheel sees the new status when it comes
+    // due and doesn't pay
+    @Transactional
+    public ScheduledPaymentResponseDTO cancel(String scheduleId) {
+        UUID id = UUID.fromString(scheduleId);
+        int cancelled = repository.cancel(id, LocalDateTime.now());
+        scheduledPayment s = repository.findById(id)
+                .orElseThrow(() -> new PaymentNotFoundException("Scheduled payment not found with id: " + scheduleId));
+        if (cancelled == 0 && s.getStatus() != ScheduleStatus.CANCELLED) {
+            throw new IllegalStateException("Scheduled payment " + scheduleId + " is already " + s.getStatus());
+        }
+        log.info("Scheduled payment {} cancelled", scheduleId);
+        return ScheduledPaymentMapper.toDTO(s);
+    }
+
+    public Optional<scheduledPayment> find(UUID id) {
+        return repository.findById(id);
+    }
+
+    // Claims up to `limit` schedules due by `horizon` for this instance until
+    // `claimUntil`. The row locks only last this transaction - the claim is what keeps
+    // other instances off the rows afterwards.
+    @Transactional
+    public List<scheduledPayment> claimDue(LocalDateTime now, LocalDateTime horizon, LocalDateTime claimUntil, int limit) {
+        List<scheduledPayment> due = repository.lockDue(now, horizon, limit);
+        if (!due.isEmpty()) {
+            repository.claim(due.stream().map(scheduledPayment::getId).toList(), claimUntil);
+        }
+        return due;
+    }
+
+    @Transactional
+    public void release(Collection<UUID> ids) {
+        if (!ids.isEmpty()) {
+            repository.release(ids);
+        }
+    }
+
+    // Moves the schedule to its next occurrence after a run, or marks it DONE after its
+    // last. Occurrences missed while no instance was running aren't made up one by one:
+    // the schedule runs once and carries on from the next occurrence after `now`.
+    // False if the run had already been recorded, or the schedule was cancelled.
+    @Transactional
+    public boolean recordRun(scheduledPayment s, LocalDateTime now) {
+        LocalDateTime after = now.isAfter(s.getNextRunAt()) ? now : s.getNextRunAt();
+        LocalDateTime next = s.getFrequency().nextAfter(s.getFirstRunAt(), after);
+        boolean last = next == null || (s.getEndsAt() != null && next.isAfter(s.getEndsAt()));
+        ScheduleStatus status = last ? ScheduleStatus.DONE : ScheduleStatus.ACTIVE;
+        return repository.recordRun(s.getId(), s.getRuns(), last ? s.getNextRunAt() : next, status.name(), now) == 1;
+    }
+
+    // The run's payment failed without moving money: the next load tries the same run
+    // again as the next attempt. False if the attempt had already been counted.
+    @Transactional
+    public boolean recordFailedAttempt(scheduledPayment s, LocalDateTime now) {
+        return repository.recordFailedAttempt(s.getId(), s.getRuns(), s.getAttempts(), now) == 1;
+    }
+}
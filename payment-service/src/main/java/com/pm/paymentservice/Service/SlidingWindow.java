@@ -0,0 +1,63 @@
+package com.pm.paymentservice.Service;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Payment count and amount over the last `buckets` x `bucketMillis`, kept in a ring of
+// buckets. Each slot holds an immutable bucket stamped with the period it counts;
+// add() swaps in an updated one with compare-and-set, and a slot still holding an
+// older period is simply overwritten - so there are no locks, no pruning pass, and
+// nothing allocated beyond the one small bucket per add. Reads sum the slots whose
+// stamp is still inside the window, so the window slides a bucket at a time.
+class SlidingWindow {
+
+    private final long bucketMillis;
+    private final int buckets;
+    private final AtomicReferenceArray<Bucket> ring;
+
+    SlidingWindow(long bucketMillis, int buckets) {
+        this.bucketMillis = bucketMillis;
+        this.buckets = buckets;
+        this.ring = new AtomicReferenceArray<>(buckets);
+    }
+
+    // Counts one payment at time `at`. One older than the whole window is dropped.
+    void add(long at, long amount) {
+        long period = at / bucketMillis;
+        int slot = (int) Math.floorMod(period, (long) buckets);
+        ring.updateAndGet(slot, b -> {
+            if (b == null || b.period < period) {
+                return new Bucket(period, 1, amount);
+            }
+            if (b.period == period) {
+                return new Bucket(period, b.count + 1, b.amount + amount);
+            }
+            // the slot already belongs to a later period - this one has slid out
+            return b;
+        });
+    }
+
+    Totals totals(long now) {
+        long newest = now / bucketMillis;
+        long oldest = newest - buckets + 1;
+        int count = 0;
+        long amount = 0;
+        for (int i = 0; i < buckets; i++) {
+            Bucket b = ring.get(i);
+            if (b != null && b.period >= oldest && b.period <= newest) {
+                count += b.count;
+                amount += b.amount;
+            }
+        }
+        return new Totals(count, amount);
+    }
+
+    boolean isEmpty(long now) {
+        return totals(now).count() == 0;
+    }
+
+    record Totals(int count, long amount) {
+    }
+
+    private record Bucket(long period, int count, long amount) {
+    }
+}
@@ -0,0 +1,111 @@
+package com.pm.paymentservice.Service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Hierarchical timing wheel (Varghese & Lauck), as used by Kafka and Netty for their
+// timeouts. Adding an item and advancing the clock are O(1) however many items are
+// waiting - no priority queue to re-sort, nothing scanned that isn't due.
+//
+// The innermost wheel has `wheelSize` buckets of `tickMillis` each. An item due beyond
+// its span goes to an overflow wheel whose buckets are each one whole inner span wide,
+// and so on outwards, created as needed. When an outer bucket's time comes, its items
+// are added again and drop into a finer wheel, until they land in the innermost one.
+//
+// Deadlines are rounded up to the tick, so an item comes due at most one tick late and
+// never early. Not thread-safe - the owner serialises add and advance.
+class TimingWheel<T> {
+
+    private final long tickMillis;
+    private final int wheelSize;
+    private final long spanMillis;
+    private final ArrayDeque<Entry<T>>[] buckets;
+    // Start of the current tick; buckets before it have been emptied
+    private long currentTime;
+    private TimingWheel<T> overflow;
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    TimingWheel(long tickMillis, int wheelSize, long startMillis) {
+        if (tickMillis <= 0 || wheelSize < 2) {
+            throw new IllegalArgumentException("Tick must be positive and the wheel at least 2 buckets");
+        }
+        this.tickMillis = tickMillis;
+        this.wheelSize = wheelSize;
+        this.spanMillis = tickMillis * wheelSize;
+        this.buckets = new ArrayDeque[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            buckets[i] = new ArrayDeque<>();
+        }
+        this.currentTime = startMillis - Math.floorMod(startMillis, tickMillis);
+    }
+
+    // False if the item is already due - the caller runs it now instead
+    boolean add(T item, long deadlineMillis) {
+        long due = Math.ceilDiv(deadlineMillis, tickMillis) * tickMillis;
+        if (due <= currentTime) {
+            return false;
+        }
+        place(new Entry<>(item, due));
+        size++;
+        return true;
+    }
+
+    // Moves the clock to nowMillis and hands every item that has come due to onDue
+    void advance(long nowMillis, Consumer<T> onDue) {
+        List<Entry<T>> expired = new ArrayList<>();
+        collect(nowMillis, expired);
+        for (Entry<T> e : expired) {
+            if (e.due <= currentTime) {
+                size--;
+                onDue.accept(e.item);
+            } else {
+                // out of an overflow bucket, not due yet - into a finer wheel
+                place(e);
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void place(Entry<T> e) {
+        if (e.due < currentTime + spanMillis) {
+            buckets[(int) Math.floorMod(e.due / tickMillis, (long) wheelSize)].add(e);
+        } else {
+            if (overflow == null) {
+                overflow = new TimingWheel<>(spanMillis, wheelSize, currentTime);
+            }
+            overflow.place(e);
+        }
+    }
+
+    // Empties every bucket whose tick has started by nowMillis, on this wheel and the
+    // ones outside it
+    private void collect(long nowMillis, List<Entry<T>> out) {
+        long target = nowMillis - Math.floorMod(nowMillis, tickMillis);
+        if (target - currentTime >= spanMillis) {
+            // asleep for a whole turn or more: everything in this wheel has come up
+            for (ArrayDeque<Entry<T>> bucket : buckets) {
+                out.addAll(bucket);
+                bucket.clear();
+            }
+            currentTime = target;
+        }
+        while (currentTime < target) {
+            currentTime += tickMillis;
+            ArrayDeque<Entry<T>> bucket = buckets[(int) Math.floorMod(currentTime / tickMillis, (long) wheelSize)];
+            out.addAll(bucket);
+            bucket.clear();
+        }
+        if (overflow != null) {
+            overflow.collect(nowMillis, out);
+        }
+    }
+
+    private record Entry<T>(T item, long due) {
+    }
+}
@@ -0,0 +1,136 @@
+package com.pm.paymentservice.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import java.math.BigDecimal;
+
+// An amount of money as a whole number of minor units - ten-thousandths, the scale of
+// the payments.amount column - in a long. Payments parse, compare and format amounts on
+// every request; doing that on a long instead of a BigDecimal costs no allocation
+// beyond the record itself. BigDecimal only appears at the JDBC boundary (see
+// MoneyConverter). Covers amounts up to about 922 trillion.
+public record Money(long minor) implements Comparable<Money> {
+
+    public static final int SCALE = 4;
+
+    private static final long[] POW10 = {1L, 10L, 100L, 1_000L, 10_000L};
+    private static final long UNIT = POW10[SCALE];
+
+    // Plain decimal notation only - "12", "12.5", "-0.25". Anything finer than SCALE
+    // digits is rejected rather than rounded, since payments.amount couldn't store it.
+    // Also how Jackson reads a Money from a REST body, so a bad amount there is a 400
+    // before the request reaches a controller.
+    @JsonCreator(mode = JsonCreator.Mode.DELEGATING)
+    public static Money parse(String amount) {
+        if (amount == null || amount.isEmpty()) {
+            throw new NumberFormatException("Amount is empty");
+        }
+        int i = 0;
+        boolean negative = false;
+        char first = amount.charAt(0);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            i++;
+        }
+        try {
+            long units = 0;
+            int digits = 0;
+            for (; i < amount.length() && amount.charAt(i) != '.'; i++, digits++) {
+                units = Math.addExact(Math.multiplyExact(units, 10), digit(amount, i));
+            }
+            long fraction = 0;
+            int fractionDigits = 0;
+            if (i < amount.length()) {
+                for (i++; i < amount.length(); i++, digits++) {
+                    int d = digit(amount, i);
+                    if (fractionDigits < SCALE) {
+                        fraction = fraction * 10 + d;
+                        fractionDigits++;
+                    } else if (d != 0) {
+                        throw new NumberFormatException("More than " + SCALE + " decimal places: " + amount);
+                    }
+                }
+            }
+            if (digits == 0) {
+                throw new NumberFormatException("Not an amount: " + amount);
+            }
+            long minor = Math.addExact(Math.multiplyExact(units, UNIT), fraction * POW10[SCALE - fractionDigits]);
+            return new Money(negative ? -minor : minor);
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Amount out of range: " + amount);
+        }
+    }
+
+    // From a wire amount in minor units at the given scale (amountMinor/amountScale)
+    public static Money ofMinor(long minor, int scale) {
+        if (scale == SCALE) {
+            return new Money(minor);
+        }
+        if (scale < 0 || scale > 18) {
+            throw new IllegalArgumentException("Unsupported amount scale: " + scale);
+        }
+        try {
+            if (scale < SCALE) {
+                return new Money(Math.multiplyExact(minor, POW10[SCALE - scale]));
+            }
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Amount out of range: " + minor + " at scale " + scale);
+        }
+        long divisor = 1;
+        for (int s = SCALE; s < scale; s++) {
+            divisor *= 10;
+        }
+        if (minor % divisor != 0) {
+            throw new IllegalArgumentException("More than " + SCALE + " decimal places: " + minor + " at scale " + scale);
+        }
+        return new Money(minor / divisor);
+    }
+
+    public static Money of(BigDecimal amount) {
+        return new Money(amount.setScale(SCALE).unscaledValue().longValueExact());
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(minor, SCALE);
+    }
+
+    public int signum() {
+        return Long.signum(minor);
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(minor, other.minor);
+    }
+
+    // Plain notation with at least two decimals - "250.00", "0.125", "-3.50"
+    @Override
+    @JsonValue
+    public String toString() {
+        long abs = Math.abs(minor);
+        long fraction = abs % UNIT;
+        char[] digits = new char[SCALE];
+        for (int i = SCALE - 1; i >= 0; i--) {
+            digits[i] = (char) ('0' + fraction % 10);
+            fraction /= 10;
+        }
+        int end = SCALE;
+        while (end > 2 && digits[end - 1] == '0') {
+            end--;
+        }
+        StringBuilder sb = new StringBuilder(24);
+        if (minor < 0) {
+            sb.append('-');
+        }
+        return sb.append(abs / UNIT).append('.').append(digits, 0, end).toString();
+    }
+
+    private static int digit(String amount, int i) {
+        char c = amount.charAt(i);
+        if (c < '0' || c > '9') {
+            throw new NumberFormatException("Not an amount: " + amount);
+        }
+        return c - '0';
+    }
+}
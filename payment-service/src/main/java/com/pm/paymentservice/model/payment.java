@@ -4,20 +4,23 @@ import com.pm.paymentservice.Enum.PaymentStatus;
 import com.pm.paymentservice.Enum.PaymentType;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotNull;
-import jakarta.validation.constraints.PositiveOrZero;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+import org.springframework.data.domain.Persistable;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.UUID;
 
 @Entity
 @Data
 @Table(name = "payments")
-public class payment {
+public class payment implements Persistable<UUID> {
 
+    // Assigned in PaymentMapper.toEntity rather than generated by Hibernate, so a
+    // payment has its id before it's written and inserts can go out as JDBC batches
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
     private UUID id;
 
     // The account being debited
@@ -30,10 +33,10 @@ public class payment {
     @Column(nullable = false)
     private String toAccountId;
 
+    // Stored as NUMERIC(19,4) through MoneyConverter
     @NotNull
-    @PositiveOrZero
     @Column(nullable = false, precision = 19, scale = 4)
-    private BigDecimal amount;
+    private Money amount;
 
     // Persists the enum as its string name (e.g. "COMPLETED") rather than
     // an integer index. String is safer - adding new values won't break existing data.
@@ -47,16 +50,41 @@ public class payment {
 
     private String description;
 
+    // Optional client-supplied key - a retried ProcessPayment with the same key
+    // returns this payment instead of creating a second one.
+    @Column(unique = true)
+    private String idempotencyKey;
+
     @Column(nullable = false, updatable = false)
     private LocalDateTime createdAt;
 
     private LocalDateTime updatedAt;
 
+    // With an assigned id Spring Data can't tell a new payment from a detached one and
+    // would merge (SELECT, then INSERT) on save - this tells it which one it has
+    @Transient
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private boolean persisted;
+
+    @Override
+    public boolean isNew() {
+        return !persisted;
+    }
+
+    @PostPersist
+    @PostLoad
+    void markPersisted() {
+        persisted = true;
+    }
+
     // JPA lifecycle hook - fires automatically just before the first INSERT.
     // Guarantees createdAt is always set, even if the service layer forgets.
+    // Microseconds, as Postgres keeps them: the copy in memory (AccountHistoryCache,
+    // page cursors) then matches the row exactly.
     @PrePersist
     public void onCreate() {
-        createdAt = LocalDateTime.now();
+        createdAt = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
         updatedAt = LocalDateTime.now();
     }
 
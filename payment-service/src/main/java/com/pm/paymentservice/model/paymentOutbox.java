@@ -0,0 +1,56 @@
+package com.pm.paymentservice.model;
+
+import com.pm.paymentservice.Enum.PaymentStatus;
+import com.pm.paymentservice.Enum.PaymentType;
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// One pending Kafka event. The event fields are copied out of the payment at the
+// moment its status changed, so the relay never has to re-read the payments table.
+// sentAt stays null until the broker has acknowledged the send.
+@Entity
+@Data
+@Table(name = "payment_outbox")
+public class paymentOutbox {
+
+    // Drawn from the BIGSERIAL's sequence 50 at a time (V7) so inserts can be batched.
+    // Ids still increase per instance, which gives the relay a cheap order to drain in;
+    // across instances they interleave, as commit order already did.
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "payment_outbox_id")
+    @SequenceGenerator(name = "payment_outbox_id", sequenceName = "payment_outbox_id_seq", allocationSize = 50)
+    private Long id;
+
+    @NotNull
+    @Column(nullable = false)
+    private UUID paymentId;
+
+    @NotNull
+    @Column(nullable = false)
+    private String fromAccountId;
+
+    @NotNull
+    @Column(nullable = false)
+    private String toAccountId;
+
+    @NotNull
+    @Column(nullable = false, precision = 19, scale = 4)
+    private Money amount;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private PaymentStatus status;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private PaymentType type;
+
+    @Column(nullable = false)
+    private LocalDateTime occurredAt;
+
+    private LocalDateTime sentAt;
+}
@@ -0,0 +1,44 @@
+package com.pm.paymentservice.model;
+
+import com.pm.paymentservice.Enum.SagaState;
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// One step a payment saga reached. Rows are only ever appended, so the log doubles
+// as an audit trail of how the payment got to its status.
+@Entity
+@Data
+@Table(name = "payment_saga_steps")
+public class paymentSagaStep {
+
+    // Drawn from the BIGSERIAL's sequence 50 at a time (V7) so inserts can be batched.
+    // Ids from different instances interleave, so they don't order one payment's steps -
+    // PaymentSagaLog.current goes by SagaState instead.
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "payment_saga_steps_id")
+    @SequenceGenerator(name = "payment_saga_steps_id", sequenceName = "payment_saga_steps_id_seq", allocationSize = 50)
+    private Long id;
+
+    @NotNull
+    @Column(nullable = false)
+    private UUID paymentId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private SagaState state;
+
+    @Column(length = 500)
+    private String detail;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    public void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+}
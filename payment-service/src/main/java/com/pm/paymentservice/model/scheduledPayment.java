@@ -0,0 +1,89 @@
+package com.pm.paymentservice.model;
+
+import com.pm.paymentservice.Enum.PaymentType;
+import com.pm.paymentservice.Enum.ScheduleFrequency;
+import com.pm.paymentservice.Enum.ScheduleStatus;
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// A standing order - see ScheduledPaymentService. Each occurrence becomes an ordinary
+// payment with idempotency key "schedule:<id>:<runs>" (":<attempts>" added on retries
+// after a failed payment).
+@Entity
+@Data
+@Table(name = "scheduled_payments")
+public class scheduledPayment {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    @NotNull
+    @Column(nullable = false)
+    private String fromAccountId;
+
+    @NotNull
+    @Column(nullable = false)
+    private String toAccountId;
+
+    @NotNull
+    @Column(nullable = false, precision = 19, scale = 4)
+    private Money amount;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private PaymentType type;
+
+    private String description;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private ScheduleFrequency frequency;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private ScheduleStatus status;
+
+    // Occurrences are counted from here (see ScheduleFrequency.nextAfter)
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime firstRunAt;
+
+    @Column(nullable = false)
+    private LocalDateTime nextRunAt;
+
+    // No occurrence after this; null runs until cancelled
+    private LocalDateTime endsAt;
+
+    // Occurrences made so far - also the run number in the next payment's idempotency key
+    @Column(nullable = false)
+    private int runs;
+
+    // Failed attempts at the current run - each retry gets its own idempotency key
+    @Column(nullable = false)
+    private int attempts;
+
+    private LocalDateTime lastRunAt;
+
+    // Set while an instance holds the row in its timing wheel; expires if it dies
+    private LocalDateTime claimedUntil;
+
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    public void onCreate() {
+        createdAt = LocalDateTime.now();
+        updatedAt = LocalDateTime.now();
+    }
+
+    @PreUpdate
+    public void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,9 @@
+-- PaymentSagaRecovery scans for payments left PENDING, oldest first. V6 created the
+-- partial index for it with a plain CREATE INDEX, which blocks writes to payments while
+-- it builds. V6 itself can't change - Flyway would reject the edited checksum on every
+-- database that already ran it - so the index is rebuilt here, CONCURRENTLY like the
+-- other payments indexes in V4, V5 and V9, so payments stay writable. Dropping first also
+-- replaces a copy left INVALID by an interrupted build.
+DROP INDEX CONCURRENTLY IF EXISTS idx_payments_pending_created;
+CREATE INDEX CONCURRENTLY idx_payments_pending_created
+    ON payments (created_at) WHERE status = 'PENDING';
@@ -0,0 +1,4 @@
+-- Failed attempts at a schedule's current run. A run whose payment failed outright is
+-- tried again under a new idempotency key (schedule:<id>:<run>:<attempt>) - the old key
+-- would only replay the FAILED payment. recordRun sets it back to 0.
+ALTER TABLE scheduled_payments ADD COLUMN attempts INTEGER NOT NULL DEFAULT 0;
@@ -0,0 +1,17 @@
+-- Events waiting to be relayed to Kafka. Written in the same transaction as the
+-- payments row that produced them, so an event exists if and only if the status
+-- change committed.
+CREATE TABLE payment_outbox (
+    id              BIGSERIAL PRIMARY KEY,
+    payment_id      UUID          NOT NULL,
+    from_account_id VARCHAR(255)  NOT NULL,
+    to_account_id   VARCHAR(255)  NOT NULL,
+    amount          NUMERIC(19,4) NOT NULL,
+    status          VARCHAR(255)  NOT NULL,
+    type            VARCHAR(255)  NOT NULL,
+    occurred_at     TIMESTAMP     NOT NULL,
+    sent_at         TIMESTAMP
+);
+
+-- The relay only ever scans unsent rows in id order; keep that index tiny.
+CREATE INDEX idx_payment_outbox_unsent ON payment_outbox (id) WHERE sent_at IS NULL;
@@ -0,0 +1,3 @@
+-- Client-supplied key for ProcessPayment retries. NULLs don't collide under a
+-- UNIQUE constraint, so payments submitted without a key are unaffected.
+ALTER TABLE payments ADD COLUMN idempotency_key VARCHAR(255) UNIQUE;
@@ -0,0 +1,9 @@
+-- Account history is read one side at a time (see paymentRepo), newest first.
+-- id is the keyset-pagination tie-breaker, so it rides along as the last column
+-- and a page is a single index range scan.
+-- CONCURRENTLY keeps payments writable while the indexes build; Flyway runs
+-- this script outside a transaction because of it.
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_payments_from_account_created
+    ON payments (from_account_id, created_at, id);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_payments_to_account_created
+    ON payments (to_account_id, created_at, id);
@@ -0,0 +1,5 @@
+-- PaymentSettlementService picks up AUTHORIZED payments oldest first. They're a
+-- small, short-lived slice of the table, so a partial index keeps the lookup cheap
+-- without indexing every settled payment.
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_payments_authorized_created
+    ON payments (created_at) WHERE status = 'AUTHORIZED';
@@ -0,0 +1,15 @@
+-- Append-only log of the steps each payment saga went through. The latest row for a
+-- payment is where PaymentSagaRecovery resumes it after a crash; a PENDING payment
+-- with no rows at all never got past STARTED.
+CREATE TABLE payment_saga_steps (
+    id          BIGSERIAL PRIMARY KEY,
+    payment_id  UUID         NOT NULL,
+    state       VARCHAR(20)  NOT NULL,
+    detail      VARCHAR(500),
+    created_at  TIMESTAMP    NOT NULL
+);
+
+CREATE INDEX idx_payment_saga_steps_payment ON payment_saga_steps (payment_id, id);
+
+-- Recovery scans for payments left PENDING; keep that lookup off the full table
+CREATE INDEX idx_payments_pending_created ON payments (created_at) WHERE status = 'PENDING';
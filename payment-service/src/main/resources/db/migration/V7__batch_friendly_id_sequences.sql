@@ -0,0 +1,7 @@
+-- payment_outbox and payment_saga_steps ids used to come from IDENTITY, which makes
+-- Hibernate send every INSERT on its own to read back the generated key. The entities
+-- now draw ids from the BIGSERIAL sequences through Hibernate's pooled optimizer - one
+-- nextval hands out a block of 50 - so their inserts can be batched. The increment has
+-- to match the entities' allocationSize.
+ALTER SEQUENCE payment_outbox_id_seq INCREMENT BY 50;
+ALTER SEQUENCE payment_saga_steps_id_seq INCREMENT BY 50;
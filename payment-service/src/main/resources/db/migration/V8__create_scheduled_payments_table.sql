@@ -0,0 +1,26 @@
+-- Standing orders. ScheduledPaymentDispatcher claims the rows coming due in the next
+-- few seconds into its in-memory timing wheel; claimed_until keeps other instances off
+-- them meanwhile, and lets them take the rows over if this one dies.
+CREATE TABLE scheduled_payments (
+    id              UUID PRIMARY KEY,
+    from_account_id VARCHAR(255)  NOT NULL,
+    to_account_id   VARCHAR(255)  NOT NULL,
+    amount          NUMERIC(19,4) NOT NULL,
+    type            VARCHAR(20)   NOT NULL,
+    description     VARCHAR(255),
+    frequency       VARCHAR(20)   NOT NULL,
+    status          VARCHAR(20)   NOT NULL,
+    first_run_at    TIMESTAMP     NOT NULL,
+    next_run_at     TIMESTAMP     NOT NULL,
+    ends_at         TIMESTAMP,
+    runs            INTEGER       NOT NULL DEFAULT 0,
+    last_run_at     TIMESTAMP,
+    claimed_until   TIMESTAMP,
+    created_at      TIMESTAMP     NOT NULL,
+    updated_at      TIMESTAMP
+);
+
+-- The loader only ever reads the front of this index - active schedules due within the
+-- horizon - so a tick costs the same with a thousand schedules or ten million. Finished
+-- and cancelled ones drop out of it.
+CREATE INDEX idx_scheduled_payments_due ON scheduled_payments (next_run_at) WHERE status = 'ACTIVE';
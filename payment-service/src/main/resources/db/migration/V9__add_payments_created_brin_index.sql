@@ -0,0 +1,6 @@
+-- Recent payments by time, for rebuilding the velocity counters on startup. payments
+-- is append-only in created_at order, so a BRIN index - a few pages summarising block
+-- ranges - finds the last hour as well as a B-tree would, at almost no cost per insert.
+-- CONCURRENTLY keeps payments writable while it builds; Flyway runs this script
+-- outside a transaction because of it.
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_payments_created_brin ON payments USING brin (created_at);
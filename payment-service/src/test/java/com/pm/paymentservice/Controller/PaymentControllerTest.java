@@ -1,13 +1,17 @@
 package com.pm.paymentservice.Controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pm.paymentservice.DTO.PaymentPageDTO;
 import com.pm.paymentservice.DTO.PaymentRequestDTO;
 import com.pm.paymentservice.DTO.PaymentResponseDTO;
 import com.pm.paymentservice.Enum.PaymentType;
 import com.pm.paymentservice.Exception.InsufficientFundsException;
 import com.pm.paymentservice.Exception.AccountNotActiveException;
 import com.pm.paymentservice.Exception.PaymentNotFoundException;
+import com.pm.paymentservice.Enum.ExportFormat;
+import com.pm.paymentservice.Service.PaymentExportService;
 import com.pm.paymentservice.Service.PaymentService;
+import com.pm.paymentservice.model.Money;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -16,10 +20,18 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -33,6 +45,7 @@ class PaymentControllerTest {
     @Autowired private ObjectMapper objectMapper;
 
     @MockBean private PaymentService paymentService;
+    @MockBean private PaymentExportService paymentExportService;
 
     private String testPaymentId;
     private String testAccountId;
@@ -58,7 +71,7 @@ class PaymentControllerTest {
         validRequest = new PaymentRequestDTO();
         validRequest.setFromAccountId(testAccountId);
         validRequest.setToAccountId(UUID.randomUUID().toString());
-        validRequest.setAmount("100.00");
+        validRequest.setAmount(Money.parse("100.00"));
         validRequest.setType(PaymentType.TRANSFER);
         validRequest.setDescription("Test payment");
     }
@@ -111,14 +124,74 @@ class PaymentControllerTest {
     // --- GET /api/payments/account/{accountId} ---
 
     @Test
-    void getPaymentsByAccount_shouldReturn200WithList() throws Exception {
-        when(paymentService.getPaymentsByAccount(testAccountId)).thenReturn(List.of(responseDTO));
+    void getPaymentsByAccount_shouldReturnFirstPage_withNextPageToken() throws Exception {
+        when(paymentService.getPaymentsByAccount(testAccountId, 0, ""))
+                .thenReturn(new PaymentPageDTO(List.of(responseDTO), "cursor-1"));
 
         mockMvc.perform(get("/api/payments/account/{accountId}", testAccountId))
                 .andExpect(status().isOk())
+                .andExpect(header().string("X-Next-Page-Token", "cursor-1"))
                 .andExpect(jsonPath("$[0].fromAccountId").value(testAccountId));
     }
 
+    @Test
+    void getPaymentsByAccount_shouldPassCursorThrough_andOmitHeaderOnLastPage() throws Exception {
+        when(paymentService.getPaymentsByAccount(testAccountId, 20, "cursor-1"))
+                .thenReturn(new PaymentPageDTO(List.of(responseDTO), null));
+
+        mockMvc.perform(get("/api/payments/account/{accountId}", testAccountId)
+                        .param("pageSize", "20")
+                        .param("pageToken", "cursor-1"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("X-Next-Page-Token"))
+                .andExpect(jsonPath("$[0].paymentId").value(testPaymentId));
+    }
+
+    // --- GET /api/payments/export ---
+
+    @Test
+    void exportPayments_shouldStreamCsv_forWholeDays() throws Exception {
+        when(paymentExportService.export(eq(ExportFormat.CSV), eq(testAccountId), any(), any(), any()))
+                .thenAnswer(inv -> {
+                    OutputStream out = inv.getArgument(4);
+                    out.write("payment_id\n".getBytes(StandardCharsets.UTF_8));
+                    return 0L;
+                });
+
+        mockMvc.perform(get("/api/payments/export")
+                        .param("from", "2025-01-01").param("to", "2025-01-31").param("accountId", testAccountId))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("text/csv"))
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"payments.csv\""))
+                .andExpect(content().string("payment_id\n"));
+
+        // to is inclusive: the range ends at the start of the next day
+        verify(paymentExportService).export(eq(ExportFormat.CSV), eq(testAccountId),
+                eq(LocalDateTime.of(2025, 1, 1, 0, 0)), eq(LocalDateTime.of(2025, 2, 1, 0, 0)), any());
+    }
+
+    @Test
+    void exportPayments_shouldLeaveRangeOpen_whenNoDatesGiven() throws Exception {
+        mockMvc.perform(get("/api/payments/export").param("format", "NDJSON"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("application/x-ndjson"));
+
+        verify(paymentExportService).export(eq(ExportFormat.NDJSON), isNull(), isNull(), isNull(), any());
+    }
+
+    @Test
+    void exportPayments_shouldReturn400_forUnknownFormatOrBackwardsRange() throws Exception {
+        mockMvc.perform(get("/api/payments/export").param("format", "xlsx"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Unknown export format 'xlsx', expected csv or ndjson"));
+        mockMvc.perform(get("/api/payments/export").param("from", "2025-02-01").param("to", "2025-01-01"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/payments/export").param("from", "yesterday"))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(paymentExportService);
+    }
+
     // --- POST /api/payments ---
 
     @Test
@@ -133,6 +206,20 @@ class PaymentControllerTest {
                 .andExpect(jsonPath("$.status").value("COMPLETED"));
     }
 
+    @Test
+    void processPayment_shouldReturn202WithLocation_whenAsyncPreferred() throws Exception {
+        responseDTO.setStatus("PENDING");
+        when(paymentService.processPayment(argThat(PaymentRequestDTO::isAsync))).thenReturn(responseDTO);
+
+        mockMvc.perform(post("/api/payments")
+                        .header("Prefer", "respond-async")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(validRequest)))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", "/api/payments/" + testPaymentId))
+                .andExpect(jsonPath("$.status").value("PENDING"));
+    }
+
     @Test
     void processPayment_shouldReturn400WhenRequiredFieldsMissing() throws Exception {
         // Missing fromAccountId triggers @NotBlank validation
@@ -146,6 +233,18 @@ class PaymentControllerTest {
                 .andExpect(jsonPath("$.errors.fromAccountId").exists());
     }
 
+    @Test
+    void processPayment_shouldReturn400WhenAmountIsNotANumber() throws Exception {
+        String body = objectMapper.writeValueAsString(validRequest).replace("\"100.00\"", "\"12,50\"");
+
+        mockMvc.perform(post("/api/payments")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Not an amount: 12,50"));
+        verifyNoInteractions(paymentService);
+    }
+
     @Test
     void processPayment_shouldReturn400WhenPaymentTypeIsNull() throws Exception {
         validRequest.setType(null);
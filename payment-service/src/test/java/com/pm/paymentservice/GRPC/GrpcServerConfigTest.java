@@ -0,0 +1,39 @@
+package com.pm.paymentservice.GRPC;
+
+import io.grpc.ServerBuilder;
+import net.devh.boot.grpc.server.serverfactory.GrpcServerConfigurer;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class GrpcServerConfigTest {
+
+    private final ApplicationContextRunner context = new ApplicationContextRunner()
+            .withUserConfiguration(GrpcServerConfig.class);
+
+    @Test
+    void shouldLeaveTheDefaultExecutor_unlessVirtualThreadsAreEnabled() {
+        context.run(ctx -> assertThat(ctx).doesNotHaveBean(GrpcServerConfigurer.class));
+    }
+
+    @Test
+    void shouldHandleCallsOnVirtualThreads_whenEnabled() {
+        context.withPropertyValues("spring.threads.virtual.enabled=true").run(ctx -> {
+            ServerBuilder<?> builder = mock(ServerBuilder.class);
+            ctx.getBean(GrpcServerConfigurer.class).accept(builder);
+
+            ArgumentCaptor<Executor> executor = ArgumentCaptor.forClass(Executor.class);
+            verify(builder).executor(executor.capture());
+            Thread handler = CompletableFuture.supplyAsync(Thread::currentThread, executor.getValue()).get();
+            assertThat(handler.isVirtual()).isTrue();
+            assertThat(handler.getName()).startsWith("grpc-payment-");
+        });
+    }
+}
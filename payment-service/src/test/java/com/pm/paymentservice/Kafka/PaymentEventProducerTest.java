@@ -0,0 +1,56 @@
+package com.pm.paymentservice.Kafka;
+
+import com.pm.proto.PaymentEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PaymentEventProducerTest {
+
+    @Mock private KafkaTemplate<String, PaymentEvent> kafkaTemplate;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private PaymentEventProducer producer;
+
+    @BeforeEach
+    void setUp() {
+        producer = new PaymentEventProducer(kafkaTemplate, "payment-processed", registry);
+    }
+
+    private PaymentEvent event(String paymentId) {
+        return PaymentEvent.newBuilder().setPaymentId(paymentId).setAmount("10.00").build();
+    }
+
+    @Test
+    void send_shouldKeyByPaymentId_andTimeTheAck() {
+        when(kafkaTemplate.send("payment-processed", "p1", event("p1")))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        producer.send(event("p1")).join();
+
+        assertThat(registry.get("payment.events.send").tag("outcome", "acked").timer().count()).isEqualTo(1);
+        assertThat(registry.get("payment.events.send").tag("outcome", "failed").timer().count()).isZero();
+    }
+
+    @Test
+    void send_shouldRecordFailure_andHandBackTheFailedFuture() {
+        when(kafkaTemplate.send("payment-processed", "p1", event("p1")))
+                .thenReturn(CompletableFuture.failedFuture(new RuntimeException("broker down")));
+
+        CompletableFuture<?> sent = producer.send(event("p1"));
+
+        // the outbox publisher still sees the failure and leaves the row unsent
+        assertThat(sent).isCompletedExceptionally();
+        assertThat(registry.get("payment.events.send").tag("outcome", "failed").timer().count()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,64 @@
+package com.pm.paymentservice.Kafka;
+
+import com.pm.proto.Payment;
+import com.pm.proto.PaymentEvent;
+import com.pm.proto.PaymentStatus;
+import com.pm.proto.kafka.PaymentEventDeserializer;
+import com.pm.proto.kafka.ProtobufSerializer;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// The serializer payment-service produces with against the deserializer
+// notification-service and analytics-service consume with (both in proto-config)
+class PaymentEventSerdeTest {
+
+    private final ProtobufSerializer<PaymentEvent> serializer = new ProtobufSerializer<>();
+    private final PaymentEventDeserializer deserializer = new PaymentEventDeserializer();
+
+    private PaymentEvent event() {
+        return PaymentEvent.newBuilder()
+                .setPaymentId("pay-001")
+                .setFromAccountId("acc-from")
+                .setToAccountId("acc-to")
+                .setAmount("100.00")
+                .setAmountMinor(1_000_000L)
+                .setAmountScale(4)
+                .setStatus(PaymentStatus.PAY_COMPLETED)
+                .setOccurredAt("2026-01-01T10:00:00")
+                .build();
+    }
+
+    @Test
+    void roundTrip_shouldRestoreTheEvent() {
+        RecordHeaders headers = new RecordHeaders();
+
+        byte[] bytes = serializer.serialize("payment-processed", headers, event());
+
+        assertThat(deserializer.deserialize("payment-processed", headers, bytes)).isEqualTo(event());
+    }
+
+    @Test
+    void deserialize_shouldReject_recordWithoutContentType() {
+        // what the topic held before the switch from JSON
+        byte[] json = "{\"paymentId\":\"pay-001\",\"status\":\"COMPLETED\"}".getBytes(StandardCharsets.UTF_8);
+
+        assertThatThrownBy(() -> deserializer.deserialize("payment-processed", new RecordHeaders(), json))
+                .isInstanceOf(SerializationException.class);
+    }
+
+    @Test
+    void deserialize_shouldReject_otherMessageType() {
+        RecordHeaders headers = new RecordHeaders();
+        byte[] bytes = new ProtobufSerializer<Payment>()
+                .serialize("payment-processed", headers, Payment.newBuilder().setId("pay-001").build());
+
+        assertThatThrownBy(() -> deserializer.deserialize("payment-processed", headers, bytes))
+                .isInstanceOf(SerializationException.class);
+    }
+}
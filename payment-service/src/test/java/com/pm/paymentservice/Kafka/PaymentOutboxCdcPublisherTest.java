@@ -0,0 +1,127 @@
+package com.pm.paymentservice.Kafka;
+
+import com.pm.paymentservice.Enum.PaymentType;
+import com.pm.paymentservice.Repository.paymentOutboxRepo;
+import com.pm.paymentservice.model.Money;
+import com.pm.paymentservice.model.paymentOutbox;
+import com.pm.proto.PaymentEvent;
+import com.pm.proto.PaymentStatus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaBuilder;
+import org.apache.kafka.connect.data.Struct;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PaymentOutboxCdcPublisherTest {
+
+    @Mock private paymentOutboxRepo outboxRepository;
+    @Mock private PaymentEventProducer eventProducer;
+    @Mock private PlatformTransactionManager transactionManager;
+
+    // Shape of the "after" struct Debezium emits for a payment_outbox insert
+    private static final Schema OUTBOX_ROW = SchemaBuilder.struct()
+            .field("id", Schema.INT64_SCHEMA)
+            .field("payment_id", Schema.STRING_SCHEMA)
+            .field("from_account_id", Schema.STRING_SCHEMA)
+            .field("to_account_id", Schema.STRING_SCHEMA)
+            .field("amount", Schema.STRING_SCHEMA)
+            .field("status", Schema.STRING_SCHEMA)
+            .field("type", Schema.STRING_SCHEMA)
+            .field("occurred_at", Schema.INT64_SCHEMA)
+            .field("sent_at", Schema.OPTIONAL_INT64_SCHEMA)
+            .build();
+
+    @Test
+    void toEvent_shouldMapOutboxRowColumns() {
+        String paymentId = UUID.randomUUID().toString();
+        LocalDateTime occurredAt = LocalDateTime.of(2025, 1, 1, 10, 0, 5, 123_456_000);
+        long micros = occurredAt.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + 123_456L;
+
+        Struct after = new Struct(OUTBOX_ROW)
+                .put("id", 7L)
+                .put("payment_id", paymentId)
+                .put("from_account_id", "from")
+                .put("to_account_id", "to")
+                .put("amount", "100.0000")
+                .put("status", "COMPLETED")
+                .put("type", "TRANSFER")
+                .put("occurred_at", micros);
+
+        PaymentEvent event = PaymentOutboxCdcPublisher.toEvent(after);
+
+        assertThat(event.getPaymentId()).isEqualTo(paymentId);
+        // NUMERIC(19,4) comes through as "100.0000"; the event carries the canonical form
+        assertThat(event.getAmount()).isEqualTo("100.00");
+        assertThat(event.getAmountMinor()).isEqualTo(1_000_000L);
+        assertThat(event.getStatus()).isEqualTo(PaymentStatus.PAY_COMPLETED);
+        assertThat(event.getOccurredAt()).isEqualTo(occurredAt.toString());
+    }
+
+    @Test
+    void connection_shouldTakeHostPortAndDatabaseFromTheDatasourceUrl() {
+        Properties props = PaymentOutboxCdcPublisher.connection(
+                "jdbc:postgresql://payment-db:5433/payments_eu?reWriteBatchedInserts=true");
+
+        assertThat(props.getProperty("database.hostname")).isEqualTo("payment-db");
+        assertThat(props.getProperty("database.port")).isEqualTo("5433");
+        assertThat(props.getProperty("database.dbname")).isEqualTo("payments_eu");
+        assertThat(PaymentOutboxCdcPublisher.connection("jdbc:postgresql://db/paymentdb")
+                .getProperty("database.port")).isEqualTo("5432");
+    }
+
+    @Test
+    void connection_shouldRejectUrlsItCantTakeApart() {
+        assertThatThrownBy(() -> PaymentOutboxCdcPublisher.connection("jdbc:postgresql://db1:5432,db2:5432/paymentdb"))
+                .isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> PaymentOutboxCdcPublisher.connection("jdbc:postgresql://db:5432/"))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    // Rows left unsent before the slot existed never show up in the stream
+    @Test
+    void publishBacklog_shouldSendAndMarkRowsLeftUnsent() {
+        PaymentOutboxCdcPublisher publisher = new PaymentOutboxCdcPublisher(eventProducer, outboxRepository,
+                "jdbc:postgresql://localhost:5002/paymentdb", "admin", "root", "offsets.dat",
+                new TransactionTemplate(transactionManager), 2, 1000, new SimpleMeterRegistry());
+        when(outboxRepository.lockNextUnsent(2)).thenReturn(List.of(row(1), row(2)), List.of(row(3)));
+        when(eventProducer.send(any(PaymentEvent.class))).thenReturn(CompletableFuture.completedFuture(null));
+
+        publisher.publishBacklog();
+
+        verify(eventProducer, times(3)).send(any(PaymentEvent.class));
+        verify(outboxRepository).markSent(eq(List.of(1L, 2L)), any());
+        verify(outboxRepository).markSent(eq(List.of(3L)), any());
+    }
+
+    private paymentOutbox row(long id) {
+        paymentOutbox row = new paymentOutbox();
+        row.setId(id);
+        row.setPaymentId(UUID.randomUUID());
+        row.setFromAccountId("from");
+        row.setToAccountId("to");
+        row.setAmount(Money.parse("100.00"));
+        row.setStatus(com.pm.paymentservice.Enum.PaymentStatus.COMPLETED);
+        row.setType(PaymentType.TRANSFER);
+        row.setOccurredAt(LocalDateTime.now());
+        return row;
+    }
+}
@@ -0,0 +1,52 @@
+package com.pm.paymentservice.Kafka;
+
+import com.pm.paymentservice.Repository.paymentOutboxRepo;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PaymentOutboxCleanerTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2025, 3, 1, 12, 0);
+
+    @Mock private paymentOutboxRepo outboxRepository;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private PaymentOutboxCleaner cleaner;
+
+    @BeforeEach
+    void setUp() {
+        cleaner = new PaymentOutboxCleaner(outboxRepository, Duration.ofHours(24), 2, registry);
+    }
+
+    @Test
+    void purge_shouldDeleteRowsSentBeforeTheRetention_inBatchesUntilOneComesBackShort() {
+        when(outboxRepository.deleteSentBefore(NOW.minusHours(24), 2)).thenReturn(2, 2, 1);
+
+        int total = cleaner.purge(NOW);
+
+        assertThat(total).isEqualTo(5);
+        verify(outboxRepository, times(3)).deleteSentBefore(NOW.minusHours(24), 2);
+        assertThat(registry.get("payment.outbox.deleted").counter().count()).isEqualTo(5);
+    }
+
+    @Test
+    void purge_shouldStopAfterOneQuery_whenNothingIsOldEnough() {
+        when(outboxRepository.deleteSentBefore(any(), anyInt())).thenReturn(0);
+
+        assertThat(cleaner.purge(NOW)).isZero();
+        verify(outboxRepository, times(1)).deleteSentBefore(any(), anyInt());
+    }
+}
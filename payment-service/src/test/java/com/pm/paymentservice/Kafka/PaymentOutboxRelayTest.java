@@ -0,0 +1,108 @@
+package com.pm.paymentservice.Kafka;
+
+import com.pm.paymentservice.Enum.PaymentStatus;
+import com.pm.paymentservice.Enum.PaymentType;
+import com.pm.paymentservice.Repository.paymentOutboxRepo;
+import com.pm.paymentservice.model.Money;
+import com.pm.paymentservice.model.paymentOutbox;
+import com.pm.proto.PaymentEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PaymentOutboxRelayTest {
+
+    @Mock private paymentOutboxRepo outboxRepository;
+    @Mock private PaymentEventProducer eventProducer;
+    @Mock private PlatformTransactionManager transactionManager;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private PaymentOutboxRelay relay;
+
+    @BeforeEach
+    void setUp() {
+        // TransactionTemplate over a mock manager just runs the callback inline
+        relay = new PaymentOutboxRelay(outboxRepository, eventProducer,
+                new TransactionTemplate(transactionManager), 2, 1000, registry);
+    }
+
+    private paymentOutbox row(long id) {
+        paymentOutbox row = new paymentOutbox();
+        row.setId(id);
+        row.setPaymentId(UUID.randomUUID());
+        row.setFromAccountId("from");
+        row.setToAccountId("to");
+        row.setAmount(Money.parse("100.00"));
+        row.setStatus(PaymentStatus.COMPLETED);
+        row.setType(PaymentType.TRANSFER);
+        row.setOccurredAt(LocalDateTime.now());
+        return row;
+    }
+
+    @Test
+    void relayBatch_shouldMarkOnlyAcknowledgedRowsAsSent() {
+        when(outboxRepository.lockNextUnsent(2)).thenReturn(List.of(row(1), row(2)));
+        when(eventProducer.send(any(PaymentEvent.class)))
+                .thenReturn(CompletableFuture.completedFuture(null))
+                .thenReturn(CompletableFuture.failedFuture(new RuntimeException("broker down")));
+
+        int sent = relay.relayBatch();
+
+        assertThat(sent).isEqualTo(1);
+        // Row 2 stays unsent and is retried on the next tick
+        verify(outboxRepository).markSent(eq(List.of(1L)), any());
+        assertThat(registry.get("payment.outbox.unacknowledged").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void toEvent_shouldCarryAmountAsMinorUnits_andPrefixedEnums() {
+        PaymentEvent event = PaymentOutboxRelay.toEvent(row(1));
+
+        assertThat(event.getAmount()).isEqualTo("100.00");
+        assertThat(event.getAmountMinor()).isEqualTo(1_000_000L);
+        assertThat(event.getAmountScale()).isEqualTo(Money.SCALE);
+        assertThat(event.getStatus()).isEqualTo(com.pm.proto.PaymentStatus.PAY_COMPLETED);
+        assertThat(event.getType()).isEqualTo(com.pm.proto.PaymentType.PAY_TRANSFER);
+    }
+
+    @Test
+    void relayBatch_shouldDoNothing_whenOutboxEmpty() {
+        when(outboxRepository.lockNextUnsent(2)).thenReturn(List.of());
+
+        assertThat(relay.relayBatch()).isZero();
+
+        verifyNoInteractions(eventProducer);
+        verify(outboxRepository, never()).markSent(any(), any());
+    }
+
+    @Test
+    void drain_shouldKeepGoing_whileBatchesComeBackFull() {
+        when(outboxRepository.lockNextUnsent(2))
+                .thenReturn(List.of(row(1), row(2)))
+                .thenReturn(List.of(row(3)));
+        when(eventProducer.send(any(PaymentEvent.class)))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        relay.drain();
+
+        // First batch was full, so a second one was pulled in the same tick
+        verify(outboxRepository, times(2)).lockNextUnsent(2);
+        verify(eventProducer, times(3)).send(any(PaymentEvent.class));
+    }
+}
@@ -4,10 +4,10 @@ import com.pm.paymentservice.DTO.PaymentRequestDTO;
 import com.pm.paymentservice.DTO.PaymentResponseDTO;
 import com.pm.paymentservice.Enum.PaymentStatus;
 import com.pm.paymentservice.Enum.PaymentType;
+import com.pm.paymentservice.model.Money;
 import com.pm.paymentservice.model.payment;
 import org.junit.jupiter.api.Test;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.UUID;
 
@@ -22,7 +22,7 @@ class PaymentMapperTest {
         PaymentRequestDTO dto = new PaymentRequestDTO();
         dto.setFromAccountId("acc-001");
         dto.setToAccountId("acc-002");
-        dto.setAmount("250.00");
+        dto.setAmount(Money.parse("250.00"));
         dto.setType(PaymentType.TRANSFER);
         dto.setDescription("Rent payment");
 
@@ -30,7 +30,7 @@ class PaymentMapperTest {
 
         assertThat(result.getFromAccountId()).isEqualTo("acc-001");
         assertThat(result.getToAccountId()).isEqualTo("acc-002");
-        assertThat(result.getAmount()).isEqualByComparingTo(new BigDecimal("250.00"));
+        assertThat(result.getAmount()).isEqualTo(Money.parse("250.00"));
         assertThat(result.getType()).isEqualTo(PaymentType.TRANSFER);
         assertThat(result.getDescription()).isEqualTo("Rent payment");
         // Status must always start as PENDING — service layer enforces this invariant
@@ -42,7 +42,7 @@ class PaymentMapperTest {
         PaymentRequestDTO dto = new PaymentRequestDTO();
         dto.setFromAccountId("acc-001");
         dto.setToAccountId("acc-002");
-        dto.setAmount("100.00");
+        dto.setAmount(Money.parse("100.00"));
         dto.setType(PaymentType.DEPOSIT);
         dto.setDescription(null);
 
@@ -60,7 +60,7 @@ class PaymentMapperTest {
         p.setId(UUID.fromString("11111111-1111-1111-1111-111111111111"));
         p.setFromAccountId("acc-001");
         p.setToAccountId("acc-002");
-        p.setAmount(new BigDecimal("250.0000"));
+        p.setAmount(Money.parse("250.0000"));
         p.setStatus(PaymentStatus.COMPLETED);
         p.setType(PaymentType.TRANSFER);
         p.setDescription("Rent payment");
@@ -72,7 +72,7 @@ class PaymentMapperTest {
         assertThat(result.getPaymentId()).isEqualTo("11111111-1111-1111-1111-111111111111");
         assertThat(result.getFromAccountId()).isEqualTo("acc-001");
         assertThat(result.getToAccountId()).isEqualTo("acc-002");
-        assertThat(result.getAmount()).isEqualTo("250.0000");
+        assertThat(result.getAmount()).isEqualTo("250.00");
         // Status and type stored as plain enum names - consumers and proto layer rely on this
         assertThat(result.getStatus()).isEqualTo("COMPLETED");
         assertThat(result.getType()).isEqualTo("TRANSFER");
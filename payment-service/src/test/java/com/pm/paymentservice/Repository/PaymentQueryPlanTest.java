@@ -0,0 +1,158 @@
+package com.pm.paymentservice.Repository;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Runs the account-history SQL from paymentRepo against a real Postgres (embedded
+// binaries, no Docker) with the Flyway migrations applied and enough rows that the
+// planner has to choose, then checks the plans read through the per-side indexes
+// instead of scanning payments.
+class PaymentQueryPlanTest {
+
+    private static EmbeddedPostgres postgres;
+    private static DataSource dataSource;
+
+    @BeforeAll
+    static void startDatabase() throws Exception {
+        postgres = EmbeddedPostgres.builder().start();
+        dataSource = postgres.getPostgresDatabase();
+        // same lock setting as application.yml - V4 builds its indexes CONCURRENTLY
+        Flyway.configure()
+                .dataSource(dataSource)
+                .configuration(Map.of("flyway.postgresql.transactional.lock", "false"))
+                .load()
+                .migrate();
+
+        // 50k payments spread over 500 accounts (about 100 per account per side), plus a
+        // busy merchant account with 20k on each side - the case that used to hurt most
+        try (Connection c = dataSource.getConnection(); Statement st = c.createStatement()) {
+            st.execute("""
+                    INSERT INTO payments (id, from_account_id, to_account_id, amount, status, type, created_at, updated_at)
+                    SELECT gen_random_uuid(), 'acc-' || (g % 500), 'acc-' || ((g + 1) % 500), 10.00,
+                           'COMPLETED', 'TRANSFER', now() - g * interval '1 second', now()
+                    FROM generate_series(1, 50000) g
+                    """);
+            st.execute("""
+                    INSERT INTO payments (id, from_account_id, to_account_id, amount, status, type, created_at, updated_at)
+                    SELECT gen_random_uuid(),
+                           CASE WHEN g % 2 = 0 THEN 'merchant' ELSE 'acc-' || (g % 500) END,
+                           CASE WHEN g % 2 = 0 THEN 'acc-' || (g % 500) ELSE 'merchant' END,
+                           10.00, 'COMPLETED', 'TRANSFER', now() - g * interval '1 second', now()
+                    FROM generate_series(1, 40000) g
+                    """);
+            st.execute("ANALYZE payments");
+
+            // 200k standing orders spread over the next year, a quarter already finished
+            st.execute("""
+                    INSERT INTO scheduled_payments (id, from_account_id, to_account_id, amount, type, frequency,
+                                                    status, first_run_at, next_run_at, created_at)
+                    SELECT gen_random_uuid(), 'acc-' || (g % 500), 'acc-' || ((g + 1) % 500), 10.00, 'TRANSFER',
+                           'MONTHLY', CASE WHEN g % 4 = 0 THEN 'DONE' ELSE 'ACTIVE' END,
+                           now(), now() + g * interval '150 seconds', now()
+                    FROM generate_series(1, 200000) g
+                    """);
+            st.execute("ANALYZE scheduled_payments");
+        }
+    }
+
+    @AfterAll
+    static void stopDatabase() throws IOException {
+        postgres.close();
+    }
+
+    private String explain(String sql, String accountId) throws SQLException {
+        String literalSql = sql
+                .replace(":accountId", "'" + accountId + "'")
+                .replace(":createdAt", "'" + LocalDateTime.now().minusHours(1) + "'")
+                .replace(":createdFrom", "'" + LocalDateTime.now().minusDays(1) + "'")
+                .replace(":createdTo", "'" + LocalDateTime.now() + "'")
+                .replace(":id", "'ffffffff-ffff-ffff-ffff-ffffffffffff'")
+                .replace(":limit", "50")
+                .replace(":horizon", "'" + LocalDateTime.now().plusMinutes(1) + "'")
+                .replace(":now", "'" + LocalDateTime.now() + "'");
+        StringBuilder plan = new StringBuilder();
+        try (Connection c = dataSource.getConnection();
+             Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery("EXPLAIN " + literalSql)) {
+            while (rs.next()) {
+                plan.append(rs.getString(1)).append('\n');
+            }
+        }
+        return plan.toString();
+    }
+
+    private void assertUsesHistoryIndexes(String plan) {
+        assertThat(plan)
+                .contains("idx_payments_from_account_created")
+                .contains("idx_payments_to_account_created")
+                .doesNotContain("Seq Scan on payments");
+    }
+
+    @Test
+    void fullHistory_shouldUseBothSideIndexes() throws SQLException {
+        assertUsesHistoryIndexes(explain(paymentRepo.HISTORY_BY_ACCOUNT, "acc-7"));
+    }
+
+    @Test
+    void pages_shouldUseBothSideIndexes() throws SQLException {
+        assertUsesHistoryIndexes(explain(paymentRepo.HISTORY_PAGE_BY_ACCOUNT, "acc-7"));
+        assertUsesHistoryIndexes(explain(paymentRepo.HISTORY_PAGE_BY_ACCOUNT_BEFORE, "acc-7"));
+    }
+
+    // On a busy account a page must not read and sort the whole history: both branches
+    // walk their index backwards, stop at the LIMIT, and the two runs are merged.
+    @Test
+    void firstPage_onBusyAccount_shouldMergeIndexOrderedRunsWithoutSorting() throws SQLException {
+        String plan = explain(paymentRepo.HISTORY_PAGE_BY_ACCOUNT, "merchant");
+
+        assertUsesHistoryIndexes(plan);
+        assertThat(plan)
+                .contains("Index Scan Backward using idx_payments_from_account_created")
+                .contains("Index Scan Backward using idx_payments_to_account_created")
+                .contains("Merge Append")
+                .doesNotContain("Sort  (");
+    }
+
+    @Test
+    void nextPage_onBusyAccount_shouldSeekPastCursorInBothIndexes() throws SQLException {
+        String plan = explain(paymentRepo.HISTORY_PAGE_BY_ACCOUNT_BEFORE, "merchant");
+
+        assertUsesHistoryIndexes(plan);
+        assertThat(plan)
+                .contains("Index Scan Backward using idx_payments_from_account_created")
+                .contains("Index Scan Backward using idx_payments_to_account_created")
+                .contains("Merge Append")
+                .doesNotContain("Sort  (");
+    }
+
+    // An account's export reads only its own rows, a range scan on each side's index
+    @Test
+    void exportByAccount_shouldRangeScanBothSideIndexes() throws SQLException {
+        assertUsesHistoryIndexes(explain(paymentRepo.EXPORT_BY_ACCOUNT, "merchant"));
+    }
+
+    // The scheduler's loader must only read the front of the due index, however many
+    // schedules are waiting further out
+    @Test
+    void lockDue_shouldReadTheDueIndex_notScanScheduledPayments() throws SQLException {
+        String plan = explain(scheduledPaymentRepo.LOCK_DUE, "unused");
+
+        assertThat(plan)
+                .contains("idx_scheduled_payments_due")
+                .doesNotContain("Seq Scan on scheduled_payments");
+    }
+}
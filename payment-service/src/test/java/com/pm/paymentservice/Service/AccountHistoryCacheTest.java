@@ -0,0 +1,156 @@
+package com.pm.paymentservice.Service;
+
+import com.pm.paymentservice.DTO.PaymentResponseDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AccountHistoryCacheTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2026, 1, 1, 12, 0, 30);
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private long now;
+
+    private AccountHistoryCache cache(int perAccount, long maxBytes) {
+        return new AccountHistoryCache(perAccount, maxBytes, Duration.ofSeconds(5), registry, () -> now);
+    }
+
+    private static PaymentResponseDTO payment(String from, String to, LocalDateTime createdAt, String status) {
+        PaymentResponseDTO dto = new PaymentResponseDTO();
+        dto.setPaymentId(UUID.randomUUID().toString());
+        dto.setFromAccountId(from);
+        dto.setToAccountId(to);
+        dto.setAmount("1.0000");
+        dto.setStatus(status);
+        dto.setType("TRANSFER");
+        dto.setCreatedAt(createdAt.toString());
+        dto.setUpdatedAt(createdAt.toString());
+        return dto;
+    }
+
+    private static PaymentResponseDTO withStatus(PaymentResponseDTO dto, String status) {
+        PaymentResponseDTO copy = payment(dto.getFromAccountId(), dto.getToAccountId(),
+                LocalDateTime.parse(dto.getCreatedAt()), status);
+        copy.setPaymentId(dto.getPaymentId());
+        return copy;
+    }
+
+    private static void load(AccountHistoryCache cache, String account, List<PaymentResponseDTO> rows, boolean complete) {
+        cache.finishLoad(account, cache.beginLoad(account), rows, complete);
+    }
+
+    private static List<String> ids(AccountHistoryCache.Page page) {
+        return page.payments().stream().map(PaymentResponseDTO::getPaymentId).toList();
+    }
+
+    @Test
+    void update_shouldPutCommittedPaymentsInPlace_forBothAccounts() {
+        AccountHistoryCache cache = cache(3, 1 << 20);
+        PaymentResponseDTO older = payment("a", "x", T0, "COMPLETED");
+        PaymentResponseDTO old = payment("b", "a", T0.plusSeconds(1), "COMPLETED");
+        load(cache, "a", List.of(old, older), true);
+        load(cache, "b", List.of(old), true);
+
+        PaymentResponseDTO fresh = payment("a", "b", T0.plusMinutes(1), "PENDING");
+        cache.update(List.of(fresh));
+        cache.update(List.of(withStatus(fresh, "COMPLETED")));
+
+        AccountHistoryCache.Page a = cache.firstPage("a", 3);
+        assertThat(ids(a)).containsExactly(fresh.getPaymentId(), old.getPaymentId(), older.getPaymentId());
+        // the status change replaced the PENDING copy
+        assertThat(a.payments().get(0).getStatus()).isEqualTo("COMPLETED");
+        assertThat(a.more()).isFalse();
+        assertThat(ids(cache.firstPage("b", 3))).containsExactly(fresh.getPaymentId(), old.getPaymentId());
+    }
+
+    @Test
+    void update_shouldDropTheOldestPayment_onceTheListIsFull() {
+        AccountHistoryCache cache = cache(2, 1 << 20);
+        PaymentResponseDTO first = payment("a", "x", T0, "COMPLETED");
+        PaymentResponseDTO second = payment("a", "x", T0.plusSeconds(1), "COMPLETED");
+        load(cache, "a", List.of(second, first), true);
+
+        PaymentResponseDTO third = payment("a", "x", T0.plusSeconds(2), "COMPLETED");
+        cache.update(List.of(third));
+
+        AccountHistoryCache.Page page = cache.firstPage("a", 2);
+        assertThat(ids(page)).containsExactly(third.getPaymentId(), second.getPaymentId());
+        // first is still in the DB, so there's a next page
+        assertThat(page.more()).isTrue();
+        assertThat(cache.payments()).isEqualTo(2);
+    }
+
+    @Test
+    void finishLoad_shouldNotCache_whenAPaymentCommittedDuringTheRead() {
+        AccountHistoryCache cache = cache(10, 1 << 20);
+        long stamp = cache.beginLoad("a");
+        // committed after the read, so the read doesn't have it
+        cache.update(List.of(payment("a", "x", T0.plusMinutes(1), "COMPLETED")));
+        cache.finishLoad("a", stamp, List.of(payment("a", "x", T0, "COMPLETED")), true);
+
+        assertThat(cache.firstPage("a", 10)).isNull();
+
+        load(cache, "a", List.of(payment("a", "x", T0, "COMPLETED")), true);
+        assertThat(cache.firstPage("a", 10)).isNotNull();
+    }
+
+    @Test
+    void finishLoad_shouldEvictLeastRecentlyReadAccounts_byWeight() {
+        PaymentResponseDTO sample = payment("a", "x", T0, "COMPLETED");
+        long weight = AccountHistoryCache.weigh(sample);
+        // room for three payments
+        AccountHistoryCache cache = cache(10, 3 * weight);
+        load(cache, "a", List.of(sample), true);
+        load(cache, "b", List.of(payment("b", "x", T0, "COMPLETED")), true);
+        cache.firstPage("a", 10);
+
+        load(cache, "c", List.of(payment("c", "x", T0.plusSeconds(1), "COMPLETED"),
+                payment("c", "x", T0, "COMPLETED")), true);
+
+        // b was read least recently
+        assertThat(cache.firstPage("b", 10)).isNull();
+        assertThat(cache.firstPage("a", 10)).isNotNull();
+        assertThat(cache.firstPage("c", 10)).isNotNull();
+        assertThat(cache.bytes()).isEqualTo(3 * weight);
+        assertThat(registry.get("payment.history.cache.bytes").gauge().value()).isEqualTo(3.0 * weight);
+    }
+
+    @Test
+    void firstPage_shouldDropTheList_onceItIsOlderThanMaxAge_evenIfUpdatedSince() {
+        AccountHistoryCache cache = cache(10, 1 << 20);
+        load(cache, "a", List.of(payment("a", "x", T0, "COMPLETED")), true);
+        now += Duration.ofSeconds(3).toNanos();
+        // this instance's own payment keeps the list current, but not fresh
+        cache.update(List.of(payment("a", "x", T0.plusSeconds(1), "COMPLETED")));
+        assertThat(cache.firstPage("a", 10).payments()).hasSize(2);
+
+        now += Duration.ofSeconds(3).toNanos();
+
+        assertThat(cache.firstPage("a", 10)).isNull();
+        assertThat(cache.size()).isZero();
+        assertThat(cache.bytes()).isZero();
+        assertThat(cache.payments()).isZero();
+    }
+
+    @Test
+    void firstPage_shouldCountHitsAndMisses() {
+        AccountHistoryCache cache = cache(10, 1 << 20);
+        cache.firstPage("a", 10);
+        load(cache, "a", List.of(), true);
+        cache.firstPage("a", 10);
+        cache.firstPage("a", 5);
+        // bigger than a cached list - always read from the DB
+        cache.firstPage("a", 11);
+
+        assertThat(registry.get("payment.history.cache.requests").tag("result", "hit").counter().count()).isEqualTo(2);
+        assertThat(registry.get("payment.history.cache.requests").tag("result", "miss").counter().count()).isEqualTo(2);
+        assertThat(registry.get("payment.history.cache.hit.ratio").gauge().value()).isEqualTo(0.5);
+    }
+}
@@ -0,0 +1,176 @@
+package com.pm.paymentservice.Service;
+
+import com.pm.paymentservice.Exception.InsufficientFundsException;
+import com.pm.paymentservice.Exception.PaymentLaneFullException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AccountLaneExecutorTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private AccountLaneExecutor lanes;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        lanes.shutdown();
+    }
+
+    @Test
+    void submit_shouldApplyOneAccountsPaymentsInArrivalOrder() {
+        lanes = new AccountLaneExecutor(4, 100, Duration.ofSeconds(1), registry);
+        List<Integer> applied = new CopyOnWriteArrayList<>();
+        CountDownLatch release = new CountDownLatch(1);
+
+        // The first payment holds the lane until the rest are queued behind it
+        CompletableFuture<Void> first = CompletableFuture.runAsync(() -> runOnLane("acc-1", () -> {
+            await(release);
+            applied.add(0);
+            return null;
+        }));
+        waitForDepth(lanes.laneOf("acc-1"), 0);
+        for (int i = 1; i <= 5; i++) {
+            int n = i;
+            CompletableFuture.runAsync(() -> runOnLane("acc-1", () -> applied.add(n)));
+            waitForDepth(lanes.laneOf("acc-1"), i);
+        }
+        release.countDown();
+        first.join();
+        runOnLane("acc-1", () -> null);
+
+        assertThat(applied).containsExactly(0, 1, 2, 3, 4, 5);
+    }
+
+    @Test
+    void submit_shouldNotBlockOtherLanes_whileOneAccountIsBusy() {
+        lanes = new AccountLaneExecutor(4, 100, Duration.ofSeconds(1), registry);
+        String busy = "acc-1";
+        String other = accountOnAnotherLane(busy);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Void> stuck = CompletableFuture.runAsync(() -> runOnLane(busy, () -> {
+            await(release);
+            return null;
+        }));
+
+        assertThat(runOnLane(other, () -> "done")).isEqualTo("done");
+
+        release.countDown();
+        stuck.join();
+    }
+
+    @Test
+    void submit_shouldRethrowTaskExceptionUnchanged() {
+        lanes = new AccountLaneExecutor(4, 100, Duration.ofSeconds(1), registry);
+
+        assertThatThrownBy(() -> runOnLane("acc-1", () -> {
+            throw new InsufficientFundsException("Insufficient funds");
+        })).isInstanceOf(InsufficientFundsException.class).hasMessage("Insufficient funds");
+    }
+
+    @Test
+    void submit_shouldRunInline_whenCalledFromItsOwnLane() {
+        lanes = new AccountLaneExecutor(1, 1, Duration.ofSeconds(1), registry);
+
+        String result = runOnLane("acc-1", () -> runOnLane("acc-2", () -> Thread.currentThread().getName()));
+
+        assertThat(result).isEqualTo("payment-lane-0");
+    }
+
+    @Test
+    void submit_shouldRunOnVirtualThreads_whenEnabled() {
+        lanes = new AccountLaneExecutor(4, 100, Duration.ofSeconds(1), true, registry);
+
+        Thread lane = runOnLane("acc-1", Thread::currentThread);
+
+        assertThat(lane.isVirtual()).isTrue();
+        assertThat(lane.getName()).isEqualTo("payment-lane-" + lanes.laneOf("acc-1"));
+        // the lane still knows itself, so calling back in runs inline
+        assertThat(runOnLane("acc-1", () -> runOnLane("acc-1", Thread::currentThread))).isSameAs(lane);
+    }
+
+    @Test
+    void submit_shouldReject_whenLaneQueueIsFull() {
+        lanes = new AccountLaneExecutor(1, 1, Duration.ofSeconds(1), registry);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Void> running = CompletableFuture.runAsync(() -> runOnLane("acc-1", () -> {
+            await(release);
+            return null;
+        }));
+        waitForDepth(0, 0);
+        CompletableFuture<Void> queued = CompletableFuture.runAsync(() -> runOnLane("acc-1", () -> null));
+        waitForDepth(0, 1);
+
+        assertThatThrownBy(() -> runOnLane("acc-1", () -> null))
+                .isInstanceOf(PaymentLaneFullException.class);
+
+        release.countDown();
+        running.join();
+        queued.join();
+    }
+
+    @Test
+    void submit_shouldRecordWaitTimePerLane() {
+        lanes = new AccountLaneExecutor(2, 100, Duration.ofSeconds(1), registry);
+
+        runOnLane("acc-1", () -> null);
+
+        String lane = String.valueOf(lanes.laneOf("acc-1"));
+        assertThat(registry.get("payment.lane.wait").tag("lane", lane).timer().count()).isEqualTo(1);
+        assertThat(registry.get("payment.lane.depth").tag("lane", lane).gauge().value()).isZero();
+    }
+
+    // Waits for the task the way PaymentService does: exceptions come back unwrapped
+    private <T> T runOnLane(String accountId, Supplier<T> task) {
+        try {
+            return lanes.submit(accountId, task).get();
+        } catch (ExecutionException e) {
+            throw AccountLaneExecutor.unwrap(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String accountOnAnotherLane(String account) {
+        int lane = lanes.laneOf(account);
+        for (int i = 0; ; i++) {
+            if (lanes.laneOf("acc-other-" + i) != lane) {
+                return "acc-other-" + i;
+            }
+        }
+    }
+
+    // Waits until the lane is busy and exactly `depth` payments are queued behind it
+    private void waitForDepth(int lane, int depth) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (System.nanoTime() < deadline) {
+            double queued = registry.get("payment.lane.depth").tag("lane", String.valueOf(lane)).gauge().value();
+            boolean busy = registry.get("payment.lane.wait").tag("lane", String.valueOf(lane)).timer().count() > 0;
+            if (busy && queued == depth) {
+                return;
+            }
+            Thread.onSpinWait();
+        }
+        throw new AssertionError("lane " + lane + " never reached depth " + depth);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.pm.paymentservice.Service;
+
+import com.pm.paymentservice.DTO.PaymentResponseDTO;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IdempotencyCacheTest {
+
+    private final AtomicLong now = new AtomicLong();
+
+    private PaymentResponseDTO result(String id) {
+        PaymentResponseDTO dto = new PaymentResponseDTO();
+        dto.setPaymentId(id);
+        return dto;
+    }
+
+    @Test
+    void get_shouldReturnStoredResult() {
+        IdempotencyCache cache = new IdempotencyCache(10, Duration.ofMinutes(1), now::get);
+        PaymentResponseDTO dto = result("p1");
+
+        cache.put("k1", dto);
+
+        assertThat(cache.get("k1")).isSameAs(dto);
+        assertThat(cache.get("unknown")).isNull();
+    }
+
+    @Test
+    void put_shouldEvictLeastRecentlyUsed_whenFull() {
+        IdempotencyCache cache = new IdempotencyCache(2, Duration.ofMinutes(1), now::get);
+        cache.put("k1", result("p1"));
+        cache.put("k2", result("p2"));
+
+        cache.get("k1");              // k1 is now the most recently used
+        cache.put("k3", result("p3"));
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.get("k2")).isNull();
+        assertThat(cache.get("k1")).isNotNull();
+        assertThat(cache.get("k3")).isNotNull();
+    }
+
+    @Test
+    void get_shouldExpireEntries_afterTtl() {
+        IdempotencyCache cache = new IdempotencyCache(10, Duration.ofSeconds(30), now::get);
+        cache.put("k1", result("p1"));
+
+        now.addAndGet(Duration.ofSeconds(30).toNanos());
+        assertThat(cache.get("k1")).isNotNull();
+
+        now.addAndGet(1);
+        assertThat(cache.get("k1")).isNull();
+        assertThat(cache.size()).isZero();
+    }
+}
@@ -0,0 +1,219 @@
+package com.pm.paymentservice.Service;
+
+import com.pm.paymentservice.DTO.PaymentBatchResultDTO;
+import com.pm.paymentservice.DTO.PaymentRequestDTO;
+import com.pm.paymentservice.Enum.PaymentStatus;
+import com.pm.paymentservice.Enum.PaymentType;
+import com.pm.paymentservice.GRPC.AccountServiceGrpcClient;
+import com.pm.paymentservice.Repository.paymentRepo;
+import com.pm.paymentservice.model.Money;
+import com.pm.paymentservice.model.payment;
+import com.pm.proto.ExecuteTransferRequest;
+import com.pm.proto.ExecuteTransferResponse;
+import com.pm.proto.TransferOutcome;
+import io.grpc.Status;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PaymentBatchServiceTest {
+
+    @Mock private paymentRepo repository;
+    @Mock private AccountServiceGrpcClient accountServiceGrpcClient;
+    @Mock private PaymentOutboxWriter outboxWriter;
+    @Mock private PaymentService paymentService;
+
+    private IdempotencyCache idempotencyCache;
+    private PaymentBatchService batchService;
+    private final List<PaymentBatchResultDTO> results = new ArrayList<>();
+
+    private final String payerA = UUID.randomUUID().toString();
+    private final String payerB = UUID.randomUUID().toString();
+    private final String payee = UUID.randomUUID().toString();
+
+    @BeforeEach
+    void setUp() {
+        idempotencyCache = new IdempotencyCache(100, Duration.ofMinutes(10), System::nanoTime);
+        // chunk size 2 so a handful of items exercises the chunking
+        batchService = new PaymentBatchService(repository, accountServiceGrpcClient, outboxWriter,
+                idempotencyCache, paymentService, 10, 2);
+    }
+
+    private PaymentRequestDTO item(String from, String amount) {
+        PaymentRequestDTO dto = new PaymentRequestDTO();
+        dto.setFromAccountId(from);
+        dto.setToAccountId(payee);
+        // null stands in for an amount that didn't parse at the edge
+        dto.setAmount(amount != null ? Money.parse(amount) : null);
+        dto.setType(PaymentType.TRANSFER);
+        return dto;
+    }
+
+    // Simulates what JPA does on insert: @PrePersist timestamps (the mapper assigns ids)
+    private void mockSaveAllWithJpaLifecycle() {
+        doAnswer(inv -> {
+            List<payment> payments = inv.getArgument(0);
+            for (payment p : payments) {
+                p.setCreatedAt(LocalDateTime.now());
+                p.setUpdatedAt(LocalDateTime.now());
+            }
+            return null;
+        }).when(outboxWriter).insertPendingBatch(any());
+    }
+
+    private void mockTransfersAll(TransferOutcome outcome) {
+        when(accountServiceGrpcClient.executeTransferBatch(any())).thenAnswer(inv -> {
+            List<ExecuteTransferRequest> transfers = inv.getArgument(0);
+            return transfers.stream()
+                    .map(t -> ExecuteTransferResponse.newBuilder().setOutcome(outcome).build())
+                    .toList();
+        });
+    }
+
+    @Test
+    void processBatch_shouldGroupBySourceAndChunk() {
+        mockSaveAllWithJpaLifecycle();
+        mockTransfersAll(TransferOutcome.TRANSFER_COMPLETED);
+
+        batchService.processBatch(List.of(
+                item(payerA, "10.00"), item(payerB, "20.00"), item(payerA, "30.00")), results::add);
+
+        // payerA's two items share the first chunk, payerB's goes in the second
+        assertThat(results).extracting(PaymentBatchResultDTO::getIndex).containsExactly(0, 2, 1);
+        assertThat(results).allSatisfy(r -> {
+            assertThat(r.getPayment().getStatus()).isEqualTo("COMPLETED");
+            assertThat(r.getError()).isNull();
+        });
+        verify(outboxWriter, times(2)).insertPendingBatch(any());
+        verify(accountServiceGrpcClient, times(2)).executeTransferBatch(any());
+        verify(outboxWriter, times(2)).updateStatusesWithEvents(any());
+        verify(repository, never()).save(any());
+    }
+
+    @Test
+    void processBatch_shouldAnswerInvalidItemsWithoutCreatingPayments() {
+        mockSaveAllWithJpaLifecycle();
+        mockTransfersAll(TransferOutcome.TRANSFER_COMPLETED);
+
+        batchService.processBatch(List.of(
+                item(payerA, null), item(payee, "5.00"), item(payerA, "5.00")), results::add);
+
+        assertThat(results).hasSize(3);
+        assertThat(results.get(0).getError()).contains("not a number");
+        assertThat(results.get(0).getPayment()).isNull();
+        assertThat(results.get(1).getError()).contains("must differ");
+        assertThat(results.get(2).getPayment().getStatus()).isEqualTo("COMPLETED");
+        verify(outboxWriter).insertPendingBatch(argThat(p -> p.size() == 1));
+    }
+
+    @Test
+    void processBatch_shouldMarkItemFailed_whenTransferRejected() {
+        mockSaveAllWithJpaLifecycle();
+        when(accountServiceGrpcClient.executeTransferBatch(any())).thenReturn(List.of(
+                ExecuteTransferResponse.newBuilder().setOutcome(TransferOutcome.TRANSFER_COMPLETED).build(),
+                ExecuteTransferResponse.newBuilder().setOutcome(TransferOutcome.TRANSFER_INSUFFICIENT_FUNDS)
+                        .setReason("Insufficient funds").build()));
+
+        batchService.processBatch(List.of(item(payerA, "10.00"), item(payerA, "999.00")), results::add);
+
+        assertThat(results.get(0).getPayment().getStatus()).isEqualTo("COMPLETED");
+        assertThat(results.get(1).getPayment().getStatus()).isEqualTo("FAILED");
+        assertThat(results.get(1).getError()).isEqualTo("Insufficient funds");
+    }
+
+    @Test
+    void processBatch_shouldFailChunk_whenAccountServiceRejectsIt() {
+        mockSaveAllWithJpaLifecycle();
+        when(accountServiceGrpcClient.executeTransferBatch(any()))
+                .thenThrow(Status.INVALID_ARGUMENT.asRuntimeException());
+
+        batchService.processBatch(List.of(item(payerA, "10.00")), results::add);
+
+        assertThat(results.get(0).getPayment().getStatus()).isEqualTo("FAILED");
+        verify(outboxWriter).updateStatusesWithEvents(argThat(p -> p.get(0).getStatus() == PaymentStatus.FAILED));
+    }
+
+    @Test
+    void processBatch_shouldLeaveChunkPendingForRecovery_whenOutcomeUnknown() {
+        mockSaveAllWithJpaLifecycle();
+        when(accountServiceGrpcClient.executeTransferBatch(any()))
+                .thenThrow(Status.DEADLINE_EXCEEDED.asRuntimeException());
+        PaymentRequestDTO keyed = item(payerA, "10.00");
+        keyed.setIdempotencyKey("k1");
+
+        batchService.processBatch(List.of(keyed, item(payerA, "20.00")), results::add);
+
+        // retried once with the same keys, then left for PaymentSagaRecovery
+        verify(accountServiceGrpcClient, times(2)).executeTransferBatch(any());
+        assertThat(results).extracting(r -> r.getPayment().getStatus()).containsExactly("PENDING", "PENDING");
+        assertThat(results).extracting(PaymentBatchResultDTO::getError).containsOnlyNulls();
+        verify(outboxWriter, never()).updateStatusesWithEvents(any());
+        // a retry of k1 must not be told PENDING from memory once recovery has finished it
+        assertThat(idempotencyCache.get("k1")).isNull();
+    }
+
+    @Test
+    void processBatch_shouldLeaveChunkPending_whenResultsDontMatchTransfers() {
+        mockSaveAllWithJpaLifecycle();
+        when(accountServiceGrpcClient.executeTransferBatch(any())).thenReturn(List.of(
+                ExecuteTransferResponse.newBuilder().setOutcome(TransferOutcome.TRANSFER_COMPLETED).build()));
+
+        batchService.processBatch(List.of(item(payerA, "10.00"), item(payerA, "20.00")), results::add);
+
+        assertThat(results).extracting(r -> r.getPayment().getStatus()).containsExactly("PENDING", "PENDING");
+        verify(outboxWriter, never()).updateStatusesWithEvents(any());
+    }
+
+    @Test
+    void processBatch_shouldReplayKnownKeys_andRejectDuplicatesInBatch() {
+        payment done = new payment();
+        done.setId(UUID.randomUUID());
+        done.setFromAccountId(payerA);
+        done.setToAccountId(payee);
+        done.setAmount(Money.parse("10.00"));
+        done.setStatus(PaymentStatus.COMPLETED);
+        done.setType(PaymentType.TRANSFER);
+        done.setIdempotencyKey("k1");
+        done.setCreatedAt(LocalDateTime.now());
+        done.setUpdatedAt(LocalDateTime.now());
+        when(repository.findByIdempotencyKeyIn(any())).thenReturn(List.of(done));
+
+        PaymentRequestDTO first = item(payerA, "10.00");
+        first.setIdempotencyKey("k1");
+        PaymentRequestDTO again = item(payerA, "10.00");
+        again.setIdempotencyKey("k1");
+
+        batchService.processBatch(List.of(first, again), results::add);
+
+        assertThat(results).hasSize(2);
+        assertThat(results.get(0).getError()).contains("Duplicate idempotency key");
+        assertThat(results.get(1).getPayment().getPaymentId()).isEqualTo(done.getId().toString());
+        verify(outboxWriter, never()).insertPendingBatch(any());
+        verifyNoInteractions(accountServiceGrpcClient);
+    }
+
+    @Test
+    void processBatch_shouldRejectOversizedBatch() {
+        List<PaymentRequestDTO> tooMany = new ArrayList<>();
+        for (int i = 0; i < 11; i++) {
+            tooMany.add(item(payerA, "1.00"));
+        }
+
+        assertThatThrownBy(() -> batchService.processBatch(tooMany, results::add))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
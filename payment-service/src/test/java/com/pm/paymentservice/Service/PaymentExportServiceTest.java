@@ -0,0 +1,158 @@
+package com.pm.paymentservice.Service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pm.paymentservice.Enum.ExportFormat;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Runs the export against a real Postgres (embedded, migrations applied), since what
+// matters here - the driver reading through a cursor - only happens against a server.
+class PaymentExportServiceTest {
+
+    private static final LocalDateTime DAY = LocalDateTime.of(2025, 3, 1, 0, 0);
+
+    private static EmbeddedPostgres postgres;
+    private static DataSource dataSource;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @BeforeAll
+    static void startDatabase() throws Exception {
+        postgres = EmbeddedPostgres.builder().start();
+        dataSource = postgres.getPostgresDatabase();
+        Flyway.configure()
+                .dataSource(dataSource)
+                .configuration(Map.of("flyway.postgresql.transactional.lock", "false"))
+                .load()
+                .migrate();
+
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        String insert = "INSERT INTO payments (id, from_account_id, to_account_id, amount, status, type, description, "
+                + "created_at, updated_at) VALUES (?::uuid, ?, ?, ?, ?, ?, ?, ?, ?)";
+        jdbc.update(insert, "00000000-0000-0000-0000-000000000001", "acc-1", "acc-2", 12.5, "COMPLETED", "TRANSFER",
+                "rent, \"March\"", DAY.plusHours(9), DAY.plusHours(9).plusSeconds(1));
+        jdbc.update(insert, "00000000-0000-0000-0000-000000000002", "acc-3", "acc-1", 99.99, "FAILED", "TRANSFER",
+                "=HYPERLINK(\"x\")", DAY.plusDays(1), null);
+        jdbc.update(insert, "00000000-0000-0000-0000-000000000003", "acc-4", "acc-5", 1, "COMPLETED", "WITHDRAWAL",
+                null, DAY.minusDays(1), DAY.minusDays(1));
+        // a bulk month, a long way back, for the cursor tests
+        jdbc.execute("""
+                INSERT INTO payments (id, from_account_id, to_account_id, amount, status, type, created_at, updated_at)
+                SELECT gen_random_uuid(), 'bulk-' || (g % 100), 'bulk-' || ((g + 1) % 100), 10.00,
+                       'COMPLETED', 'TRANSFER', '2024-01-01'::timestamp + g * interval '1 second', now()
+                FROM generate_series(1, 20000) g
+                """);
+    }
+
+    @AfterAll
+    static void stopDatabase() throws IOException {
+        postgres.close();
+    }
+
+    private PaymentExportService exporter(int fetchSize) {
+        return new PaymentExportService(dataSource, new DataSourceTransactionManager(dataSource), objectMapper,
+                registry, fetchSize);
+    }
+
+    private static String text(ByteArrayOutputStream out) {
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void export_shouldWriteCsv_quotingTextAndDefusingFormulas() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long rows = exporter(100).export(ExportFormat.CSV, "acc-1", DAY, DAY.plusDays(2), out);
+
+        assertThat(rows).isEqualTo(2);
+        assertThat(text(out).lines().toList()).containsExactlyInAnyOrder(
+                "payment_id,from_account_id,to_account_id,amount,status,type,description,created_at,updated_at",
+                "00000000-0000-0000-0000-000000000001,acc-1,acc-2,12.50,COMPLETED,TRANSFER,"
+                        + "\"rent, \"\"March\"\"\",2025-03-01T09:00,2025-03-01T09:00:01",
+                "00000000-0000-0000-0000-000000000002,acc-3,acc-1,99.99,FAILED,TRANSFER,"
+                        + "\"'=HYPERLINK(\"\"x\"\")\",2025-03-02T00:00,");
+        assertThat(registry.get("payment.export.rows").tag("format", "CSV").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void export_shouldWriteOneJsonObjectPerLine() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        exporter(100).export(ExportFormat.NDJSON, null, DAY.minusDays(1), DAY, out);
+
+        List<String> lines = text(out).lines().toList();
+        assertThat(lines).hasSize(1);
+        JsonNode payment = objectMapper.readTree(lines.get(0));
+        assertThat(payment.get("paymentId").asText()).isEqualTo("00000000-0000-0000-0000-000000000003");
+        assertThat(payment.get("amount").asText()).isEqualTo("1.00");
+        assertThat(payment.get("type").asText()).isEqualTo("WITHDRAWAL");
+        assertThat(payment.get("description").isNull()).isTrue();
+        assertThat(text(out)).endsWith("}\n");
+    }
+
+    // Each fetch is a round trip on an open portal: while rows are still being written
+    // the server-side cursor must exist, so the driver can't have read everything up front.
+    // sameSession joins the export's transaction, so it sees that session's portals; the
+    // unnamed one is its own query.
+    @Test
+    void export_shouldReadThroughAServerSideCursor() {
+        JdbcTemplate sameSession = new JdbcTemplate(dataSource);
+        AtomicLong openCursors = new AtomicLong(-1);
+        OutputStream out = new OutputStream() {
+            @Override
+            public void write(int b) {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                // first buffer flush, well before the last row
+                if (openCursors.get() < 0) {
+                    openCursors.set(sameSession.queryForObject("SELECT count(*) FROM pg_cursors WHERE name <> ''", Long.class));
+                }
+            }
+        };
+
+        long rows = exporter(500).export(ExportFormat.CSV, null, LocalDateTime.of(2024, 1, 1, 0, 0),
+                LocalDateTime.of(2024, 2, 1, 0, 0), out);
+
+        assertThat(rows).isEqualTo(20000);
+        assertThat(openCursors.get()).isEqualTo(1);
+    }
+
+    @Test
+    void export_shouldStop_whenTheClientGoesAway() {
+        OutputStream gone = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+
+        assertThatThrownBy(() -> exporter(500).export(ExportFormat.NDJSON, null, null, null, gone))
+                .isInstanceOf(UncheckedIOException.class)
+                .hasMessageContaining("Broken pipe");
+    }
+}
@@ -0,0 +1,85 @@
+package com.pm.paymentservice.Service;
+
+import com.pm.paymentservice.Enum.SagaState;
+import com.pm.paymentservice.Repository.paymentSagaStepRepo;
+import com.pm.paymentservice.model.paymentSagaStep;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PaymentSagaLogTest {
+
+    @Mock private paymentSagaStepRepo stepRepository;
+
+    @InjectMocks
+    private PaymentSagaLog sagaLog;
+
+    @Test
+    void record_shouldSaveStep_whenTransitionAllowed() {
+        UUID id = UUID.randomUUID();
+
+        sagaLog.record(id, SagaState.HOLD_REQUESTED, SagaState.AUTHORIZED, "2026-01-01T00:15");
+
+        verify(stepRepository).save(argThat(step -> step.getPaymentId().equals(id)
+                && step.getState() == SagaState.AUTHORIZED
+                && step.getDetail().equals("2026-01-01T00:15")));
+    }
+
+    @Test
+    void record_shouldReject_whenTransitionNotAllowed() {
+        UUID id = UUID.randomUUID();
+
+        // a compensating saga can only fail - completing it would keep money it gave back
+        assertThatThrownBy(() -> sagaLog.record(id, SagaState.COMPENSATING, SagaState.COMPLETED, null))
+                .isInstanceOf(IllegalStateException.class);
+        verify(stepRepository, never()).save(any());
+    }
+
+    @Test
+    void current_shouldBeStarted_whenNoStepsLogged() {
+        UUID id = UUID.randomUUID();
+        when(stepRepository.findByPaymentIdOrderById(id)).thenReturn(List.of());
+
+        assertThat(sagaLog.current(id)).isEqualTo(SagaState.STARTED);
+    }
+
+    @Test
+    void current_shouldBeFurthestState_whenStepIdsOutOfOrder() {
+        UUID id = UUID.randomUUID();
+        // AUTHORIZED written by an instance still handing out an older block of ids
+        paymentSagaStep authorized = PaymentSagaLog.step(id, SagaState.AUTHORIZED, null);
+        authorized.setId(10L);
+        paymentSagaStep requested = PaymentSagaLog.step(id, SagaState.HOLD_REQUESTED, null);
+        requested.setId(60L);
+        when(stepRepository.findByPaymentIdOrderById(id)).thenReturn(List.of(authorized, requested));
+
+        assertThat(sagaLog.current(id)).isEqualTo(SagaState.AUTHORIZED);
+    }
+
+    @Test
+    void sagaStates_shouldOnlyMoveForward() {
+        // current() relies on this ordering
+        for (SagaState from : SagaState.values()) {
+            assertThat(from.next()).allMatch(to -> to.ordinal() > from.ordinal());
+        }
+    }
+
+    @Test
+    void step_shouldTruncateLongDetail() {
+        paymentSagaStep step = PaymentSagaLog.step(UUID.randomUUID(), SagaState.FAILED, "x".repeat(600));
+
+        assertThat(step.getDetail()).hasSize(500);
+    }
+}
@@ -0,0 +1,92 @@
+package com.pm.paymentservice.Service;
+
+import com.pm.paymentservice.Enum.PaymentStatus;
+import com.pm.paymentservice.Exception.PaymentLaneFullException;
+import com.pm.paymentservice.Repository.paymentRepo;
+import com.pm.paymentservice.model.payment;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PaymentSagaRecoveryTest {
+
+    @Mock private paymentRepo repository;
+    @Mock private PaymentService paymentService;
+    @Spy  private AccountLaneExecutor accountLanes =
+            new AccountLaneExecutor(4, 100, Duration.ofSeconds(1), new SimpleMeterRegistry());
+
+    private PaymentSagaRecovery recovery;
+
+    @BeforeEach
+    void setUp() {
+        recovery = new PaymentSagaRecovery(repository, paymentService, accountLanes, Duration.ofSeconds(30), 100);
+    }
+
+    private payment pending(String fromAccountId) {
+        payment p = new payment();
+        p.setId(UUID.randomUUID());
+        p.setFromAccountId(fromAccountId);
+        p.setStatus(PaymentStatus.PENDING);
+        return p;
+    }
+
+    @Test
+    void resumeStalled_shouldResumeEachPaymentOnItsAccountLane() {
+        payment a = pending("acc-a");
+        payment b = pending("acc-b");
+        when(repository.findByStatusAndCreatedAtBeforeOrderByCreatedAtAsc(eq(PaymentStatus.PENDING), any(), any()))
+                .thenReturn(List.of(a, b));
+
+        int resumed = recovery.resumeStalled();
+
+        assertThat(resumed).isEqualTo(2);
+        verify(accountLanes).submit(eq("acc-a"), any());
+        verify(accountLanes).submit(eq("acc-b"), any());
+        verify(paymentService, timeout(1000)).resume(a.getId());
+        verify(paymentService, timeout(1000)).resume(b.getId());
+    }
+
+    @Test
+    void resumeStalled_shouldOnlyLookAtPaymentsOlderThanStaleAfter() {
+        when(repository.findByStatusAndCreatedAtBeforeOrderByCreatedAtAsc(any(), any(), any())).thenReturn(List.of());
+        LocalDateTime before = LocalDateTime.now().minusSeconds(30);
+
+        recovery.resumeStalled();
+
+        verify(repository).findByStatusAndCreatedAtBeforeOrderByCreatedAtAsc(eq(PaymentStatus.PENDING),
+                argThat(cutoff -> !cutoff.isBefore(before) && cutoff.isBefore(LocalDateTime.now().minusSeconds(29))),
+                argThat(page -> page.getPageSize() == 100));
+    }
+
+    @Test
+    void resumeStalled_shouldSkipPayment_whenLaneIsFull() {
+        payment full = pending("acc-full");
+        payment ok = pending("acc-ok");
+        when(repository.findByStatusAndCreatedAtBeforeOrderByCreatedAtAsc(any(), any(), any()))
+                .thenReturn(List.of(full, ok));
+        doThrow(new PaymentLaneFullException("full")).when(accountLanes).submit(eq("acc-full"), any());
+
+        int resumed = recovery.resumeStalled();
+
+        // left PENDING for the next tick
+        assertThat(resumed).isEqualTo(1);
+        verify(paymentService, timeout(1000)).resume(ok.getId());
+        verify(paymentService, never()).resume(full.getId());
+    }
+}
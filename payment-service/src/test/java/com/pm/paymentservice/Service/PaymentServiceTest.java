@@ -1,35 +1,51 @@
 package com.pm.paymentservice.Service;
 
-import com.pm.paymentservice.DTO.PaymentEventDTO;
+import com.pm.paymentservice.DTO.PaymentPageDTO;
 import com.pm.paymentservice.DTO.PaymentRequestDTO;
 import com.pm.paymentservice.DTO.PaymentResponseDTO;
 import com.pm.paymentservice.Enum.PaymentStatus;
 import com.pm.paymentservice.Enum.PaymentType;
+import com.pm.paymentservice.Enum.SagaState;
 import com.pm.paymentservice.Exception.AccountNotActiveException;
 import com.pm.paymentservice.Exception.InsufficientFundsException;
 import com.pm.paymentservice.Exception.PaymentNotFoundException;
+import com.pm.paymentservice.Exception.VelocityLimitExceededException;
 import com.pm.paymentservice.GRPC.AccountServiceGrpcClient;
-import com.pm.paymentservice.Kafka.PaymentEventProducer;
 import com.pm.paymentservice.Repository.paymentRepo;
+import com.pm.paymentservice.model.Money;
 import com.pm.paymentservice.model.payment;
-import com.pm.proto.AccStatus;
-import com.pm.proto.Account;
+import com.pm.proto.ExecuteTransferResponse;
+import com.pm.proto.HoldOutcome;
+import com.pm.proto.HoldResponse;
+import com.pm.proto.TransferOutcome;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
-import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
@@ -38,40 +54,37 @@ class PaymentServiceTest {
 
     @Mock private paymentRepo repository;
     @Mock private AccountServiceGrpcClient accountServiceGrpcClient;
-    @Mock private PaymentEventProducer eventProducer;
+    @Mock private PaymentWriteCoalescer writes;
+    @Mock private EntityManager entityManager;
+    @Mock private PaymentSettlementService settlement;
+    @Mock private PaymentSagaLog sagaLog;
+    @Mock private PaymentVelocityGuard velocity;
+    private final AtomicLong clock = new AtomicLong();
+    @Spy  private AccountHistoryCache history =
+            new AccountHistoryCache(2, 1 << 20, Duration.ofSeconds(5), new SimpleMeterRegistry(), clock::get);
+    @Spy  private IdempotencyCache idempotencyCache = new IdempotencyCache(100, Duration.ofMinutes(10), System::nanoTime);
+    @Spy  private AccountLaneExecutor accountLanes =
+            new AccountLaneExecutor(4, 100, Duration.ofSeconds(1), new SimpleMeterRegistry());
 
-    @InjectMocks
     private PaymentService paymentService;
 
     private String fromAccountId;
     private String toAccountId;
-    private Account activeFromAccount;
-    private Account activeToAccount;
     private PaymentRequestDTO validRequest;
     private payment testPayment;
 
     @BeforeEach
     void setUp() {
+        paymentService = new PaymentService(repository, accountServiceGrpcClient, writes, idempotencyCache,
+                entityManager, accountLanes, settlement, sagaLog, velocity, history, Duration.ofSeconds(5));
+
         fromAccountId = UUID.randomUUID().toString();
         toAccountId   = UUID.randomUUID().toString();
 
-        // Proto Account with ACTIVE status and sufficient balance
-        activeFromAccount = Account.newBuilder()
-                .setId(fromAccountId)
-                .setStatus(AccStatus.ACTIVE)
-                .setBalance("500.00")
-                .build();
-
-        activeToAccount = Account.newBuilder()
-                .setId(toAccountId)
-                .setStatus(AccStatus.ACTIVE)
-                .setBalance("100.00")
-                .build();
-
         validRequest = new PaymentRequestDTO();
         validRequest.setFromAccountId(fromAccountId);
         validRequest.setToAccountId(toAccountId);
-        validRequest.setAmount("100.00");
+        validRequest.setAmount(Money.parse("100.00"));
         validRequest.setType(PaymentType.TRANSFER);
         validRequest.setDescription("Test payment");
 
@@ -80,7 +93,7 @@ class PaymentServiceTest {
         testPayment.setId(UUID.randomUUID());
         testPayment.setFromAccountId(fromAccountId);
         testPayment.setToAccountId(toAccountId);
-        testPayment.setAmount(new BigDecimal("100.00"));
+        testPayment.setAmount(Money.parse("100.00"));
         testPayment.setStatus(PaymentStatus.COMPLETED);
         testPayment.setType(PaymentType.TRANSFER);
         testPayment.setDescription("Test payment");
@@ -88,18 +101,17 @@ class PaymentServiceTest {
         testPayment.setUpdatedAt(LocalDateTime.now());
     }
 
-    // Helper: configures repository.save() to simulate what JPA would do.
-    // @PrePersist / @PreUpdate only fire with a real JPA context.
-    // In unit tests we have to set id, createdAt, and updatedAt ourselves
-    // so buildEvent() and PaymentMapper.toDTO() do not NPE.
-    private void mockSaveWithJpaLifecycle() {
-        when(repository.save(any(payment.class))).thenAnswer(inv -> {
+    // Helper: configures writes.insertPending() to simulate what JPA would do.
+    // @PrePersist only fires with a real JPA context.
+    // In unit tests we have to set createdAt and updatedAt ourselves
+    // so PaymentMapper.toDTO() does not NPE.
+    private void mockInsertWithJpaLifecycle() {
+        doAnswer(inv -> {
             payment p = inv.getArgument(0);
-            if (p.getId() == null)        p.setId(UUID.randomUUID());
-            if (p.getCreatedAt() == null) p.setCreatedAt(LocalDateTime.now());
+            p.setCreatedAt(LocalDateTime.now());
             p.setUpdatedAt(LocalDateTime.now());
-            return p;
-        });
+            return null;
+        }).when(writes).insertPending(any(payment.class), any());
     }
 
     // --- getAllPayments ---
@@ -144,131 +156,503 @@ class PaymentServiceTest {
                 .hasMessageContaining(randomId.toString());
     }
 
-    // --- getPaymentsByAccount ---
+    // --- getPaymentsByAccount (paged) / streamPaymentsByAccount ---
+
+    private payment historyRow(LocalDateTime createdAt) {
+        payment p = new payment();
+        p.setId(UUID.randomUUID());
+        p.setFromAccountId(fromAccountId);
+        p.setToAccountId(toAccountId);
+        p.setAmount(Money.parse("1.00"));
+        p.setStatus(PaymentStatus.COMPLETED);
+        p.setType(PaymentType.TRANSFER);
+        p.setCreatedAt(createdAt);
+        p.setUpdatedAt(createdAt);
+        return p;
+    }
 
     @Test
-    void getPaymentsByAccount_shouldReturnPaymentsForAccount() {
-        when(repository.findByFromAccountIdOrToAccountId(fromAccountId, fromAccountId))
-                .thenReturn(List.of(testPayment));
+    void getPaymentsByAccountPage_shouldReturnCursor_whenMoreRowsExist() {
+        LocalDateTime now = LocalDateTime.now();
+        payment newest = historyRow(now);
+        payment second = historyRow(now.minusMinutes(1));
+        payment third = historyRow(now.minusMinutes(2));
+        // asks for one extra row to find out whether another page exists
+        when(repository.findPageByAccount(fromAccountId, 3)).thenReturn(List.of(newest, second, third));
 
-        List<PaymentResponseDTO> result = paymentService.getPaymentsByAccount(fromAccountId);
+        PaymentPageDTO page = paymentService.getPaymentsByAccount(fromAccountId, 2, null);
 
-        assertThat(result).hasSize(1);
-        assertThat(result.get(0).getFromAccountId()).isEqualTo(fromAccountId);
+        assertThat(page.getPayments()).extracting(PaymentResponseDTO::getPaymentId)
+                .containsExactly(newest.getId().toString(), second.getId().toString());
+        assertThat(page.getNextPageToken()).isNotNull();
+
+        when(repository.findPageByAccountBefore(fromAccountId, second.getCreatedAt(), second.getId(), 3))
+                .thenReturn(List.of(third));
+
+        PaymentPageDTO next = paymentService.getPaymentsByAccount(fromAccountId, 2, page.getNextPageToken());
+
+        assertThat(next.getPayments()).extracting(PaymentResponseDTO::getPaymentId)
+                .containsExactly(third.getId().toString());
+        assertThat(next.getNextPageToken()).isNull();
+    }
+
+    @Test
+    void getPaymentsByAccountPage_shouldServeRepeatFirstPagesFromCache() {
+        LocalDateTime now = LocalDateTime.now();
+        payment newest = historyRow(now);
+        payment older = historyRow(now.minusMinutes(1));
+        when(repository.findPageByAccount(fromAccountId, 3)).thenReturn(List.of(newest, older));
+
+        paymentService.getPaymentsByAccount(fromAccountId, 2, null);
+        PaymentPageDTO again = paymentService.getPaymentsByAccount(fromAccountId, 1, null);
+
+        assertThat(again.getPayments()).extracting(PaymentResponseDTO::getPaymentId)
+                .containsExactly(newest.getId().toString());
+        assertThat(again.getNextPageToken()).isNotNull();
+        verify(repository, times(1)).findPageByAccount(any(), anyInt());
+    }
+
+    @Test
+    void getPaymentsByAccountPage_shouldShowPaymentsMadeElsewhere_onceTheCachedPageExpires() {
+        LocalDateTime now = LocalDateTime.now();
+        payment older = historyRow(now.minusMinutes(1));
+        // stored by another instance - its commit never reaches this instance's cache
+        payment elsewhere = historyRow(now);
+        when(repository.findPageByAccount(fromAccountId, 3))
+                .thenReturn(List.of(older))
+                .thenReturn(List.of(elsewhere, older));
+
+        paymentService.getPaymentsByAccount(fromAccountId, 2, null);
+        clock.addAndGet(Duration.ofSeconds(4).toNanos());
+        PaymentPageDTO cached = paymentService.getPaymentsByAccount(fromAccountId, 2, null);
+        clock.addAndGet(Duration.ofSeconds(2).toNanos());
+        PaymentPageDTO reread = paymentService.getPaymentsByAccount(fromAccountId, 2, null);
+
+        assertThat(cached.getPayments()).extracting(PaymentResponseDTO::getPaymentId)
+                .containsExactly(older.getId().toString());
+        assertThat(reread.getPayments()).extracting(PaymentResponseDTO::getPaymentId)
+                .containsExactly(elsewhere.getId().toString(), older.getId().toString());
+        verify(repository, times(2)).findPageByAccount(any(), anyInt());
+    }
+
+    @Test
+    void getPaymentsByAccountPage_shouldCapPageSize() {
+        when(repository.findPageByAccount(fromAccountId, 1001)).thenReturn(List.of());
+
+        paymentService.getPaymentsByAccount(fromAccountId, 50_000, "");
+
+        verify(repository).findPageByAccount(fromAccountId, 1001);
+    }
+
+    @Test
+    void getPaymentsByAccountPage_shouldRejectTamperedToken() {
+        assertThatThrownBy(() -> paymentService.getPaymentsByAccount(fromAccountId, 10, "not-a-cursor"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("page token");
+    }
+
+    @Test
+    void streamPaymentsByAccount_shouldEmitPagesAndDetachRows() {
+        LocalDateTime now = LocalDateTime.now();
+        when(repository.streamByAccount(fromAccountId)).thenReturn(Stream.of(
+                historyRow(now), historyRow(now.minusSeconds(1)), historyRow(now.minusSeconds(2))));
+        List<Integer> pageSizes = new ArrayList<>();
+
+        paymentService.streamPaymentsByAccount(fromAccountId, 2, page -> pageSizes.add(page.size()));
+
+        assertThat(pageSizes).containsExactly(2, 1);
+        verify(entityManager, times(3)).detach(any(payment.class));
     }
 
     // --- processPayment (happy path) ---
 
+    private ExecuteTransferResponse transferOutcome(TransferOutcome outcome, String reason) {
+        return ExecuteTransferResponse.newBuilder()
+                .setOutcome(outcome)
+                .setReason(reason)
+                .build();
+    }
+
     @Test
     void processPayment_shouldCompleteAndPublishEvent_whenValid() {
-        when(accountServiceGrpcClient.getAccountById(fromAccountId)).thenReturn(activeFromAccount);
-        when(accountServiceGrpcClient.getAccountById(toAccountId)).thenReturn(activeToAccount);
-        mockSaveWithJpaLifecycle();
+        mockInsertWithJpaLifecycle();
+        when(accountServiceGrpcClient.executeTransfer(eq(fromAccountId), eq(toAccountId), eq(Money.parse("100.00")), any()))
+                .thenReturn(transferOutcome(TransferOutcome.TRANSFER_COMPLETED, ""));
 
         PaymentResponseDTO result = paymentService.processPayment(validRequest);
 
         assertThat(result.getStatus()).isEqualTo("COMPLETED");
-        // Event must be published exactly once after COMPLETED
-        verify(eventProducer, times(1)).publishPaymentEvent(any(PaymentEventDTO.class));
+        // COMPLETED status and its event are written together exactly once
+        verify(writes, times(1)).finish(argThat(p -> p.getStatus() == PaymentStatus.COMPLETED), any());
     }
 
     @Test
-    void processPayment_shouldUpdateBothBalancesViaGrpc() {
-        when(accountServiceGrpcClient.getAccountById(fromAccountId)).thenReturn(activeFromAccount);
-        when(accountServiceGrpcClient.getAccountById(toAccountId)).thenReturn(activeToAccount);
-        mockSaveWithJpaLifecycle();
+    void processPayment_shouldRejectBeforeStoringOrCalling_whenOverVelocityLimit() {
+        doThrow(new VelocityLimitExceededException("over the limit"))
+                .when(velocity).check(fromAccountId, PaymentType.TRANSFER, Money.parse("100.00"));
 
-        paymentService.processPayment(validRequest);
+        assertThatThrownBy(() -> paymentService.processPayment(validRequest))
+                .isInstanceOf(VelocityLimitExceededException.class);
 
-        // Debit and credit are two separate gRPC calls
-        verify(accountServiceGrpcClient).updateAccountBalance(eq(activeFromAccount), eq("400.00"));
-        verify(accountServiceGrpcClient).updateAccountBalance(eq(activeToAccount), eq("200.00"));
+        verifyNoInteractions(writes, accountServiceGrpcClient);
     }
 
-    // --- processPayment (business rule violations) ---
+    @Test
+    void processPayment_shouldUseSingleTransferCall_keyedByPaymentId() {
+        mockInsertWithJpaLifecycle();
+        when(accountServiceGrpcClient.executeTransfer(any(), any(), any(), any()))
+                .thenReturn(transferOutcome(TransferOutcome.TRANSFER_COMPLETED, ""));
+
+        PaymentResponseDTO result = paymentService.processPayment(validRequest);
+
+        // Both legs travel in one gRPC call and the payment id is the idempotency key
+        verify(accountServiceGrpcClient, times(1))
+                .executeTransfer(fromAccountId, toAccountId, Money.parse("100.00"), result.getPaymentId());
+        verify(accountServiceGrpcClient, never()).getAccountById(any());
+    }
 
     @Test
-    void processPayment_shouldThrow_whenFromAccountIsNotActive() {
-        Account frozenAccount = Account.newBuilder()
-                .setId(fromAccountId)
-                .setStatus(AccStatus.FROZEN)
-                .setBalance("500.00")
+    void processPayment_shouldRunOnSourceAccountLane() {
+        mockInsertWithJpaLifecycle();
+        when(accountServiceGrpcClient.executeTransfer(any(), any(), any(), any()))
+                .thenReturn(transferOutcome(TransferOutcome.TRANSFER_COMPLETED, ""));
+
+        paymentService.processPayment(validRequest);
+
+        verify(accountLanes).submit(eq(fromAccountId), any());
+    }
+
+    // --- processPayment (hold settlement mode) ---
+
+    private HoldResponse holdOutcome(HoldOutcome outcome, String reason) {
+        return HoldResponse.newBuilder()
+                .setOutcome(outcome)
+                .setReason(reason)
                 .build();
-        when(accountServiceGrpcClient.getAccountById(fromAccountId)).thenReturn(frozenAccount);
-        when(accountServiceGrpcClient.getAccountById(toAccountId)).thenReturn(activeToAccount);
+    }
 
-        assertThatThrownBy(() -> paymentService.processPayment(validRequest))
-                .isInstanceOf(AccountNotActiveException.class)
-                .hasMessageContaining(fromAccountId);
+    @Test
+    void processPayment_shouldPlaceHoldAndAuthorize_whenSettlingWithHolds() {
+        mockInsertWithJpaLifecycle();
+        when(settlement.usesHolds()).thenReturn(true);
+        when(settlement.holdTtl()).thenReturn(Duration.ofMinutes(15));
+        when(accountServiceGrpcClient.placeHold(eq(fromAccountId), eq(toAccountId), eq(Money.parse("100.00")), any(), eq(900L)))
+                .thenReturn(holdOutcome(HoldOutcome.HOLD_PLACED, ""));
+        validRequest.setIdempotencyKey("auth-1");
+
+        PaymentResponseDTO result = paymentService.processPayment(validRequest);
 
-        verify(repository, never()).save(any());
-        verify(eventProducer, never()).publishPaymentEvent(any());
+        assertThat(result.getStatus()).isEqualTo("AUTHORIZED");
+        verify(writes).insertPending(any(payment.class), eq(SagaState.HOLD_REQUESTED));
+        verify(writes).authorize(argThat(p -> p.getStatus() == PaymentStatus.AUTHORIZED), any());
+        // Money moves at capture time - no transfer, and no event until the final status
+        verify(accountServiceGrpcClient, never()).executeTransfer(any(), any(), any(), any());
+        verify(writes, never()).finish(any(), any());
+        // Not final yet, so a retry must not be answered from the cache
+        assertThat(idempotencyCache.size()).isZero();
     }
 
     @Test
-    void processPayment_shouldThrow_whenToAccountIsNotActive() {
-        Account frozenAccount = Account.newBuilder()
-                .setId(toAccountId)
-                .setStatus(AccStatus.FROZEN)
-                .setBalance("100.00")
-                .build();
-        when(accountServiceGrpcClient.getAccountById(fromAccountId)).thenReturn(activeFromAccount);
-        when(accountServiceGrpcClient.getAccountById(toAccountId)).thenReturn(frozenAccount);
+    void processPayment_shouldThrowAndMarkFailed_whenHoldFindsInsufficientFunds() {
+        mockInsertWithJpaLifecycle();
+        when(settlement.usesHolds()).thenReturn(true);
+        when(settlement.holdTtl()).thenReturn(Duration.ofMinutes(15));
+        when(accountServiceGrpcClient.placeHold(any(), any(), any(), any(), anyLong()))
+                .thenReturn(holdOutcome(HoldOutcome.HOLD_INSUFFICIENT_FUNDS, "Insufficient funds"));
+
+        assertThatThrownBy(() -> paymentService.processPayment(validRequest))
+                .isInstanceOf(InsufficientFundsException.class);
+        verify(writes).finish(argThat(p -> p.getStatus() == PaymentStatus.FAILED), any());
+    }
+
+    // --- processPayment (business rule violations) ---
+
+    @Test
+    void processPayment_shouldThrowAndMarkFailed_whenAccountIsNotActive() {
+        mockInsertWithJpaLifecycle();
+        when(accountServiceGrpcClient.executeTransfer(any(), any(), any(), any()))
+                .thenReturn(transferOutcome(TransferOutcome.TRANSFER_ACCOUNT_NOT_ACTIVE,
+                        "Source account is not active: " + fromAccountId));
 
         assertThatThrownBy(() -> paymentService.processPayment(validRequest))
                 .isInstanceOf(AccountNotActiveException.class)
-                .hasMessageContaining(toAccountId);
+                .hasMessageContaining(fromAccountId);
 
-        verify(repository, never()).save(any());
+        // PENDING row is kept as an audit trail and closed out as FAILED, with its event
+        verify(writes, times(1)).finish(argThat(p -> p.getStatus() == PaymentStatus.FAILED), any());
     }
 
     @Test
     void processPayment_shouldThrow_whenInsufficientFunds() {
-        // Amount is 100.00 but from account only has 50.00
-        validRequest.setAmount("600.00");
-        when(accountServiceGrpcClient.getAccountById(fromAccountId)).thenReturn(activeFromAccount);
-        when(accountServiceGrpcClient.getAccountById(toAccountId)).thenReturn(activeToAccount);
+        mockInsertWithJpaLifecycle();
+        when(accountServiceGrpcClient.executeTransfer(any(), any(), any(), any()))
+                .thenReturn(transferOutcome(TransferOutcome.TRANSFER_INSUFFICIENT_FUNDS,
+                        "Insufficient funds. Available: 500.00, Required: 600.00"));
 
         assertThatThrownBy(() -> paymentService.processPayment(validRequest))
                 .isInstanceOf(InsufficientFundsException.class)
                 .hasMessageContaining("Insufficient funds");
 
-        verify(repository, never()).save(any());
-        verify(eventProducer, never()).publishPaymentEvent(any());
+        verify(writes, never()).finish(argThat(p -> p.getStatus() == PaymentStatus.COMPLETED), any());
     }
 
-    // --- processPayment (failure / compensating transaction) ---
+    @Test
+    void processPayment_shouldThrow_whenAccountDoesNotExist() {
+        mockInsertWithJpaLifecycle();
+        when(accountServiceGrpcClient.executeTransfer(any(), any(), any(), any()))
+                .thenThrow(new StatusRuntimeException(Status.NOT_FOUND.withDescription("Source account not found")));
+
+        assertThatThrownBy(() -> paymentService.processPayment(validRequest))
+                .hasMessageContaining("Could not retrieve account details");
+    }
+
+    // --- processPayment (failure / retry) ---
 
     @Test
-    void processPayment_shouldMarkFailed_andPublishEvent_whenBalanceUpdateFails() {
-        when(accountServiceGrpcClient.getAccountById(fromAccountId)).thenReturn(activeFromAccount);
-        when(accountServiceGrpcClient.getAccountById(toAccountId)).thenReturn(activeToAccount);
-        mockSaveWithJpaLifecycle();
-        // Simulate gRPC call failing mid-flight (e.g. account-service is down)
-        doThrow(new RuntimeException("gRPC connection refused"))
-                .when(accountServiceGrpcClient).updateAccountBalance(any(), any());
+    void processPayment_shouldMarkFailed_andPublishEvent_whenTransferRejected() {
+        mockInsertWithJpaLifecycle();
+        // account-service turned the transfer down before touching either account
+        when(accountServiceGrpcClient.executeTransfer(any(), any(), any(), any()))
+                .thenThrow(new StatusRuntimeException(Status.FAILED_PRECONDITION));
 
         PaymentResponseDTO result = paymentService.processPayment(validRequest);
 
         assertThat(result.getStatus()).isEqualTo("FAILED");
-        // Event must still be published — downstream services need to know about the failure
-        verify(eventProducer, times(1)).publishPaymentEvent(any(PaymentEventDTO.class));
+        // Event must still be recorded — downstream services need to know about the failure
+        verify(writes, times(1)).finish(argThat(p -> p.getStatus() == PaymentStatus.FAILED), any());
+        // a rejection is not retried - nothing was applied
+        verify(accountServiceGrpcClient, times(1)).executeTransfer(any(), any(), any(), any());
+    }
+
+    @Test
+    void processPayment_shouldRetryWithSameKey_whenAccountServiceUnavailable() {
+        mockInsertWithJpaLifecycle();
+        when(accountServiceGrpcClient.executeTransfer(any(), any(), any(), any()))
+                .thenThrow(new StatusRuntimeException(Status.UNAVAILABLE))
+                .thenReturn(transferOutcome(TransferOutcome.TRANSFER_COMPLETED, "").toBuilder()
+                        .setReplayed(true).build());
+
+        PaymentResponseDTO result = paymentService.processPayment(validRequest);
+
+        assertThat(result.getStatus()).isEqualTo("COMPLETED");
+        verify(accountServiceGrpcClient, times(2))
+                .executeTransfer(eq(fromAccountId), eq(toAccountId), eq(Money.parse("100.00")), eq(result.getPaymentId()));
     }
 
     @Test
-    void processPayment_shouldAttemptDebitReversal_whenCreditFails() {
-        when(accountServiceGrpcClient.getAccountById(fromAccountId)).thenReturn(activeFromAccount);
-        when(accountServiceGrpcClient.getAccountById(toAccountId)).thenReturn(activeToAccount);
-        mockSaveWithJpaLifecycle();
-        // First updateAccountBalance call (debit) succeeds, second (credit) fails
-        doNothing()
-                .doThrow(new RuntimeException("Credit failed"))
-                .when(accountServiceGrpcClient).updateAccountBalance(any(), any());
+    void processPayment_shouldLeavePendingForRecovery_whenTransferOutcomeUnknown() {
+        mockInsertWithJpaLifecycle();
+        // both attempts time out - account-service may well have applied the transfer
+        when(accountServiceGrpcClient.executeTransfer(any(), any(), any(), any()))
+                .thenThrow(new StatusRuntimeException(Status.DEADLINE_EXCEEDED))
+                .thenThrow(new StatusRuntimeException(Status.DEADLINE_EXCEEDED))
+                .thenReturn(transferOutcome(TransferOutcome.TRANSFER_COMPLETED, "").toBuilder()
+                        .setReplayed(true).build());
+
+        PaymentResponseDTO result = paymentService.processPayment(validRequest);
+
+        assertThat(result.getStatus()).isEqualTo("PENDING");
+        verify(writes, never()).finish(any(), any());
+        verify(idempotencyCache, never()).put(any(), any());
+
+        ArgumentCaptor<payment> stored = ArgumentCaptor.forClass(payment.class);
+        verify(writes).insertPending(stored.capture(), eq(SagaState.TRANSFER_REQUESTED));
+        payment p = stored.getValue();
+        when(repository.findByStatusAndCreatedAtBeforeOrderByCreatedAtAsc(eq(PaymentStatus.PENDING), any(), any()))
+                .thenReturn(List.of(p));
+        when(repository.findById(p.getId())).thenReturn(Optional.of(p));
+        when(sagaLog.current(p.getId())).thenReturn(SagaState.TRANSFER_REQUESTED);
+
+        new PaymentSagaRecovery(repository, paymentService, accountLanes, Duration.ZERO, 100).resumeStalled();
+
+        // repeated with the payment id as key, so account-service replays the applied transfer
+        verify(writes, timeout(1000)).finish(argThat(x -> x.getStatus() == PaymentStatus.COMPLETED),
+                eq("Transfer replayed"));
+        verify(accountServiceGrpcClient, times(3))
+                .executeTransfer(fromAccountId, toAccountId, Money.parse("100.00"), p.getId().toString());
+    }
+
+    // --- processPayment (idempotency keys) ---
+
+    @Test
+    void processPayment_shouldNotCreateSecondPayment_whenKeyRetried() {
+        mockInsertWithJpaLifecycle();
+        validRequest.setIdempotencyKey("retry-me");
+        when(repository.findByIdempotencyKey("retry-me")).thenReturn(Optional.empty());
+        when(accountServiceGrpcClient.executeTransfer(any(), any(), any(), any()))
+                .thenReturn(transferOutcome(TransferOutcome.TRANSFER_COMPLETED, ""));
+
+        PaymentResponseDTO first = paymentService.processPayment(validRequest);
+        PaymentResponseDTO retry = paymentService.processPayment(validRequest);
+
+        assertThat(retry.getPaymentId()).isEqualTo(first.getPaymentId());
+        // the retry is answered from the cache - one insert, one transfer, one DB lookup
+        verify(writes, times(1)).insertPending(any(payment.class), any());
+        verify(repository, times(1)).findByIdempotencyKey("retry-me");
+        verify(accountServiceGrpcClient, times(1)).executeTransfer(any(), any(), any(), any());
+    }
+
+    @Test
+    void processPayment_shouldReturnStoredPayment_whenKeyFoundInDatabase() {
+        testPayment.setIdempotencyKey("already-done");
+        validRequest.setIdempotencyKey("already-done");
+        when(repository.findByIdempotencyKey("already-done")).thenReturn(Optional.of(testPayment));
+
+        PaymentResponseDTO result = paymentService.processPayment(validRequest);
+
+        assertThat(result.getPaymentId()).isEqualTo(testPayment.getId().toString());
+        assertThat(idempotencyCache.get("already-done")).isSameAs(result);
+        verify(writes, never()).insertPending(any(), any());
+        verifyNoInteractions(accountServiceGrpcClient);
+    }
+
+    @Test
+    void processPayment_shouldReturnWinner_whenConcurrentRetryInsertedFirst() {
+        validRequest.setIdempotencyKey("raced");
+        when(repository.findByIdempotencyKey("raced"))
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.of(testPayment));
+        doThrow(new DataIntegrityViolationException("duplicate key")).when(writes).insertPending(any(payment.class), any());
+
+        PaymentResponseDTO result = paymentService.processPayment(validRequest);
+
+        assertThat(result.getPaymentId()).isEqualTo(testPayment.getId().toString());
+        verifyNoInteractions(accountServiceGrpcClient);
+    }
+
+    // --- saga ---
+
+    @Test
+    void processPayment_shouldLogTransferStepWithPendingRow_beforeCallingAccountService() {
+        mockInsertWithJpaLifecycle();
+        when(accountServiceGrpcClient.executeTransfer(any(), any(), any(), any()))
+                .thenReturn(transferOutcome(TransferOutcome.TRANSFER_COMPLETED, ""));
+
+        PaymentResponseDTO result = paymentService.processPayment(validRequest);
+
+        // a crash between the two leaves TRANSFER_REQUESTED behind for recovery to repeat
+        InOrder order = inOrder(writes, accountServiceGrpcClient);
+        order.verify(writes).insertPending(argThat(p -> p.getId().toString().equals(result.getPaymentId())),
+                eq(SagaState.TRANSFER_REQUESTED));
+        order.verify(accountServiceGrpcClient).executeTransfer(any(), any(), any(), any());
+        // logged with the insert, not as a write of its own
+        verify(sagaLog, never()).record(any(), any(), any(), any());
+    }
+
+    @Test
+    void processPayment_shouldReturnPending_whenSagaOutlastsResponseTimeout() throws Exception {
+        paymentService = new PaymentService(repository, accountServiceGrpcClient, writes, idempotencyCache,
+                entityManager, accountLanes, settlement, sagaLog, velocity, history, Duration.ofMillis(50));
+        mockInsertWithJpaLifecycle();
+        CountDownLatch release = new CountDownLatch(1);
+        when(accountServiceGrpcClient.executeTransfer(any(), any(), any(), any())).thenAnswer(inv -> {
+            release.await();
+            return transferOutcome(TransferOutcome.TRANSFER_COMPLETED, "");
+        });
+        validRequest.setIdempotencyKey("slow");
+        when(repository.findByIdempotencyKey("slow")).thenReturn(Optional.empty());
+
+        PaymentResponseDTO result = paymentService.processPayment(validRequest);
+        release.countDown();
+
+        assertThat(result.getStatus()).isEqualTo("PENDING");
+        // not final, so a retry has to look again rather than replay PENDING forever
+        assertThat(idempotencyCache.get("slow")).isNull();
+        // the saga still finishes in the background
+        verify(writes, timeout(1000)).finish(argThat(p -> p.getStatus() == PaymentStatus.COMPLETED), any());
+    }
+
+    private payment pending() {
+        testPayment.setStatus(PaymentStatus.PENDING);
+        when(repository.findById(testPayment.getId())).thenReturn(Optional.of(testPayment));
+        return testPayment;
+    }
+
+    @Test
+    void resume_shouldRepeatTransfer_whenStoppedAfterRequestingIt() {
+        payment p = pending();
+        when(sagaLog.current(p.getId())).thenReturn(SagaState.TRANSFER_REQUESTED);
+        when(accountServiceGrpcClient.executeTransfer(any(), any(), any(), any()))
+                .thenReturn(transferOutcome(TransferOutcome.TRANSFER_COMPLETED, "").toBuilder()
+                        .setReplayed(true).build());
+
+        paymentService.resume(p.getId());
+
+        // same key as the first attempt, so account-service replays instead of moving money twice
+        verify(accountServiceGrpcClient).executeTransfer(fromAccountId, toAccountId, Money.parse("100.00"), p.getId().toString());
+        verify(sagaLog, never()).record(any(), any(), any(), any());
+        verify(writes).finish(argThat(x -> x.getStatus() == PaymentStatus.COMPLETED), eq("Transfer replayed"));
+    }
+
+    @Test
+    void resume_shouldReleaseHoldAndFail_whenStoppedWhileCompensating() {
+        payment p = pending();
+        when(sagaLog.current(p.getId())).thenReturn(SagaState.COMPENSATING);
+
+        paymentService.resume(p.getId());
+
+        verify(settlement).releaseQuietly(p.getId().toString());
+        verify(writes).finish(argThat(x -> x.getStatus() == PaymentStatus.FAILED), any());
+        verify(accountServiceGrpcClient, never()).placeHold(any(), any(), any(), any(), anyLong());
+    }
+
+    @Test
+    void resume_shouldDoNothing_whenPaymentNoLongerPending() {
+        testPayment.setStatus(PaymentStatus.COMPLETED);
+        when(repository.findById(testPayment.getId())).thenReturn(Optional.of(testPayment));
+
+        paymentService.resume(testPayment.getId());
+
+        verifyNoInteractions(accountServiceGrpcClient, writes, sagaLog);
+    }
+
+    @Test
+    void processPayment_shouldCompensate_whenPlaceHoldOutcomeUnknown() {
+        mockInsertWithJpaLifecycle();
+        when(settlement.usesHolds()).thenReturn(true);
+        when(settlement.holdTtl()).thenReturn(Duration.ofMinutes(15));
+        when(accountServiceGrpcClient.placeHold(any(), any(), any(), any(), anyLong()))
+                .thenThrow(new StatusRuntimeException(Status.DEADLINE_EXCEEDED));
 
         PaymentResponseDTO result = paymentService.processPayment(validRequest);
 
         assertThat(result.getStatus()).isEqualTo("FAILED");
-        // 3 calls: debit, credit (throws), reversal attempt
-        verify(accountServiceGrpcClient, times(3)).updateAccountBalance(any(), any());
+        // the hold may have landed - it's released rather than left to expire
+        verify(sagaLog).record(eq(UUID.fromString(result.getPaymentId())),
+                eq(SagaState.HOLD_REQUESTED), eq(SagaState.COMPENSATING), any());
+        verify(settlement).releaseQuietly(result.getPaymentId());
+    }
+
+    // --- async ---
+
+    @Test
+    void processPayment_shouldReturnPendingImmediately_whenAsync() {
+        mockInsertWithJpaLifecycle();
+        CountDownLatch release = new CountDownLatch(1);
+        when(accountServiceGrpcClient.executeTransfer(any(), any(), any(), any())).thenAnswer(inv -> {
+            release.await();
+            return transferOutcome(TransferOutcome.TRANSFER_COMPLETED, "");
+        });
+        validRequest.setAsync(true);
+
+        PaymentResponseDTO result = paymentService.processPayment(validRequest);
+        release.countDown();
+
+        assertThat(result.getStatus()).isEqualTo("PENDING");
+        verify(writes, timeout(1000)).finish(argThat(p -> p.getStatus() == PaymentStatus.COMPLETED), any());
+    }
+
+    @Test
+    void processPayment_shouldNotThrow_whenAsyncPaymentFails() {
+        mockInsertWithJpaLifecycle();
+        when(accountServiceGrpcClient.executeTransfer(any(), any(), any(), any()))
+                .thenReturn(transferOutcome(TransferOutcome.TRANSFER_INSUFFICIENT_FUNDS, "Insufficient funds"));
+        validRequest.setAsync(true);
+
+        PaymentResponseDTO result = paymentService.processPayment(validRequest);
+
+        // the caller already has its 202 - the failure is on the payment for them to see
+        assertThat(result.getStatus()).isIn("PENDING", "FAILED");
+        verify(writes, timeout(1000)).finish(argThat(p -> p.getStatus() == PaymentStatus.FAILED), any());
     }
 }
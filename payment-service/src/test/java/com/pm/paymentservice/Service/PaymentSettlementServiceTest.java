@@ -0,0 +1,110 @@
+package com.pm.paymentservice.Service;
+
+import com.pm.paymentservice.Enum.PaymentStatus;
+import com.pm.paymentservice.Enum.PaymentType;
+import com.pm.paymentservice.GRPC.AccountServiceGrpcClient;
+import com.pm.paymentservice.Repository.paymentRepo;
+import com.pm.paymentservice.model.Money;
+import com.pm.paymentservice.model.payment;
+import com.pm.proto.HoldOutcome;
+import com.pm.proto.HoldResponse;
+import io.grpc.Status;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PaymentSettlementServiceTest {
+
+    @Mock private paymentRepo repository;
+    @Mock private AccountServiceGrpcClient accountServiceGrpcClient;
+    @Mock private PaymentOutboxWriter outboxWriter;
+
+    private PaymentSettlementService settlement;
+
+    @BeforeEach
+    void setUp() {
+        settlement = new PaymentSettlementService(repository, accountServiceGrpcClient, outboxWriter,
+                "hold", Duration.ofMinutes(15), 500);
+    }
+
+    private payment authorized() {
+        payment p = new payment();
+        p.setId(UUID.randomUUID());
+        p.setFromAccountId("acc-from");
+        p.setToAccountId("acc-to");
+        p.setAmount(Money.parse("10.00"));
+        p.setType(PaymentType.TRANSFER);
+        p.setStatus(PaymentStatus.AUTHORIZED);
+        return p;
+    }
+
+    private static HoldResponse hold(HoldOutcome outcome) {
+        return HoldResponse.newBuilder().setOutcome(outcome).build();
+    }
+
+    @Test
+    void settleBatch_shouldCaptureAllDuePaymentsInOneCall() {
+        payment captured = authorized();
+        payment expired = authorized();
+        when(repository.findByStatusOrderByCreatedAtAsc(eq(PaymentStatus.AUTHORIZED), any()))
+                .thenReturn(List.of(captured, expired));
+        when(accountServiceGrpcClient.captureHolds(List.of(captured.getId().toString(), expired.getId().toString())))
+                .thenReturn(List.of(hold(HoldOutcome.HOLD_CAPTURED), hold(HoldOutcome.HOLD_NOT_ACTIVE)));
+
+        int settled = settlement.settleBatch();
+
+        assertThat(settled).isEqualTo(2);
+        assertThat(captured.getStatus()).isEqualTo(PaymentStatus.COMPLETED);
+        assertThat(expired.getStatus()).isEqualTo(PaymentStatus.FAILED);
+        verify(outboxWriter).updateStatusesWithEvents(List.of(captured, expired));
+        verify(accountServiceGrpcClient, never()).releaseHold(any());
+    }
+
+    @Test
+    void settleBatch_shouldReleaseHold_whenAccountNoLongerActive() {
+        payment p = authorized();
+        when(repository.findByStatusOrderByCreatedAtAsc(eq(PaymentStatus.AUTHORIZED), any())).thenReturn(List.of(p));
+        when(accountServiceGrpcClient.captureHolds(any())).thenReturn(List.of(hold(HoldOutcome.HOLD_ACCOUNT_NOT_ACTIVE)));
+
+        settlement.settleBatch();
+
+        assertThat(p.getStatus()).isEqualTo(PaymentStatus.FAILED);
+        verify(accountServiceGrpcClient).releaseHold(p.getId().toString());
+    }
+
+    @Test
+    void settleBatch_shouldLeavePaymentsAuthorized_whenAccountServiceIsDown() {
+        payment p = authorized();
+        when(repository.findByStatusOrderByCreatedAtAsc(eq(PaymentStatus.AUTHORIZED), any())).thenReturn(List.of(p));
+        when(accountServiceGrpcClient.captureHolds(any())).thenThrow(Status.UNAVAILABLE.asRuntimeException());
+
+        int settled = settlement.settleBatch();
+
+        assertThat(settled).isZero();
+        assertThat(p.getStatus()).isEqualTo(PaymentStatus.AUTHORIZED);
+        verify(outboxWriter, never()).updateStatusesWithEvents(any());
+    }
+
+    @Test
+    void settle_shouldDoNothing_inTransferMode() {
+        PaymentSettlementService transferMode = new PaymentSettlementService(repository, accountServiceGrpcClient,
+                outboxWriter, "transfer", Duration.ofMinutes(15), 500);
+
+        transferMode.settle();
+
+        assertThat(transferMode.usesHolds()).isFalse();
+        verifyNoInteractions(repository, accountServiceGrpcClient, outboxWriter);
+    }
+}
@@ -0,0 +1,107 @@
+package com.pm.paymentservice.Service;
+
+import com.pm.paymentservice.Enum.PaymentType;
+import com.pm.paymentservice.Exception.VelocityLimitExceededException;
+import com.pm.paymentservice.Repository.paymentRepo;
+import com.pm.paymentservice.model.Money;
+import com.pm.paymentservice.model.payment;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PaymentVelocityGuardTest {
+
+    @Mock private paymentRepo repository;
+    @Mock private EntityManager entityManager;
+    @Mock private TransactionTemplate transactionTemplate;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private PaymentVelocityGuard guard(boolean enabled) {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("payment.velocity.transfer.per-minute.count", "3")
+                .withProperty("payment.velocity.transfer.per-hour.amount", "1000.00");
+        return new PaymentVelocityGuard(repository, entityManager, transactionTemplate, registry, environment, enabled);
+    }
+
+    @Test
+    void check_shouldReject_onceTheCountLimitIsReached() {
+        PaymentVelocityGuard guard = guard(true);
+        for (int i = 0; i < 3; i++) {
+            guard.check("acc-1", PaymentType.TRANSFER, Money.parse("10.00"));
+        }
+
+        assertThatThrownBy(() -> guard.check("acc-1", PaymentType.TRANSFER, Money.parse("10.00")))
+                .isInstanceOf(VelocityLimitExceededException.class)
+                .hasMessageContaining("minute");
+        // other accounts and unlimited types aren't affected
+        assertThatCode(() -> guard.check("acc-2", PaymentType.TRANSFER, Money.parse("10.00"))).doesNotThrowAnyException();
+        assertThatCode(() -> guard.check("acc-1", PaymentType.DEPOSIT, Money.parse("10.00"))).doesNotThrowAnyException();
+        assertThat(registry.get("payment.velocity.rejected").tag("window", "minute").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void check_shouldRejectByAmount_andNotCountTheRejectedPayment() {
+        PaymentVelocityGuard guard = guard(true);
+        guard.check("acc-1", PaymentType.TRANSFER, Money.parse("900.00"));
+
+        assertThatThrownBy(() -> guard.check("acc-1", PaymentType.TRANSFER, Money.parse("200.00")))
+                .isInstanceOf(VelocityLimitExceededException.class)
+                .hasMessageContaining("hour");
+        // the rejected 200.00 wasn't counted, so 100.00 still fits
+        assertThatCode(() -> guard.check("acc-1", PaymentType.TRANSFER, Money.parse("100.00"))).doesNotThrowAnyException();
+    }
+
+    @Test
+    void check_shouldAllowEverything_whenDisabled() {
+        PaymentVelocityGuard guard = guard(false);
+
+        for (int i = 0; i < 10; i++) {
+            guard.check("acc-1", PaymentType.TRANSFER, Money.parse("500.00"));
+        }
+    }
+
+    @Test
+    void rebuild_shouldCountTheLastHourOfPayments() {
+        PaymentVelocityGuard guard = guard(true);
+        when(transactionTemplate.execute(any())).thenAnswer(inv ->
+                inv.<TransactionCallback<?>>getArgument(0).doInTransaction(new SimpleTransactionStatus()));
+        when(repository.streamCreatedSince(any())).thenReturn(Stream.of(
+                recent("acc-1", "400.00", 30), recent("acc-1", "500.00", 90)));
+
+        guard.rebuild();
+
+        // 900.00 already counted this hour
+        assertThatThrownBy(() -> guard.check("acc-1", PaymentType.TRANSFER, Money.parse("200.00")))
+                .isInstanceOf(VelocityLimitExceededException.class);
+        verify(entityManager, times(2)).detach(any());
+    }
+
+    private static payment recent(String fromAccountId, String amount, int secondsAgo) {
+        payment p = new payment();
+        p.setId(UUID.randomUUID());
+        p.setFromAccountId(fromAccountId);
+        p.setAmount(Money.parse(amount));
+        p.setType(PaymentType.TRANSFER);
+        p.setCreatedAt(LocalDateTime.now().minusSeconds(secondsAgo));
+        return p;
+    }
+}
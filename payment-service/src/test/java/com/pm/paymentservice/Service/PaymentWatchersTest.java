@@ -0,0 +1,149 @@
+package com.pm.paymentservice.Service;
+
+import com.pm.paymentservice.DTO.PaymentResponseDTO;
+import com.pm.paymentservice.Enum.PaymentStatus;
+import com.pm.paymentservice.Enum.PaymentType;
+import com.pm.paymentservice.Exception.PaymentNotFoundException;
+import com.pm.paymentservice.Repository.paymentRepo;
+import com.pm.paymentservice.model.Money;
+import com.pm.paymentservice.model.payment;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PaymentWatchersTest {
+
+    @Mock private paymentRepo repository;
+
+    private PaymentWatchers watchers;
+    private List<String> seen;
+    private AtomicInteger ended;
+
+    @BeforeEach
+    void setUp() {
+        watchers = new PaymentWatchers(repository, Duration.ofMinutes(5));
+        seen = new ArrayList<>();
+        ended = new AtomicInteger();
+    }
+
+    private payment payment(UUID id, PaymentStatus status) {
+        payment p = new payment();
+        p.setId(id);
+        p.setFromAccountId("acc-from");
+        p.setToAccountId("acc-to");
+        p.setAmount(Money.parse("10.00"));
+        p.setType(PaymentType.TRANSFER);
+        p.setStatus(status);
+        p.setCreatedAt(LocalDateTime.now());
+        p.setUpdatedAt(LocalDateTime.now());
+        return p;
+    }
+
+    private Runnable watch(UUID id) {
+        return watchers.watch(id, (PaymentResponseDTO dto) -> seen.add(dto.getStatus()), ended::incrementAndGet);
+    }
+
+    @Test
+    void watch_shouldSendCurrentStateThenChangesUntilFinal() {
+        UUID id = UUID.randomUUID();
+        when(repository.findById(id)).thenReturn(Optional.of(payment(id, PaymentStatus.PENDING)));
+
+        watch(id);
+        watchers.publish(payment(id, PaymentStatus.AUTHORIZED));
+        watchers.publish(payment(id, PaymentStatus.COMPLETED));
+
+        assertThat(seen).containsExactly("PENDING", "AUTHORIZED", "COMPLETED");
+        assertThat(ended.get()).isEqualTo(1);
+        assertThat(watchers.size()).isZero();
+    }
+
+    @Test
+    void watch_shouldEndStraightAway_whenPaymentAlreadyFinal() {
+        UUID id = UUID.randomUUID();
+        when(repository.findById(id)).thenReturn(Optional.of(payment(id, PaymentStatus.FAILED)));
+
+        watch(id);
+
+        assertThat(seen).containsExactly("FAILED");
+        assertThat(ended.get()).isEqualTo(1);
+        assertThat(watchers.size()).isZero();
+    }
+
+    @Test
+    void watch_shouldThrow_whenPaymentMissing() {
+        UUID id = UUID.randomUUID();
+        when(repository.findById(id)).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> watch(id)).isInstanceOf(PaymentNotFoundException.class);
+        assertThat(watchers.size()).isZero();
+    }
+
+    @Test
+    void publish_shouldDropStaleAndRepeatedStatuses() {
+        UUID id = UUID.randomUUID();
+        when(repository.findById(id)).thenReturn(Optional.of(payment(id, PaymentStatus.PENDING)));
+
+        watch(id);
+        watchers.publish(payment(id, PaymentStatus.AUTHORIZED));
+        // a poll that read the row just before the push
+        watchers.publish(payment(id, PaymentStatus.PENDING));
+        watchers.publish(payment(id, PaymentStatus.AUTHORIZED));
+
+        assertThat(seen).containsExactly("PENDING", "AUTHORIZED");
+    }
+
+    @Test
+    void poll_shouldPickUpChangesMadeElsewhere() {
+        UUID id = UUID.randomUUID();
+        when(repository.findById(id)).thenReturn(Optional.of(payment(id, PaymentStatus.PENDING)));
+        when(repository.findAllById(any())).thenReturn(List.of(payment(id, PaymentStatus.COMPLETED)));
+
+        watch(id);
+        watchers.poll();
+
+        assertThat(seen).containsExactly("PENDING", "COMPLETED");
+        assertThat(ended.get()).isEqualTo(1);
+    }
+
+    @Test
+    void poll_shouldEndWatchesPastMaxDuration() {
+        watchers = new PaymentWatchers(repository, Duration.ZERO);
+        UUID id = UUID.randomUUID();
+        when(repository.findById(id)).thenReturn(Optional.of(payment(id, PaymentStatus.PENDING)));
+
+        watch(id);
+        watchers.poll();
+
+        assertThat(ended.get()).isEqualTo(1);
+        assertThat(watchers.size()).isZero();
+        verify(repository, never()).findAllById(any());
+    }
+
+    @Test
+    void cancel_shouldStopUpdates() {
+        UUID id = UUID.randomUUID();
+        when(repository.findById(id)).thenReturn(Optional.of(payment(id, PaymentStatus.PENDING)));
+
+        watch(id).run();
+        watchers.publish(payment(id, PaymentStatus.COMPLETED));
+
+        assertThat(seen).containsExactly("PENDING");
+        assertThat(ended.get()).isZero();
+    }
+}
@@ -0,0 +1,139 @@
+package com.pm.paymentservice.Service;
+
+import com.pm.paymentservice.Enum.PaymentStatus;
+import com.pm.paymentservice.Enum.SagaState;
+import com.pm.paymentservice.model.payment;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+class PaymentWriteCoalescerTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final PaymentOutboxWriter writer = mock(PaymentOutboxWriter.class);
+    private PaymentWriteCoalescer writes;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        writes.shutdown();
+    }
+
+    private PaymentWriteCoalescer start(Duration flushInterval) {
+        writes = new PaymentWriteCoalescer(writer, flushInterval, 500, registry);
+        writes.start();
+        return writes;
+    }
+
+    private static payment payment(PaymentStatus status) {
+        payment p = new payment();
+        p.setId(UUID.randomUUID());
+        p.setStatus(status);
+        return p;
+    }
+
+    @Test
+    void writes_shouldShareOneFlush_whenQueuedTogether() throws Exception {
+        start(Duration.ofMillis(2));
+        List<List<PaymentOutboxWriter.Write>> flushes = new CopyOnWriteArrayList<>();
+        CountDownLatch firstFlushStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(inv -> {
+            flushes.add(List.copyOf(inv.getArgument(0)));
+            firstFlushStarted.countDown();
+            release.await();
+            return null;
+        }).when(writer).writeBatch(any());
+
+        // The first write holds the flusher until ten more are queued behind it
+        CompletableFuture<Void> first = CompletableFuture.runAsync(
+                () -> writes.insertPending(payment(PaymentStatus.PENDING), SagaState.TRANSFER_REQUESTED));
+        assertThat(firstFlushStarted.await(1, TimeUnit.SECONDS)).isTrue();
+        List<CompletableFuture<Void>> rest = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            rest.add(CompletableFuture.runAsync(() -> writes.finish(payment(PaymentStatus.COMPLETED), null)));
+        }
+        waitForQueued(10);
+        release.countDown();
+        first.get(1, TimeUnit.SECONDS);
+        CompletableFuture.allOf(rest.toArray(CompletableFuture[]::new)).get(1, TimeUnit.SECONDS);
+
+        assertThat(flushes).hasSize(2);
+        assertThat(flushes.get(1)).hasSize(10)
+                .allMatch(w -> !w.insert() && w.step() == SagaState.COMPLETED);
+        assertThat(registry.get("payment.write.batch").summary().count()).isEqualTo(2);
+    }
+
+    @Test
+    void flush_shouldRetryOneByOne_andFailOnlyTheBadWrite() {
+        start(Duration.ofMillis(2));
+        payment good = payment(PaymentStatus.PENDING);
+        payment duplicate = payment(PaymentStatus.PENDING);
+        DataIntegrityViolationException duplicateKey = new DataIntegrityViolationException("duplicate key");
+        doThrow(duplicateKey).when(writer).writeBatch(argThat(ws -> ws.stream().anyMatch(w -> w.payment() == duplicate)));
+        PaymentWriteCoalescer.Pending ok = pending(good);
+        PaymentWriteCoalescer.Pending bad = pending(duplicate);
+
+        writes.flush(List.of(ok, bad));
+
+        assertThat(ok.done()).isCompleted();
+        assertThat(bad.done()).isCompletedExceptionally();
+        // the whole batch, then each write on its own
+        verify(writer, times(3)).writeBatch(any());
+    }
+
+    @Test
+    void insertPending_shouldRethrowWriteFailure_toItsCaller() {
+        start(Duration.ofMillis(2));
+        doThrow(new DataIntegrityViolationException("duplicate key")).when(writer).writeBatch(any());
+
+        assertThatThrownBy(() -> writes.insertPending(payment(PaymentStatus.PENDING), SagaState.TRANSFER_REQUESTED))
+                .isInstanceOf(DataIntegrityViolationException.class);
+    }
+
+    @Test
+    void insertPending_shouldReject_whenFirstStepIsNotARequest() {
+        start(Duration.ofMillis(2));
+
+        assertThatThrownBy(() -> writes.insertPending(payment(PaymentStatus.PENDING), SagaState.COMPLETED))
+                .isInstanceOf(IllegalStateException.class);
+        verifyNoInteractions(writer);
+    }
+
+    @Test
+    void finish_shouldReject_whenPaymentNotFinal() {
+        start(Duration.ofMillis(2));
+
+        assertThatThrownBy(() -> writes.finish(payment(PaymentStatus.AUTHORIZED), null))
+                .isInstanceOf(IllegalArgumentException.class);
+        verifyNoInteractions(writer);
+    }
+
+    private static PaymentWriteCoalescer.Pending pending(payment p) {
+        return new PaymentWriteCoalescer.Pending(
+                new PaymentOutboxWriter.Write(p, true, SagaState.TRANSFER_REQUESTED, null), new CompletableFuture<>());
+    }
+
+    private void waitForQueued(int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (writes.queued() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertThat(writes.queued()).isEqualTo(expected);
+    }
+}
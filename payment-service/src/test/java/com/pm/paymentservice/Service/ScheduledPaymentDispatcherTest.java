@@ -0,0 +1,218 @@
+package com.pm.paymentservice.Service;
+
+import com.pm.paymentservice.DTO.PaymentRequestDTO;
+import com.pm.paymentservice.DTO.PaymentResponseDTO;
+import com.pm.paymentservice.Enum.PaymentType;
+import com.pm.paymentservice.Enum.ScheduleFrequency;
+import com.pm.paymentservice.Enum.ScheduleStatus;
+import com.pm.paymentservice.Exception.InsufficientFundsException;
+import com.pm.paymentservice.Exception.PaymentLaneFullException;
+import com.pm.paymentservice.model.Money;
+import com.pm.paymentservice.model.scheduledPayment;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ScheduledPaymentDispatcherTest {
+
+    @Mock private ScheduledPaymentService schedules;
+    @Mock private PaymentService paymentService;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private ScheduledPaymentDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        dispatcher = new ScheduledPaymentDispatcher(schedules, paymentService, Duration.ofMillis(10), 64,
+                Duration.ofSeconds(60), Duration.ofMinutes(5), 500, 10_000, 2, 3, registry);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        dispatcher.shutdown();
+    }
+
+    private static scheduledPayment schedule(LocalDateTime nextRunAt) {
+        scheduledPayment s = new scheduledPayment();
+        s.setId(UUID.randomUUID());
+        s.setFromAccountId("acc-from");
+        s.setToAccountId("acc-to");
+        s.setAmount(Money.parse("25.00"));
+        s.setType(PaymentType.TRANSFER);
+        s.setFrequency(ScheduleFrequency.MONTHLY);
+        s.setStatus(ScheduleStatus.ACTIVE);
+        s.setFirstRunAt(nextRunAt);
+        s.setNextRunAt(nextRunAt);
+        s.setRuns(3);
+        return s;
+    }
+
+    private static PaymentResponseDTO payment(String status) {
+        PaymentResponseDTO dto = new PaymentResponseDTO();
+        dto.setPaymentId(UUID.randomUUID().toString());
+        dto.setStatus(status);
+        return dto;
+    }
+
+    private String key(int call) {
+        ArgumentCaptor<PaymentRequestDTO> request = ArgumentCaptor.forClass(PaymentRequestDTO.class);
+        verify(paymentService, atLeast(call + 1)).processPayment(request.capture());
+        return request.getAllValues().get(call).getIdempotencyKey();
+    }
+
+    private static ScheduledPaymentDispatcher.Due due(scheduledPayment s) {
+        return new ScheduledPaymentDispatcher.Due(s.getId(), s.getRuns(), s.getNextRunAt());
+    }
+
+    @Test
+    void run_shouldPayWithTheRunsIdempotencyKey_andRecordTheRun() {
+        scheduledPayment s = schedule(LocalDateTime.now());
+        when(schedules.find(s.getId())).thenReturn(Optional.of(s));
+        when(paymentService.processPayment(any())).thenReturn(payment("COMPLETED"));
+
+        dispatcher.run(due(s));
+
+        ArgumentCaptor<PaymentRequestDTO> request = ArgumentCaptor.forClass(PaymentRequestDTO.class);
+        verify(paymentService).processPayment(request.capture());
+        assertThat(request.getValue().getIdempotencyKey()).isEqualTo("schedule:" + s.getId() + ":3");
+        assertThat(request.getValue().getAmount()).isEqualTo(Money.parse("25.00"));
+        verify(schedules).recordRun(eq(s), any());
+        assertThat(registry.get("payment.schedule.runs").tag("outcome", "made").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void run_shouldSkip_whenCancelledOrAlreadyRun() {
+        scheduledPayment cancelled = schedule(LocalDateTime.now());
+        cancelled.setStatus(ScheduleStatus.CANCELLED);
+        scheduledPayment runElsewhere = schedule(LocalDateTime.now());
+        when(schedules.find(cancelled.getId())).thenReturn(Optional.of(cancelled));
+        when(schedules.find(runElsewhere.getId())).thenReturn(Optional.of(runElsewhere));
+
+        dispatcher.run(due(cancelled));
+        dispatcher.run(new ScheduledPaymentDispatcher.Due(runElsewhere.getId(), 2, runElsewhere.getNextRunAt()));
+
+        verifyNoInteractions(paymentService);
+        verify(schedules, never()).recordRun(any(), any());
+    }
+
+    @Test
+    void run_shouldStillRecordTheRun_whenPaymentDeclined() {
+        scheduledPayment s = schedule(LocalDateTime.now());
+        when(schedules.find(s.getId())).thenReturn(Optional.of(s));
+        when(paymentService.processPayment(any())).thenThrow(new InsufficientFundsException("Insufficient funds"));
+
+        dispatcher.run(due(s));
+
+        verify(schedules).recordRun(eq(s), any());
+        assertThat(registry.get("payment.schedule.runs").tag("outcome", "declined").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void run_shouldReleaseTheClaim_whenPaymentCouldNotBeMade() {
+        scheduledPayment s = schedule(LocalDateTime.now());
+        when(schedules.find(s.getId())).thenReturn(Optional.of(s));
+        when(paymentService.processPayment(any())).thenThrow(new PaymentLaneFullException("Lane full"));
+
+        dispatcher.run(due(s));
+
+        verify(schedules, never()).recordRun(any(), any());
+        verify(schedules).release(List.of(s.getId()));
+        assertThat(registry.get("payment.schedule.runs").tag("outcome", "retried").counter().count()).isEqualTo(1);
+    }
+
+    // account-service UNAVAILABLE through PaymentService's retry: the transfer may have
+    // landed, so the payment comes back PENDING and recovery will finish it
+    @Test
+    void run_shouldRetryWithTheSameKey_whenAccountServiceUnavailable() {
+        scheduledPayment s = schedule(LocalDateTime.now());
+        when(schedules.find(s.getId())).thenReturn(Optional.of(s));
+        PaymentResponseDTO pending = payment("PENDING");
+        PaymentResponseDTO finished = payment("COMPLETED");
+        finished.setPaymentId(pending.getPaymentId());
+        when(paymentService.processPayment(any())).thenReturn(pending).thenReturn(finished);
+
+        dispatcher.run(due(s));
+
+        verify(schedules, never()).recordRun(any(), any());
+        verify(schedules, never()).recordFailedAttempt(any(), any());
+        verify(schedules).release(List.of(s.getId()));
+        assertThat(registry.get("payment.schedule.runs").tag("outcome", "retried").counter().count()).isEqualTo(1);
+
+        // the next load: same key, so it picks up what recovery made of the payment
+        dispatcher.run(due(s));
+
+        assertThat(key(1)).isEqualTo(key(0));
+        verify(schedules).recordRun(eq(s), any());
+        assertThat(registry.get("payment.schedule.runs").tag("outcome", "made").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void run_shouldRetryAsANewAttempt_whenPaymentFailedOutright() {
+        scheduledPayment s = schedule(LocalDateTime.now());
+        when(schedules.find(s.getId())).thenReturn(Optional.of(s));
+        when(paymentService.processPayment(any())).thenReturn(payment("FAILED"));
+
+        dispatcher.run(due(s));
+
+        verify(schedules).recordFailedAttempt(eq(s), any());
+        verify(schedules, never()).recordRun(any(), any());
+
+        // recordFailedAttempt moved the schedule on to attempt 1, with its own key
+        s.setAttempts(1);
+        dispatcher.run(due(s));
+
+        assertThat(key(0)).isEqualTo("schedule:" + s.getId() + ":3");
+        assertThat(key(1)).isEqualTo("schedule:" + s.getId() + ":3:1");
+    }
+
+    @Test
+    void run_shouldMoveOn_afterMaxAttempts() {
+        scheduledPayment s = schedule(LocalDateTime.now());
+        s.setAttempts(2);
+        when(schedules.find(s.getId())).thenReturn(Optional.of(s));
+        when(paymentService.processPayment(any())).thenReturn(payment("FAILED"));
+
+        dispatcher.run(due(s));
+
+        verify(schedules).recordRun(eq(s), any());
+        verify(schedules, never()).recordFailedAttempt(any(), any());
+        assertThat(registry.get("payment.schedule.runs").tag("outcome", "missed").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void load_shouldRunOverdueSchedulesAtOnce_andLaterOnesWhenTheirTimeComes() {
+        scheduledPayment overdue = schedule(LocalDateTime.now().minusMinutes(1));
+        scheduledPayment soon = schedule(LocalDateTime.now().plusNanos(200_000_000));
+        when(schedules.claimDue(any(), any(), any(), anyInt())).thenReturn(List.of(overdue, soon));
+        when(schedules.find(overdue.getId())).thenReturn(Optional.of(overdue));
+        when(schedules.find(soon.getId())).thenReturn(Optional.of(soon));
+        when(paymentService.processPayment(any())).thenReturn(payment("COMPLETED"));
+        dispatcher.start();
+
+        dispatcher.load();
+
+        verify(schedules, timeout(1000)).recordRun(eq(overdue), any());
+        verify(schedules, never()).recordRun(eq(soon), any());
+        verify(schedules, timeout(2000)).recordRun(eq(soon), any());
+        verify(paymentService, times(2)).processPayment(any());
+        assertThat(dispatcher.loaded()).isZero();
+    }
+}
@@ -0,0 +1,102 @@
+package com.pm.paymentservice.Service;
+
+import com.pm.paymentservice.DTO.ScheduledPaymentRequestDTO;
+import com.pm.paymentservice.Enum.PaymentType;
+import com.pm.paymentservice.Enum.ScheduleFrequency;
+import com.pm.paymentservice.Enum.ScheduleStatus;
+import com.pm.paymentservice.Repository.scheduledPaymentRepo;
+import com.pm.paymentservice.model.Money;
+import com.pm.paymentservice.model.scheduledPayment;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ScheduledPaymentServiceTest {
+
+    @Mock private scheduledPaymentRepo repository;
+
+    @InjectMocks private ScheduledPaymentService service;
+
+    private static scheduledPayment schedule(ScheduleFrequency frequency, LocalDateTime first, LocalDateTime next) {
+        scheduledPayment s = new scheduledPayment();
+        s.setId(UUID.randomUUID());
+        s.setAmount(Money.parse("10.00"));
+        s.setFrequency(frequency);
+        s.setStatus(ScheduleStatus.ACTIVE);
+        s.setFirstRunAt(first);
+        s.setNextRunAt(next);
+        s.setRuns(1);
+        return s;
+    }
+
+    @Test
+    void recordRun_shouldCountMonthsFromTheFirstRun_soTheDayDoesNotDrift() {
+        LocalDateTime first = LocalDateTime.of(2025, 1, 31, 2, 0);
+        scheduledPayment s = schedule(ScheduleFrequency.MONTHLY, first, LocalDateTime.of(2025, 2, 28, 2, 0));
+
+        service.recordRun(s, LocalDateTime.of(2025, 2, 28, 2, 0, 1));
+
+        verify(repository).recordRun(s.getId(), 1, LocalDateTime.of(2025, 3, 31, 2, 0), "ACTIVE",
+                LocalDateTime.of(2025, 2, 28, 2, 0, 1));
+    }
+
+    @Test
+    void recordRun_shouldSkipToTheNextFutureOccurrence_afterDowntime() {
+        LocalDateTime first = LocalDateTime.of(2025, 1, 1, 9, 0);
+        scheduledPayment s = schedule(ScheduleFrequency.DAILY, first, first);
+
+        service.recordRun(s, LocalDateTime.of(2025, 1, 5, 12, 0));
+
+        verify(repository).recordRun(eq(s.getId()), eq(1), eq(LocalDateTime.of(2025, 1, 6, 9, 0)), eq("ACTIVE"), any());
+    }
+
+    @Test
+    void recordRun_shouldFinishTheSchedule_afterItsLastOccurrence() {
+        LocalDateTime first = LocalDateTime.of(2025, 1, 1, 9, 0);
+        scheduledPayment once = schedule(ScheduleFrequency.ONCE, first, first);
+        scheduledPayment weekly = schedule(ScheduleFrequency.WEEKLY, first, first);
+        weekly.setEndsAt(first.plusDays(3));
+
+        service.recordRun(once, first);
+        service.recordRun(weekly, first);
+
+        verify(repository).recordRun(once.getId(), 1, first, "DONE", first);
+        verify(repository).recordRun(weekly.getId(), 1, first, "DONE", first);
+    }
+
+    @Test
+    void create_shouldReject_whenFirstRunIsInThePast() {
+        ScheduledPaymentRequestDTO request = new ScheduledPaymentRequestDTO();
+        request.setFromAccountId("acc-from");
+        request.setToAccountId("acc-to");
+        request.setAmount(Money.parse("10.00"));
+        request.setType(PaymentType.TRANSFER);
+        request.setFrequency(ScheduleFrequency.DAILY);
+        request.setFirstRunAt(LocalDateTime.now().minusDays(1));
+
+        assertThatThrownBy(() -> service.create(request)).isInstanceOf(IllegalArgumentException.class);
+        verify(repository, never()).save(any());
+    }
+
+    @Test
+    void cancel_shouldReject_whenScheduleAlreadyDone() {
+        scheduledPayment done = schedule(ScheduleFrequency.ONCE, LocalDateTime.now(), LocalDateTime.now());
+        done.setStatus(ScheduleStatus.DONE);
+        when(repository.cancel(eq(done.getId()), any())).thenReturn(0);
+        when(repository.findById(done.getId())).thenReturn(Optional.of(done));
+
+        assertThatThrownBy(() -> service.cancel(done.getId().toString())).isInstanceOf(IllegalStateException.class);
+    }
+}
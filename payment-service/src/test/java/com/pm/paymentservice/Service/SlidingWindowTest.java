@@ -0,0 +1,55 @@
+package com.pm.paymentservice.Service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SlidingWindowTest {
+
+    @Test
+    void totals_shouldOnlyCoverTheLastWindow() {
+        // ten 1s buckets
+        SlidingWindow window = new SlidingWindow(1_000, 10);
+        window.add(0, 100);
+        window.add(4_500, 200);
+        window.add(9_999, 300);
+
+        assertThat(window.totals(9_999)).isEqualTo(new SlidingWindow.Totals(3, 600));
+        // the first second has slid out
+        assertThat(window.totals(10_000)).isEqualTo(new SlidingWindow.Totals(2, 500));
+        assertThat(window.totals(20_000).count()).isZero();
+    }
+
+    @Test
+    void add_shouldReuseSlotsAsTheWindowMoves_andDropPaymentsAlreadyOutOfIt() {
+        SlidingWindow window = new SlidingWindow(1_000, 10);
+        window.add(1_000, 100);
+        // same slot, ten seconds later - replaces the old bucket
+        window.add(11_000, 50);
+        // older than what the slot now holds
+        window.add(1_500, 999);
+
+        assertThat(window.totals(11_000)).isEqualTo(new SlidingWindow.Totals(1, 50));
+    }
+
+    @Test
+    void add_shouldNotLoseCounts_underConcurrentAdds() throws InterruptedException {
+        SlidingWindow window = new SlidingWindow(60_000, 60);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 8; i++) {
+            pool.execute(() -> {
+                for (int j = 0; j < 10_000; j++) {
+                    window.add(30_000, 1);
+                }
+            });
+        }
+        pool.shutdown();
+        assertThat(pool.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(window.totals(30_000)).isEqualTo(new SlidingWindow.Totals(80_000, 80_000));
+    }
+}
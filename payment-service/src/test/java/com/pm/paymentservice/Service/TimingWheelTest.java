@@ -0,0 +1,70 @@
+package com.pm.paymentservice.Service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TimingWheelTest {
+
+    private final List<String> due = new ArrayList<>();
+
+    @Test
+    void add_shouldRefuseItemsAlreadyDue() {
+        TimingWheel<String> wheel = new TimingWheel<>(100, 8, 1_000);
+
+        assertThat(wheel.add("past", 900)).isFalse();
+        assertThat(wheel.add("now", 1_000)).isFalse();
+        assertThat(wheel.add("next-tick", 1_001)).isTrue();
+        assertThat(wheel.size()).isEqualTo(1);
+    }
+
+    @Test
+    void advance_shouldHandOverItemsOnTheirTick_neverEarly() {
+        TimingWheel<String> wheel = new TimingWheel<>(100, 8, 1_000);
+        wheel.add("a", 1_250);
+        wheel.add("b", 1_300);
+
+        wheel.advance(1_299, due::add);
+        assertThat(due).isEmpty();
+
+        wheel.advance(1_300, due::add);
+        // a rounds up to 1300 - one tick late at most
+        assertThat(due).containsExactlyInAnyOrder("a", "b");
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void advance_shouldCascadeFromOverflowWheels() {
+        // inner wheel spans 800ms, first overflow 6.4s, second 51.2s
+        TimingWheel<String> wheel = new TimingWheel<>(100, 8, 0);
+        wheel.add("inner", 500);
+        wheel.add("overflow", 3_050);
+        wheel.add("far", 20_000);
+
+        for (long now = 0; now <= 25_000; now += 100) {
+            long tick = now;
+            wheel.advance(now, item -> due.add(item + "@" + tick));
+        }
+
+        assertThat(due).containsExactly("inner@500", "overflow@3100", "far@20000");
+    }
+
+    @Test
+    void advance_shouldCatchUpAfterSleepingPastWholeTurns() {
+        TimingWheel<String> wheel = new TimingWheel<>(100, 8, 0);
+        wheel.add("a", 700);
+        wheel.add("b", 5_000);
+        wheel.add("c", 60_000);
+
+        wheel.advance(10_000, due::add);
+        assertThat(due).containsExactlyInAnyOrder("a", "b");
+
+        assertThat(wheel.add("d", 10_050)).isTrue();
+        wheel.advance(60_000, due::add);
+        assertThat(due).containsExactlyInAnyOrder("a", "b", "c", "d");
+        assertThat(wheel.size()).isZero();
+    }
+}
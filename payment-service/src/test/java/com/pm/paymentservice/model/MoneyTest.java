@@ -0,0 +1,57 @@
+package com.pm.paymentservice.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MoneyTest {
+
+    @Test
+    void parse_shouldReadPlainDecimals_intoTenThousandths() {
+        assertThat(Money.parse("250.00").minor()).isEqualTo(2_500_000L);
+        assertThat(Money.parse("12").minor()).isEqualTo(120_000L);
+        assertThat(Money.parse("0.5").minor()).isEqualTo(5_000L);
+        assertThat(Money.parse(".25").minor()).isEqualTo(2_500L);
+        assertThat(Money.parse("-3.1415").minor()).isEqualTo(-31_415L);
+        // trailing zeros past the scale are still exact
+        assertThat(Money.parse("1.230000").minor()).isEqualTo(12_300L);
+    }
+
+    @Test
+    void parse_shouldRejectWhatBigDecimalWouldHaveRounded_orCannotRead() {
+        assertThatThrownBy(() -> Money.parse("1.23456")).isInstanceOf(NumberFormatException.class);
+        assertThatThrownBy(() -> Money.parse("abc")).isInstanceOf(NumberFormatException.class);
+        assertThatThrownBy(() -> Money.parse("")).isInstanceOf(NumberFormatException.class);
+        assertThatThrownBy(() -> Money.parse("-")).isInstanceOf(NumberFormatException.class);
+        assertThatThrownBy(() -> Money.parse("1e3")).isInstanceOf(NumberFormatException.class);
+        assertThatThrownBy(() -> Money.parse("99999999999999999999")).isInstanceOf(NumberFormatException.class);
+    }
+
+    @Test
+    void toString_shouldKeepTwoDecimals_andDropOtherTrailingZeros() {
+        assertThat(Money.parse("250").toString()).isEqualTo("250.00");
+        assertThat(Money.parse("0.125").toString()).isEqualTo("0.125");
+        assertThat(Money.parse("-3.5").toString()).isEqualTo("-3.50");
+        assertThat(Money.parse("0.0001").toString()).isEqualTo("0.0001");
+    }
+
+    @Test
+    void ofMinor_shouldRescaleToFourPlaces() {
+        assertThat(Money.ofMinor(1250, 2)).isEqualTo(Money.parse("12.50"));
+        assertThat(Money.ofMinor(125_000, 4)).isEqualTo(Money.parse("12.50"));
+        assertThat(Money.ofMinor(12_500_000, 6)).isEqualTo(Money.parse("12.50"));
+        assertThatThrownBy(() -> Money.ofMinor(1_234_567, 6)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void bigDecimal_shouldRoundTrip() {
+        Money m = Money.of(new BigDecimal("250.0000"));
+
+        assertThat(m).isEqualTo(Money.parse("250.00"));
+        assertThat(m.toBigDecimal()).isEqualByComparingTo("250");
+        assertThat(new MoneyConverter().convertToEntityAttribute(new MoneyConverter().convertToDatabaseColumn(m))).isEqualTo(m);
+    }
+}
@@ -0,0 +1,11 @@
+package com.pm.proto.kafka;
+
+import com.pm.proto.PaymentEvent;
+
+// value-deserializer for the payment-processed topic
+public class PaymentEventDeserializer extends ProtobufDeserializer<PaymentEvent> {
+
+    public PaymentEventDeserializer() {
+        super(PaymentEvent.parser(), PaymentEvent.getDescriptor());
+    }
+}
@@ -0,0 +1,49 @@
+package com.pm.proto.kafka;
+
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import com.google.protobuf.Parser;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+
+import java.nio.charset.StandardCharsets;
+
+// Counterpart of ProtobufSerializer for one message type. Kafka instantiates
+// deserializers by class name, so each type gets a small subclass with a no-arg
+// constructor (see PaymentEventDeserializer).
+public abstract class ProtobufDeserializer<T extends Message> implements Deserializer<T> {
+
+    private final Parser<T> parser;
+    private final String contentType;
+
+    protected ProtobufDeserializer(Parser<T> parser, Descriptors.Descriptor descriptor) {
+        this.parser = parser;
+        this.contentType = ProtobufSerializer.contentType(descriptor.getFullName());
+    }
+
+    @Override
+    public T deserialize(String topic, byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        try {
+            return parser.parseFrom(data);
+        } catch (InvalidProtocolBufferException e) {
+            throw new SerializationException("Invalid " + contentType + " record on " + topic, e);
+        }
+    }
+
+    // Records that don't say they are this message type are rejected rather than parsed
+    @Override
+    public T deserialize(String topic, Headers headers, byte[] data) {
+        Header header = headers.lastHeader(ProtobufSerializer.CONTENT_TYPE_HEADER);
+        String actual = header == null ? null : new String(header.value(), StandardCharsets.UTF_8);
+        if (data != null && !contentType.equals(actual)) {
+            throw new SerializationException("Expected " + contentType + " on " + topic + " but got " + actual);
+        }
+        return deserialize(topic, data);
+    }
+}
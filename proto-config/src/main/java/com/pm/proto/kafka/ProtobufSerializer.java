@@ -0,0 +1,36 @@
+package com.pm.proto.kafka;
+
+import com.google.protobuf.Message;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.nio.charset.StandardCharsets;
+
+// Kafka value serializer for any generated protobuf message: the record value is the
+// message's wire encoding. Each record also gets a content-type header naming the
+// message type, which ProtobufDeserializer checks before parsing - protobuf bytes carry
+// no type of their own, so without it a record of another type (or an old JSON one)
+// could parse into a garbage message instead of failing.
+public class ProtobufSerializer<T extends Message> implements Serializer<T> {
+
+    public static final String CONTENT_TYPE_HEADER = "content-type";
+
+    @Override
+    public byte[] serialize(String topic, T data) {
+        return data == null ? null : data.toByteArray();
+    }
+
+    @Override
+    public byte[] serialize(String topic, Headers headers, T data) {
+        if (data != null) {
+            headers.remove(CONTENT_TYPE_HEADER);
+            headers.add(CONTENT_TYPE_HEADER,
+                    contentType(data.getDescriptorForType().getFullName()).getBytes(StandardCharsets.UTF_8));
+        }
+        return serialize(topic, data);
+    }
+
+    static String contentType(String messageType) {
+        return "application/x-protobuf; messageType=" + messageType;
+    }
+}